@@ -12,9 +12,22 @@ db.createCollection("sensor_devices");
 db.sensor_devices.createIndex({ "deviceId": 1 }, { unique: true });
 db.sensor_devices.createIndex({ "sensorType": 1 });
 db.sensor_devices.createIndex({ "status": 1 });
+// Also serves subtree queries (findByLocationPrefix), which use an anchored regex such as /^Building A, /
 db.sensor_devices.createIndex({ "location": 1 });
 
+// Create index for the change feed (findModifiedSince), ordered like its keyset
+db.sensor_devices.createIndex({ "updatedAt": 1, "_id": 1 });
+
+// Create tombstone collection so the change feed can report deleted devices
+db.createCollection("sensor_device_tombstones");
+db.sensor_device_tombstones.createIndex({ "deletedAt": 1, "_id": 1 });
+
+// Create sensor_readings collection for reading history (one document per sample)
+db.createCollection("sensor_readings");
+db.sensor_readings.createIndex({ "deviceId": 1, "ts": 1 });
+
 // Insert sample sensor devices
+// (these get ObjectId _ids; devices created by the application get binary UUID _ids, both are supported)
 db.sensor_devices.insertMany([
     {
         deviceName: "Temperature Sensor 01",
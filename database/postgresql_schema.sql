@@ -9,7 +9,7 @@
 
 -- Create sensor_devices table
 CREATE TABLE IF NOT EXISTS sensor_devices (
-    id VARCHAR(255) PRIMARY KEY,
+    id UUID PRIMARY KEY,
     device_name VARCHAR(255) NOT NULL,
     sensor_type VARCHAR(100) NOT NULL,
     location VARCHAR(255) NOT NULL,
@@ -17,10 +17,25 @@ CREATE TABLE IF NOT EXISTS sensor_devices (
     last_reading DOUBLE PRECISION DEFAULT 0.0,
     unit VARCHAR(50) NOT NULL DEFAULT 'Celsius',
     device_id VARCHAR(255) UNIQUE NOT NULL,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,
+    -- Wall-clock time of the write, not the transaction start, so change-feed timestamps stay close to commit order
+    updated_at TIMESTAMPTZ DEFAULT clock_timestamp()
 );
 
+-- Existing databases: switch the timestamps to TIMESTAMPTZ (interpreted in the server time zone)
+-- ALTER TABLE sensor_devices ALTER COLUMN created_at TYPE TIMESTAMPTZ, ALTER COLUMN updated_at TYPE TIMESTAMPTZ;
+-- and stamp updated_at with the time of the write
+-- ALTER TABLE sensor_devices ALTER COLUMN updated_at SET DEFAULT clock_timestamp();
+
+-- Existing databases: switch the IDs from VARCHAR(255) to native UUID (16 bytes, compared as binary).
+-- Rewrites both tables and their indexes under an exclusive lock; existing IDs keep their value,
+-- new devices get time-ordered UUIDv7 IDs. Every id must already be a UUID string; check with
+--   SELECT id FROM sensor_devices WHERE id !~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$';
+-- BEGIN;
+-- ALTER TABLE sensor_devices ALTER COLUMN id TYPE UUID USING id::uuid;
+-- ALTER TABLE sensor_device_tombstones ALTER COLUMN id TYPE UUID USING id::uuid;
+-- COMMIT;
+
 -- Create index on device_id for faster lookups
 CREATE INDEX IF NOT EXISTS idx_device_id ON sensor_devices(device_id);
 
@@ -30,6 +45,50 @@ CREATE INDEX IF NOT EXISTS idx_sensor_type ON sensor_devices(sensor_type);
 -- Create index on status for filtering
 CREATE INDEX IF NOT EXISTS idx_status ON sensor_devices(status);
 
+-- Create index on location for filtering. text_pattern_ops compares byte-wise regardless of the
+-- collation, so it serves both location = ? and the left-anchored LIKE of subtree queries
+-- (findByLocationPrefix: location = 'Building A' OR location LIKE 'Building A, %')
+CREATE INDEX IF NOT EXISTS idx_location_prefix ON sensor_devices(location text_pattern_ops);
+-- Superseded by idx_location_prefix
+DROP INDEX IF EXISTS idx_location;
+
+-- Create index for the change feed (findModifiedSince), ordered like its keyset
+CREATE INDEX IF NOT EXISTS idx_updated_at ON sensor_devices(updated_at, id);
+
+-- Create tombstone table so the change feed can report deleted devices
+CREATE TABLE IF NOT EXISTS sensor_device_tombstones (
+    id UUID PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    deleted_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp()
+);
+
+CREATE INDEX IF NOT EXISTS idx_tombstones_deleted_at ON sensor_device_tombstones(deleted_at, id);
+
+-- Record a tombstone for every deleted device, including deletes made outside the application
+CREATE OR REPLACE FUNCTION record_sensor_device_tombstone() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO sensor_device_tombstones (id, device_id, deleted_at)
+    VALUES (OLD.id, OLD.device_id, clock_timestamp())
+    ON CONFLICT (id) DO UPDATE SET device_id = EXCLUDED.device_id, deleted_at = EXCLUDED.deleted_at;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_sensor_device_tombstone ON sensor_devices;
+CREATE TRIGGER trg_sensor_device_tombstone
+    AFTER DELETE ON sensor_devices
+    FOR EACH ROW EXECUTE FUNCTION record_sensor_device_tombstone();
+
+-- Create sensor_readings table for reading history (one row per sample)
+CREATE TABLE IF NOT EXISTS sensor_readings (
+    device_id VARCHAR(255) NOT NULL,
+    reading_time TIMESTAMPTZ NOT NULL,
+    value DOUBLE PRECISION NOT NULL
+);
+
+-- Create index for per-device time range queries
+CREATE INDEX IF NOT EXISTS idx_readings_device_time ON sensor_readings(device_id, reading_time);
+
 -- Insert sample data
 INSERT INTO sensor_devices (id, device_name, sensor_type, location, status, last_reading, unit, device_id) VALUES
 ('550e8400-e29b-41d4-a716-446655440000', 'Temperature Sensor 01', 'Temperature', 'Building A, Room 101', 'Active', 25.5, 'Celsius', 'SENSOR-001'),
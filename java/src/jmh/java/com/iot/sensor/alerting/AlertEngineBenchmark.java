@@ -0,0 +1,60 @@
+package com.iot.sensor.alerting;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating one reading in AlertEngine, for a fleet of fleetSize devices
+ * and rules per sensor type; readings stay mostly inside the thresholds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertEngineBenchmark {
+    
+    @Param({"1000", "100000"})
+    private int fleetSize;
+    
+    private AlertEngine engine;
+    private String[] deviceIds;
+    
+    @Setup
+    public void setUp() {
+        List<AlertRule> rules = new ArrayList<>();
+        for (String sensorType : new String[]{"Temperature", "Humidity", "Motion", "Light", "Pressure"}) {
+            rules.add(AlertRule.above(sensorType + " high", 115.0).sensorType(sensorType).hysteresis(2.0).debounce(3));
+            rules.add(AlertRule.below(sensorType + " low", 5.0).sensorType(sensorType).hysteresis(2.0));
+        }
+        engine = new AlertEngine(rules, null);
+        engine.addSink(alert -> { });
+        
+        List<SensorDevice> fleet = BenchmarkFixtures.fleet(fleetSize);
+        engine.registerAll(fleet);
+        deviceIds = fleet.stream().map(SensorDevice::getDeviceId).toArray(String[]::new);
+    }
+    
+    @Benchmark
+    public void onReading() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        engine.onReading(deviceIds[random.nextInt(deviceIds.length)], 0L, random.nextDouble(120.0));
+    }
+}
@@ -0,0 +1,81 @@
+package com.iot.sensor.benchmark;
+
+import com.iot.sensor.model.SensorDevice;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared setup for the benchmarks: an embedded H2 database in PostgreSQL mode
+ * with the sensor_devices schema, and deterministic device fleets.
+ */
+public final class BenchmarkFixtures {
+    
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+    
+    private static final String[] SENSOR_TYPES = {"Temperature", "Humidity", "Motion", "Light", "Pressure"};
+    private static final String[] STATUSES = {"Active", "Inactive", "Maintenance"};
+    private static final String[] UNITS = {"Celsius", "Percent", "Boolean", "Lux", "hPa"};
+    
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE sensor_devices (" +
+            "id UUID PRIMARY KEY, " +
+            "device_name VARCHAR(255) NOT NULL, " +
+            "sensor_type VARCHAR(100) NOT NULL, " +
+            "location VARCHAR(255) NOT NULL, " +
+            "status VARCHAR(50) NOT NULL, " +
+            "last_reading DOUBLE PRECISION DEFAULT 0.0, " +
+            "unit VARCHAR(50) NOT NULL DEFAULT 'Celsius', " +
+            "device_id VARCHAR(255) UNIQUE NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+    
+    private BenchmarkFixtures() {
+    }
+    
+    /**
+     * Create a fresh in-memory H2 database in PostgreSQL mode with the sensor_devices table
+     */
+    public static JdbcDataSource newDatabase() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bench" + DATABASE_COUNTER.incrementAndGet() +
+                ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            // PostgreSQL's wall-clock function, used by the repository's update statements
+            stmt.execute("CREATE ALIAS clock_timestamp FOR 'java.time.OffsetDateTime.now()'");
+            stmt.execute(CREATE_TABLE_SQL);
+            stmt.execute("CREATE INDEX idx_sensor_type ON sensor_devices(sensor_type)");
+            stmt.execute("CREATE INDEX idx_status ON sensor_devices(status)");
+            stmt.execute("CREATE INDEX idx_location ON sensor_devices(location)");
+        }
+        return dataSource;
+    }
+    
+    /**
+     * Build a valid device; the same index always yields the same device
+     */
+    public static SensorDevice device(int index) {
+        return new SensorDevice(null,
+                "Sensor " + index,
+                SENSOR_TYPES[index % SENSOR_TYPES.length],
+                "Building " + (char) ('A' + index % 26) + ", Room " + (100 + index % 50),
+                STATUSES[index % STATUSES.length],
+                20.0 + index % 100,
+                UNITS[index % UNITS.length],
+                String.format("SENSOR-%07d", index));
+    }
+    
+    public static List<SensorDevice> fleet(int size) {
+        List<SensorDevice> devices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            devices.add(device(i));
+        }
+        return devices;
+    }
+}
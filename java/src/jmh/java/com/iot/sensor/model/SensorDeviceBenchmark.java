@@ -0,0 +1,66 @@
+package com.iot.sensor.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SensorDevice construction through each of its constructors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorDeviceBenchmark {
+    
+    private String id = "550e8400-e29b-41d4-a716-446655440000";
+    private String deviceName = "Temperature Sensor 01";
+    private String sensorType = "Temperature";
+    private String location = "Building A, Room 101";
+    private String status = "Active";
+    private double lastReading = 25.5;
+    private String unit = "Celsius";
+    private String deviceId = "SENSOR-001";
+    
+    private SensorDevice original;
+    
+    @Setup
+    public void setUp() {
+        original = new SensorDevice(id, deviceName, sensorType, location, status, lastReading, unit, deviceId);
+    }
+    
+    @Benchmark
+    public SensorDevice allArgsConstructor() {
+        return new SensorDevice(id, deviceName, sensorType, location, status, lastReading, unit, deviceId);
+    }
+    
+    @Benchmark
+    public SensorDevice noArgsConstructorAndSetters() {
+        SensorDevice device = new SensorDevice();
+        device.setId(id);
+        device.setDeviceName(deviceName);
+        device.setSensorType(sensorType);
+        device.setLocation(location);
+        device.setStatus(status);
+        device.setLastReading(lastReading);
+        device.setUnit(unit);
+        device.setDeviceId(deviceId);
+        return device;
+    }
+    
+    @Benchmark
+    public SensorDevice copyConstructor() {
+        return new SensorDevice(original);
+    }
+}
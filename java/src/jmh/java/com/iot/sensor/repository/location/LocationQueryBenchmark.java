@@ -0,0 +1,75 @@
+package com.iot.sensor.repository.location;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.LocationPath;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Devices of a building ("Building C", 1/26 of the fleet) or a room ("Building C, Room 102",
+ * 1/650) over a fleet spread across 26 buildings of 50 rooms: findAll() plus string matching in Java, the columnar scan with the prefix resolved once per
+ * dictionary entry, and the location tree of LocationIndexedSensorDeviceRepository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationQueryBenchmark {
+    
+    @Param({"10000", "100000"})
+    private int fleetSize;
+    
+    @Param({"Building C", "Building C, Room 102"})
+    private String prefix;
+    
+    private ColumnarSensorDeviceRepository columnar;
+    private LocationIndexedSensorDeviceRepository indexed;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<SensorDevice> fleet = BenchmarkFixtures.fleet(fleetSize);
+        columnar = new ColumnarSensorDeviceRepository();
+        columnar.createAll(fleet);
+        indexed = new LocationIndexedSensorDeviceRepository(columnar);
+    }
+    
+    @Benchmark
+    public List<SensorDevice> findAllAndFilter() {
+        return columnar.findAll().stream()
+                .filter(device -> LocationPath.isWithin(device.getLocation(), prefix))
+                .collect(Collectors.toList());
+    }
+    
+    @Benchmark
+    public List<SensorDevice> columnarPrefix() {
+        return columnar.findByLocationPrefix(prefix);
+    }
+    
+    @Benchmark
+    public List<SensorDevice> treePrefix() {
+        return indexed.findByLocationPrefix(prefix);
+    }
+    
+    @Benchmark
+    public int treeCount() {
+        return indexed.countByLocationPrefix(prefix);
+    }
+}
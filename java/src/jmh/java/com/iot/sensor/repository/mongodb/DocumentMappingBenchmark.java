@@ -0,0 +1,101 @@
+package com.iot.sensor.repository.mongodb;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one sensor_devices document on the wire into a SensorDevice and back:
+ * through an intermediate Document (DocumentCodec plus field-by-field mapping) versus
+ * SensorDeviceCodec directly. Run with -prof gc to compare the bytes allocated per document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentMappingBenchmark {
+    
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private final SensorDeviceCodec sensorDeviceCodec = new SensorDeviceCodec();
+    private SensorDevice device;
+    private byte[] bson;
+    
+    @Setup
+    public void setUp() {
+        device = BenchmarkFixtures.device(1);
+        device.setId(new ObjectId().toHexString());
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        sensorDeviceCodec.encode(new BsonBinaryWriter(buffer), device, EncoderContext.builder().build());
+        bson = buffer.toByteArray();
+    }
+    
+    @Benchmark
+    public SensorDevice decodeViaDocument() {
+        Document doc = documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DecoderContext.builder().build());
+        SensorDevice mapped = new SensorDevice();
+        mapped.setId(doc.getObjectId("_id").toString());
+        mapped.setDeviceName(doc.getString("deviceName"));
+        mapped.setSensorType(doc.getString("sensorType"));
+        mapped.setLocation(doc.getString("location"));
+        mapped.setStatus(doc.getString("status"));
+        mapped.setLastReading(doc.getDouble("lastReading"));
+        mapped.setUnit(doc.getString("unit"));
+        mapped.setDeviceId(doc.getString("deviceId"));
+        mapped.setCreatedAt(doc.getDate("createdAt").toInstant());
+        mapped.setUpdatedAt(doc.getDate("updatedAt").toInstant());
+        return mapped;
+    }
+    
+    @Benchmark
+    public SensorDevice decodeWithCodec() {
+        return sensorDeviceCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DecoderContext.builder().build());
+    }
+    
+    @Benchmark
+    public int encodeViaDocument() {
+        Date now = new Date();
+        Document doc = new Document("_id", new ObjectId(device.getId()))
+                .append("deviceName", device.getDeviceName())
+                .append("sensorType", device.getSensorType())
+                .append("location", device.getLocation())
+                .append("status", device.getStatus())
+                .append("lastReading", device.getLastReading())
+                .append("unit", device.getUnit())
+                .append("deviceId", device.getDeviceId())
+                .append("createdAt", now)
+                .append("updatedAt", now);
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        documentCodec.encode(new BsonBinaryWriter(buffer), doc, EncoderContext.builder().build());
+        return buffer.getPosition();
+    }
+    
+    @Benchmark
+    public int encodeWithCodec() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        sensorDeviceCodec.encode(new BsonBinaryWriter(buffer), device, EncoderContext.builder().build());
+        return buffer.getPosition();
+    }
+}
@@ -0,0 +1,134 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * updateReading from 256 concurrent callers (e.g. gateway connections): one autocommitted statement per call versus
+ * GroupCommitWriter sharing one commit per batch, on a pool of 8 connections.
+ * Embedded H2 does not flush anything at commit, so flushMicros adds that cost back: every
+ * commit (explicit, or implicit after an autocommitted write) waits that long, like a WAL flush
+ * to durable storage. With flushMicros = 0 the difference is statement and transaction overhead only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(256)
+public class GroupCommitBenchmark {
+    
+    private static final int FLEET_SIZE = 10_000;
+    
+    @Param({"0", "1000", "5000"})
+    private long flushMicros;
+    
+    private ConnectionPool pool;
+    private PostgreSQLSensorDeviceRepository repository;
+    private GroupCommitWriter writer;
+    private String[] deviceIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        JdbcDataSource dataSource = BenchmarkFixtures.newDatabase();
+        long flushNanos = TimeUnit.MICROSECONDS.toNanos(flushMicros);
+        pool = new ConnectionPool(() -> withFlushDelay(dataSource.getConnection(), flushNanos), 8, 5000,
+                ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+        repository = new PostgreSQLSensorDeviceRepository(pool);
+        writer = new GroupCommitWriter(repository, 1000, 500, 4, 10_000);
+        
+        List<SensorDevice> fleet = BenchmarkFixtures.fleet(FLEET_SIZE);
+        repository.createAll(fleet);
+        deviceIds = fleet.stream().map(SensorDevice::getDeviceId).toArray(String[]::new);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.close();
+        pool.close();
+    }
+    
+    private String randomDeviceId() {
+        return deviceIds[ThreadLocalRandom.current().nextInt(deviceIds.length)];
+    }
+    
+    @Benchmark
+    public boolean autocommit() {
+        return repository.updateReading(randomDeviceId(), ThreadLocalRandom.current().nextDouble(100.0));
+    }
+    
+    @Benchmark
+    public boolean groupCommit() {
+        return writer.updateReading(randomDeviceId(), ThreadLocalRandom.current().nextDouble(100.0)).join();
+    }
+    
+    private static Connection withFlushDelay(Connection connection, long flushNanos) {
+        if (flushNanos == 0) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (method.getName().equals("commit")) {
+                        flush(flushNanos);
+                    } else if (method.getName().equals("prepareStatement")) {
+                        return withFlushDelay(connection, (PreparedStatement) result, flushNanos);
+                    }
+                    return result;
+                });
+    }
+    
+    private static PreparedStatement withFlushDelay(Connection connection, PreparedStatement stmt, long flushNanos) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(stmt, method, args);
+                    if (method.getName().startsWith("execute") && connection.getAutoCommit()) {
+                        flush(flushNanos);
+                    }
+                    return result;
+                });
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static void flush(long flushNanos) {
+        long deadline = System.nanoTime() + flushNanos;
+        for (long remaining = flushNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
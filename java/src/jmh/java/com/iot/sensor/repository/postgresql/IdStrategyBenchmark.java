@@ -0,0 +1,89 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Insert and findById cost on the UUID primary key with time-ordered (UUIDv7) versus random
+ * (UUIDv4) IDs, on a table pre-loaded with tableSize devices. Runs against embedded H2 in
+ * PostgreSQL mode, so absolute numbers differ from PostgreSQL, where random keys additionally
+ * dirty a random B-tree page (and a full-page WAL image) per insert once the index outgrows the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class IdStrategyBenchmark {
+    
+    private static final int LOAD_BATCH_SIZE = 1000;
+    
+    @Param({"uuidV7", "randomUuid"})
+    private String idStrategy;
+    
+    @Param({"100000", "1000000"})
+    private int tableSize;
+    
+    private ConnectionPool pool;
+    private PostgreSQLSensorDeviceRepository repository;
+    private String[] ids;
+    private final AtomicInteger nextDevice = new AtomicInteger();
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        IdGenerator idGenerator = "uuidV7".equals(idStrategy) ? IdGenerator.uuidV7() : IdGenerator.randomUuid();
+        pool = new ConnectionPool(BenchmarkFixtures.newDatabase(), 8, 5000);
+        repository = new PostgreSQLSensorDeviceRepository(pool, idGenerator);
+        
+        ids = new String[tableSize];
+        for (int from = 0; from < tableSize; from += LOAD_BATCH_SIZE) {
+            List<SensorDevice> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + LOAD_BATCH_SIZE, tableSize); i++) {
+                batch.add(BenchmarkFixtures.device(i));
+            }
+            repository.createAll(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                ids[from + i] = batch.get(i).getId();
+            }
+        }
+        nextDevice.set(tableSize);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+    
+    @Benchmark
+    public SensorDevice insert() {
+        return repository.create(BenchmarkFixtures.device(nextDevice.getAndIncrement()));
+    }
+    
+    @Benchmark
+    public Optional<SensorDevice> findById() {
+        return repository.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
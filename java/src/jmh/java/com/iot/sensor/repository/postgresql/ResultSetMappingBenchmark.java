@@ -0,0 +1,109 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping one sensor_devices row: by column name (the former SELECT * mapping),
+ * by column index (mapResultSetToSensorDevice) and the deviceId/lastReading projection.
+ * The cursors stay on the same row, so only the column access and object construction are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetMappingBenchmark {
+    
+    private Connection connection;
+    private PreparedStatement stmt;
+    private ResultSet rs;
+    private PreparedStatement projectionStmt;
+    private ResultSet projection;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchmarkFixtures.newDatabase().getConnection();
+        SensorDevice device = BenchmarkFixtures.device(1);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO sensor_devices (id, device_name, sensor_type, location, status, last_reading, unit, device_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            insert.setString(1, "550e8400-e29b-41d4-a716-446655440000");
+            insert.setString(2, device.getDeviceName());
+            insert.setString(3, device.getSensorType());
+            insert.setString(4, device.getLocation());
+            insert.setString(5, device.getStatus());
+            insert.setDouble(6, device.getLastReading());
+            insert.setString(7, device.getUnit());
+            insert.setString(8, device.getDeviceId());
+            insert.executeUpdate();
+        }
+        stmt = connection.prepareStatement("SELECT " + PostgreSQLSensorDeviceRepository.DEVICE_COLUMNS +
+                " FROM sensor_devices", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = stmt.executeQuery();
+        rs.first();
+        projectionStmt = connection.prepareStatement("SELECT device_id, last_reading FROM sensor_devices",
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        projection = projectionStmt.executeQuery();
+        projection.first();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rs.close();
+        stmt.close();
+        projection.close();
+        projectionStmt.close();
+        connection.close();
+    }
+    
+    @Benchmark
+    public SensorDevice mapByColumnName() throws SQLException {
+        SensorDevice device = new SensorDevice();
+        device.setId(rs.getString("id"));
+        device.setDeviceName(rs.getString("device_name"));
+        device.setSensorType(rs.getString("sensor_type"));
+        device.setLocation(rs.getString("location"));
+        device.setStatus(rs.getString("status"));
+        device.setLastReading(rs.getDouble("last_reading"));
+        device.setUnit(rs.getString("unit"));
+        device.setDeviceId(rs.getString("device_id"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        device.setCreatedAt(createdAt != null ? createdAt.toInstant() : null);
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        device.setUpdatedAt(updatedAt != null ? updatedAt.toInstant() : null);
+        return device;
+    }
+    
+    @Benchmark
+    public SensorDevice mapByColumnIndex() throws SQLException {
+        return PostgreSQLSensorDeviceRepository.mapResultSetToSensorDevice(rs);
+    }
+    
+    @Benchmark
+    public double mapLastReadingProjection(Blackhole blackhole) throws SQLException {
+        blackhole.consume(projection.getString(1));
+        return projection.getDouble(2);
+    }
+}
@@ -0,0 +1,59 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation cost of createSensorDevice against the in-memory repository:
+ * a valid device (validated, stored and deleted again) and a rejected one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateValidationBenchmark {
+    
+    private SensorDeviceService service;
+    private SensorDevice valid;
+    private SensorDevice invalid;
+    
+    @Setup
+    public void setUp() {
+        service = new SensorDeviceService(new ColumnarSensorDeviceRepository());
+        valid = BenchmarkFixtures.device(1);
+        valid.setId("550e8400-e29b-41d4-a716-446655440000");
+        invalid = BenchmarkFixtures.device(2);
+        invalid.setLocation("   ");
+    }
+    
+    @Benchmark
+    public boolean createValid() {
+        service.createSensorDevice(valid);
+        return service.deleteSensorDevice(valid.getId());
+    }
+    
+    @Benchmark
+    public String rejectInvalid() {
+        try {
+            service.createSensorDevice(invalid);
+            throw new IllegalStateException("Invalid device was accepted");
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
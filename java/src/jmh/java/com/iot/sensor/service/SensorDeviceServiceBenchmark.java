@@ -0,0 +1,111 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.benchmark.BenchmarkFixtures;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import com.iot.sensor.repository.postgresql.ConnectionPool;
+import com.iot.sensor.repository.postgresql.PostgreSQLSensorDeviceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end CRUD paths through SensorDeviceService.
+ * "jdbc" runs PostgreSQLSensorDeviceRepository against embedded H2 in PostgreSQL mode,
+ * "columnar" runs ColumnarSensorDeviceRepository; both are pre-loaded with fleetSize devices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorDeviceServiceBenchmark {
+    
+    private static final int LOAD_BATCH_SIZE = 1000;
+    
+    @Param({"columnar", "jdbc"})
+    private String backend;
+    
+    @Param({"1000", "100000"})
+    private int fleetSize;
+    
+    private ConnectionPool pool;
+    private SensorDeviceService service;
+    private SensorDevice[] devices;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ISensorDeviceRepository repository;
+        if ("jdbc".equals(backend)) {
+            pool = new ConnectionPool(BenchmarkFixtures.newDatabase(), 8, 5000);
+            repository = new PostgreSQLSensorDeviceRepository(pool);
+        } else {
+            repository = new ColumnarSensorDeviceRepository();
+        }
+        service = new SensorDeviceService(repository);
+        
+        List<SensorDevice> fleet = BenchmarkFixtures.fleet(fleetSize);
+        for (int from = 0; from < fleetSize; from += LOAD_BATCH_SIZE) {
+            service.createSensorDevices(fleet.subList(from, Math.min(from + LOAD_BATCH_SIZE, fleetSize)));
+        }
+        devices = fleet.toArray(new SensorDevice[0]);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+    
+    private SensorDevice randomDevice() {
+        return devices[ThreadLocalRandom.current().nextInt(devices.length)];
+    }
+    
+    @Benchmark
+    public Optional<SensorDevice> findById() {
+        return service.getSensorDeviceById(randomDevice().getId());
+    }
+    
+    @Benchmark
+    public Optional<SensorDevice> findByDeviceId() {
+        return service.getSensorDeviceByDeviceId(randomDevice().getDeviceId());
+    }
+    
+    @Benchmark
+    public SensorDevice update() {
+        SensorDevice device = new SensorDevice(randomDevice());
+        device.setLastReading(ThreadLocalRandom.current().nextDouble(100.0));
+        return service.updateSensorDevice(device);
+    }
+    
+    @Benchmark
+    public void updateReading() {
+        service.updateReading(randomDevice().getDeviceId(), ThreadLocalRandom.current().nextDouble(100.0));
+    }
+    
+    @Benchmark
+    public boolean createAndDelete() {
+        SensorDevice device = BenchmarkFixtures.device(fleetSize + ThreadLocalRandom.current().nextInt(1_000_000));
+        service.createSensorDevice(device);
+        return service.deleteSensorDevice(device.getId());
+    }
+}
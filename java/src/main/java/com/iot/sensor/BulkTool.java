@@ -0,0 +1,96 @@
+package com.iot.sensor;
+
+import com.iot.sensor.bulk.BulkExporter;
+import com.iot.sensor.bulk.BulkFormat;
+import com.iot.sensor.bulk.BulkImporter;
+import com.iot.sensor.bulk.ProgressReporter;
+import com.iot.sensor.bulk.RepositoryBulkTransfer;
+import com.iot.sensor.bulk.SensorDeviceFileReader;
+import com.iot.sensor.repository.mongodb.MongoDBSensorDeviceRepository;
+import com.iot.sensor.repository.postgresql.ConnectionPool;
+import com.iot.sensor.repository.postgresql.PostgreSQLBulkTransfer;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command-line bulk import/export of sensor devices, using the connection settings of Main.
+ *
+ * Usage: BulkTool import|export FILE [--backend POSTGRESQL|MONGODB] [--format CSV|NDJSON]
+ *
+ * The format defaults to the file extension and the backend to Main's REPOSITORY_TYPE.
+ * PostgreSQL uses COPY; MongoDB uses unordered bulk inserts of MONGODB_BATCH_SIZE documents.
+ */
+public class BulkTool {
+    
+    private static final int MONGODB_BATCH_SIZE = 1000;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println("Usage: BulkTool import|export FILE [--backend POSTGRESQL|MONGODB] [--format CSV|NDJSON]");
+            System.exit(2);
+        }
+        String command = args[0].toLowerCase(Locale.ROOT);
+        Path file = Paths.get(args[1]);
+        String backend = Main.REPOSITORY_TYPE;
+        BulkFormat format = null;
+        for (int i = 2; i < args.length; i += 2) {
+            if ("--backend".equals(args[i])) {
+                backend = args[i + 1];
+            } else if ("--format".equals(args[i])) {
+                format = BulkFormat.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (format == null) {
+            format = BulkFormat.fromFileName(file.getFileName().toString());
+        }
+        
+        if ("POSTGRESQL".equalsIgnoreCase(backend)) {
+            PGSimpleDataSource dataSource = new PGSimpleDataSource();
+            dataSource.setUrl(Main.POSTGRESQL_URL);
+            dataSource.setUser(Main.POSTGRESQL_USER);
+            dataSource.setPassword(Main.POSTGRESQL_PASSWORD);
+            try (ConnectionPool pool = new ConnectionPool(dataSource, 1, Main.POSTGRESQL_ACQUIRE_TIMEOUT_MS)) {
+                PostgreSQLBulkTransfer transfer = new PostgreSQLBulkTransfer(pool);
+                run(command, file, format, transfer, transfer);
+            }
+        } else if ("MONGODB".equalsIgnoreCase(backend)) {
+            try (MongoClient mongoClient = MongoClients.create(Main.MONGODB_URI)) {
+                RepositoryBulkTransfer transfer = new RepositoryBulkTransfer(
+                        new MongoDBSensorDeviceRepository(mongoClient.getDatabase(Main.MONGODB_DATABASE)),
+                        MONGODB_BATCH_SIZE);
+                run(command, file, format, transfer, transfer);
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid repository type: " + backend);
+        }
+    }
+    
+    private static void run(String command, Path file, BulkFormat format,
+                            BulkImporter importer, BulkExporter exporter) throws Exception {
+        if ("import".equals(command)) {
+            try (SensorDeviceFileReader reader = new SensorDeviceFileReader(file, format)) {
+                ProgressReporter progress = new ProgressReporter("Imported", reader.getFileSize(), System.out);
+                importer.importAll(reader, progress);
+                progress.finish();
+            }
+        } else if ("export".equals(command)) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+                ProgressReporter progress = new ProgressReporter("Exported", 0, System.out);
+                exporter.exportAll(out, format, progress);
+                progress.finish();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+}
@@ -2,14 +2,16 @@ package com.iot.sensor;
 
 import com.iot.sensor.model.SensorDevice;
 import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import com.iot.sensor.repository.metrics.InstrumentedSensorDeviceRepository;
 import com.iot.sensor.repository.mongodb.MongoDBSensorDeviceRepository;
+import com.iot.sensor.repository.postgresql.ConnectionPool;
 import com.iot.sensor.repository.postgresql.PostgreSQLSensorDeviceRepository;
 import com.iot.sensor.service.SensorDeviceService;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import org.postgresql.ds.PGSimpleDataSource;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -19,16 +21,21 @@ import java.util.List;
  */
 public class Main {
     
-    // Database configuration - change these to match your setup
-    private static final String POSTGRESQL_URL = "jdbc:postgresql://localhost:5432/iot_db";
-    private static final String POSTGRESQL_USER = "postgres";
-    private static final String POSTGRESQL_PASSWORD = "password";
+    // Database configuration - change these to match your setup (also used by BulkTool)
+    static final String POSTGRESQL_URL = "jdbc:postgresql://localhost:5432/iot_db";
+    static final String POSTGRESQL_USER = "postgres";
+    static final String POSTGRESQL_PASSWORD = "password";
+    static final int POSTGRESQL_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    static final long POSTGRESQL_ACQUIRE_TIMEOUT_MS = 5000;
     
-    private static final String MONGODB_URI = "mongodb://localhost:27017";
-    private static final String MONGODB_DATABASE = "iot_db";
+    static final String MONGODB_URI = "mongodb://localhost:27017";
+    static final String MONGODB_DATABASE = "iot_db";
     
-    // Repository type: "POSTGRESQL" or "MONGODB"
-    private static final String REPOSITORY_TYPE = "POSTGRESQL"; // Change to "MONGODB" to switch
+    // Repository type: "POSTGRESQL", "MONGODB" or "MEMORY"
+    static final String REPOSITORY_TYPE = "POSTGRESQL"; // Change to "MONGODB" to switch
+    
+    // Repository calls slower than this are logged
+    private static final long SLOW_OPERATION_THRESHOLD_MS = 100;
     
     public static void main(String[] args) {
         System.out.println("=== IoT Sensor Device Management System ===");
@@ -39,12 +46,20 @@ public class Main {
             // Initialize repository based on type
             ISensorDeviceRepository repository = initializeRepository();
             
+            // Measure every repository call; the metrics are also exported over JMX
+            InstrumentedSensorDeviceRepository instrumented =
+                    new InstrumentedSensorDeviceRepository(repository, REPOSITORY_TYPE, SLOW_OPERATION_THRESHOLD_MS);
+            instrumented.registerMBeans();
+            
             // Create service with repository (business logic doesn't change)
-            SensorDeviceService service = new SensorDeviceService(repository);
+            SensorDeviceService service = new SensorDeviceService(instrumented);
             
             // Demonstrate CRUD operations
             demonstrateCRUDOperations(service);
             
+            System.out.println();
+            System.out.print(instrumented.snapshot());
+            
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -58,13 +73,20 @@ public class Main {
     private static ISensorDeviceRepository initializeRepository() throws SQLException {
         if ("POSTGRESQL".equalsIgnoreCase(REPOSITORY_TYPE)) {
             System.out.println("Initializing PostgreSQL repository...");
-            Connection connection = DriverManager.getConnection(POSTGRESQL_URL, POSTGRESQL_USER, POSTGRESQL_PASSWORD);
-            return new PostgreSQLSensorDeviceRepository(connection);
+            PGSimpleDataSource dataSource = new PGSimpleDataSource();
+            dataSource.setUrl(POSTGRESQL_URL);
+            dataSource.setUser(POSTGRESQL_USER);
+            dataSource.setPassword(POSTGRESQL_PASSWORD);
+            ConnectionPool pool = new ConnectionPool(dataSource, POSTGRESQL_POOL_SIZE, POSTGRESQL_ACQUIRE_TIMEOUT_MS);
+            return new PostgreSQLSensorDeviceRepository(pool);
         } else if ("MONGODB".equalsIgnoreCase(REPOSITORY_TYPE)) {
             System.out.println("Initializing MongoDB repository...");
             com.mongodb.client.MongoClient mongoClient = MongoClients.create(MONGODB_URI);
             MongoDatabase database = mongoClient.getDatabase(MONGODB_DATABASE);
             return new MongoDBSensorDeviceRepository(database);
+        } else if ("MEMORY".equalsIgnoreCase(REPOSITORY_TYPE)) {
+            System.out.println("Initializing in-memory columnar repository...");
+            return new ColumnarSensorDeviceRepository();
         } else {
             throw new IllegalArgumentException("Invalid repository type: " + REPOSITORY_TYPE);
         }
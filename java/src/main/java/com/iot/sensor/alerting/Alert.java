@@ -0,0 +1,63 @@
+package com.iot.sensor.alerting;
+
+/**
+ * A rule starting or stopping to fire for a device.
+ */
+public class Alert {
+    
+    public enum State {
+        RAISED,
+        CLEARED
+    }
+    
+    private final State state;
+    private final String ruleName;
+    private final String deviceId;
+    private final double value;
+    private final long timestamp;
+    
+    public Alert(State state, String ruleName, String deviceId, double value, long timestamp) {
+        this.state = state;
+        this.ruleName = ruleName;
+        this.deviceId = deviceId;
+        this.value = value;
+        this.timestamp = timestamp;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public String getRuleName() {
+        return ruleName;
+    }
+    
+    public String getDeviceId() {
+        return deviceId;
+    }
+    
+    /**
+     * The reading that raised or cleared the alert
+     */
+    public double getValue() {
+        return value;
+    }
+    
+    /**
+     * Time of that reading, in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    @Override
+    public String toString() {
+        return "Alert{" +
+                "state=" + state +
+                ", rule='" + ruleName + '\'' +
+                ", deviceId='" + deviceId + '\'' +
+                ", value=" + value +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
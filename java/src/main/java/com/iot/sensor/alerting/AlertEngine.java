@@ -0,0 +1,379 @@
+package com.iot.sensor.alerting;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.service.SensorDeviceListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates threshold rules on every reading reported through SensorDeviceService.
+ *
+ * Rules are compiled into a dispatch table keyed by (sensorType, unit, location): the first
+ * device with a given combination resolves the rules that apply to it, and every device with
+ * the same combination shares that array. Each device keeps its own debounce counters and
+ * raised flags, bound when the device is created or updated, so evaluating a reading is a
+ * map lookup and a loop of primitive comparisons that allocates nothing unless an alert fires.
+ *
+ * Devices written before the engine was registered are resolved through the device lookup on
+ * their first reading, or can be registered up front with registerAll(). The lookup usually hits
+ * the database, so it runs on the lookup executor rather than the writing thread: readings of the
+ * device are ignored until it completes. Changing a device's sensorType, unit or location resets
+ * its alert state.
+ *
+ * Sinks are called on the writing thread after the device's state lock is released, so a slow
+ * sink does not block other readings of the device; alerts of one device reported concurrently
+ * may therefore reach the sinks out of order. A sink that throws is logged and skipped.
+ */
+public class AlertEngine implements SensorDeviceListener {
+    
+    /**
+     * A rule flattened into primitives for the evaluation loop
+     */
+    private static final class CompiledRule {
+        final AlertRule rule;
+        final boolean above;
+        final double threshold;
+        final double clearThreshold;
+        final int debounce;
+        
+        CompiledRule(AlertRule rule) {
+            this.rule = rule;
+            this.above = rule.getComparison() == AlertRule.Comparison.ABOVE;
+            this.threshold = rule.getThreshold();
+            this.clearThreshold = above ? threshold - rule.getHysteresis() : threshold + rule.getHysteresis();
+            this.debounce = rule.getDebounce();
+        }
+    }
+    
+    /**
+     * Key of the dispatch table
+     */
+    private static final class Attributes {
+        final String sensorType;
+        final String unit;
+        final String location;
+        
+        Attributes(SensorDevice device) {
+            this.sensorType = device.getSensorType();
+            this.unit = device.getUnit();
+            this.location = device.getLocation();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Attributes)) {
+                return false;
+            }
+            Attributes that = (Attributes) o;
+            return Objects.equals(sensorType, that.sensorType)
+                    && Objects.equals(unit, that.unit)
+                    && Objects.equals(location, that.location);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(sensorType, unit, location);
+        }
+    }
+    
+    /**
+     * Rules and alert state of one device; guarded by itself
+     */
+    private static final class DeviceState {
+        final String deviceId;
+        // False while only a placeholder waiting for the device lookup
+        boolean bound;
+        CompiledRule[] rules = NO_RULES;
+        int[] breaches = new int[0];
+        boolean[] raised = new boolean[0];
+        
+        DeviceState(String deviceId) {
+            this.deviceId = deviceId;
+        }
+        
+        void bind(CompiledRule[] applicable) {
+            bound = true;
+            if (rules != applicable) {
+                rules = applicable;
+                breaches = new int[applicable.length];
+                raised = new boolean[applicable.length];
+            }
+        }
+    }
+    
+    private static final Logger LOGGER = Logger.getLogger(AlertEngine.class.getName());
+    private static final CompiledRule[] NO_RULES = new CompiledRule[0];
+    
+    private final List<CompiledRule> rules = new ArrayList<>();
+    private final Function<String, Optional<SensorDevice>> deviceLookup;
+    private final Executor lookupExecutor;
+    private final List<AlertSink> sinks = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Attributes, CompiledRule[]> dispatch = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DeviceState> devices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> deviceIdById = new ConcurrentHashMap<>();
+    
+    private final LongAdder readingsEvaluated = new LongAdder();
+    private final LongAdder alertsRaised = new LongAdder();
+    private final LongAdder alertsCleared = new LongAdder();
+    private final LongAdder sinkFailures = new LongAdder();
+    
+    /**
+     * @param rules Rules to evaluate; they are copied, so later changes to them have no effect
+     * @param deviceLookup Resolves a deviceId not seen yet (e.g. service::getSensorDeviceByDeviceId); null to ignore such readings
+     */
+    public AlertEngine(Collection<AlertRule> rules, Function<String, Optional<SensorDevice>> deviceLookup) {
+        this(rules, deviceLookup, newLookupExecutor());
+    }
+    
+    /**
+     * @param lookupExecutor Runs the device lookups off the writing thread; not shut down by the engine
+     */
+    public AlertEngine(Collection<AlertRule> rules, Function<String, Optional<SensorDevice>> deviceLookup,
+                       Executor lookupExecutor) {
+        for (AlertRule rule : rules) {
+            this.rules.add(new CompiledRule(copyOf(rule)));
+        }
+        this.deviceLookup = deviceLookup;
+        this.lookupExecutor = lookupExecutor;
+    }
+    
+    /**
+     * One daemon thread that exits when idle, so an engine needs no close()
+     */
+    private static Executor newLookupExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "alert-device-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private static AlertRule copyOf(AlertRule rule) {
+        AlertRule copy = rule.getComparison() == AlertRule.Comparison.ABOVE
+                ? AlertRule.above(rule.getName(), rule.getThreshold())
+                : AlertRule.below(rule.getName(), rule.getThreshold());
+        return copy.sensorType(rule.getSensorType())
+                .unit(rule.getUnit())
+                .location(rule.getLocation())
+                .hysteresis(rule.getHysteresis())
+                .debounce(rule.getDebounce());
+    }
+    
+    public void addSink(AlertSink sink) {
+        sinks.add(sink);
+    }
+    
+    /**
+     * Bind rules to existing devices up front instead of on their first reading
+     */
+    public void registerAll(Collection<SensorDevice> sensorDevices) {
+        sensorDevices.forEach(this::onDeviceChanged);
+    }
+    
+    private CompiledRule[] rulesFor(SensorDevice device) {
+        return dispatch.computeIfAbsent(new Attributes(device), attributes -> {
+            List<CompiledRule> applicable = new ArrayList<>();
+            for (CompiledRule compiled : rules) {
+                if (compiled.rule.appliesTo(attributes.sensorType, attributes.unit, attributes.location)) {
+                    applicable.add(compiled);
+                }
+            }
+            return applicable.isEmpty() ? NO_RULES : applicable.toArray(new CompiledRule[0]);
+        });
+    }
+    
+    @Override
+    public void onDeviceChanged(SensorDevice sensorDevice) {
+        String deviceId = sensorDevice.getDeviceId();
+        if (deviceId == null) {
+            return;
+        }
+        if (sensorDevice.getId() != null) {
+            String previousDeviceId = deviceIdById.put(sensorDevice.getId(), deviceId);
+            if (previousDeviceId != null && !previousDeviceId.equals(deviceId)) {
+                devices.remove(previousDeviceId);
+            }
+        }
+        CompiledRule[] applicable = rulesFor(sensorDevice);
+        DeviceState state = devices.computeIfAbsent(deviceId, DeviceState::new);
+        synchronized (state) {
+            state.bind(applicable);
+        }
+    }
+    
+    @Override
+    public void onDeviceDeleted(String id) {
+        String deviceId = deviceIdById.remove(id);
+        if (deviceId != null) {
+            devices.remove(deviceId);
+        }
+    }
+    
+    @Override
+    public void onReading(String deviceId, long timestamp, double value) {
+        DeviceState state = devices.get(deviceId);
+        if (state == null) {
+            if (deviceLookup != null) {
+                lookUp(deviceId);
+            }
+            return;
+        }
+        readingsEvaluated.increment();
+        
+        // Allocated only when an alert fires; published once the state lock is released
+        List<Alert> fired = null;
+        synchronized (state) {
+            CompiledRule[] applicable = state.rules;
+            for (int i = 0; i < applicable.length; i++) {
+                CompiledRule rule = applicable[i];
+                if (!state.raised[i]) {
+                    boolean breached = rule.above ? value > rule.threshold : value < rule.threshold;
+                    if (!breached) {
+                        state.breaches[i] = 0;
+                    } else if (++state.breaches[i] >= rule.debounce) {
+                        state.breaches[i] = 0;
+                        state.raised[i] = true;
+                        alertsRaised.increment();
+                        fired = add(fired, new Alert(Alert.State.RAISED, rule.rule.getName(), deviceId, value, timestamp));
+                    }
+                } else if (rule.above ? value <= rule.clearThreshold : value >= rule.clearThreshold) {
+                    state.raised[i] = false;
+                    alertsCleared.increment();
+                    fired = add(fired, new Alert(Alert.State.CLEARED, rule.rule.getName(), deviceId, value, timestamp));
+                }
+            }
+        }
+        if (fired != null) {
+            fired.forEach(this::publish);
+        }
+    }
+    
+    private static List<Alert> add(List<Alert> alerts, Alert alert) {
+        List<Alert> list = alerts != null ? alerts : new ArrayList<>(2);
+        list.add(alert);
+        return list;
+    }
+    
+    /**
+     * Resolve an unknown device off the writing thread. A placeholder without rules is installed
+     * first, so further readings of the device neither trigger another lookup nor get evaluated
+     * while it runs. If the device is not found (e.g. it is created outside the service later)
+     * or the lookup fails, the placeholder is dropped again so a later reading retries.
+     */
+    private void lookUp(String deviceId) {
+        DeviceState placeholder = new DeviceState(deviceId);
+        if (devices.putIfAbsent(deviceId, placeholder) != null) {
+            return;
+        }
+        lookupExecutor.execute(() -> {
+            try {
+                Optional<SensorDevice> device = deviceLookup.apply(deviceId);
+                if (device.isPresent()) {
+                    bindLookedUp(placeholder, device.get());
+                } else {
+                    dropPlaceholder(placeholder);
+                }
+            } catch (RuntimeException e) {
+                dropPlaceholder(placeholder);
+                LOGGER.log(Level.WARNING, "Device lookup failed for " + deviceId, e);
+            }
+        });
+    }
+    
+    /**
+     * Remove a placeholder unless a write through the service has bound it meanwhile
+     */
+    private void dropPlaceholder(DeviceState placeholder) {
+        synchronized (placeholder) {
+            if (!placeholder.bound) {
+                devices.remove(placeholder.deviceId, placeholder);
+            }
+        }
+    }
+    
+    private void bindLookedUp(DeviceState placeholder, SensorDevice device) {
+        if (!placeholder.deviceId.equals(device.getDeviceId()) || devices.get(placeholder.deviceId) != placeholder) {
+            return;
+        }
+        CompiledRule[] applicable = rulesFor(device);
+        synchronized (placeholder) {
+            // A write through the service may have bound newer attributes meanwhile
+            if (placeholder.bound) {
+                return;
+            }
+            placeholder.bind(applicable);
+        }
+        if (device.getId() != null) {
+            deviceIdById.putIfAbsent(device.getId(), placeholder.deviceId);
+        }
+    }
+    
+    private void publish(Alert alert) {
+        for (AlertSink sink : sinks) {
+            try {
+                sink.onAlert(alert);
+            } catch (RuntimeException e) {
+                sinkFailures.increment();
+                LOGGER.log(Level.WARNING, "Alert sink " + sink + " failed on " + alert, e);
+            }
+        }
+    }
+    
+    /**
+     * Whether the rule is currently raised for the device
+     */
+    public boolean isRaised(String deviceId, String ruleName) {
+        DeviceState state = devices.get(deviceId);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            for (int i = 0; i < state.rules.length; i++) {
+                if (state.rules[i].rule.getName().equals(ruleName)) {
+                    return state.raised[i];
+                }
+            }
+        }
+        return false;
+    }
+    
+    public long getReadingsEvaluated() {
+        return readingsEvaluated.sum();
+    }
+    
+    public long getAlertsRaised() {
+        return alertsRaised.sum();
+    }
+    
+    public long getAlertsCleared() {
+        return alertsCleared.sum();
+    }
+    
+    /**
+     * Number of times a sink threw while being handed an alert
+     */
+    public long getSinkFailures() {
+        return sinkFailures.sum();
+    }
+}
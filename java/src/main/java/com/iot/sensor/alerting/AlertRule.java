@@ -0,0 +1,135 @@
+package com.iot.sensor.alerting;
+
+/**
+ * Threshold rule, e.g. Temperature above 80 Celsius.
+ * The rule applies to devices whose sensorType, unit and location equal the ones set here;
+ * a match field left null matches any value.
+ *
+ * Hysteresis: a raised alert clears only once the reading is back past the threshold by
+ * the hysteresis margin, so a reading hovering around the threshold does not flap.
+ * Debounce: an alert is raised only after that many consecutive breaching readings.
+ */
+public class AlertRule {
+    
+    public enum Comparison {
+        ABOVE,
+        BELOW
+    }
+    
+    private final String name;
+    private final Comparison comparison;
+    private final double threshold;
+    private String sensorType;
+    private String unit;
+    private String location;
+    private double hysteresis;
+    private int debounce = 1;
+    
+    private AlertRule(String name, Comparison comparison, double threshold) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule name is required");
+        }
+        this.name = name;
+        this.comparison = comparison;
+        this.threshold = threshold;
+    }
+    
+    /**
+     * Rule breached by readings greater than the threshold
+     */
+    public static AlertRule above(String name, double threshold) {
+        return new AlertRule(name, Comparison.ABOVE, threshold);
+    }
+    
+    /**
+     * Rule breached by readings less than the threshold
+     */
+    public static AlertRule below(String name, double threshold) {
+        return new AlertRule(name, Comparison.BELOW, threshold);
+    }
+    
+    public AlertRule sensorType(String sensorType) {
+        this.sensorType = sensorType;
+        return this;
+    }
+    
+    public AlertRule unit(String unit) {
+        this.unit = unit;
+        return this;
+    }
+    
+    public AlertRule location(String location) {
+        this.location = location;
+        return this;
+    }
+    
+    public AlertRule hysteresis(double hysteresis) {
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("Hysteresis must not be negative");
+        }
+        this.hysteresis = hysteresis;
+        return this;
+    }
+    
+    public AlertRule debounce(int consecutiveReadings) {
+        if (consecutiveReadings < 1) {
+            throw new IllegalArgumentException("Debounce must be at least 1 reading");
+        }
+        this.debounce = consecutiveReadings;
+        return this;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public Comparison getComparison() {
+        return comparison;
+    }
+    
+    public double getThreshold() {
+        return threshold;
+    }
+    
+    public String getSensorType() {
+        return sensorType;
+    }
+    
+    public String getUnit() {
+        return unit;
+    }
+    
+    public String getLocation() {
+        return location;
+    }
+    
+    public double getHysteresis() {
+        return hysteresis;
+    }
+    
+    public int getDebounce() {
+        return debounce;
+    }
+    
+    /**
+     * Whether the rule applies to devices with these attributes
+     */
+    public boolean appliesTo(String sensorType, String unit, String location) {
+        return (this.sensorType == null || this.sensorType.equals(sensorType))
+                && (this.unit == null || this.unit.equals(unit))
+                && (this.location == null || this.location.equals(location));
+    }
+    
+    @Override
+    public String toString() {
+        return "AlertRule{" +
+                "name='" + name + '\'' +
+                ", " + comparison + " " + threshold +
+                ", sensorType='" + sensorType + '\'' +
+                ", unit='" + unit + '\'' +
+                ", location='" + location + '\'' +
+                ", hysteresis=" + hysteresis +
+                ", debounce=" + debounce +
+                '}';
+    }
+}
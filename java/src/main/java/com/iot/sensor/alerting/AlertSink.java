@@ -0,0 +1,12 @@
+package com.iot.sensor.alerting;
+
+/**
+ * Destination of alerts raised and cleared by AlertEngine (log, queue, pager, ...).
+ * Called synchronously on the thread reporting the reading, after the device's alert state is
+ * unlocked; readings of one device reported concurrently may deliver their alerts out of order.
+ * Keep implementations fast and hand off slow work to a queue; exceptions are logged and skipped.
+ */
+public interface AlertSink {
+    
+    void onAlert(Alert alert);
+}
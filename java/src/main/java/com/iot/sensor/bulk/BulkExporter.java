@@ -0,0 +1,15 @@
+package com.iot.sensor.bulk;
+
+import java.io.OutputStream;
+
+/**
+ * Writes every device of a backend to a bulk file.
+ */
+public interface BulkExporter {
+    
+    /**
+     * Export all devices; the stream is written but not closed
+     * @return Number of devices exported
+     */
+    long exportAll(OutputStream out, BulkFormat format, ProgressReporter progress);
+}
@@ -0,0 +1,27 @@
+package com.iot.sensor.bulk;
+
+import java.util.Locale;
+
+/**
+ * File formats of the bulk import/export tool. Both hold one device per line.
+ */
+public enum BulkFormat {
+    /** Comma-separated with a header row naming the columns (sensor_devices column names) */
+    CSV,
+    /** One JSON object per line with the SensorDevice property names */
+    NDJSON;
+    
+    /**
+     * Detect the format from the file extension (.csv, .ndjson, .jsonl)
+     */
+    public static BulkFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Cannot detect bulk format of " + fileName + ", use --format");
+    }
+}
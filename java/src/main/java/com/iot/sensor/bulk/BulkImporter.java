@@ -0,0 +1,13 @@
+package com.iot.sensor.bulk;
+
+/**
+ * Loads the devices of a bulk file into a backend.
+ */
+public interface BulkImporter {
+    
+    /**
+     * Import every device the reader yields
+     * @return Number of devices imported
+     */
+    long importAll(SensorDeviceFileReader reader, ProgressReporter progress);
+}
@@ -0,0 +1,93 @@
+package com.iot.sensor.bulk;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a file through a sliding memory-mapped window.
+ * Only one window is mapped at a time and the line buffer grows to the longest line,
+ * so memory use does not depend on the file size. Replaced windows are unmapped when
+ * they are garbage collected. Lines end with LF or CRLF and are decoded as UTF-8.
+ */
+public class MappedLineReader implements AutoCloseable {
+    
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] line = new byte[256];
+    
+    public MappedLineReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        skipByteOrderMark();
+    }
+    
+    private void skipByteOrderMark() throws IOException {
+        if (size >= 3) {
+            map(0);
+            if ((window.get(0) & 0xFF) == 0xEF && (window.get(1) & 0xFF) == 0xBB && (window.get(2) & 0xFF) == 0xBF) {
+                position = 3;
+            }
+        }
+    }
+    
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+    }
+    
+    /**
+     * @return The next line without its terminator, or null at the end of the file
+     */
+    public String readLine() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        
+        int length = 0;
+        while (position < size) {
+            if (window == null || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            byte b = window.get((int) (position - windowStart));
+            position++;
+            if (b == '\n') {
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Bytes consumed so far
+     */
+    public long getPosition() {
+        return position;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.iot.sensor.bulk;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the progress and throughput of a bulk transfer at most every few seconds.
+ * Not thread-safe: used by the single thread driving the transfer.
+ */
+public class ProgressReporter {
+    
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+    
+    private final String action;
+    private final long totalBytes;
+    private final PrintStream out;
+    private final long startNanos = System.nanoTime();
+    private long lastReportNanos = startNanos;
+    private long records;
+    private long bytes;
+    private long failures;
+    
+    /**
+     * @param action Verb shown in the output, e.g. "Imported"
+     * @param totalBytes Expected size in bytes for a percentage, or 0 if unknown
+     */
+    public ProgressReporter(String action, long totalBytes, PrintStream out) {
+        this.action = action;
+        this.totalBytes = totalBytes;
+        this.out = out;
+    }
+    
+    /**
+     * @param records Records completed since the last call
+     * @param totalBytesSoFar Bytes read or written so far in total
+     */
+    public void advance(long records, long totalBytesSoFar) {
+        this.records += records;
+        this.bytes = totalBytesSoFar;
+        long now = System.nanoTime();
+        if (now - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+            lastReportNanos = now;
+            out.println(format(now));
+        }
+    }
+    
+    public void addFailures(long count) {
+        failures += count;
+    }
+    
+    public long getRecords() {
+        return records;
+    }
+    
+    public long getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Print the final totals
+     */
+    public void finish() {
+        out.println(format(System.nanoTime()) + (failures > 0 ? ", " + failures + " failed" : "") + " - done");
+    }
+    
+    private String format(long now) {
+        double seconds = Math.max(1e-9, (now - startNanos) / 1e9);
+        double megabytes = bytes / (1024.0 * 1024.0);
+        StringBuilder sb = new StringBuilder(String.format("%s %,d devices", action, records));
+        if (totalBytes > 0) {
+            sb.append(String.format(" (%.1f%% of %.1f MB)", 100.0 * bytes / totalBytes, totalBytes / (1024.0 * 1024.0)));
+        }
+        return sb.append(String.format(" in %.1fs: %,.0f devices/s, %.1f MB/s",
+                seconds, records / seconds, megabytes / seconds)).toString();
+    }
+}
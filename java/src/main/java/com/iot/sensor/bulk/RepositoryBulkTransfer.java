@@ -0,0 +1,97 @@
+package com.iot.sensor.bulk;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bulk import and export through any repository: imports call createAll() per batch
+ * (an unordered insertMany on MongoDB, so a duplicate only fails its own document),
+ * exports stream streamAll(). Memory use is bounded by the batch size.
+ */
+public class RepositoryBulkTransfer implements BulkImporter, BulkExporter {
+    
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+    
+    private final ISensorDeviceRepository repository;
+    private final int batchSize;
+    
+    public RepositoryBulkTransfer(ISensorDeviceRepository repository, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+    
+    @Override
+    public long importAll(SensorDeviceFileReader reader, ProgressReporter progress) {
+        long imported = 0;
+        List<SensorDevice> batch = new ArrayList<>(batchSize);
+        while (reader.hasNext()) {
+            batch.add(reader.next());
+            if (batch.size() == batchSize || !reader.hasNext()) {
+                BatchResult result = repository.createAll(batch);
+                imported += result.getSuccessCount();
+                progress.addFailures(result.getFailureCount());
+                progress.advance(batch.size(), reader.getBytesRead());
+                batch.clear();
+            }
+        }
+        return imported;
+    }
+    
+    @Override
+    public long exportAll(OutputStream out, BulkFormat format, ProgressReporter progress) {
+        long exported = 0;
+        long bytes = 0;
+        StringBuilder buffer = new StringBuilder(WRITE_BUFFER_CHARS * 2);
+        if (format == BulkFormat.CSV) {
+            buffer.append(SensorDeviceCsv.HEADER).append('\n');
+        }
+        
+        try (Stream<SensorDevice> devices = repository.streamAll()) {
+            Iterator<SensorDevice> iterator = devices.iterator();
+            int pending = 0;
+            while (iterator.hasNext()) {
+                SensorDevice device = iterator.next();
+                if (format == BulkFormat.CSV) {
+                    SensorDeviceCsv.format(device, buffer);
+                } else {
+                    SensorDeviceJson.format(device, buffer);
+                }
+                exported++;
+                pending++;
+                if (buffer.length() >= WRITE_BUFFER_CHARS || !iterator.hasNext()) {
+                    bytes += write(out, buffer);
+                    progress.advance(pending, bytes);
+                    pending = 0;
+                }
+            }
+            if (buffer.length() > 0) {
+                bytes += write(out, buffer);
+                progress.advance(0, bytes);
+            }
+        }
+        return exported;
+    }
+    
+    private static int write(OutputStream out, StringBuilder buffer) {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing bulk export", e);
+        }
+        return bytes.length;
+    }
+}
@@ -0,0 +1,158 @@
+package com.iot.sensor.bulk;
+
+import com.iot.sensor.model.SensorDevice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV encoding of sensor devices, compatible with PostgreSQL COPY ... WITH (FORMAT csv).
+ * An empty unquoted field is null; fields containing a comma, quote or line break are quoted.
+ * Records must fit on one line.
+ */
+public class SensorDeviceCsv {
+    
+    /** Column order of written files, using the sensor_devices column names */
+    public static final String[] COLUMNS =
+            {"id", "device_id", "device_name", "sensor_type", "location", "status", "last_reading", "unit"};
+    
+    public static final String HEADER = String.join(",", COLUMNS);
+    
+    private final int[] fieldIndexes = new int[COLUMNS.length];
+    
+    /**
+     * Parser for files with the given header row; columns may be in any order, and all but
+     * id, last_reading and unit are required
+     */
+    public SensorDeviceCsv(String headerLine) {
+        Map<String, Integer> positions = new HashMap<>();
+        List<String> names = split(headerLine);
+        for (int i = 0; i < names.size(); i++) {
+            positions.put(names.get(i).trim().toLowerCase(), i);
+        }
+        for (int c = 0; c < COLUMNS.length; c++) {
+            fieldIndexes[c] = positions.getOrDefault(COLUMNS[c], -1);
+        }
+        for (String required : new String[]{"device_id", "device_name", "sensor_type", "location", "status"}) {
+            if (!positions.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column " + required);
+            }
+        }
+    }
+    
+    public SensorDevice parse(String line) {
+        List<String> fields = split(line);
+        SensorDevice device = new SensorDevice();
+        device.setId(field(fields, 0));
+        device.setDeviceId(field(fields, 1));
+        device.setDeviceName(field(fields, 2));
+        device.setSensorType(field(fields, 3));
+        device.setLocation(field(fields, 4));
+        device.setStatus(field(fields, 5));
+        String lastReading = field(fields, 6);
+        device.setLastReading(lastReading != null ? Double.valueOf(lastReading) : null);
+        device.setUnit(field(fields, 7));
+        return device;
+    }
+    
+    private String field(List<String> fields, int column) {
+        int index = fieldIndexes[column];
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+    
+    /**
+     * Split a CSV line into fields; an empty unquoted field becomes null
+     */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            field.setLength(0);
+            boolean quoted = i < length && line.charAt(i) == '"';
+            if (quoted) {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+            } else {
+                while (i < length && line.charAt(i) != ',') {
+                    field.append(line.charAt(i++));
+                }
+            }
+            fields.add(quoted || field.length() > 0 ? field.toString() : null);
+            
+            if (i >= length) {
+                return fields;
+            }
+            if (line.charAt(i) != ',') {
+                throw new IllegalArgumentException("Unexpected character after quoted field at position " + i);
+            }
+            i++;
+        }
+    }
+    
+    /**
+     * Append the device as one CSV record in COLUMNS order, including the line terminator
+     */
+    public static void format(SensorDevice device, StringBuilder out) {
+        appendField(out, device.getId());
+        out.append(',');
+        appendField(out, device.getDeviceId());
+        out.append(',');
+        appendField(out, device.getDeviceName());
+        out.append(',');
+        appendField(out, device.getSensorType());
+        out.append(',');
+        appendField(out, device.getLocation());
+        out.append(',');
+        appendField(out, device.getStatus());
+        out.append(',');
+        if (device.getLastReading() != null) {
+            out.append(device.getLastReading().doubleValue());
+        }
+        out.append(',');
+        appendField(out, device.getUnit());
+        out.append('\n');
+    }
+    
+    private static void appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = value.isEmpty();
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
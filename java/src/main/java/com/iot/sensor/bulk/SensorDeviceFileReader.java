@@ -0,0 +1,105 @@
+package com.iot.sensor.bulk;
+
+import com.iot.sensor.model.SensorDevice;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the devices of a CSV or NDJSON file, one line at a time.
+ * Blank lines are skipped; a malformed line or a missing required field stops the
+ * iteration with an IllegalArgumentException naming the line number.
+ */
+public class SensorDeviceFileReader implements Iterator<SensorDevice>, AutoCloseable {
+    
+    private final MappedLineReader lines;
+    private final BulkFormat format;
+    private SensorDeviceCsv csv;
+    private long lineNumber;
+    private SensorDevice next;
+    
+    public SensorDeviceFileReader(Path path, BulkFormat format) throws IOException {
+        this.lines = new MappedLineReader(path);
+        this.format = format;
+        if (format == BulkFormat.CSV) {
+            String header = readNonBlankLine();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file " + path + " has no header row");
+            }
+            this.csv = new SensorDeviceCsv(header);
+        }
+    }
+    
+    private String readNonBlankLine() {
+        try {
+            String line;
+            do {
+                line = lines.readLine();
+                lineNumber++;
+            } while (line != null && line.trim().isEmpty());
+            return line;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading bulk file", e);
+        }
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            String line = readNonBlankLine();
+            if (line != null) {
+                next = parse(line);
+            }
+        }
+        return next != null;
+    }
+    
+    private SensorDevice parse(String line) {
+        SensorDevice device;
+        try {
+            device = format == BulkFormat.CSV ? csv.parse(line) : SensorDeviceJson.parse(line);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+        }
+        requireField(device.getDeviceId(), "deviceId");
+        requireField(device.getDeviceName(), "deviceName");
+        requireField(device.getSensorType(), "sensorType");
+        requireField(device.getLocation(), "location");
+        requireField(device.getStatus(), "status");
+        return device;
+    }
+    
+    private void requireField(String value, String name) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + name + " is required");
+        }
+    }
+    
+    @Override
+    public SensorDevice next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SensorDevice device = next;
+        next = null;
+        return device;
+    }
+    
+    /**
+     * Bytes of the file consumed so far
+     */
+    public long getBytesRead() {
+        return lines.getPosition();
+    }
+    
+    public long getFileSize() {
+        return lines.getSize();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+}
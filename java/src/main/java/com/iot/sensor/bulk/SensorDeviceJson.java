@@ -0,0 +1,41 @@
+package com.iot.sensor.bulk;
+
+import com.iot.sensor.model.SensorDevice;
+import org.bson.Document;
+
+/**
+ * NDJSON encoding of sensor devices: one JSON object per line with the SensorDevice property names.
+ */
+public class SensorDeviceJson {
+    
+    public static SensorDevice parse(String line) {
+        Document doc = Document.parse(line);
+        SensorDevice device = new SensorDevice();
+        Object id = doc.get("id");
+        device.setId(id != null ? id.toString() : null);
+        device.setDeviceId(doc.getString("deviceId"));
+        device.setDeviceName(doc.getString("deviceName"));
+        device.setSensorType(doc.getString("sensorType"));
+        device.setLocation(doc.getString("location"));
+        device.setStatus(doc.getString("status"));
+        Object lastReading = doc.get("lastReading");
+        device.setLastReading(lastReading instanceof Number ? ((Number) lastReading).doubleValue() : null);
+        device.setUnit(doc.getString("unit"));
+        return device;
+    }
+    
+    /**
+     * Append the device as one JSON line, including the line terminator
+     */
+    public static void format(SensorDevice device, StringBuilder out) {
+        Document doc = new Document("id", device.getId())
+                .append("deviceId", device.getDeviceId())
+                .append("deviceName", device.getDeviceName())
+                .append("sensorType", device.getSensorType())
+                .append("location", device.getLocation())
+                .append("status", device.getStatus())
+                .append("lastReading", device.getLastReading())
+                .append("unit", device.getUnit());
+        out.append(doc.toJson()).append('\n');
+    }
+}
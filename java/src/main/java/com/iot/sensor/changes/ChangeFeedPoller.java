@@ -0,0 +1,97 @@
+package com.iot.sensor.changes;
+
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.service.SensorDeviceService;
+
+import java.time.Duration;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Drains the change feed into a consumer, resuming from a persisted watermark.
+ * The watermark is saved after each batch has been handed to the consumer, so delivery is
+ * at-least-once: after a crash the last unsaved batch is delivered again. Consumers should
+ * apply changes idempotently (e.g. upsert by id, delete by id). Not thread-safe; use one
+ * poller per consumer.
+ * <p>
+ * Modification times are stamped when a row is written, not when its transaction commits, and
+ * may come from clocks that disagree slightly, so a change can become visible with a time just
+ * before the watermark. Every poll therefore re-reads the overlap window before the watermark and
+ * drops the changes it has already delivered. Changes that show up later than the overlap are missed;
+ * make it longer than the longest write transaction plus the clock skew between writers. After a
+ * restart the changes in the window are delivered once more.
+ */
+public class ChangeFeedPoller {
+    
+    public static final Duration DEFAULT_OVERLAP = Duration.ofSeconds(5);
+    
+    private final SensorDeviceService service;
+    private final WatermarkStore store;
+    private final int batchSize;
+    private final Duration overlap;
+    private Watermark watermark;
+    // Positions of the changes delivered within the overlap window
+    private final NavigableSet<Watermark> delivered = new TreeSet<>();
+    
+    public ChangeFeedPoller(SensorDeviceService service, WatermarkStore store, int batchSize) {
+        this(service, store, batchSize, DEFAULT_OVERLAP);
+    }
+    
+    /**
+     * @param overlap How far before the watermark each poll starts reading again
+     */
+    public ChangeFeedPoller(SensorDeviceService service, WatermarkStore store, int batchSize, Duration overlap) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (overlap.isNegative()) {
+            throw new IllegalArgumentException("Overlap must not be negative");
+        }
+        this.service = service;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.overlap = overlap;
+        this.watermark = store.load();
+    }
+    
+    /**
+     * Fetch and deliver every change available now, batch by batch
+     * @return Number of changes delivered
+     */
+    public int poll(Consumer<DeviceChange> consumer) {
+        int count = 0;
+        Watermark cursor = windowStart();
+        ChangeBatch batch;
+        do {
+            batch = service.getChangesSince(cursor, batchSize);
+            for (DeviceChange change : batch.getChanges()) {
+                if (delivered.add(change.toWatermark())) {
+                    consumer.accept(change);
+                    count++;
+                }
+            }
+            cursor = batch.getWatermark();
+            if (cursor.compareTo(watermark) > 0) {
+                watermark = cursor;
+                store.save(watermark);
+            }
+        } while (batch.hasMore());
+        // Positions before the next window are never read again
+        delivered.headSet(windowStart()).clear();
+        return count;
+    }
+    
+    private Watermark windowStart() {
+        if (watermark.equals(Watermark.initial())) {
+            return watermark;
+        }
+        return new Watermark(watermark.getTimestamp().minus(overlap), "");
+    }
+    
+    public Watermark getWatermark() {
+        return watermark;
+    }
+}
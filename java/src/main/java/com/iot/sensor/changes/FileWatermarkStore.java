@@ -0,0 +1,49 @@
+package com.iot.sensor.changes;
+
+import com.iot.sensor.model.Watermark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+/**
+ * WatermarkStore backed by a small text file ("<ISO-8601 timestamp> TAB <id>").
+ * Saves write a temporary file and atomically rename it over the old one.
+ */
+public class FileWatermarkStore implements WatermarkStore {
+    
+    private final Path file;
+    
+    public FileWatermarkStore(Path file) {
+        this.file = file;
+    }
+    
+    @Override
+    public Watermark load() {
+        if (!Files.exists(file)) {
+            return Watermark.initial();
+        }
+        try {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+            String[] parts = content.split("\t", 2);
+            return new Watermark(Instant.parse(parts[0]), parts.length > 1 ? parts[1] : "");
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Error loading watermark from " + file, e);
+        }
+    }
+    
+    @Override
+    public void save(Watermark watermark) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        String content = watermark.getTimestamp() + "\t" + watermark.getId() + "\n";
+        try {
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving watermark to " + file, e);
+        }
+    }
+}
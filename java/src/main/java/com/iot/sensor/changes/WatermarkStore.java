@@ -0,0 +1,19 @@
+package com.iot.sensor.changes;
+
+import com.iot.sensor.model.Watermark;
+
+/**
+ * Durable storage for a change feed consumer's position
+ */
+public interface WatermarkStore {
+    
+    /**
+     * @return The last saved watermark, or Watermark.initial() if none was saved yet
+     */
+    Watermark load();
+    
+    /**
+     * Persist the watermark; must be atomic so a crash leaves either the old or the new value
+     */
+    void save(Watermark watermark);
+}
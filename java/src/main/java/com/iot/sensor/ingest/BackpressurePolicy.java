@@ -0,0 +1,13 @@
+package com.iot.sensor.ingest;
+
+/**
+ * What IngestPipeline.submit() does when the queue is full
+ */
+public enum BackpressurePolicy {
+    /** Wait until a writer frees a slot, slowing the producer down to the database's pace */
+    BLOCK,
+    /** Discard the oldest queued device to make room; the producer never waits */
+    DROP_OLDEST,
+    /** Refuse the new device; submit() returns false and the producer decides */
+    REJECT
+}
@@ -0,0 +1,126 @@
+package com.iot.sensor.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer/multi-consumer queue on a power-of-two ring.
+ * Every slot carries a sequence number telling whether it is free for the producer
+ * of a given lap or holds an element for the consumer of that lap, so producers and
+ * consumers each claim a position with one CAS and never block each other.
+ * offer() fails instead of waiting when the ring is full; waiting is left to the caller.
+ */
+public class BoundedRingBuffer<T> {
+    
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    
+    /**
+     * @param capacity Maximum number of queued elements, rounded up to a power of two
+     */
+    public BoundedRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Append the element unless the ring is full
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("Element is required");
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // Publishes the element to the consumer of this lap
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            // Another producer claimed this position first; retry with the new tail
+        }
+    }
+    
+    /**
+     * Remove the oldest element, or return null if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T element = (T) elements[index];
+                    elements[index] = null;
+                    // Frees the slot for the producer of the next lap
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Move up to maxElements queued elements to the target, oldest first
+     * @return Number of elements moved
+     */
+    public int drainTo(List<? super T> target, int maxElements) {
+        int drained = 0;
+        while (drained < maxElements) {
+            T element = poll();
+            if (element == null) {
+                break;
+            }
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+    
+    /**
+     * Approximate number of queued elements (exact when no producer or consumer is active)
+     */
+    public int size() {
+        while (true) {
+            long before = head.get();
+            long currentTail = tail.get();
+            if (head.get() == before) {
+                return (int) Math.max(0, Math.min(currentTail - before, capacity()));
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
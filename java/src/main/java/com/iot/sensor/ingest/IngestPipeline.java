@@ -0,0 +1,411 @@
+package com.iot.sensor.ingest;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.metrics.LatencyHistogram;
+import com.iot.sensor.service.SensorDeviceService;
+import com.iot.sensor.service.SensorDeviceValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decouples device producers (e.g. gateway network threads) from repository writes.
+ *
+ * Stages:
+ * 1. Validation, on the producer thread: invalid devices are refused immediately with IllegalArgumentException.
+ * 2. Bounded lock-free ring buffers, one per writer thread; a device goes to the buffer picked by
+ *    the hash of its deviceId. When that buffer is full the BackpressurePolicy decides between
+ *    blocking the producer, dropping the oldest device queued there or rejecting the new one.
+ * 3. Batching, on the writer threads: each drains up to batchSize devices from its own buffer,
+ *    waiting at most lingerMillis for a batch to fill. An idle writer parks until a producer
+ *    queues a device for it, so idle writers cost no CPU.
+ * 4. Writing: each batch is upserted by deviceId through SensorDeviceService, so listeners
+ *    are notified as for direct calls. A failed batch is logged and counted, not retried.
+ *
+ * Because all submissions for a deviceId go through one buffer and one writer, they are written in
+ * the order they were submitted (for submissions made from one thread, or otherwise ordered), even
+ * with several writers. The price is that a single very busy device loads only its own writer.
+ *
+ * The number of devices in flight is therefore bounded by capacity + writerThreads * batchSize,
+ * whatever the arrival rate. Queue wait and batch write latencies are recorded in histograms.
+ */
+public class IngestPipeline implements AutoCloseable {
+    
+    private static final Logger LOGGER = Logger.getLogger(IngestPipeline.class.getName());
+    
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Safety net only: a waiting writer is normally unparked by the producer that fills its queue
+    private static final long MAX_WRITER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    /**
+     * A queued device with its enqueue time, for the queue wait histogram
+     */
+    private static final class Entry {
+        final SensorDevice sensorDevice;
+        final long enqueuedNanos;
+        
+        Entry(SensorDevice sensorDevice, long enqueuedNanos) {
+            this.sensorDevice = sensorDevice;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+    
+    private final SensorDeviceService service;
+    private final BackpressurePolicy policy;
+    private final int batchSize;
+    private final long lingerNanos;
+    // One per writer thread, indexed by partitionOf(deviceId)
+    private final List<BoundedRingBuffer<Entry>> queues;
+    private final List<Thread> writers = new ArrayList<>();
+    // Set while the writer of the same index is parked waiting for its queue
+    private final List<AtomicBoolean> writerWaiting;
+    private volatile boolean closed;
+    
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram batchWrite = new LatencyHistogram();
+    
+    /**
+     * Pipeline with a 10000 device queue and one writer upserting batches of up to 500 devices
+     */
+    public IngestPipeline(SensorDeviceService service, BackpressurePolicy policy) {
+        this(service, policy, 10_000, 500, 5, 1);
+    }
+    
+    /**
+     * @param capacity Maximum number of queued devices, split evenly between the writers
+     *                 (each share rounded up to a power of two)
+     * @param batchSize Maximum number of devices per repository write
+     * @param lingerMillis How long a writer waits for a partial batch to fill; 0 writes whatever is queued
+     * @param writerThreads Number of writer threads, i.e. concurrent repository writes
+     */
+    public IngestPipeline(SensorDeviceService service, BackpressurePolicy policy,
+                          int capacity, int batchSize, long lingerMillis, int writerThreads) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("Linger time must not be negative");
+        }
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("At least one writer thread is required");
+        }
+        this.service = service;
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        int partitionCapacity = (capacity - 1) / writerThreads + 1;
+        this.queues = new ArrayList<>(writerThreads);
+        this.writerWaiting = new ArrayList<>(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            queues.add(new BoundedRingBuffer<>(partitionCapacity));
+            writerWaiting.add(new AtomicBoolean());
+        }
+        for (int i = 0; i < writerThreads; i++) {
+            int partition = i;
+            Thread writer = new Thread(() -> runWriter(partition), "ingest-writer-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+    
+    /**
+     * Validate the device and queue it for writing.
+     * @return false if the queue was full and the policy is REJECT; true otherwise
+     * @throws IllegalArgumentException if the device is invalid
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public boolean submit(SensorDevice sensorDevice) {
+        String violation = SensorDeviceValidator.violationForCreate(sensorDevice);
+        if (violation != null) {
+            invalid.increment();
+            throw new IllegalArgumentException(violation);
+        }
+        ensureOpen();
+        
+        Entry entry = new Entry(sensorDevice, System.nanoTime());
+        int partition = partitionOf(sensorDevice.getDeviceId());
+        BoundedRingBuffer<Entry> queue = queues.get(partition);
+        if (queue.offer(entry)) {
+            submitted.increment();
+            wakeWriter(partition);
+            return true;
+        }
+        switch (policy) {
+            case REJECT:
+                rejected.increment();
+                return false;
+            case DROP_OLDEST:
+                do {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                } while (!queue.offer(entry));
+                break;
+            default:
+                awaitSpace(queue, entry);
+                break;
+        }
+        submitted.increment();
+        wakeWriter(partition);
+        return true;
+    }
+    
+    private int partitionOf(String deviceId) {
+        int h = deviceId.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % queues.size();
+    }
+    
+    private void awaitSpace(BoundedRingBuffer<Entry> queue, Entry entry) {
+        int idle = 0;
+        while (!queue.offer(entry)) {
+            ensureOpen();
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for ingest queue space");
+            }
+            idle = idle(idle);
+        }
+    }
+    
+    /**
+     * Back off progressively: spin, then yield, then park for up to 1 ms.
+     * Used by producers waiting for space; writers wait for devices in awaitDevices().
+     */
+    private static int idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < 2 * SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, idle - 2 * SPIN_TRIES)));
+        }
+        return idle + 1;
+    }
+    
+    private void wakeWriter(int partition) {
+        AtomicBoolean waiting = writerWaiting.get(partition);
+        if (waiting.get() && waiting.compareAndSet(true, false)) {
+            LockSupport.unpark(writers.get(partition));
+        }
+    }
+    
+    /**
+     * Park the writer until a producer queues a device for it, the timeout passes or the pipeline closes.
+     * The queue is checked again after the flag is published, so an offer made in between is not missed.
+     */
+    private void awaitDevices(int partition, long timeoutNanos) {
+        AtomicBoolean waiting = writerWaiting.get(partition);
+        waiting.set(true);
+        if (queues.get(partition).isEmpty() && !closed) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        waiting.set(false);
+    }
+    
+    private void runWriter(int partition) {
+        List<Entry> entries = new ArrayList<>(batchSize);
+        List<SensorDevice> batch = new ArrayList<>(batchSize);
+        while (fillBatch(partition, entries)) {
+            long now = System.nanoTime();
+            for (Entry entry : entries) {
+                queueWait.record(now - entry.enqueuedNanos);
+                batch.add(entry.sensorDevice);
+            }
+            write(batch);
+            entries.clear();
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Wait for at least one device, then for the batch to fill or the linger time to pass.
+     * Spins and yields briefly first, since under load the next device is usually moments away.
+     * @return false once the pipeline is closed and the queue is drained
+     */
+    private boolean fillBatch(int partition, List<Entry> entries) {
+        BoundedRingBuffer<Entry> queue = queues.get(partition);
+        int idle = 0;
+        while (queue.drainTo(entries, batchSize) == 0) {
+            if (closed && queue.isEmpty()) {
+                return false;
+            }
+            if (idle < 2 * SPIN_TRIES) {
+                idle = idle(idle);
+            } else {
+                awaitDevices(partition, MAX_WRITER_PARK_NANOS);
+            }
+        }
+        if (lingerNanos > 0 && !closed) {
+            long deadline = System.nanoTime() + lingerNanos;
+            long remaining;
+            while (entries.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0 && !closed) {
+                if (queue.drainTo(entries, batchSize - entries.size()) == 0) {
+                    awaitDevices(partition, remaining);
+                }
+            }
+        }
+        return true;
+    }
+    
+    private void write(List<SensorDevice> batch) {
+        long start = System.nanoTime();
+        try {
+            service.upsertSensorDevices(batch);
+            written.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            LOGGER.log(Level.WARNING, "Ingest batch of " + batch.size() + " devices failed", e);
+        } finally {
+            batches.increment();
+            batchWrite.record(System.nanoTime() - start);
+        }
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Ingest pipeline is closed");
+        }
+    }
+    
+    /**
+     * Devices currently queued, not counting batches being written
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (BoundedRingBuffer<Entry> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+    
+    public int getCapacity() {
+        int capacity = 0;
+        for (BoundedRingBuffer<Entry> queue : queues) {
+            capacity += queue.capacity();
+        }
+        return capacity;
+    }
+    
+    /**
+     * Devices accepted into the queue
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+    
+    /**
+     * Devices refused by the validation stage
+     */
+    public long getInvalidCount() {
+        return invalid.sum();
+    }
+    
+    /**
+     * Queued devices discarded to make room under DROP_OLDEST
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Devices refused because the queue was full under REJECT
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    public long getWrittenCount() {
+        return written.sum();
+    }
+    
+    /**
+     * Devices in batches whose repository write failed
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    public long getBatchCount() {
+        return batches.sum();
+    }
+    
+    /**
+     * Time from submit() until a writer took the device off the queue
+     */
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWait;
+    }
+    
+    /**
+     * Duration of each batch write through the service
+     */
+    public LatencyHistogram getBatchWriteHistogram() {
+        return batchWrite;
+    }
+    
+    /**
+     * Stop accepting devices and wait until the writers have written everything already queued
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writers.forEach(LockSupport::unpark);
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Devices from submit() calls that raced with close
+        List<Entry> entries = new ArrayList<>(batchSize);
+        List<SensorDevice> batch = new ArrayList<>(batchSize);
+        for (BoundedRingBuffer<Entry> queue : queues) {
+            while (queue.drainTo(entries, batchSize) > 0) {
+                entries.forEach(entry -> batch.add(entry.sensorDevice));
+                write(batch);
+                entries.clear();
+                batch.clear();
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "IngestPipeline{" +
+                "policy=" + policy +
+                ", queueDepth=" + getQueueDepth() + "/" + getCapacity() +
+                ", submitted=" + getSubmittedCount() +
+                ", written=" + getWrittenCount() +
+                ", failed=" + getFailedCount() +
+                ", dropped=" + getDroppedCount() +
+                ", rejected=" + getRejectedCount() +
+                ", invalid=" + getInvalidCount() +
+                ", queueWaitP99Micros=" + TimeUnit.NANOSECONDS.toMicros(queueWait.getValueAtQuantile(0.99)) +
+                ", batchWriteP99Micros=" + TimeUnit.NANOSECONDS.toMicros(batchWrite.getValueAtQuantile(0.99)) +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.iot.sensor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a batch create/update operation.
+ * Collects the devices that were written successfully and the per-item failures,
+ * so a single bad device (e.g. a duplicate deviceId) does not abort the whole batch.
+ */
+public class BatchResult {
+    private final List<SensorDevice> succeeded = new ArrayList<>();
+    private final List<Failure> failures = new ArrayList<>();
+
+    public void addSuccess(SensorDevice sensorDevice) {
+        succeeded.add(sensorDevice);
+    }
+
+    public void addFailure(int index, SensorDevice sensorDevice, String reason) {
+        failures.add(new Failure(index, sensorDevice, reason));
+    }
+
+    public List<SensorDevice> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public int getSuccessCount() {
+        return succeeded.size();
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "succeeded=" + succeeded.size() +
+                ", failures=" + failures +
+                '}';
+    }
+
+    /**
+     * A single item of a batch that could not be written.
+     * The index refers to the position of the device in the collection passed to the batch call.
+     */
+    public static class Failure {
+        private final int index;
+        private final SensorDevice sensorDevice;
+        private final String reason;
+
+        public Failure(int index, SensorDevice sensorDevice, String reason) {
+            this.index = index;
+            this.sensorDevice = sensorDevice;
+            this.reason = reason;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public SensorDevice getSensorDevice() {
+            return sensorDevice;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{" +
+                    "index=" + index +
+                    ", deviceId='" + (sensorDevice != null ? sensorDevice.getDeviceId() : null) + '\'' +
+                    ", reason='" + reason + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.iot.sensor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One page of the change feed, ordered by (modifiedAt, id).
+ * Pass getWatermark() to the next poll; hasMore() tells whether further changes were already waiting.
+ */
+public class ChangeBatch {
+    private static final Comparator<DeviceChange> FEED_ORDER =
+            Comparator.comparing(DeviceChange::getModifiedAt).thenComparing(DeviceChange::getId);
+
+    private final List<DeviceChange> changes;
+    private final Watermark watermark;
+    private final boolean hasMore;
+
+    public ChangeBatch(List<DeviceChange> changes, Watermark watermark, boolean hasMore) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.watermark = watermark;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Merge device and tombstone changes that each are in feed order and each hold at most limit + 1 entries
+     * (one more than requested, to detect whether more changes are waiting)
+     * @param since The watermark the poll started from; returned unchanged if there are no changes
+     */
+    public static ChangeBatch merge(List<DeviceChange> upserted, List<DeviceChange> deleted,
+                                    Watermark since, int limit) {
+        List<DeviceChange> all = new ArrayList<>(upserted.size() + deleted.size());
+        all.addAll(upserted);
+        all.addAll(deleted);
+        all.sort(FEED_ORDER);
+
+        boolean hasMore = all.size() > limit;
+        List<DeviceChange> page = hasMore ? new ArrayList<>(all.subList(0, limit)) : all;
+        Watermark next = page.isEmpty() ? since : page.get(page.size() - 1).toWatermark();
+        return new ChangeBatch(page, next, hasMore);
+    }
+
+    public List<DeviceChange> getChanges() {
+        return changes;
+    }
+
+    public Watermark getWatermark() {
+        return watermark;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeBatch{" +
+                "changes=" + changes.size() +
+                ", watermark=" + watermark +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
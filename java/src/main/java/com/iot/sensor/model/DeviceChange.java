@@ -0,0 +1,75 @@
+package com.iot.sensor.model;
+
+import java.time.Instant;
+
+/**
+ * One entry of the change feed: either the current state of a created/updated device,
+ * or a tombstone recording that a device was deleted.
+ */
+public class DeviceChange {
+
+    public enum Type {
+        UPSERTED,
+        DELETED
+    }
+
+    private final Type type;
+    private final String id;
+    private final String deviceId;
+    private final Instant modifiedAt;
+    private final SensorDevice sensorDevice;
+
+    private DeviceChange(Type type, String id, String deviceId, Instant modifiedAt, SensorDevice sensorDevice) {
+        this.type = type;
+        this.id = id;
+        this.deviceId = deviceId;
+        this.modifiedAt = modifiedAt;
+        this.sensorDevice = sensorDevice;
+    }
+
+    public static DeviceChange upserted(SensorDevice sensorDevice) {
+        return new DeviceChange(Type.UPSERTED, sensorDevice.getId(), sensorDevice.getDeviceId(),
+                sensorDevice.getUpdatedAt(), sensorDevice);
+    }
+
+    public static DeviceChange deleted(String id, String deviceId, Instant deletedAt) {
+        return new DeviceChange(Type.DELETED, id, deviceId, deletedAt, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
+    /**
+     * @return The device state for UPSERTED changes, null for DELETED
+     */
+    public SensorDevice getSensorDevice() {
+        return sensorDevice;
+    }
+
+    public Watermark toWatermark() {
+        return new Watermark(modifiedAt, id);
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceChange{" +
+                "type=" + type +
+                ", id='" + id + '\'' +
+                ", deviceId='" + deviceId + '\'' +
+                ", modifiedAt=" + modifiedAt +
+                '}';
+    }
+}
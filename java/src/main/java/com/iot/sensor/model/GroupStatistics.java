@@ -0,0 +1,68 @@
+package com.iot.sensor.model;
+
+/**
+ * Summary of the sensor devices sharing one value of a grouping attribute
+ * (e.g. all devices with sensorType "Temperature"): device count and
+ * min/max/average of lastReading. Devices without a reading count towards
+ * the device count but not towards the reading statistics.
+ */
+public class GroupStatistics {
+    private final String group;
+    private final long count;
+    private final long readingCount;
+    private final Double minReading;
+    private final Double maxReading;
+    private final double sumReading;
+
+    public GroupStatistics(String group, long count, long readingCount,
+                           Double minReading, Double maxReading, double sumReading) {
+        this.group = group;
+        this.count = count;
+        this.readingCount = readingCount;
+        this.minReading = minReading;
+        this.maxReading = maxReading;
+        this.sumReading = sumReading;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getReadingCount() {
+        return readingCount;
+    }
+
+    public Double getMinReading() {
+        return minReading;
+    }
+
+    public Double getMaxReading() {
+        return maxReading;
+    }
+
+    public double getSumReading() {
+        return sumReading;
+    }
+
+    /**
+     * @return Average lastReading, or null if no device in the group has a reading
+     */
+    public Double getAverageReading() {
+        return readingCount == 0 ? null : sumReading / readingCount;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupStatistics{" +
+                "group='" + group + '\'' +
+                ", count=" + count +
+                ", minReading=" + minReading +
+                ", maxReading=" + maxReading +
+                ", averageReading=" + getAverageReading() +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+package com.iot.sensor.model;
+
+import java.util.Arrays;
+
+/**
+ * Downsampled readings: min/max/avg/count per fixed-width time bucket.
+ * Buckets are ordered by start time and empty buckets are omitted.
+ */
+public class ReadingBuckets {
+    private final String deviceId;
+    private final long bucketMillis;
+    private final long[] bucketStarts;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final long[] count;
+    private final int size;
+
+    public ReadingBuckets(String deviceId, long bucketMillis, long[] bucketStarts,
+                          double[] min, double[] max, double[] sum, long[] count, int size) {
+        this.deviceId = deviceId;
+        this.bucketMillis = bucketMillis;
+        this.bucketStarts = bucketStarts;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+        this.size = size;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getBucketStart(int index) {
+        return bucketStarts[index];
+    }
+
+    public double getMin(int index) {
+        return min[index];
+    }
+
+    public double getMax(int index) {
+        return max[index];
+    }
+
+    public double getAverage(int index) {
+        return sum[index] / count[index];
+    }
+
+    public long getCount(int index) {
+        return count[index];
+    }
+
+    /**
+     * Start of the bucket that contains the timestamp
+     */
+    public static long bucketStart(long timestamp, long bucketMillis) {
+        return Math.floorDiv(timestamp, bucketMillis) * bucketMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ReadingBuckets{deviceId='").append(deviceId)
+                .append("', bucketMillis=").append(bucketMillis).append(", buckets=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(bucketStarts[i]).append(": min=").append(min[i])
+                    .append(" max=").append(max[i])
+                    .append(" avg=").append(getAverage(i))
+                    .append(" n=").append(count[i]);
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Accumulates time-ordered samples (or pre-aggregated buckets) into ReadingBuckets
+     */
+    public static class Builder {
+        private final String deviceId;
+        private final long bucketMillis;
+        private long[] bucketStarts = new long[16];
+        private double[] min = new double[16];
+        private double[] max = new double[16];
+        private double[] sum = new double[16];
+        private long[] count = new long[16];
+        private int size;
+
+        public Builder(String deviceId, long bucketMillis) {
+            if (bucketMillis <= 0) {
+                throw new IllegalArgumentException("Bucket width must be positive");
+            }
+            this.deviceId = deviceId;
+            this.bucketMillis = bucketMillis;
+        }
+
+        /**
+         * Add one sample; samples must arrive in non-decreasing timestamp order
+         */
+        public void add(long timestamp, double value) {
+            long start = bucketStart(timestamp, bucketMillis);
+            if (size == 0 || bucketStarts[size - 1] != start) {
+                addBucket(start, value, value, value, 1);
+                return;
+            }
+            int last = size - 1;
+            if (value < min[last]) {
+                min[last] = value;
+            }
+            if (value > max[last]) {
+                max[last] = value;
+            }
+            sum[last] += value;
+            count[last]++;
+        }
+
+        /**
+         * Add an already aggregated bucket, e.g. one computed by the database
+         */
+        public void addBucket(long start, double bucketMin, double bucketMax, double bucketSum, long bucketCount) {
+            if (size == bucketStarts.length) {
+                int capacity = size * 2;
+                bucketStarts = Arrays.copyOf(bucketStarts, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                sum = Arrays.copyOf(sum, capacity);
+                count = Arrays.copyOf(count, capacity);
+            }
+            bucketStarts[size] = start;
+            min[size] = bucketMin;
+            max[size] = bucketMax;
+            sum[size] = bucketSum;
+            count[size] = bucketCount;
+            size++;
+        }
+
+        public ReadingBuckets build() {
+            return new ReadingBuckets(deviceId, bucketMillis, bucketStarts, min, max, sum, count, size);
+        }
+    }
+}
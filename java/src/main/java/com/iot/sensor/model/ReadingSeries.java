@@ -0,0 +1,62 @@
+package com.iot.sensor.model;
+
+/**
+ * Time-ordered readings of one device, stored as parallel primitive arrays.
+ * Timestamps are epoch milliseconds.
+ */
+public class ReadingSeries {
+    private final String deviceId;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int size;
+
+    public ReadingSeries(String deviceId, long[] timestamps, double[] values, int size) {
+        this.deviceId = deviceId;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static ReadingSeries empty(String deviceId) {
+        return new ReadingSeries(deviceId, new long[0], new double[0], 0);
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Aggregate the series into fixed-width time buckets aligned to multiples of bucketMillis
+     */
+    public ReadingBuckets downsample(long bucketMillis) {
+        ReadingBuckets.Builder builder = new ReadingBuckets.Builder(deviceId, bucketMillis);
+        for (int i = 0; i < size; i++) {
+            builder.add(timestamps[i], values[i]);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "ReadingSeries{" +
+                "deviceId='" + deviceId + '\'' +
+                ", size=" + size +
+                '}';
+    }
+}
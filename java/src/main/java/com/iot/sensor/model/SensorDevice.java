@@ -1,5 +1,7 @@
 package com.iot.sensor.model;
 
+import java.time.Instant;
+
 /**
  * SensorDevice entity class representing a sensor device in an IoT system.
  * Contains id and at least 3 additional attributes: deviceName, sensorType, location, status, lastReading, unit, deviceId
@@ -13,6 +15,9 @@ public class SensorDevice {
     private Double lastReading;
     private String unit;
     private String deviceId;
+    // Maintained by the repositories and filled in when a device is read back
+    private Instant createdAt;
+    private Instant updatedAt;
 
     // Default constructor
     public SensorDevice() {
@@ -31,6 +36,14 @@ public class SensorDevice {
         this.deviceId = deviceId;
     }
 
+    // Copy constructor
+    public SensorDevice(SensorDevice other) {
+        this(other.id, other.deviceName, other.sensorType, other.location,
+                other.status, other.lastReading, other.unit, other.deviceId);
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -96,6 +109,22 @@ public class SensorDevice {
         this.deviceId = deviceId;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     @Override
     public String toString() {
         return "SensorDevice{" +
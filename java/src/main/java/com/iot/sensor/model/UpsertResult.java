@@ -0,0 +1,56 @@
+package com.iot.sensor.model;
+
+/**
+ * Outcome of an upsert keyed by deviceId: the stored device (with its ID)
+ * and whether it was newly inserted or an existing device was updated.
+ * A batch upsert reports items it could not write as failed, with the reason,
+ * instead of aborting the whole batch.
+ */
+public class UpsertResult {
+    private final SensorDevice sensorDevice;
+    private final boolean inserted;
+    private final String failureReason;
+
+    public UpsertResult(SensorDevice sensorDevice, boolean inserted) {
+        this(sensorDevice, inserted, null);
+    }
+
+    private UpsertResult(SensorDevice sensorDevice, boolean inserted, String failureReason) {
+        this.sensorDevice = sensorDevice;
+        this.inserted = inserted;
+        this.failureReason = failureReason;
+    }
+
+    public static UpsertResult failed(SensorDevice sensorDevice, String reason) {
+        return new UpsertResult(sensorDevice, false, reason);
+    }
+
+    public SensorDevice getSensorDevice() {
+        return sensorDevice;
+    }
+
+    public boolean isInserted() {
+        return inserted;
+    }
+
+    public boolean isUpdated() {
+        return !inserted && failureReason == null;
+    }
+
+    public boolean isFailed() {
+        return failureReason != null;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult{" +
+                "sensorDevice=" + sensorDevice +
+                ", inserted=" + inserted +
+                (failureReason != null ? ", failureReason='" + failureReason + '\'' : "") +
+                '}';
+    }
+}
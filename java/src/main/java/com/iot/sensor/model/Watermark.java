@@ -0,0 +1,67 @@
+package com.iot.sensor.model;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Position in the change feed: the modification time and ID of the last change consumed.
+ * Changes are ordered by (timestamp, id), so the ID breaks ties between devices
+ * modified at the same instant and no change is skipped or returned twice.
+ */
+public class Watermark implements Comparable<Watermark> {
+    private static final Watermark INITIAL = new Watermark(Instant.EPOCH, "");
+
+    private final Instant timestamp;
+    private final String id;
+
+    public Watermark(Instant timestamp, String id) {
+        this.timestamp = Objects.requireNonNull(timestamp, "timestamp");
+        this.id = Objects.requireNonNull(id, "id");
+    }
+
+    /**
+     * Watermark before every change; polling from it returns the whole fleet
+     */
+    public static Watermark initial() {
+        return INITIAL;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(Watermark other) {
+        int byTimestamp = timestamp.compareTo(other.timestamp);
+        return byTimestamp != 0 ? byTimestamp : id.compareTo(other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Watermark)) {
+            return false;
+        }
+        Watermark that = (Watermark) o;
+        return timestamp.equals(that.timestamp) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, id);
+    }
+
+    @Override
+    public String toString() {
+        return "Watermark{" +
+                "timestamp=" + timestamp +
+                ", id='" + id + '\'' +
+                '}';
+    }
+}
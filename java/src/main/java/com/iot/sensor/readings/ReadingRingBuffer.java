@@ -0,0 +1,128 @@
+package com.iot.sensor.readings;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+
+/**
+ * Fixed-capacity, time-ordered ring buffer of one device's readings.
+ * Samples are kept in primitive arrays (no boxing); when full, the oldest sample is overwritten.
+ * The buffer tracks the timestamp from which it holds every sample, so callers can tell
+ * whether a time window can be answered from memory alone.
+ */
+class ReadingRingBuffer {
+    private final long[] timestamps;
+    private final double[] values;
+    private int start;
+    private int size;
+    // Every sample with a timestamp >= coverageStart that was appended is still held here
+    private long coverageStart;
+    
+    ReadingRingBuffer(int capacity, long coverageStart) {
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.coverageStart = coverageStart;
+    }
+    
+    /**
+     * Append a sample, keeping timestamp order even for late arrivals
+     * @return false if the sample is older than the window held in memory
+     */
+    synchronized boolean append(long timestamp, double value) {
+        int capacity = timestamps.length;
+        if (size == capacity) {
+            // Evicting the oldest sample moves the covered window forward
+            long nextCoverageStart = Math.max(coverageStart, timestamps[start] + 1);
+            if (timestamp < nextCoverageStart) {
+                return false;
+            }
+            coverageStart = nextCoverageStart;
+            start = (start + 1) % capacity;
+            size--;
+        } else if (timestamp < coverageStart) {
+            return false;
+        }
+        
+        int position = size == 0 || timestamp >= timestamps[physical(size - 1)]
+                ? size
+                : upperBound(timestamp);
+        for (int i = size; i > position; i--) {
+            int to = physical(i);
+            int from = physical(i - 1);
+            timestamps[to] = timestamps[from];
+            values[to] = values[from];
+        }
+        timestamps[physical(position)] = timestamp;
+        values[physical(position)] = value;
+        size++;
+        return true;
+    }
+    
+    synchronized boolean covers(long fromInclusive) {
+        return fromInclusive >= coverageStart;
+    }
+    
+    synchronized ReadingSeries range(String deviceId, long fromInclusive, long toExclusive) {
+        int from = lowerBound(fromInclusive);
+        int to = lowerBound(toExclusive);
+        int count = Math.max(0, to - from);
+        long[] rangeTimestamps = new long[count];
+        double[] rangeValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            int index = physical(from + i);
+            rangeTimestamps[i] = timestamps[index];
+            rangeValues[i] = values[index];
+        }
+        return new ReadingSeries(deviceId, rangeTimestamps, rangeValues, count);
+    }
+    
+    /**
+     * Aggregate a window in place, without copying the samples out first
+     */
+    synchronized ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis) {
+        ReadingBuckets.Builder builder = new ReadingBuckets.Builder(deviceId, bucketMillis);
+        int to = lowerBound(toExclusive);
+        for (int i = lowerBound(fromInclusive); i < to; i++) {
+            int index = physical(i);
+            builder.add(timestamps[index], values[index]);
+        }
+        return builder.build();
+    }
+    
+    synchronized int size() {
+        return size;
+    }
+    
+    private int physical(int logical) {
+        return (start + logical) % timestamps.length;
+    }
+    
+    // First logical index with timestamp >= key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // First logical index with timestamp > key
+    private int upperBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
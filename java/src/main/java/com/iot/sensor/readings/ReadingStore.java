@@ -0,0 +1,276 @@
+package com.iot.sensor.readings;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+import com.iot.sensor.repository.IReadingRepository;
+import com.iot.sensor.service.SensorDeviceListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-tier reading history: a hot in-memory ring buffer per device in front of
+ * an IReadingRepository. Range and downsampling queries whose window is still held
+ * in memory are answered without touching the database.
+ * Register it on SensorDeviceService to record every reported lastReading.
+ *
+ * append() runs on the caller's thread (the service's listener path), so it only updates the
+ * ring buffer and queues the sample; a background writer persists the queue in batches. Samples
+ * reach the repository after a short delay, so queries answered by the repository may miss the
+ * newest ones. If the queue is full or a batch fails to write, the samples are kept in memory only
+ * and counted (see getDroppedCount/getFailedCount); they are not retried. close() writes what is
+ * still queued.
+ */
+public class ReadingStore implements SensorDeviceListener, AutoCloseable {
+    
+    private static final Logger LOGGER = Logger.getLogger(ReadingStore.class.getName());
+    
+    public static final int DEFAULT_QUEUE_CAPACITY = 100_000;
+    
+    // Samples written per repository call
+    private static final int WRITE_BATCH_SIZE = 1_000;
+    
+    private final IReadingRepository repository;
+    private final int samplesPerDevice;
+    private final ConcurrentMap<String, ReadingRingBuffer> buffers = new ConcurrentHashMap<>();
+    
+    // Null when there is no repository
+    private final BlockingQueue<PendingSample> pending;
+    private final Thread writer;
+    private volatile boolean closed;
+    
+    private final LongAdder memoryQueries = new LongAdder();
+    private final LongAdder repositoryQueries = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    
+    /**
+     * @param repository Persistent tier; null keeps the history in memory only
+     * @param samplesPerDevice Ring buffer capacity per device
+     */
+    public ReadingStore(IReadingRepository repository, int samplesPerDevice) {
+        this(repository, samplesPerDevice, DEFAULT_QUEUE_CAPACITY);
+    }
+    
+    /**
+     * @param repository Persistent tier; null keeps the history in memory only
+     * @param samplesPerDevice Ring buffer capacity per device
+     * @param queueCapacity Samples waiting to be persisted before new ones are dropped from the persistent tier
+     */
+    public ReadingStore(IReadingRepository repository, int samplesPerDevice, int queueCapacity) {
+        if (samplesPerDevice < 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.repository = repository;
+        this.samplesPerDevice = samplesPerDevice;
+        if (repository != null) {
+            this.pending = new ArrayBlockingQueue<>(queueCapacity);
+            this.writer = new Thread(this::writeLoop, "reading-store-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.pending = null;
+            this.writer = null;
+        }
+    }
+    
+    /**
+     * Record a reading sample
+     * @param deviceId The business device ID
+     * @param timestamp Sample time in epoch milliseconds
+     * @param value The reading value
+     */
+    public void append(String deviceId, long timestamp, double value) {
+        // The buffer covers the device from its first sample seen by this process
+        buffers.computeIfAbsent(deviceId, key -> new ReadingRingBuffer(samplesPerDevice, timestamp))
+                .append(timestamp, value);
+        if (pending != null && (closed || !pending.offer(new PendingSample(deviceId, timestamp, value)))) {
+            dropped.increment();
+        }
+    }
+    
+    /**
+     * Get the samples of a device in [fromInclusive, toExclusive), ordered by time
+     */
+    public ReadingSeries range(String deviceId, long fromInclusive, long toExclusive) {
+        ReadingRingBuffer buffer = buffers.get(deviceId);
+        if (buffer != null && (repository == null || buffer.covers(fromInclusive))) {
+            memoryQueries.increment();
+            return buffer.range(deviceId, fromInclusive, toExclusive);
+        }
+        if (repository == null) {
+            return ReadingSeries.empty(deviceId);
+        }
+        repositoryQueries.increment();
+        return repository.findRange(deviceId, fromInclusive, toExclusive);
+    }
+    
+    /**
+     * Get min/max/avg per bucket of a device's samples in [fromInclusive, toExclusive)
+     */
+    public ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis) {
+        ReadingRingBuffer buffer = buffers.get(deviceId);
+        if (buffer != null && (repository == null || buffer.covers(fromInclusive))) {
+            memoryQueries.increment();
+            return buffer.downsample(deviceId, fromInclusive, toExclusive, bucketMillis);
+        }
+        if (repository == null) {
+            return new ReadingBuckets.Builder(deviceId, bucketMillis).build();
+        }
+        repositoryQueries.increment();
+        return repository.downsample(deviceId, fromInclusive, toExclusive, bucketMillis);
+    }
+    
+    /**
+     * Forget the in-memory history of a device (persisted samples are kept)
+     */
+    public void evict(String deviceId) {
+        buffers.remove(deviceId);
+    }
+    
+    public int getTrackedDeviceCount() {
+        return buffers.size();
+    }
+    
+    public long getMemoryQueryCount() {
+        return memoryQueries.sum();
+    }
+    
+    public long getRepositoryQueryCount() {
+        return repositoryQueries.sum();
+    }
+    
+    /**
+     * Samples queued but not yet written to the repository
+     */
+    public int getPendingCount() {
+        return pending != null ? pending.size() : 0;
+    }
+    
+    /**
+     * Samples written to the repository
+     */
+    public long getPersistedCount() {
+        return persisted.sum();
+    }
+    
+    /**
+     * Samples not queued for the repository because the queue was full or the store closed
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Samples whose batch failed to write
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    @Override
+    public void onReading(String deviceId, long timestamp, double value) {
+        append(deviceId, timestamp, value);
+    }
+    
+    // ---- background writer ----
+    
+    private void writeLoop() {
+        List<PendingSample> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        while (!closed || !pending.isEmpty()) {
+            try {
+                PendingSample first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // close() interrupts only once it gave up waiting
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pending.drainTo(batch, WRITE_BATCH_SIZE - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+    
+    private void write(List<PendingSample> batch) {
+        try {
+            repository.appendAll(groupByDevice(batch));
+            persisted.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            LOGGER.log(Level.WARNING, "Persisting " + batch.size() + " reading samples failed; they are kept in memory only", e);
+        }
+    }
+    
+    private static List<ReadingSeries> groupByDevice(List<PendingSample> batch) {
+        Map<String, List<PendingSample>> byDevice = new LinkedHashMap<>();
+        for (PendingSample sample : batch) {
+            byDevice.computeIfAbsent(sample.deviceId, key -> new ArrayList<>()).add(sample);
+        }
+        List<ReadingSeries> series = new ArrayList<>(byDevice.size());
+        for (Map.Entry<String, List<PendingSample>> entry : byDevice.entrySet()) {
+            List<PendingSample> samples = entry.getValue();
+            long[] timestamps = new long[samples.size()];
+            double[] values = new double[samples.size()];
+            for (int i = 0; i < samples.size(); i++) {
+                timestamps[i] = samples.get(i).timestamp;
+                values[i] = samples.get(i).value;
+            }
+            series.add(new ReadingSeries(entry.getKey(), timestamps, values, samples.size()));
+        }
+        return series;
+    }
+    
+    /**
+     * Stop accepting samples for the repository and write the ones still queued.
+     * Call it once the service no longer reports readings; a sample appended concurrently may stay unwritten.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+            LOGGER.warning("Reading store writer did not finish; " + pending.size() + " samples were not persisted");
+        }
+    }
+    
+    private static final class PendingSample {
+        final String deviceId;
+        final long timestamp;
+        final double value;
+        
+        PendingSample(String deviceId, long timestamp, double value) {
+            this.deviceId = deviceId;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+}
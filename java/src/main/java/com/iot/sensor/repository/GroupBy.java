@@ -0,0 +1,26 @@
+package com.iot.sensor.repository;
+
+import com.iot.sensor.model.SensorDevice;
+
+/**
+ * Attribute by which fleet statistics are grouped
+ */
+public enum GroupBy {
+    SENSOR_TYPE,
+    LOCATION,
+    STATUS;
+    
+    /**
+     * The value of this attribute for a device, i.e. the group the device belongs to
+     */
+    public String keyOf(SensorDevice sensorDevice) {
+        switch (this) {
+            case SENSOR_TYPE:
+                return sensorDevice.getSensorType();
+            case LOCATION:
+                return sensorDevice.getLocation();
+            default:
+                return sensorDevice.getStatus();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.iot.sensor.repository;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+
+import java.util.Collection;
+
+/**
+ * Repository interface for persisted reading history (the sensor_readings table/collection).
+ * Timestamps are epoch milliseconds and ranges are half-open: [fromInclusive, toExclusive).
+ */
+public interface IReadingRepository {
+    
+    /**
+     * Persist one reading sample
+     * @param deviceId The business device ID (SensorDevice.deviceId)
+     * @param timestamp Sample time in epoch milliseconds
+     * @param value The reading value
+     */
+    void append(String deviceId, long timestamp, double value);
+    
+    /**
+     * Persist several samples, in one round trip where the database supports it
+     * @param samples Samples grouped per device
+     */
+    default void appendAll(Collection<ReadingSeries> samples) {
+        for (ReadingSeries series : samples) {
+            for (int i = 0; i < series.size(); i++) {
+                append(series.getDeviceId(), series.getTimestamp(i), series.getValue(i));
+            }
+        }
+    }
+    
+    /**
+     * Find the samples of a device inside a time range
+     * @return The samples ordered by timestamp
+     */
+    ReadingSeries findRange(String deviceId, long fromInclusive, long toExclusive);
+    
+    /**
+     * Aggregate the samples of a device inside a time range into fixed-width buckets,
+     * computed by the database so only one row per bucket is returned
+     */
+    ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis);
+}
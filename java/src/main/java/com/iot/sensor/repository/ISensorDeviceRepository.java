@@ -1,8 +1,19 @@
 package com.iot.sensor.repository;
 
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
 import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for SensorDevice CRUD operations.
@@ -18,6 +29,29 @@ public interface ISensorDeviceRepository {
      */
     SensorDevice create(SensorDevice sensorDevice);
     
+    /**
+     * Create several sensor devices in one batch
+     * @param sensorDevices The sensor devices to create
+     * @return The batch result; failed items (e.g. duplicate deviceId) do not abort the others
+     */
+    BatchResult createAll(Collection<SensorDevice> sensorDevices);
+    
+    /**
+     * Insert the device, or update the existing device with the same deviceId, in one atomic statement.
+     * Safe to retry: repeating the call leaves the same state.
+     * @param sensorDevice The device; its deviceId is the key, its ID is only used if it is inserted
+     * @return The stored device (with the ID of the existing row when updated) and whether it was inserted
+     */
+    UpsertResult upsertByDeviceId(SensorDevice sensorDevice);
+    
+    /**
+     * Upsert several devices keyed by deviceId in one round trip.
+     * If the same deviceId occurs more than once, the last occurrence wins.
+     * @param sensorDevices The devices to upsert
+     * @return One result per input device, in input order; items that could not be written are failed results
+     */
+    List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices);
+    
     /**
      * Find a sensor device by ID
      * @param id The ID of the sensor device
@@ -25,12 +59,115 @@ public interface ISensorDeviceRepository {
      */
     Optional<SensorDevice> findById(String id);
     
+    /**
+     * Find a sensor device by its unique business device ID (uses the device_id index)
+     * @param deviceId The device ID, e.g. "SENSOR-001"
+     * @return Optional containing the sensor device if found
+     */
+    Optional<SensorDevice> findByDeviceId(String deviceId);
+    
+    /**
+     * Get the last reading of several devices without loading the rest of each device.
+     * Implementations backed by a database read only the deviceId and lastReading columns/fields.
+     * @param deviceIds Business device IDs
+     * @return Last reading per business device ID; devices that do not exist are absent
+     */
+    default Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Map<String, Double> readings = new HashMap<>();
+        for (String deviceId : deviceIds) {
+            findByDeviceId(deviceId).ifPresent(device -> readings.put(deviceId, device.getLastReading()));
+        }
+        return readings;
+    }
+    
+    /**
+     * Find the sensor devices matching every condition of the criteria.
+     * The filter is evaluated by the database, not in the JVM.
+     * @param criteria The filter; an empty criteria matches all devices
+     * @return List of matching sensor devices
+     */
+    List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria);
+    
+    /**
+     * Find sensor devices by sensor type
+     * @param sensorType The sensor type, e.g. "Temperature"
+     * @return List of matching sensor devices
+     */
+    default List<SensorDevice> findBySensorType(String sensorType) {
+        return findByCriteria(new SensorDeviceCriteria().sensorType(sensorType));
+    }
+    
+    /**
+     * Find sensor devices by status
+     * @param status The status, e.g. "Active"
+     * @return List of matching sensor devices
+     */
+    default List<SensorDevice> findByStatus(String status) {
+        return findByCriteria(new SensorDeviceCriteria().status(status));
+    }
+    
+    /**
+     * Find sensor devices by exact location
+     * @param location The location, e.g. "Building A, Room 101"
+     * @return List of matching sensor devices
+     */
+    default List<SensorDevice> findByLocation(String location) {
+        return findByCriteria(new SensorDeviceCriteria().location(location));
+    }
+    
+    /**
+     * Find the sensor devices at a location or anywhere below it in the location hierarchy
+     * @param locationPrefix The location, e.g. "Building A" or "Building A, Floor 2"
+     * @return List of matching sensor devices
+     */
+    default List<SensorDevice> findByLocationPrefix(String locationPrefix) {
+        return findByCriteria(new SensorDeviceCriteria().locationPrefix(locationPrefix));
+    }
+    
+    /**
+     * Compute per-group fleet statistics (device count, min/max/average lastReading).
+     * The aggregation runs in the database; only one summary row per group is returned.
+     * @param groupBy The attribute to group by
+     * @return One entry per distinct value of the attribute, ordered by that value
+     */
+    List<GroupStatistics> aggregateBy(GroupBy groupBy);
+    
     /**
      * Get all sensor devices
      * @return List of all sensor devices
      */
     List<SensorDevice> findAll();
     
+    /**
+     * Stream all sensor devices without loading the whole fleet into memory.
+     * The stream holds database resources until it is exhausted or closed,
+     * so callers should use it in a try-with-resources block. With PostgreSQL those
+     * resources include a pooled connection, so do not call the repository from inside
+     * the stream pipeline; collect the work and do it after closing the stream.
+     * @return Stream of all sensor devices, in no particular order
+     */
+    Stream<SensorDevice> streamAll();
+    
+    /**
+     * Get one page of sensor devices ordered by ID (keyset pagination)
+     * @param afterId Only devices with an ID greater than this are returned; null for the first page
+     * @param limit Maximum number of devices in the page
+     * @return The page; the ID of its last element is the afterId for the next page
+     */
+    List<SensorDevice> findPage(String afterId, int limit);
+    
+    /**
+     * Get the devices created, updated or deleted after the watermark (incremental change feed),
+     * ordered by (modification time, ID). Deleted devices are returned as tombstones.
+     * Timestamps are assigned at write time, so a write that commits after a poll has already
+     * moved past its timestamp is not seen; consumers needing strict completeness should
+     * re-read a small overlap window.
+     * @param since Position after the last consumed change; Watermark.initial() for the whole fleet
+     * @param limit Maximum number of changes to return
+     * @return The changes and the watermark to pass to the next call
+     */
+    ChangeBatch findModifiedSince(Watermark since, int limit);
+    
     /**
      * Update an existing sensor device
      * @param sensorDevice The sensor device to update
@@ -38,6 +175,36 @@ public interface ISensorDeviceRepository {
      */
     SensorDevice update(SensorDevice sensorDevice);
     
+    /**
+     * Update several existing sensor devices in one batch
+     * @param sensorDevices The sensor devices to update
+     * @return The batch result; devices that are not found are reported as failures
+     */
+    BatchResult updateAll(Collection<SensorDevice> sensorDevices);
+    
+    /**
+     * Set the last reading of a device in a single targeted update
+     * @param deviceId The business device ID
+     * @param lastReading The new reading value
+     * @return true if the device exists and was updated, false if not found
+     */
+    boolean updateReading(String deviceId, double lastReading);
+    
+    /**
+     * Set the last reading of several devices in one batch
+     * @param readingsByDeviceId New reading value per business device ID
+     * @return Number of devices that exist and were updated
+     */
+    int updateReadings(Map<String, Double> readingsByDeviceId);
+    
+    /**
+     * Set the status of a device in a single targeted update
+     * @param deviceId The business device ID
+     * @param status The new status
+     * @return true if the device exists and was updated, false if not found
+     */
+    boolean updateStatus(String deviceId, String status);
+    
     /**
      * Delete a sensor device by ID
      * @param id The ID of the sensor device to delete
@@ -51,5 +218,20 @@ public interface ISensorDeviceRepository {
      * @return true if exists, false otherwise
      */
     boolean existsById(String id);
+    
+    /**
+     * Check which of several IDs exist, in one round trip where the database allows it.
+     * @param ids The IDs to check
+     * @return The IDs that exist
+     */
+    default Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> existing = new HashSet<>();
+        for (String id : ids) {
+            if (existsById(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
 }
 
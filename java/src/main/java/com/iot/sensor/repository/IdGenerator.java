@@ -0,0 +1,29 @@
+package com.iot.sensor.repository;
+
+import java.util.UUID;
+
+/**
+ * Strategy for the IDs of new sensor devices, used by repositories when a device has no valid ID yet
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    
+    /**
+     * @return A new unique ID in canonical UUID form
+     */
+    String newId();
+    
+    /**
+     * Time-ordered UUIDv7 (the default): new rows land at the right edge of the primary key index
+     */
+    static IdGenerator uuidV7() {
+        return UuidV7Generator.INSTANCE;
+    }
+    
+    /**
+     * Random UUIDv4, spread uniformly over the primary key index
+     */
+    static IdGenerator randomUuid() {
+        return () -> UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.iot.sensor.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A location parsed into its hierarchy: "Building A, Floor 2, Room 201" is the path
+ * [Building A, Floor 2, Room 201]. Segments are separated by commas and trimmed, so
+ * "Building A,Floor 2" and "Building A, Floor 2" are the same path; the canonical form
+ * (toString) joins the segments with ", " as stored locations do.
+ */
+public final class LocationPath {
+    
+    public static final String SEPARATOR = ", ";
+    
+    private static final LocationPath ROOT = new LocationPath(new String[0]);
+    
+    private final String[] segments;
+    
+    private LocationPath(String[] segments) {
+        this.segments = segments;
+    }
+    
+    /**
+     * @return The empty path, which contains every location
+     */
+    public static LocationPath root() {
+        return ROOT;
+    }
+    
+    /**
+     * Parse a location; empty segments are dropped
+     * @param location The location, e.g. "Building A, Room 101"; null or blank gives the root
+     */
+    public static LocationPath parse(String location) {
+        if (location == null) {
+            return ROOT;
+        }
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start <= location.length()) {
+            int comma = location.indexOf(',', start);
+            int end = comma < 0 ? location.length() : comma;
+            String segment = location.substring(start, end).trim();
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+            start = end + 1;
+        }
+        return segments.isEmpty() ? ROOT : new LocationPath(segments.toArray(new String[0]));
+    }
+    
+    /**
+     * Whether a stored location lies in the subtree of a canonical prefix: it equals the prefix
+     * or continues it with SEPARATOR. This is the string test the repositories push down
+     * (location = p OR location LIKE 'p, %'), so "Building A" does not match "Building AB".
+     * @param location The stored location
+     * @param prefix A canonical location (toString() of a path); empty matches everything
+     */
+    public static boolean isWithin(String location, String prefix) {
+        if (prefix.isEmpty()) {
+            return true;
+        }
+        return location != null
+                && location.startsWith(prefix)
+                && (location.length() == prefix.length() || location.startsWith(SEPARATOR, prefix.length()));
+    }
+    
+    public int depth() {
+        return segments.length;
+    }
+    
+    public boolean isRoot() {
+        return segments.length == 0;
+    }
+    
+    public String segment(int index) {
+        return segments[index];
+    }
+    
+    public List<String> segments() {
+        return Collections.unmodifiableList(Arrays.asList(segments));
+    }
+    
+    /**
+     * @return The path without its last segment; the root for a path of depth 0 or 1
+     */
+    public LocationPath parent() {
+        return segments.length <= 1 ? ROOT : new LocationPath(Arrays.copyOf(segments, segments.length - 1));
+    }
+    
+    /**
+     * @return true if this path equals the other one or is one of its ancestors
+     */
+    public boolean isPrefixOf(LocationPath other) {
+        if (segments.length > other.segments.length) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (!segments[i].equals(other.segments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LocationPath)) {
+            return false;
+        }
+        return Arrays.equals(segments, ((LocationPath) o).segments);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(segments);
+    }
+    
+    @Override
+    public String toString() {
+        return String.join(SEPARATOR, segments);
+    }
+}
@@ -0,0 +1,401 @@
+package com.iot.sensor.repository;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Base for decorators that keep an in-memory index of the whole fleet next to the wrapped repository.
+ * The last known state of every device is loaded once and then updated by every successful write
+ * made through the decorator; subclasses maintain their index from the add/remove callbacks and
+ * answer their queries from it. Writes that bypass the decorator (other processes, direct SQL) are
+ * not seen; call rebuild() periodically if the database is shared.
+ * <p>
+ * Each write holds a striped per-device lock from the database write until the mirror is updated,
+ * so writes to one device reach the mirror in the order the database applied them, and a delete
+ * cannot be undone by an update that wrote just before it. The mirror itself, and any index a
+ * subclass derives from it, is guarded by this object's monitor.
+ * <p>
+ * Reads pass straight through; subclasses override the ones their index can answer.
+ */
+public abstract class MirroringSensorDeviceRepository implements ISensorDeviceRepository {
+    
+    private static final int LOCK_STRIPES = 64;
+    
+    protected final ISensorDeviceRepository delegate;
+    // Indexed by deviceId hash; always taken in ascending index order, then the monitor
+    private final ReentrantLock[] deviceLocks = new ReentrantLock[LOCK_STRIPES];
+    
+    // Guarded by this
+    private Map<String, SensorDevice> devicesById = new HashMap<>();
+    private Map<String, String> idByDeviceId = new HashMap<>();
+    
+    /**
+     * Subclass constructors call rebuild() once their own index is initialized
+     */
+    protected MirroringSensorDeviceRepository(ISensorDeviceRepository delegate) {
+        this.delegate = delegate;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            deviceLocks[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Drop the index; called under the monitor before it is reloaded
+     */
+    protected abstract void clearIndex();
+    
+    /**
+     * Add a device to the index; called under the monitor with a private copy
+     */
+    protected abstract void addToIndex(SensorDevice sensorDevice);
+    
+    /**
+     * Remove a device previously passed to addToIndex; called under the monitor
+     */
+    protected abstract void removeFromIndex(SensorDevice sensorDevice);
+    
+    /**
+     * Reload the mirror from the wrapped repository (streams the whole fleet once)
+     */
+    public void rebuild() {
+        locked(null, null, () -> {
+            synchronized (this) {
+                devicesById = new HashMap<>();
+                idByDeviceId = new HashMap<>();
+                clearIndex();
+                try (Stream<SensorDevice> devices = delegate.streamAll()) {
+                    devices.forEach(this::put);
+                }
+            }
+            return null;
+        });
+    }
+    
+    // ---- per-device write locks ----
+    
+    private static int stripe(String deviceId) {
+        return deviceId == null ? 0 : (deviceId.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+    }
+    
+    /**
+     * @return Stripe of the deviceId the mirror holds for each ID, or -1 for an unknown ID
+     */
+    private synchronized int[] knownStripes(Collection<String> ids) {
+        int[] known = new int[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            SensorDevice device = devicesById.get(id);
+            known[i++] = device != null ? stripe(device.getDeviceId()) : -1;
+        }
+        return known;
+    }
+    
+    /**
+     * Run a write holding the locks of the given deviceIds and of the devices the IDs currently have,
+     * so a write that changes or drops a deviceId excludes writers of the old one too. An ID the mirror
+     * does not know locks every stripe: a create of it may still be between its database write and
+     * the mirror update. Null for both locks every stripe.
+     */
+    private <T> T locked(Collection<String> ids, Collection<String> deviceIds, Supplier<T> write) {
+        while (true) {
+            int[] known = ids != null ? knownStripes(ids) : null;
+            boolean all = ids == null && deviceIds == null;
+            boolean[] stripes = new boolean[LOCK_STRIPES];
+            if (known != null) {
+                for (int stripe : known) {
+                    if (stripe < 0) {
+                        all = true;
+                    } else {
+                        stripes[stripe] = true;
+                    }
+                }
+            }
+            if (deviceIds != null) {
+                for (String deviceId : deviceIds) {
+                    stripes[stripe(deviceId)] = true;
+                }
+            }
+            
+            int locked = 0;
+            try {
+                for (; locked < LOCK_STRIPES; locked++) {
+                    if (all || stripes[locked]) {
+                        deviceLocks[locked].lock();
+                    }
+                }
+                // Another write may have changed a deviceId while the locks were being taken
+                if (known == null || Arrays.equals(known, knownStripes(ids))) {
+                    return write.get();
+                }
+            } finally {
+                for (int i = locked - 1; i >= 0; i--) {
+                    if (all || stripes[i]) {
+                        deviceLocks[i].unlock();
+                    }
+                }
+            }
+        }
+    }
+    
+    private static List<String> deviceIdsOf(Collection<SensorDevice> sensorDevices) {
+        List<String> deviceIds = new ArrayList<>(sensorDevices.size());
+        for (SensorDevice sensorDevice : sensorDevices) {
+            deviceIds.add(sensorDevice.getDeviceId());
+        }
+        return deviceIds;
+    }
+    
+    private static List<String> idsOf(Collection<SensorDevice> sensorDevices) {
+        List<String> ids = new ArrayList<>(sensorDevices.size());
+        for (SensorDevice sensorDevice : sensorDevices) {
+            ids.add(sensorDevice.getId());
+        }
+        return ids;
+    }
+    
+    // ---- writes: database first, then the mirror, under the device locks ----
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        return locked(Collections.emptyList(), Collections.singletonList(sensorDevice.getDeviceId()), () -> {
+            SensorDevice created = delegate.create(sensorDevice);
+            synchronized (this) {
+                put(created);
+            }
+            return created;
+        });
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        return locked(Collections.emptyList(), deviceIdsOf(sensorDevices), () -> {
+            BatchResult result = delegate.createAll(sensorDevices);
+            synchronized (this) {
+                result.getSucceeded().forEach(this::put);
+            }
+            return result;
+        });
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        return locked(Collections.emptyList(), Collections.singletonList(sensorDevice.getDeviceId()), () -> {
+            UpsertResult result = delegate.upsertByDeviceId(sensorDevice);
+            synchronized (this) {
+                put(result.getSensorDevice());
+            }
+            return result;
+        });
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        return locked(Collections.emptyList(), deviceIdsOf(sensorDevices), () -> {
+            List<UpsertResult> results = delegate.upsertAllByDeviceId(sensorDevices);
+            synchronized (this) {
+                // In input order, so the last occurrence of a deviceId wins as it did in the database
+                for (UpsertResult result : results) {
+                    if (!result.isFailed()) {
+                        put(result.getSensorDevice());
+                    }
+                }
+            }
+            return results;
+        });
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        return locked(Collections.singletonList(sensorDevice.getId()),
+                Collections.singletonList(sensorDevice.getDeviceId()), () -> {
+            SensorDevice updated = delegate.update(sensorDevice);
+            synchronized (this) {
+                put(updated);
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        return locked(idsOf(sensorDevices), deviceIdsOf(sensorDevices), () -> {
+            BatchResult result = delegate.updateAll(sensorDevices);
+            synchronized (this) {
+                result.getSucceeded().forEach(this::put);
+            }
+            return result;
+        });
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        return locked(Collections.emptyList(), Collections.singletonList(deviceId), () -> {
+            boolean updated = delegate.updateReading(deviceId, lastReading);
+            if (updated) {
+                synchronized (this) {
+                    applyReading(deviceId, lastReading);
+                }
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        return locked(Collections.emptyList(), readingsByDeviceId.keySet(), () -> {
+            int updated = delegate.updateReadings(readingsByDeviceId);
+            synchronized (this) {
+                // Devices missing from the mirror do not exist, so every known one was updated
+                for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+                    applyReading(entry.getKey(), entry.getValue());
+                }
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        return locked(Collections.emptyList(), Collections.singletonList(deviceId), () -> {
+            boolean updated = delegate.updateStatus(deviceId, status);
+            if (updated) {
+                synchronized (this) {
+                    SensorDevice current = findKnown(deviceId);
+                    if (current != null) {
+                        SensorDevice changed = new SensorDevice(current);
+                        changed.setStatus(status);
+                        put(changed);
+                    }
+                }
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        return locked(Collections.singletonList(id), Collections.emptyList(), () -> {
+            boolean deleted = delegate.deleteById(id);
+            if (deleted) {
+                synchronized (this) {
+                    remove(id);
+                }
+            }
+            return deleted;
+        });
+    }
+    
+    // ---- reads: pass through ----
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        return delegate.findByDeviceId(deviceId);
+    }
+    
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        return delegate.findLastReadings(deviceIds);
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        return delegate.findByCriteria(criteria);
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return delegate.aggregateBy(groupBy);
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return delegate.findAll();
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        return delegate.streamAll();
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        return delegate.findModifiedSince(since, limit);
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        return delegate.existsById(id);
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        return delegate.findExistingIds(ids);
+    }
+    
+    // ---- mirror, guarded by this ----
+    
+    private void applyReading(String deviceId, double lastReading) {
+        SensorDevice current = findKnown(deviceId);
+        if (current != null) {
+            SensorDevice changed = new SensorDevice(current);
+            changed.setLastReading(lastReading);
+            put(changed);
+        }
+    }
+    
+    private SensorDevice findKnown(String deviceId) {
+        String id = idByDeviceId.get(deviceId);
+        return id != null ? devicesById.get(id) : null;
+    }
+    
+    /**
+     * Record the new state of a device, replacing its previous entry in the index (idempotent)
+     */
+    private void put(SensorDevice sensorDevice) {
+        remove(sensorDevice.getId());
+        SensorDevice copy = new SensorDevice(sensorDevice);
+        devicesById.put(copy.getId(), copy);
+        if (copy.getDeviceId() != null) {
+            idByDeviceId.put(copy.getDeviceId(), copy.getId());
+        }
+        addToIndex(copy);
+    }
+    
+    private void remove(String id) {
+        SensorDevice previous = devicesById.remove(id);
+        if (previous == null) {
+            return;
+        }
+        if (previous.getDeviceId() != null) {
+            idByDeviceId.remove(previous.getDeviceId(), id);
+        }
+        removeFromIndex(previous);
+    }
+}
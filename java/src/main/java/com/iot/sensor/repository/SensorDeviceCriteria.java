@@ -0,0 +1,124 @@
+package com.iot.sensor.repository;
+
+import com.iot.sensor.model.SensorDevice;
+
+import java.util.Objects;
+
+/**
+ * Composable filter for sensor device queries.
+ * Every field that is set must match exactly (the conditions are AND-ed), except locationPrefix,
+ * which matches a whole subtree of the location hierarchy (see LocationPath);
+ * repositories translate the criteria into a SQL WHERE clause or Mongo filter
+ * so the indexed columns are used and only matching devices are returned.
+ */
+public class SensorDeviceCriteria {
+    private String deviceId;
+    private String sensorType;
+    private String status;
+    private String location;
+    private String locationPrefix;
+    
+    public SensorDeviceCriteria deviceId(String deviceId) {
+        this.deviceId = deviceId;
+        return this;
+    }
+    
+    public SensorDeviceCriteria sensorType(String sensorType) {
+        this.sensorType = sensorType;
+        return this;
+    }
+    
+    public SensorDeviceCriteria status(String status) {
+        this.status = status;
+        return this;
+    }
+    
+    public SensorDeviceCriteria location(String location) {
+        this.location = location;
+        return this;
+    }
+    
+    /**
+     * Match devices at the location or anywhere below it, e.g. "Building A" matches
+     * "Building A" and "Building A, Floor 2, Room 201" but not "Building AB"
+     * @param locationPrefix The location; normalized to its canonical form, null or blank clears the condition
+     */
+    public SensorDeviceCriteria locationPrefix(String locationPrefix) {
+        LocationPath path = LocationPath.parse(locationPrefix);
+        this.locationPrefix = path.isRoot() ? null : path.toString();
+        return this;
+    }
+    
+    public String getDeviceId() {
+        return deviceId;
+    }
+    
+    public String getSensorType() {
+        return sensorType;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public String getLocation() {
+        return location;
+    }
+    
+    /**
+     * @return The canonical location prefix, or null if not set
+     */
+    public String getLocationPrefix() {
+        return locationPrefix;
+    }
+    
+    /**
+     * @return true if no condition is set (matches every device)
+     */
+    public boolean isEmpty() {
+        return deviceId == null && sensorType == null && status == null && location == null && locationPrefix == null;
+    }
+    
+    /**
+     * Evaluate the criteria against a device in memory
+     */
+    public boolean matches(SensorDevice sensorDevice) {
+        return (deviceId == null || deviceId.equals(sensorDevice.getDeviceId()))
+                && (sensorType == null || sensorType.equals(sensorDevice.getSensorType()))
+                && (status == null || status.equals(sensorDevice.getStatus()))
+                && (location == null || location.equals(sensorDevice.getLocation()))
+                && (locationPrefix == null || LocationPath.isWithin(sensorDevice.getLocation(), locationPrefix));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SensorDeviceCriteria)) {
+            return false;
+        }
+        SensorDeviceCriteria that = (SensorDeviceCriteria) o;
+        return Objects.equals(deviceId, that.deviceId)
+                && Objects.equals(sensorType, that.sensorType)
+                && Objects.equals(status, that.status)
+                && Objects.equals(location, that.location)
+                && Objects.equals(locationPrefix, that.locationPrefix);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(deviceId, sensorType, status, location, locationPrefix);
+    }
+    
+    @Override
+    public String toString() {
+        return "SensorDeviceCriteria{" +
+                "deviceId='" + deviceId + '\'' +
+                ", sensorType='" + sensorType + '\'' +
+                ", status='" + status + '\'' +
+                ", location='" + location + '\'' +
+                ", locationPrefix='" + locationPrefix + '\'' +
+                '}';
+    }
+}
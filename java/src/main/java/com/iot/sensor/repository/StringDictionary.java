@@ -0,0 +1,74 @@
+package com.iot.sensor.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Dictionary encoding for a low-cardinality string column: each distinct value gets a small
+ * int code, with 0 reserved for null. Codes are never reused, so the dictionary only grows.
+ * Used by the columnar repository and the snapshot format.
+ * Writes must be serialized by the caller; decode() may race with them under an optimistic
+ * read, which the caller validates afterwards.
+ */
+public final class StringDictionary {
+    
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[16];
+    private int size = 1;
+    
+    /**
+     * Code of the value, adding it if it is new
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            code = size;
+            values[size++] = value;
+            codes.put(value, code);
+        }
+        return code;
+    }
+    
+    /**
+     * Code of the value without adding it
+     * @return The code, 0 for null, or -1 if the value has never been encoded
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+    
+    /**
+     * Evaluate a predicate once per distinct value instead of once per row
+     * @return Flags indexed by code; code 0 (null) is never set
+     */
+    public boolean[] codesMatching(Predicate<String> predicate) {
+        boolean[] matching = new boolean[size];
+        for (int code = 1; code < size; code++) {
+            matching[code] = predicate.test(values[code]);
+        }
+        return matching;
+    }
+    
+    public String decode(int code) {
+        return values[code];
+    }
+    
+    /**
+     * Number of codes in use, including 0 for null
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,59 @@
+package com.iot.sensor.repository;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUID version 7 generator (RFC 9562): a 48-bit Unix millisecond timestamp, a 12-bit
+ * sequence and 62 random bits. The sequence is shared by all threads, so IDs are strictly
+ * increasing within the process: several IDs in the same millisecond take the next
+ * sequence value, and when the sequence runs out the timestamp is borrowed from the next
+ * millisecond. Consecutive inserts therefore append to the same index page instead of
+ * touching a random one.
+ */
+public final class UuidV7Generator implements IdGenerator {
+    
+    static final UuidV7Generator INSTANCE = new UuidV7Generator();
+    
+    private static final int SEQUENCE_BITS = 12;
+    
+    // (unix millis << SEQUENCE_BITS) | sequence of the last generated ID
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+    
+    private UuidV7Generator() {
+    }
+    
+    @Override
+    public String newId() {
+        return newUuid().toString();
+    }
+    
+    public UUID newUuid() {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long timeAndSequence;
+        while (true) {
+            long last = lastTimeAndSequence.get();
+            timeAndSequence = Math.max(now, last + 1);
+            if (lastTimeAndSequence.compareAndSet(last, timeAndSequence)) {
+                break;
+            }
+        }
+        long millis = timeAndSequence >>> SEQUENCE_BITS;
+        long sequence = timeAndSequence & ((1 << SEQUENCE_BITS) - 1);
+        
+        long mostSignificant = (millis << 16) | 0x7000L | sequence;
+        long leastSignificant = (ThreadLocalRandom.current().nextLong() >>> 2) | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+    
+    /**
+     * Creation time embedded in a version 7 UUID, in Unix milliseconds
+     */
+    public static long timestampOf(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
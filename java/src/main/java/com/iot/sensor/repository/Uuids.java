@@ -0,0 +1,45 @@
+package com.iot.sensor.repository;
+
+import java.util.UUID;
+
+/**
+ * Parsing of UUID IDs for repositories that store them natively
+ */
+public final class Uuids {
+    
+    /**
+     * All-zero UUID, lower than every other; the tie-breaker of Watermark.initial()
+     */
+    public static final UUID NIL = new UUID(0, 0);
+    
+    private Uuids() {
+    }
+    
+    /**
+     * Parse a canonical 36-character UUID, or return null if the ID is not one
+     * (e.g. a MongoDB ObjectId), so lookups by such an ID simply find nothing
+     */
+    public static UUID parse(String id) {
+        if (id == null || id.length() != 36 || id.charAt(8) != '-' || id.charAt(13) != '-'
+                || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * The device's ID if it is a valid UUID, otherwise a new one from the generator
+     */
+    public static UUID idOrGenerate(String id, IdGenerator idGenerator) {
+        UUID uuid = parse(id);
+        if (uuid != null) {
+            return uuid;
+        }
+        return idGenerator instanceof UuidV7Generator
+                ? ((UuidV7Generator) idGenerator).newUuid() : UUID.fromString(idGenerator.newId());
+    }
+}
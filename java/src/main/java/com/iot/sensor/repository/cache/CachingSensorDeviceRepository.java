@@ -0,0 +1,414 @@
+package com.iot.sensor.repository.cache;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Read-through caching decorator for any ISensorDeviceRepository.
+ * Point lookups are served from a bounded LRU/TTL cache keyed by id (with a secondary
+ * deviceId index); writes go straight to the wrapped repository and invalidate the cache.
+ * Cached devices are copied on the way in and out, so callers cannot mutate cached state.
+ * A read-through load is cached only if no write touched its id or deviceId while it ran;
+ * writes are tracked per key stripe, so writes to other devices do not stop it.
+ */
+public class CachingSensorDeviceRepository implements ISensorDeviceRepository {
+    
+    private final ISensorDeviceRepository delegate;
+    private final LruTtlCache<String, SensorDevice> byId;
+    // Secondary index for every cached device; entries are dropped together with the cached device
+    private final ConcurrentMap<String, String> idByDeviceId = new ConcurrentHashMap<>();
+    
+    private static final int WRITE_STRIPES = 1024;
+    
+    // Orders writes against loads: a load is cached only if no stripe it touches was written after it started
+    private final AtomicLong writeSequence = new AtomicLong();
+    // Guarded by the stripe's lock: sequence of the last write to a key hashing to the stripe
+    private final long[] lastWriteByStripe = new long[WRITE_STRIPES];
+    private final ReentrantLock[] stripeLocks = new ReentrantLock[WRITE_STRIPES];
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public CachingSensorDeviceRepository(ISensorDeviceRepository delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        for (int i = 0; i < WRITE_STRIPES; i++) {
+            stripeLocks[i] = new ReentrantLock();
+        }
+        int concurrencyLevel = Runtime.getRuntime().availableProcessors() * 4;
+        this.byId = new LruTtlCache<>(maxSize, ttlMillis, concurrencyLevel, (id, evicted) -> {
+            if (evicted.getDeviceId() != null) {
+                idByDeviceId.remove(evicted.getDeviceId(), id);
+            }
+        });
+    }
+    
+    /**
+     * The created device is cached like a load that started before the create, so a write to it
+     * that completes before the create returns keeps the stale copy out of the cache
+     */
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        long started = writeSequence.get();
+        SensorDevice created = delegate.create(sensorDevice);
+        if (created.getId() != null) {
+            cacheIfUnwritten(created, created.getId(), started);
+        }
+        return created;
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        long started = writeSequence.get();
+        BatchResult result = delegate.createAll(sensorDevices);
+        for (SensorDevice created : result.getSucceeded()) {
+            if (created.getId() != null) {
+                cacheIfUnwritten(created, created.getId(), started);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        try {
+            return delegate.upsertByDeviceId(sensorDevice);
+        } finally {
+            invalidateByDeviceId(sensorDevice.getDeviceId());
+        }
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        try {
+            return delegate.upsertAllByDeviceId(sensorDevices);
+        } finally {
+            for (SensorDevice sensorDevice : sensorDevices) {
+                invalidateByDeviceId(sensorDevice.getDeviceId());
+            }
+        }
+    }
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        SensorDevice cached = byId.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(new SensorDevice(cached));
+        }
+        
+        misses.increment();
+        long started = writeSequence.get();
+        Optional<SensorDevice> loaded = delegate.findById(id);
+        loaded.ifPresent(device -> cacheIfUnwritten(device, id, started));
+        return loaded;
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        String id = idByDeviceId.get(deviceId);
+        SensorDevice cached = id != null ? byId.get(id) : null;
+        // The secondary index can be stale after a deviceId change, so confirm it on the entry
+        if (cached != null && deviceId.equals(cached.getDeviceId())) {
+            hits.increment();
+            return Optional.of(new SensorDevice(cached));
+        }
+        
+        misses.increment();
+        long started = writeSequence.get();
+        Optional<SensorDevice> loaded = delegate.findByDeviceId(deviceId);
+        loaded.ifPresent(device -> cacheIfUnwritten(device, deviceId, started));
+        return loaded;
+    }
+    
+    /**
+     * Cached devices answer directly; the misses go to the delegate in one batch and are not cached
+     */
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Map<String, Double> readings = new HashMap<>();
+        List<String> missed = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            String id = idByDeviceId.get(deviceId);
+            SensorDevice cached = id != null ? byId.get(id) : null;
+            if (cached != null && deviceId.equals(cached.getDeviceId())) {
+                hits.increment();
+                readings.put(deviceId, cached.getLastReading());
+            } else {
+                misses.increment();
+                missed.add(deviceId);
+            }
+        }
+        if (!missed.isEmpty()) {
+            readings.putAll(delegate.findLastReadings(missed));
+        }
+        return readings;
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        return delegate.findByCriteria(criteria);
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return delegate.aggregateBy(groupBy);
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return delegate.findAll();
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        return delegate.streamAll();
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        return delegate.findModifiedSince(since, limit);
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        try {
+            return delegate.update(sensorDevice);
+        } finally {
+            invalidate(sensorDevice.getId());
+            invalidateByDeviceId(sensorDevice.getDeviceId());
+        }
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        try {
+            return delegate.updateAll(sensorDevices);
+        } finally {
+            for (SensorDevice sensorDevice : sensorDevices) {
+                invalidate(sensorDevice.getId());
+                invalidateByDeviceId(sensorDevice.getDeviceId());
+            }
+        }
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        try {
+            return delegate.updateReading(deviceId, lastReading);
+        } finally {
+            invalidateByDeviceId(deviceId);
+        }
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        try {
+            return delegate.updateReadings(readingsByDeviceId);
+        } finally {
+            for (String deviceId : readingsByDeviceId.keySet()) {
+                invalidateByDeviceId(deviceId);
+            }
+        }
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        try {
+            return delegate.updateStatus(deviceId, status);
+        } finally {
+            invalidateByDeviceId(deviceId);
+        }
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        try {
+            return delegate.deleteById(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        if (byId.get(id) != null) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return delegate.existsById(id);
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> existing = new HashSet<>();
+        List<String> missed = new ArrayList<>();
+        for (String id : ids) {
+            if (byId.get(id) != null) {
+                hits.increment();
+                existing.add(id);
+            } else {
+                misses.increment();
+                missed.add(id);
+            }
+        }
+        if (!missed.isEmpty()) {
+            existing.addAll(delegate.findExistingIds(missed));
+        }
+        return existing;
+    }
+    
+    /**
+     * Drop every cached entry
+     */
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < WRITE_STRIPES; stripe++) {
+            stripeLocks[stripe].lock();
+            try {
+                lastWriteByStripe[stripe] = writeSequence.incrementAndGet();
+            } finally {
+                stripeLocks[stripe].unlock();
+            }
+        }
+        byId.clear();
+        idByDeviceId.clear();
+    }
+    
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    public long getEvictionCount() {
+        return byId.getEvictionCount();
+    }
+    
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+    
+    public int size() {
+        return byId.size();
+    }
+    
+    private void cache(SensorDevice sensorDevice) {
+        if (sensorDevice == null || sensorDevice.getId() == null) {
+            return;
+        }
+        byId.put(sensorDevice.getId(), new SensorDevice(sensorDevice));
+        if (sensorDevice.getDeviceId() != null) {
+            idByDeviceId.put(sensorDevice.getDeviceId(), sensorDevice.getId());
+        }
+    }
+    
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % WRITE_STRIPES;
+    }
+    
+    /**
+     * Record a write to an id or deviceId. Called after the write reached the delegate and before the
+     * cached entry is dropped, so a load either sees the mark or cached early enough to be dropped.
+     */
+    private void markWritten(String key) {
+        if (key == null) {
+            return;
+        }
+        int stripe = stripe(key);
+        stripeLocks[stripe].lock();
+        try {
+            lastWriteByStripe[stripe] = writeSequence.incrementAndGet();
+        } finally {
+            stripeLocks[stripe].unlock();
+        }
+    }
+    
+    /**
+     * Cache a loaded device unless its lookup key, id or deviceId was written since the load started.
+     * The check and the put happen under the stripe locks, so no write can slip in between them.
+     */
+    private void cacheIfUnwritten(SensorDevice loaded, String lookupKey, long started) {
+        int[] stripes = {stripe(lookupKey),
+                loaded.getId() != null ? stripe(loaded.getId()) : -1,
+                loaded.getDeviceId() != null ? stripe(loaded.getDeviceId()) : -1};
+        Arrays.sort(stripes);
+        int locked = 0;
+        try {
+            boolean written = false;
+            for (; locked < stripes.length; locked++) {
+                int stripe = stripes[locked];
+                if (stripe >= 0 && (locked == 0 || stripe != stripes[locked - 1])) {
+                    stripeLocks[stripe].lock();
+                    written |= lastWriteByStripe[stripe] > started;
+                }
+            }
+            if (!written) {
+                cache(loaded);
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                int stripe = stripes[i];
+                if (stripe >= 0 && (i == 0 || stripe != stripes[i - 1])) {
+                    stripeLocks[stripe].unlock();
+                }
+            }
+        }
+    }
+    
+    private void invalidate(String id) {
+        if (id == null) {
+            return;
+        }
+        markWritten(id);
+        SensorDevice removed = byId.remove(id);
+        if (removed != null && removed.getDeviceId() != null) {
+            markWritten(removed.getDeviceId());
+            idByDeviceId.remove(removed.getDeviceId(), id);
+        }
+    }
+    
+    private void invalidateByDeviceId(String deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        markWritten(deviceId);
+        String id = idByDeviceId.remove(deviceId);
+        if (id != null) {
+            markWritten(id);
+            byId.remove(id);
+        }
+    }
+}
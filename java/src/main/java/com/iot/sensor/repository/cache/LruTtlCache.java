@@ -0,0 +1,152 @@
+package com.iot.sensor.repository.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded concurrent cache with LRU and time-to-live eviction.
+ * Keys are spread over independently locked segments, each an access-ordered LinkedHashMap,
+ * so concurrent readers of different keys rarely contend on the same lock.
+ */
+public class LruTtlCache<K, V> {
+    
+    private final List<Segment<K, V>> segments;
+    private final long ttlNanos;
+    private final LongAdder evictions = new LongAdder();
+    private final BiConsumer<K, V> evictionListener;
+    
+    public LruTtlCache(int maxSize, long ttlMillis, int concurrencyLevel) {
+        this(maxSize, ttlMillis, concurrencyLevel, (key, value) -> { });
+    }
+    
+    /**
+     * @param evictionListener Called (under the segment lock) for every entry dropped by the size bound or TTL
+     */
+    public LruTtlCache(int maxSize, long ttlMillis, int concurrencyLevel, BiConsumer<K, V> evictionListener) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        int segmentCount = Math.max(1, Math.min(concurrencyLevel, maxSize));
+        this.evictionListener = evictionListener;
+        this.segments = new ArrayList<>(segmentCount);
+        int perSegment = (maxSize + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new Segment<>(perSegment, this::onEviction));
+        }
+        // TimeUnit saturates instead of overflowing; a non-positive TTL disables expiry
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Get a live entry
+     * @return the cached value, or null if absent or expired
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry<V> entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.writtenAt > ttlNanos) {
+                segment.remove(key);
+                onEviction(key, entry.value);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+    
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new CacheEntry<>(value, System.nanoTime()));
+        }
+    }
+    
+    /**
+     * Remove an entry
+     * @return the removed value (live or expired), or null if absent
+     */
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry<V> entry = segment.remove(key);
+            return entry != null ? entry.value : null;
+        }
+    }
+    
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Number of entries dropped because of the size bound or the TTL
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    private void onEviction(K key, V value) {
+        evictions.increment();
+        evictionListener.accept(key, value);
+    }
+    
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get((h & 0x7fffffff) % segments.size());
+    }
+    
+    private static final class CacheEntry<V> {
+        final V value;
+        final long writtenAt;
+        
+        CacheEntry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+    
+    private static final class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+        // Never serialized; LinkedHashMap is Serializable, so the compiler asks for one
+        private static final long serialVersionUID = 1L;
+        
+        private final int capacity;
+        private final transient BiConsumer<K, V> onEviction;
+        
+        Segment(int capacity, BiConsumer<K, V> onEviction) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.onEviction = onEviction;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+            if (size() > capacity) {
+                onEviction.accept(eldest.getKey(), eldest.getValue().value);
+                return true;
+            }
+            return false;
+        }
+    }
+}
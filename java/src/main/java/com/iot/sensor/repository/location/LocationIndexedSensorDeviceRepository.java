@@ -0,0 +1,86 @@
+package com.iot.sensor.repository.location;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.LocationPath;
+import com.iot.sensor.repository.MirroringSensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator that keeps the fleet in a prefix tree over the location hierarchy
+ * ("Building A" > "Floor 2" > "Room 201", see LocationPath), so location queries
+ * (findByLocation, findByLocationPrefix, and criteria with a location condition) plus
+ * subtree counts are answered from memory. The tree follows the fleet mirror kept by
+ * MirroringSensorDeviceRepository.
+ */
+public class LocationIndexedSensorDeviceRepository extends MirroringSensorDeviceRepository {
+    
+    // Guarded by this
+    private LocationTrie trie = new LocationTrie();
+    
+    public LocationIndexedSensorDeviceRepository(ISensorDeviceRepository delegate) {
+        super(delegate);
+        rebuild();
+    }
+    
+    /**
+     * Number of devices at a location or anywhere below it. Counts follow the parsed hierarchy, so
+     * unlike findByLocationPrefix they include stored locations with non-canonical spacing
+     * ("Building A,Room 101")
+     * @param locationPrefix The location, e.g. "Building A"; null or blank counts the whole fleet
+     */
+    public synchronized int countByLocationPrefix(String locationPrefix) {
+        return trie.count(LocationPath.parse(locationPrefix));
+    }
+    
+    /**
+     * Device count of each location directly below a location, e.g. the floors of "Building A"
+     * @param locationPrefix The parent location; null or blank for the top level
+     * @return Count per child segment, ordered by segment
+     */
+    public synchronized Map<String, Integer> countByChildLocation(String locationPrefix) {
+        return trie.childCounts(LocationPath.parse(locationPrefix));
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        if (criteria.getDeviceId() != null
+                || (criteria.getLocation() == null && criteria.getLocationPrefix() == null)) {
+            return delegate.findByCriteria(criteria);
+        }
+        List<SensorDevice> matches = new ArrayList<>();
+        synchronized (this) {
+            // Parsing ignores separator spacing, so matches() still applies the exact string conditions
+            List<SensorDevice> candidates = criteria.getLocation() != null
+                    ? trie.devicesAt(LocationPath.parse(criteria.getLocation()))
+                    : trie.devicesWithin(LocationPath.parse(criteria.getLocationPrefix()));
+            for (SensorDevice device : candidates) {
+                if (criteria.matches(device)) {
+                    matches.add(new SensorDevice(device));
+                }
+            }
+        }
+        // Each tree node contributes an already sorted run
+        matches.sort(LocationTrie.ORDER);
+        return matches;
+    }
+    
+    @Override
+    protected void clearIndex() {
+        trie = new LocationTrie();
+    }
+    
+    @Override
+    protected void addToIndex(SensorDevice sensorDevice) {
+        trie.add(sensorDevice);
+    }
+    
+    @Override
+    protected void removeFromIndex(SensorDevice sensorDevice) {
+        trie.remove(sensorDevice);
+    }
+}
@@ -0,0 +1,127 @@
+package com.iot.sensor.repository.location;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.LocationPath;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Prefix tree over the segments of device locations. Every node keeps the devices stored at
+ * exactly its location and the number of devices in its subtree, so a subtree count costs one
+ * walk down the path and a listing touches only the matching devices. Devices are kept in
+ * ORDER within a node, so a listing is a handful of sorted runs that merge cheaply.
+ * Not thread-safe; the owning repository serializes access.
+ */
+final class LocationTrie {
+    
+    /**
+     * Device name (nulls last), then ID; IDs are unique, so no two stored devices compare equal
+     */
+    static final Comparator<SensorDevice> ORDER =
+            Comparator.comparing(SensorDevice::getDeviceName, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                    .thenComparing(SensorDevice::getId);
+    
+    private static final class Node {
+        final Node parent;
+        final String segment;
+        final TreeMap<String, Node> children = new TreeMap<>();
+        final NavigableSet<SensorDevice> devices = new TreeSet<>(ORDER);
+        int subtreeSize;
+        
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+    }
+    
+    private final Node root = new Node(null, null);
+    
+    void add(SensorDevice device) {
+        LocationPath path = LocationPath.parse(device.getLocation());
+        Node node = root;
+        node.subtreeSize++;
+        for (int i = 0; i < path.depth(); i++) {
+            Node parent = node;
+            node = parent.children.computeIfAbsent(path.segment(i), segment -> new Node(parent, segment));
+            node.subtreeSize++;
+        }
+        node.devices.add(device);
+    }
+    
+    /**
+     * Remove a device previously added with the same location, name and ID; empty branches are pruned
+     */
+    void remove(SensorDevice device) {
+        Node node = find(LocationPath.parse(device.getLocation()));
+        if (node == null || !node.devices.remove(device)) {
+            return;
+        }
+        for (; node != null; node = node.parent) {
+            node.subtreeSize--;
+            if (node.subtreeSize == 0 && node.parent != null) {
+                node.parent.children.remove(node.segment);
+            }
+        }
+    }
+    
+    int count(LocationPath path) {
+        Node node = find(path);
+        return node != null ? node.subtreeSize : 0;
+    }
+    
+    /**
+     * @return Device count per child segment of the path, in segment order
+     */
+    Map<String, Integer> childCounts(LocationPath path) {
+        Node node = find(path);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (node != null) {
+            for (Node child : node.children.values()) {
+                counts.put(child.segment, child.subtreeSize);
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * @return The devices stored at exactly the path (not below it)
+     */
+    List<SensorDevice> devicesAt(LocationPath path) {
+        Node node = find(path);
+        return node != null ? new ArrayList<>(node.devices) : new ArrayList<>();
+    }
+    
+    /**
+     * @return The devices at the path or anywhere below it
+     */
+    List<SensorDevice> devicesWithin(LocationPath path) {
+        Node node = find(path);
+        List<SensorDevice> devices = new ArrayList<>(node != null ? node.subtreeSize : 0);
+        if (node != null) {
+            collect(node, devices);
+        }
+        return devices;
+    }
+    
+    private static void collect(Node node, List<SensorDevice> devices) {
+        devices.addAll(node.devices);
+        for (Node child : node.children.values()) {
+            collect(child, devices);
+        }
+    }
+    
+    private Node find(LocationPath path) {
+        Node node = root;
+        for (int i = 0; i < path.depth() && node != null; i++) {
+            node = node.children.get(path.segment(i));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,674 @@
+package com.iot.sensor.repository.memory;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.IdGenerator;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.LocationPath;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import com.iot.sensor.repository.StringDictionary;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory implementation of ISensorDeviceRepository with a columnar layout, for edge
+ * gateways and large local fleets.
+ *
+ * Each attribute is a column indexed by row slot: id, deviceId and deviceName as String arrays,
+ * sensorType, status, unit and location as dictionary-encoded int arrays, lastReading as a
+ * double array and the timestamps as epoch nanoseconds in long arrays. id and deviceId have
+ * open-addressing int hash indexes. Compared with SensorDevice objects in hash maps this takes
+ * less than half the heap per device, and filters and aggregations compare ints in tight
+ * loops instead of chasing references.
+ *
+ * Writes take the write lock of a StampedLock; point reads are optimistic and only take the
+ * read lock when they raced with a write; scans run under the read lock. Results are copies.
+ * Tombstones of deleted devices are kept for the tombstone retention and then dropped, like
+ * purgeTombstones() on the database implementations.
+ */
+public class ColumnarSensorDeviceRepository implements ISensorDeviceRepository {
+    
+    public static final Duration DEFAULT_TOMBSTONE_RETENTION = Duration.ofDays(1);
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private static final byte LIVE = 1;
+    private static final byte HAS_READING = 2;
+    
+    private static final Comparator<SensorDevice> BY_DEVICE_NAME =
+            Comparator.comparing(SensorDevice::getDeviceName, Comparator.nullsLast(Comparator.naturalOrder()));
+    
+    private final StampedLock lock = new StampedLock();
+    
+    // Columns, guarded by lock; slots below highWater are live or on the free list
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] deviceIds = new String[INITIAL_CAPACITY];
+    private String[] deviceNames = new String[INITIAL_CAPACITY];
+    private int[] sensorTypes = new int[INITIAL_CAPACITY];
+    private int[] statuses = new int[INITIAL_CAPACITY];
+    private int[] units = new int[INITIAL_CAPACITY];
+    private int[] locations = new int[INITIAL_CAPACITY];
+    private double[] lastReadings = new double[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] updatedAt = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int highWater;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+    
+    private final StringDictionary sensorTypeDictionary = new StringDictionary();
+    private final StringDictionary statusDictionary = new StringDictionary();
+    private final StringDictionary unitDictionary = new StringDictionary();
+    private final StringDictionary locationDictionary = new StringDictionary();
+    
+    private final SlotIndex idIndex = new SlotIndex(slot -> ids[slot]);
+    private final SlotIndex deviceIdIndex = new SlotIndex(slot -> deviceIds[slot]);
+    
+    // Guarded by lock; in feed order, so expired tombstones are a prefix
+    private final TreeMap<Watermark, DeviceChange> tombstones = new TreeMap<>();
+    
+    // Guarded by lock; keeps modification timestamps strictly increasing even if the wall clock is not
+    private long lastTimestamp;
+    
+    private final IdGenerator idGenerator;
+    private final Duration tombstoneRetention;
+    
+    public ColumnarSensorDeviceRepository() {
+        this(IdGenerator.uuidV7());
+    }
+    
+    /**
+     * @param idGenerator Strategy for the IDs of devices created without one
+     */
+    public ColumnarSensorDeviceRepository(IdGenerator idGenerator) {
+        this(idGenerator, DEFAULT_TOMBSTONE_RETENTION);
+    }
+    
+    /**
+     * @param idGenerator Strategy for the IDs of devices created without one
+     * @param tombstoneRetention How long deletes stay in the change feed; consumers polling less often miss them
+     */
+    public ColumnarSensorDeviceRepository(IdGenerator idGenerator, Duration tombstoneRetention) {
+        if (tombstoneRetention.isNegative()) {
+            throw new IllegalArgumentException("Tombstone retention must not be negative");
+        }
+        this.idGenerator = idGenerator;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+    
+    // ---- slot management and conversion (callers hold the lock) ----
+    
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWater == ids.length) {
+            grow(ids.length * 2);
+        }
+        return highWater++;
+    }
+    
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        deviceIds = Arrays.copyOf(deviceIds, capacity);
+        deviceNames = Arrays.copyOf(deviceNames, capacity);
+        sensorTypes = Arrays.copyOf(sensorTypes, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        units = Arrays.copyOf(units, capacity);
+        locations = Arrays.copyOf(locations, capacity);
+        lastReadings = Arrays.copyOf(lastReadings, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+    
+    private void freeSlot(int slot) {
+        ids[slot] = null;
+        deviceIds[slot] = null;
+        deviceNames[slot] = null;
+        flags[slot] = 0;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+    
+    /**
+     * Write every attribute except id, deviceId and the timestamps into the slot
+     */
+    private void writeAttributes(int slot, SensorDevice sensorDevice) {
+        deviceNames[slot] = sensorDevice.getDeviceName();
+        sensorTypes[slot] = sensorTypeDictionary.encode(sensorDevice.getSensorType());
+        statuses[slot] = statusDictionary.encode(sensorDevice.getStatus());
+        units[slot] = unitDictionary.encode(sensorDevice.getUnit());
+        locations[slot] = locationDictionary.encode(sensorDevice.getLocation());
+        if (sensorDevice.getLastReading() != null) {
+            lastReadings[slot] = sensorDevice.getLastReading();
+            flags[slot] = LIVE | HAS_READING;
+        } else {
+            lastReadings[slot] = 0.0;
+            flags[slot] = LIVE;
+        }
+    }
+    
+    private SensorDevice toDevice(int slot) {
+        SensorDevice device = new SensorDevice(ids[slot], deviceNames[slot],
+                sensorTypeDictionary.decode(sensorTypes[slot]),
+                locationDictionary.decode(locations[slot]),
+                statusDictionary.decode(statuses[slot]),
+                (flags[slot] & HAS_READING) != 0 ? lastReadings[slot] : null,
+                unitDictionary.decode(units[slot]),
+                deviceIds[slot]);
+        device.setCreatedAt(toInstant(createdAt[slot]));
+        device.setUpdatedAt(toInstant(updatedAt[slot]));
+        return device;
+    }
+    
+    private boolean isLive(int slot) {
+        return (flags[slot] & LIVE) != 0;
+    }
+    
+    private static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+    
+    private static long toEpochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+    
+    private long nextTimestamp() {
+        long now = toEpochNanos(Instant.now());
+        lastTimestamp = Math.max(now, lastTimestamp + 1);
+        return lastTimestamp;
+    }
+    
+    // ---- locking helpers ----
+    
+    /**
+     * Run a short read optimistically, falling back to the read lock if a write intervened
+     */
+    private <T> T optimisticRead(Supplier<T> read) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = read.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Saw a half-applied write (e.g. an array mid-growth); retry under the lock
+            }
+        }
+        return underReadLock(read);
+    }
+    
+    private <T> T underReadLock(Supplier<T> read) {
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    private <T> T underWriteLock(Supplier<T> write) {
+        long stamp = lock.writeLock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    // ---- writes ----
+    
+    private boolean tryInsert(SensorDevice sensorDevice) {
+        String id = sensorDevice.getId() != null ? sensorDevice.getId() : idGenerator.newId();
+        if (idIndex.get(id) >= 0
+                || (sensorDevice.getDeviceId() != null && deviceIdIndex.get(sensorDevice.getDeviceId()) >= 0)) {
+            return false;
+        }
+        sensorDevice.setId(id);
+        int slot = allocateSlot();
+        ids[slot] = id;
+        deviceIds[slot] = sensorDevice.getDeviceId();
+        writeAttributes(slot, sensorDevice);
+        createdAt[slot] = nextTimestamp();
+        updatedAt[slot] = createdAt[slot];
+        idIndex.put(id, slot);
+        if (sensorDevice.getDeviceId() != null) {
+            deviceIdIndex.put(sensorDevice.getDeviceId(), slot);
+        }
+        size++;
+        return true;
+    }
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        return underWriteLock(() -> {
+            if (!tryInsert(sensorDevice)) {
+                throw new RuntimeException("Duplicate id or device_id");
+            }
+            return sensorDevice;
+        });
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        return underWriteLock(() -> {
+            BatchResult result = new BatchResult();
+            int index = 0;
+            for (SensorDevice sensorDevice : sensorDevices) {
+                if (tryInsert(sensorDevice)) {
+                    result.addSuccess(sensorDevice);
+                } else {
+                    result.addFailure(index, sensorDevice, "Duplicate id or device_id");
+                }
+                index++;
+            }
+            return result;
+        });
+    }
+    
+    private UpsertResult upsert(SensorDevice sensorDevice) {
+        if (sensorDevice.getDeviceId() == null) {
+            throw new IllegalArgumentException("Device ID is required for upsert");
+        }
+        int slot = deviceIdIndex.get(sensorDevice.getDeviceId());
+        if (slot < 0) {
+            if (!tryInsert(sensorDevice)) {
+                throw new RuntimeException("Duplicate id or device_id");
+            }
+            return new UpsertResult(sensorDevice, true);
+        }
+        sensorDevice.setId(ids[slot]);
+        writeAttributes(slot, sensorDevice);
+        updatedAt[slot] = nextTimestamp();
+        return new UpsertResult(sensorDevice, false);
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        return underWriteLock(() -> upsert(sensorDevice));
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        // Rejected before anything is written, as the database backends do
+        for (SensorDevice sensorDevice : sensorDevices) {
+            if (sensorDevice.getDeviceId() == null) {
+                throw new IllegalArgumentException("Device ID is required for upsert");
+            }
+        }
+        return underWriteLock(() -> {
+            List<UpsertResult> results = new ArrayList<>(sensorDevices.size());
+            for (SensorDevice sensorDevice : sensorDevices) {
+                try {
+                    results.add(upsert(sensorDevice));
+                } catch (RuntimeException e) {
+                    results.add(UpsertResult.failed(sensorDevice, e.getMessage()));
+                }
+            }
+            return results;
+        });
+    }
+    
+    private boolean tryUpdate(SensorDevice sensorDevice) {
+        int slot = sensorDevice.getId() != null ? idIndex.get(sensorDevice.getId()) : -1;
+        if (slot < 0) {
+            return false;
+        }
+        String newDeviceId = sensorDevice.getDeviceId();
+        int owner = newDeviceId != null ? deviceIdIndex.get(newDeviceId) : -1;
+        if (owner >= 0 && owner != slot) {
+            throw new RuntimeException("Duplicate device_id: " + newDeviceId);
+        }
+        if (deviceIds[slot] != null && !deviceIds[slot].equals(newDeviceId)) {
+            deviceIdIndex.remove(deviceIds[slot]);
+        }
+        deviceIds[slot] = newDeviceId;
+        if (newDeviceId != null && owner < 0) {
+            deviceIdIndex.put(newDeviceId, slot);
+        }
+        writeAttributes(slot, sensorDevice);
+        updatedAt[slot] = nextTimestamp();
+        return true;
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        return underWriteLock(() -> {
+            if (!tryUpdate(sensorDevice)) {
+                throw new RuntimeException("Sensor device not found for update");
+            }
+            return sensorDevice;
+        });
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        return underWriteLock(() -> {
+            BatchResult result = new BatchResult();
+            int index = 0;
+            for (SensorDevice sensorDevice : sensorDevices) {
+                if (sensorDevice.getId() == null) {
+                    result.addFailure(index, sensorDevice, "Sensor device ID is required for update");
+                } else {
+                    try {
+                        if (tryUpdate(sensorDevice)) {
+                            result.addSuccess(sensorDevice);
+                        } else {
+                            result.addFailure(index, sensorDevice, "Sensor device not found for update");
+                        }
+                    } catch (RuntimeException e) {
+                        result.addFailure(index, sensorDevice, e.getMessage());
+                    }
+                }
+                index++;
+            }
+            return result;
+        });
+    }
+    
+    private boolean setReading(String deviceId, double lastReading) {
+        int slot = deviceIdIndex.get(deviceId);
+        if (slot < 0) {
+            return false;
+        }
+        lastReadings[slot] = lastReading;
+        flags[slot] |= HAS_READING;
+        updatedAt[slot] = nextTimestamp();
+        return true;
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        return underWriteLock(() -> setReading(deviceId, lastReading));
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        return underWriteLock(() -> {
+            int updated = 0;
+            for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+                if (setReading(entry.getKey(), entry.getValue())) {
+                    updated++;
+                }
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        return underWriteLock(() -> {
+            int slot = deviceIdIndex.get(deviceId);
+            if (slot < 0) {
+                return false;
+            }
+            statuses[slot] = statusDictionary.encode(status);
+            updatedAt[slot] = nextTimestamp();
+            return true;
+        });
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        return underWriteLock(() -> {
+            int slot = idIndex.get(id);
+            if (slot < 0) {
+                return false;
+            }
+            String deviceId = deviceIds[slot];
+            // Indexes first: removal reads the keys from the columns
+            idIndex.remove(id);
+            if (deviceId != null) {
+                deviceIdIndex.remove(deviceId);
+            }
+            freeSlot(slot);
+            size--;
+            DeviceChange tombstone = DeviceChange.deleted(id, deviceId, toInstant(nextTimestamp()));
+            tombstones.put(tombstone.toWatermark(), tombstone);
+            purgeTombstonesBefore(tombstone.getModifiedAt().minus(tombstoneRetention));
+            return true;
+        });
+    }
+    
+    /**
+     * Delete tombstones older than the given time. Consumers whose watermark is older
+     * than that will miss those deletes and should resynchronize from Watermark.initial().
+     * @return Number of tombstones removed
+     */
+    public int purgeTombstones(Instant olderThan) {
+        return underWriteLock(() -> purgeTombstonesBefore(olderThan));
+    }
+    
+    private int purgeTombstonesBefore(Instant olderThan) {
+        Map<Watermark, DeviceChange> expired = tombstones.headMap(new Watermark(olderThan, ""));
+        int purged = expired.size();
+        expired.clear();
+        return purged;
+    }
+    
+    // ---- point reads ----
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        return optimisticRead(() -> {
+            int slot = idIndex.get(id);
+            return slot >= 0 ? Optional.of(toDevice(slot)) : Optional.<SensorDevice>empty();
+        });
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        return optimisticRead(() -> {
+            int slot = deviceIdIndex.get(deviceId);
+            return slot >= 0 ? Optional.of(toDevice(slot)) : Optional.<SensorDevice>empty();
+        });
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        return optimisticRead(() -> idIndex.get(id) >= 0);
+    }
+    
+    // ---- scans ----
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        if (criteria.getDeviceId() != null) {
+            // Mutable like every other result list, callers may sort or add to it
+            List<SensorDevice> matches = new ArrayList<>(1);
+            findByDeviceId(criteria.getDeviceId()).filter(criteria::matches).ifPresent(matches::add);
+            return matches;
+        }
+        List<SensorDevice> devices = underReadLock(() -> {
+            // Compare dictionary codes; a value that was never stored cannot match
+            int sensorType = criteria.getSensorType() != null ? sensorTypeDictionary.lookup(criteria.getSensorType()) : 0;
+            int status = criteria.getStatus() != null ? statusDictionary.lookup(criteria.getStatus()) : 0;
+            int location = criteria.getLocation() != null ? locationDictionary.lookup(criteria.getLocation()) : 0;
+            String prefix = criteria.getLocationPrefix();
+            boolean[] inSubtree = prefix != null
+                    ? locationDictionary.codesMatching(value -> LocationPath.isWithin(value, prefix))
+                    : null;
+            List<SensorDevice> matches = new ArrayList<>();
+            if (sensorType < 0 || status < 0 || location < 0) {
+                return matches;
+            }
+            for (int slot = 0; slot < highWater; slot++) {
+                if (isLive(slot)
+                        && (criteria.getSensorType() == null || sensorTypes[slot] == sensorType)
+                        && (criteria.getStatus() == null || statuses[slot] == status)
+                        && (criteria.getLocation() == null || locations[slot] == location)
+                        && (inSubtree == null || inSubtree[locations[slot]])) {
+                    matches.add(toDevice(slot));
+                }
+            }
+            return matches;
+        });
+        devices.sort(BY_DEVICE_NAME);
+        return devices;
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return underReadLock(() -> {
+            int[] codes;
+            StringDictionary dictionary;
+            switch (groupBy) {
+                case SENSOR_TYPE:
+                    codes = sensorTypes;
+                    dictionary = sensorTypeDictionary;
+                    break;
+                case LOCATION:
+                    codes = locations;
+                    dictionary = locationDictionary;
+                    break;
+                case STATUS:
+                    codes = statuses;
+                    dictionary = statusDictionary;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported grouping: " + groupBy);
+            }
+            
+            // One accumulator slot per dictionary code
+            int groups = dictionary.size();
+            long[] count = new long[groups];
+            long[] readingCount = new long[groups];
+            double[] min = new double[groups];
+            double[] max = new double[groups];
+            double[] sum = new double[groups];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (int slot = 0; slot < highWater; slot++) {
+                byte flag = flags[slot];
+                if ((flag & LIVE) != 0) {
+                    int code = codes[slot];
+                    count[code]++;
+                    if ((flag & HAS_READING) != 0) {
+                        double reading = lastReadings[slot];
+                        readingCount[code]++;
+                        min[code] = Math.min(min[code], reading);
+                        max[code] = Math.max(max[code], reading);
+                        sum[code] += reading;
+                    }
+                }
+            }
+            
+            List<GroupStatistics> statistics = new ArrayList<>();
+            for (int code = 0; code < groups; code++) {
+                if (count[code] > 0) {
+                    boolean hasReadings = readingCount[code] > 0;
+                    statistics.add(new GroupStatistics(dictionary.decode(code), count[code], readingCount[code],
+                            hasReadings ? min[code] : null, hasReadings ? max[code] : null, sum[code]));
+                }
+            }
+            statistics.sort(Comparator.comparing(GroupStatistics::getGroup, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return statistics;
+        });
+    }
+    
+    private List<SensorDevice> copyAll() {
+        return underReadLock(() -> {
+            List<SensorDevice> devices = new ArrayList<>(size);
+            for (int slot = 0; slot < highWater; slot++) {
+                if (isLive(slot)) {
+                    devices.add(toDevice(slot));
+                }
+            }
+            return devices;
+        });
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        List<SensorDevice> devices = copyAll();
+        devices.sort(BY_DEVICE_NAME);
+        return devices;
+    }
+    
+    /**
+     * Streams a copy of the fleet taken under the read lock
+     */
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        return copyAll().stream();
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return underReadLock(() -> {
+            // Keep the limit smallest IDs after afterId; the head is the largest of them
+            PriorityQueue<Integer> page = new PriorityQueue<>(Math.max(1, limit),
+                    (a, b) -> ids[b].compareTo(ids[a]));
+            for (int slot = 0; slot < highWater; slot++) {
+                if (isLive(slot) && (afterId == null || ids[slot].compareTo(afterId) > 0)) {
+                    if (page.size() < limit) {
+                        page.add(slot);
+                    } else if (limit > 0 && ids[slot].compareTo(ids[page.peek()]) < 0) {
+                        page.poll();
+                        page.add(slot);
+                    }
+                }
+            }
+            List<SensorDevice> devices = new ArrayList<>(page.size());
+            for (int slot : page) {
+                devices.add(toDevice(slot));
+            }
+            devices.sort(Comparator.comparing(SensorDevice::getId));
+            return devices;
+        });
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        long sinceNanos = toEpochNanos(since.getTimestamp());
+        return underReadLock(() -> {
+            // Select slots on the primitive columns and only materialize the first limit + 1
+            List<Integer> modified = new ArrayList<>();
+            for (int slot = 0; slot < highWater; slot++) {
+                if (isLive(slot) && (updatedAt[slot] > sinceNanos
+                        || (updatedAt[slot] == sinceNanos && ids[slot].compareTo(since.getId()) > 0))) {
+                    modified.add(slot);
+                }
+            }
+            List<DeviceChange> upserted = modified.stream()
+                    .sorted(Comparator.<Integer>comparingLong(slot -> updatedAt[slot]).thenComparing(slot -> ids[slot]))
+                    .limit(limit + 1L)
+                    .map(slot -> DeviceChange.upserted(toDevice(slot)))
+                    .collect(Collectors.toList());
+            List<DeviceChange> deleted = tombstones.tailMap(since, false).values().stream()
+                    .limit(limit + 1L)
+                    .collect(Collectors.toList());
+            return ChangeBatch.merge(upserted, deleted, since, limit);
+        });
+    }
+    
+    public int size() {
+        return optimisticRead(() -> size);
+    }
+}
@@ -0,0 +1,105 @@
+package com.iot.sensor.repository.memory;
+
+import java.util.function.IntFunction;
+
+/**
+ * Unique hash index from a string key to a row slot, as an open-addressing int table with
+ * linear probing. The keys are not stored: each entry is slot + 1 (0 is empty) and keys are
+ * compared through the key column, so an entry costs 4 bytes at a load factor of at most 0.5.
+ * Removal shifts the following entries back instead of leaving tombstones.
+ * Writes must be serialized by the caller and must remove a key while its column still holds it.
+ */
+final class SlotIndex {
+    
+    private final IntFunction<String> keyOfSlot;
+    private int[] table = new int[16];
+    private int size;
+    
+    SlotIndex(IntFunction<String> keyOfSlot) {
+        this.keyOfSlot = keyOfSlot;
+    }
+    
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * @return The slot of the key, or -1
+     */
+    int get(String key) {
+        int[] entries = table;
+        int mask = entries.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int entry = entries[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (key.equals(keyOfSlot.apply(entry - 1))) {
+                return entry - 1;
+            }
+        }
+    }
+    
+    void put(String key, int slot) {
+        if ((size + 1) * 2 > table.length) {
+            resize(table.length * 2);
+        }
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (table[i] != 0) {
+            if (key.equals(keyOfSlot.apply(table[i] - 1))) {
+                table[i] = slot + 1;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+        size++;
+    }
+    
+    void remove(String key) {
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            int entry = table[i];
+            if (entry == 0) {
+                return;
+            }
+            if (key.equals(keyOfSlot.apply(entry - 1))) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        
+        // Shift back every following entry of the probe run that may not sit after the hole
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keyOfSlot.apply(table[j] - 1)) & mask;
+            boolean homeInRange = hole <= j ? (home > hole && home <= j) : (home > hole || home <= j);
+            if (!homeInRange) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+        size--;
+    }
+    
+    private void resize(int capacity) {
+        int[] old = table;
+        int[] entries = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int i = hash(keyOfSlot.apply(entry - 1)) & mask;
+                while (entries[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                entries[i] = entry;
+            }
+        }
+        // Published last, so an optimistic reader sees either the complete old or new table
+        table = entries;
+    }
+}
@@ -0,0 +1,244 @@
+package com.iot.sensor.repository.metrics;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Decorator that measures every repository operation.
+ * Per operation it counts calls, failures (any exception) and slow calls, and records the
+ * latency in a lock-free histogram; calls slower than the threshold are also logged.
+ * Create one instance per backend; the backend name labels the metrics, the MBeans
+ * and the text snapshot. For streamAll() only opening the stream is timed.
+ */
+public class InstrumentedSensorDeviceRepository implements ISensorDeviceRepository {
+    
+    private static final Logger LOGGER = Logger.getLogger(InstrumentedSensorDeviceRepository.class.getName());
+    
+    private final ISensorDeviceRepository delegate;
+    private final String backend;
+    private final long slowThresholdNanos;
+    private final OperationMetrics[] metrics;
+    private final List<ObjectName> registeredMBeans = new ArrayList<>();
+    
+    /**
+     * @param delegate The repository to measure
+     * @param backend Backend label, e.g. "POSTGRESQL"
+     * @param slowThresholdMillis Calls taking longer than this are logged as slow
+     */
+    public InstrumentedSensorDeviceRepository(ISensorDeviceRepository delegate, String backend,
+                                              long slowThresholdMillis) {
+        this.delegate = delegate;
+        this.backend = backend;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        RepositoryOperation[] operations = RepositoryOperation.values();
+        this.metrics = new OperationMetrics[operations.length];
+        for (RepositoryOperation operation : operations) {
+            metrics[operation.ordinal()] = new OperationMetrics(backend, operation);
+        }
+    }
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        return timed(RepositoryOperation.CREATE, () -> delegate.create(sensorDevice));
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        return timed(RepositoryOperation.CREATE_ALL, () -> delegate.createAll(sensorDevices));
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        return timed(RepositoryOperation.UPSERT_BY_DEVICE_ID, () -> delegate.upsertByDeviceId(sensorDevice));
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        return timed(RepositoryOperation.UPSERT_ALL_BY_DEVICE_ID, () -> delegate.upsertAllByDeviceId(sensorDevices));
+    }
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        return timed(RepositoryOperation.FIND_BY_ID, () -> delegate.findById(id));
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        return timed(RepositoryOperation.FIND_BY_DEVICE_ID, () -> delegate.findByDeviceId(deviceId));
+    }
+    
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        return timed(RepositoryOperation.FIND_LAST_READINGS, () -> delegate.findLastReadings(deviceIds));
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        return timed(RepositoryOperation.FIND_BY_CRITERIA, () -> delegate.findByCriteria(criteria));
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return timed(RepositoryOperation.AGGREGATE_BY, () -> delegate.aggregateBy(groupBy));
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return timed(RepositoryOperation.FIND_ALL, delegate::findAll);
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        return timed(RepositoryOperation.STREAM_ALL, delegate::streamAll);
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return timed(RepositoryOperation.FIND_PAGE, () -> delegate.findPage(afterId, limit));
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        return timed(RepositoryOperation.FIND_MODIFIED_SINCE, () -> delegate.findModifiedSince(since, limit));
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        return timed(RepositoryOperation.UPDATE, () -> delegate.update(sensorDevice));
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        return timed(RepositoryOperation.UPDATE_ALL, () -> delegate.updateAll(sensorDevices));
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        return timed(RepositoryOperation.UPDATE_READING, () -> delegate.updateReading(deviceId, lastReading));
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        return timed(RepositoryOperation.UPDATE_READINGS, () -> delegate.updateReadings(readingsByDeviceId));
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        return timed(RepositoryOperation.UPDATE_STATUS, () -> delegate.updateStatus(deviceId, status));
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        return timed(RepositoryOperation.DELETE_BY_ID, () -> delegate.deleteById(id));
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        return timed(RepositoryOperation.EXISTS_BY_ID, () -> delegate.existsById(id));
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        return timed(RepositoryOperation.FIND_EXISTING_IDS, () -> delegate.findExistingIds(ids));
+    }
+    
+    private <T> T timed(RepositoryOperation operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            boolean slow = elapsed > slowThresholdNanos;
+            metrics[operation.ordinal()].record(elapsed, failed, slow);
+            if (slow) {
+                LOGGER.log(Level.WARNING, "Slow {0} on {1}: {2} ms{3}", new Object[]{
+                        operation, backend, TimeUnit.NANOSECONDS.toMillis(elapsed), failed ? " (failed)" : ""});
+            }
+        }
+    }
+    
+    public String getBackend() {
+        return backend;
+    }
+    
+    public OperationMetrics getMetrics(RepositoryOperation operation) {
+        return metrics[operation.ordinal()];
+    }
+    
+    /**
+     * Register one MBean per operation under
+     * com.iot.sensor:type=RepositoryMetrics,backend=...,operation=...
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (OperationMetrics operationMetrics : metrics) {
+                ObjectName name = new ObjectName("com.iot.sensor:type=RepositoryMetrics,backend="
+                        + ObjectName.quote(backend) + ",operation=" + operationMetrics.getOperation());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(operationMetrics, name);
+                    registeredMBeans.add(name);
+                }
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("Error registering repository metrics MBeans", e);
+        }
+    }
+    
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredMBeans) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "MBean already unregistered: " + name, e);
+            }
+        }
+        registeredMBeans.clear();
+    }
+    
+    /**
+     * Human-readable table of all operations that were called at least once; latencies in microseconds
+     */
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Repository metrics (backend=").append(backend).append(")\n");
+        sb.append(String.format("%-18s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "slow", "mean", "p50", "p99", "p999", "max"));
+        for (OperationMetrics m : metrics) {
+            if (m.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-18s %10d %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    m.getOperation(), m.getCount(), m.getErrorCount(), m.getSlowCount(), m.getMeanMicros(),
+                    m.getP50Micros(), m.getP99Micros(), m.getP999Micros(), m.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+}
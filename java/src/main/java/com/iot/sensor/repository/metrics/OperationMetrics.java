@@ -0,0 +1,84 @@
+package com.iot.sensor.repository.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call, error and slow-call counters plus a latency histogram for one repository operation
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    
+    private final String backend;
+    private final RepositoryOperation operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    
+    OperationMetrics(String backend, RepositoryOperation operation) {
+        this.backend = backend;
+        this.operation = operation;
+    }
+    
+    void record(long nanos, boolean failed, boolean wasSlow) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+        if (wasSlow) {
+            slow.increment();
+        }
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    @Override
+    public String getBackend() {
+        return backend;
+    }
+    
+    @Override
+    public String getOperation() {
+        return operation.name();
+    }
+    
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+    
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+    
+    @Override
+    public long getSlowCount() {
+        return slow.sum();
+    }
+    
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1000.0;
+    }
+    
+    @Override
+    public double getP50Micros() {
+        return latency.getValueAtQuantile(0.50) / 1000.0;
+    }
+    
+    @Override
+    public double getP99Micros() {
+        return latency.getValueAtQuantile(0.99) / 1000.0;
+    }
+    
+    @Override
+    public double getP999Micros() {
+        return latency.getValueAtQuantile(0.999) / 1000.0;
+    }
+    
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / 1000.0;
+    }
+}
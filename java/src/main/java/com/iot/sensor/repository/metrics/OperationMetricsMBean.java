@@ -0,0 +1,28 @@
+package com.iot.sensor.repository.metrics;
+
+/**
+ * JMX view of the metrics of one repository operation on one backend.
+ * Latencies are in microseconds.
+ */
+public interface OperationMetricsMBean {
+    
+    String getBackend();
+    
+    String getOperation();
+    
+    long getCount();
+    
+    long getErrorCount();
+    
+    long getSlowCount();
+    
+    double getMeanMicros();
+    
+    double getP50Micros();
+    
+    double getP99Micros();
+    
+    double getP999Micros();
+    
+    double getMaxMicros();
+}
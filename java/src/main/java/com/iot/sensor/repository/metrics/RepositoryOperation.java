@@ -0,0 +1,28 @@
+package com.iot.sensor.repository.metrics;
+
+/**
+ * Operations of ISensorDeviceRepository that are measured separately
+ */
+public enum RepositoryOperation {
+    CREATE,
+    CREATE_ALL,
+    UPSERT_BY_DEVICE_ID,
+    UPSERT_ALL_BY_DEVICE_ID,
+    FIND_BY_ID,
+    FIND_BY_DEVICE_ID,
+    FIND_LAST_READINGS,
+    FIND_BY_CRITERIA,
+    AGGREGATE_BY,
+    FIND_ALL,
+    STREAM_ALL,
+    FIND_PAGE,
+    FIND_MODIFIED_SINCE,
+    UPDATE,
+    UPDATE_ALL,
+    UPDATE_READING,
+    UPDATE_READINGS,
+    UPDATE_STATUS,
+    DELETE_BY_ID,
+    EXISTS_BY_ID,
+    FIND_EXISTING_IDS
+}
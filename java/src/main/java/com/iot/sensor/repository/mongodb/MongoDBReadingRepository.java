@@ -0,0 +1,113 @@
+package com.iot.sensor.repository.mongodb;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+import com.iot.sensor.repository.IReadingRepository;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * MongoDB implementation of IReadingRepository backed by the sensor_readings collection.
+ */
+public class MongoDBReadingRepository implements IReadingRepository {
+    
+    private final MongoCollection<Document> collection;
+    
+    public MongoDBReadingRepository(MongoDatabase database) {
+        this.collection = database.getCollection("sensor_readings");
+    }
+    
+    @Override
+    public void append(String deviceId, long timestamp, double value) {
+        collection.insertOne(new Document()
+                .append("deviceId", deviceId)
+                .append("ts", new Date(timestamp))
+                .append("value", value));
+    }
+    
+    @Override
+    public void appendAll(Collection<ReadingSeries> samples) {
+        List<Document> documents = new ArrayList<>();
+        for (ReadingSeries series : samples) {
+            for (int i = 0; i < series.size(); i++) {
+                documents.add(new Document()
+                        .append("deviceId", series.getDeviceId())
+                        .append("ts", new Date(series.getTimestamp(i)))
+                        .append("value", series.getValue(i)));
+            }
+        }
+        if (!documents.isEmpty()) {
+            // Unordered: one failing document does not stop the rest of the batch
+            collection.insertMany(documents, new InsertManyOptions().ordered(false));
+        }
+    }
+    
+    @Override
+    public ReadingSeries findRange(String deviceId, long fromInclusive, long toExclusive) {
+        long[] timestamps = new long[64];
+        double[] values = new double[64];
+        int size = 0;
+        
+        for (Document doc : collection.find(rangeFilter(deviceId, fromInclusive, toExclusive))
+                .projection(Projections.fields(Projections.include("ts", "value"), Projections.excludeId()))
+                .sort(Sorts.ascending("ts"))) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = doc.getDate("ts").getTime();
+            values[size] = doc.getDouble("value");
+            size++;
+        }
+        
+        return new ReadingSeries(deviceId, timestamps, values, size);
+    }
+    
+    @Override
+    public ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis) {
+        // bucket = floor(epochMillis / bucketMillis), computed server-side
+        Document epochMillis = new Document("$toLong", "$ts");
+        Document bucket = new Document("$floor",
+                new Document("$divide", Arrays.asList(epochMillis, bucketMillis)));
+        
+        ReadingBuckets.Builder builder = new ReadingBuckets.Builder(deviceId, bucketMillis);
+        for (Document doc : collection.aggregate(Arrays.asList(
+                Aggregates.match(rangeFilter(deviceId, fromInclusive, toExclusive)),
+                Aggregates.group(bucket,
+                        Accumulators.min("min", "$value"),
+                        Accumulators.max("max", "$value"),
+                        Accumulators.sum("sum", "$value"),
+                        Accumulators.sum("count", 1)),
+                Aggregates.sort(Sorts.ascending("_id"))))) {
+            long bucketIndex = ((Number) doc.get("_id")).longValue();
+            builder.addBucket(bucketIndex * bucketMillis,
+                    ((Number) doc.get("min")).doubleValue(),
+                    ((Number) doc.get("max")).doubleValue(),
+                    ((Number) doc.get("sum")).doubleValue(),
+                    ((Number) doc.get("count")).longValue());
+        }
+        
+        return builder.build();
+    }
+    
+    private Bson rangeFilter(String deviceId, long fromInclusive, long toExclusive) {
+        return Filters.and(
+                Filters.eq("deviceId", deviceId),
+                Filters.gte("ts", new Date(fromInclusive)),
+                Filters.lt("ts", new Date(toExclusive)));
+    }
+}
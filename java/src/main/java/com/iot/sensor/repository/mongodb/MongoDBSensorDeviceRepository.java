@@ -1,88 +1,493 @@
 package com.iot.sensor.repository.mongodb;
 
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.GroupStatistics;
 import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.IdGenerator;
 import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.LocationPath;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonType;
+import org.bson.BsonValue;
 import org.bson.Document;
-import org.bson.types.ObjectId;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * MongoDB implementation of ISensorDeviceRepository.
  * Performs CRUD operations on MongoDB database.
+ * Whole devices are inserted and read through SensorDeviceCodec, straight between
+ * SensorDevice and BSON; partial updates, projections and aggregations use Documents.
+ * New devices get binary UUID _ids from the IdGenerator; documents with ObjectId _ids
+ * from before keep working for every operation (see SensorDeviceCodec.toBsonId).
+ * Change-feed timestamps come from the server: updates and tombstones use $currentDate, and
+ * inserts, which cannot, are stamped from MongoServerClock's estimate of the server clock.
  */
 public class MongoDBSensorDeviceRepository implements ISensorDeviceRepository {
     
+    // Documents fetched per getMore round trip when streaming
+    private static final int STREAM_BATCH_SIZE = 500;
+    
     private final MongoCollection<Document> collection;
+    private final MongoCollection<SensorDevice> deviceCollection;
+    private final MongoCollection<Document> tombstones;
+    private final IdGenerator idGenerator;
+    private final MongoServerClock serverClock;
     
     public MongoDBSensorDeviceRepository(MongoDatabase database) {
+        this(database, IdGenerator.uuidV7());
+    }
+    
+    /**
+     * @param idGenerator Strategy for the IDs of new devices
+     */
+    public MongoDBSensorDeviceRepository(MongoDatabase database, IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        this.serverClock = new MongoServerClock(database);
         this.collection = database.getCollection("sensor_devices");
+        CodecRegistry codecRegistry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new SensorDeviceCodec(idGenerator, serverClock)), database.getCodecRegistry());
+        this.deviceCollection = collection.withDocumentClass(SensorDevice.class).withCodecRegistry(codecRegistry);
+        this.tombstones = database.getCollection("sensor_device_tombstones");
     }
     
     @Override
     public SensorDevice create(SensorDevice sensorDevice) {
-        Document doc = new Document()
-                .append("deviceName", sensorDevice.getDeviceName())
-                .append("sensorType", sensorDevice.getSensorType())
-                .append("location", sensorDevice.getLocation())
-                .append("status", sensorDevice.getStatus())
-                .append("lastReading", sensorDevice.getLastReading() != null ? sensorDevice.getLastReading() : 0.0)
-                .append("unit", sensorDevice.getUnit())
-                .append("deviceId", sensorDevice.getDeviceId());
-        
-        collection.insertOne(doc);
-        
-        String id = doc.getObjectId("_id").toString();
-        sensorDevice.setId(id);
+        // The codec assigns a new ID to the device unless it already has a valid one
+        deviceCollection.insertOne(sensorDevice);
         return sensorDevice;
     }
     
     @Override
-    public Optional<SensorDevice> findById(String id) {
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        BatchResult result = new BatchResult();
+        if (devices.isEmpty()) {
+            return result;
+        }
+        
+        // Inserting assigns IDs; failed devices get their previous ID back
+        String[] previousIds = new String[devices.size()];
+        for (int i = 0; i < devices.size(); i++) {
+            previousIds[i] = devices.get(i).getId();
+        }
+        
+        // Unordered so that a duplicate deviceId only fails its own document
+        Map<Integer, String> errors = new HashMap<>();
         try {
-            Document doc = collection.find(Filters.eq("_id", new ObjectId(id))).first();
-            if (doc != null) {
-                return Optional.of(mapDocumentToSensorDevice(doc));
+            deviceCollection.insertMany(devices, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                errors.put(error.getIndex(), error.getMessage());
             }
+        }
+        
+        for (int i = 0; i < devices.size(); i++) {
+            SensorDevice device = devices.get(i);
+            if (errors.containsKey(i)) {
+                device.setId(previousIds[i]);
+                result.addFailure(i, device, errors.get(i));
+            } else {
+                result.addSuccess(device);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        if (sensorDevice.getDeviceId() == null) {
+            throw new IllegalArgumentException("Device ID is required for upsert");
+        }
+        
+        // One atomic findOneAndUpdate: the pre-upsert document is null exactly when a new one was inserted
+        BsonValue newId = newBsonId(sensorDevice);
+        Bson update = Updates.combine(toUpdate(sensorDevice), Updates.setOnInsert("_id", newId),
+                Updates.setOnInsert("createdAt", new Date(serverClock.getAsLong())));
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                .upsert(true)
+                .returnDocument(ReturnDocument.BEFORE)
+                .projection(Projections.include("_id"));
+        Document before;
+        try {
+            before = collection.findOneAndUpdate(Filters.eq("deviceId", sensorDevice.getDeviceId()), update, options);
+        } catch (MongoException e) {
+            if (ErrorCategory.fromErrorCode(e.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            // E11000: a concurrent upsert inserted the deviceId first; run again, it now matches that document
+            before = collection.findOneAndUpdate(Filters.eq("deviceId", sensorDevice.getDeviceId()), update, options);
+        }
+        
+        boolean inserted = before == null;
+        sensorDevice.setId(SensorDeviceCodec.toIdString(inserted ? newId : before.get("_id")));
+        return new UpsertResult(sensorDevice, inserted);
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        if (devices.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<String, SensorDevice> lastByDeviceId = new LinkedHashMap<>();
+        for (SensorDevice device : devices) {
+            if (device.getDeviceId() == null) {
+                throw new IllegalArgumentException("Device ID is required for upsert");
+            }
+            lastByDeviceId.put(device.getDeviceId(), device);
+        }
+        
+        List<SensorDevice> unique = new ArrayList<>(lastByDeviceId.values());
+        List<BsonValue> newIds = new ArrayList<>(unique.size());
+        List<WriteModel<Document>> models = new ArrayList<>(unique.size());
+        for (SensorDevice device : unique) {
+            BsonValue newId = newBsonId(device);
+            newIds.add(newId);
+            models.add(new UpdateOneModel<>(
+                    Filters.eq("deviceId", device.getDeviceId()),
+                    Updates.combine(toUpdate(device), Updates.setOnInsert("_id", newId),
+                            Updates.setOnInsert("createdAt", new Date(serverClock.getAsLong()))),
+                    new UpdateOptions().upsert(true)));
+        }
+        
+        Set<Integer> insertedIndexes = new HashSet<>();
+        Map<Integer, String> errors = new HashMap<>();
+        List<Integer> pending = new ArrayList<>(unique.size());
+        for (int i = 0; i < unique.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<WriteModel<Document>> batch = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                batch.add(models.get(index));
+            }
+            
+            // Unordered, so one failing item does not stop the rest; indexes in the result refer to this batch
+            BulkWriteResult result;
+            List<BulkWriteError> writeErrors;
+            try {
+                result = collection.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                writeErrors = Collections.emptyList();
+            } catch (MongoBulkWriteException e) {
+                if (e.getWriteErrors().isEmpty()) {
+                    throw e;
+                }
+                result = e.getWriteResult();
+                writeErrors = e.getWriteErrors();
+            }
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                insertedIndexes.add(pending.get(upsert.getIndex()));
+            }
+            
+            List<Integer> retry = new ArrayList<>();
+            for (BulkWriteError error : writeErrors) {
+                int index = pending.get(error.getIndex());
+                if (attempt == 0 && error.getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                    // E11000: a concurrent upsert inserted the deviceId first; run again, it now matches that document
+                    retry.add(index);
+                } else {
+                    errors.put(index, error.getMessage());
+                }
+            }
+            pending = retry;
+        }
+        
+        // The bulk result only reports IDs of inserted documents; look up the updated ones in one query
+        List<String> updatedDeviceIds = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i++) {
+            if (!insertedIndexes.contains(i) && !errors.containsKey(i)) {
+                updatedDeviceIds.add(unique.get(i).getDeviceId());
+            }
+        }
+        Map<String, String> existingIds = new HashMap<>();
+        if (!updatedDeviceIds.isEmpty()) {
+            for (Document doc : collection.find(Filters.in("deviceId", updatedDeviceIds))
+                    .projection(Projections.include("_id", "deviceId"))) {
+                existingIds.put(doc.getString("deviceId"), SensorDeviceCodec.toIdString(doc.get("_id")));
+            }
+        }
+        
+        Map<String, UpsertResult> resultsByDeviceId = new HashMap<>();
+        for (int i = 0; i < unique.size(); i++) {
+            SensorDevice device = unique.get(i);
+            if (errors.containsKey(i)) {
+                resultsByDeviceId.put(device.getDeviceId(), UpsertResult.failed(device, errors.get(i)));
+                continue;
+            }
+            boolean inserted = insertedIndexes.contains(i);
+            device.setId(inserted
+                    ? SensorDeviceCodec.toIdString(newIds.get(i)) : existingIds.get(device.getDeviceId()));
+            resultsByDeviceId.put(device.getDeviceId(), new UpsertResult(device, inserted));
+        }
+        
+        List<UpsertResult> results = new ArrayList<>(devices.size());
+        for (SensorDevice device : devices) {
+            UpsertResult stored = resultsByDeviceId.get(device.getDeviceId());
+            if (stored.getSensorDevice() != device) {
+                // Superseded by a later occurrence of the same deviceId in this batch
+                if (stored.isFailed()) {
+                    stored = UpsertResult.failed(device, stored.getFailureReason());
+                } else {
+                    device.setId(stored.getSensorDevice().getId());
+                    stored = new UpsertResult(device, stored.isInserted());
+                }
+            }
+            results.add(stored);
+        }
+        return results;
+    }
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        BsonValue bsonId = SensorDeviceCodec.toBsonId(id);
+        if (bsonId == null) {
             return Optional.empty();
-        } catch (IllegalArgumentException e) {
-            return Optional.empty();
         }
+        return Optional.ofNullable(deviceCollection.find(Filters.eq("_id", bsonId)).first());
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        return Optional.ofNullable(deviceCollection.find(Filters.eq("deviceId", deviceId)).first());
+    }
+    
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Map<String, Double> readings = new HashMap<>();
+        if (deviceIds.isEmpty()) {
+            return readings;
+        }
+        
+        Bson projection = Projections.fields(Projections.include("deviceId", "lastReading"), Projections.excludeId());
+        for (Document doc : collection.find(Filters.in("deviceId", deviceIds)).projection(projection)) {
+            Number reading = (Number) doc.get("lastReading");
+            readings.put(doc.getString("deviceId"), reading != null ? reading.doubleValue() : null);
+        }
+        return readings;
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        List<Bson> filters = new ArrayList<>(4);
+        if (criteria.getDeviceId() != null) {
+            filters.add(Filters.eq("deviceId", criteria.getDeviceId()));
+        }
+        if (criteria.getSensorType() != null) {
+            filters.add(Filters.eq("sensorType", criteria.getSensorType()));
+        }
+        if (criteria.getStatus() != null) {
+            filters.add(Filters.eq("status", criteria.getStatus()));
+        }
+        if (criteria.getLocation() != null) {
+            filters.add(Filters.eq("location", criteria.getLocation()));
+        }
+        if (criteria.getLocationPrefix() != null) {
+            // Anchored, case-sensitive and free of metacharacters, so the location index is range-scanned
+            String prefix = criteria.getLocationPrefix();
+            filters.add(Filters.or(
+                    Filters.eq("location", prefix),
+                    Filters.regex("location", "^" + escapeRegex(prefix + LocationPath.SEPARATOR))));
+        }
+        
+        return deviceCollection.find(filters.isEmpty() ? new Document() : Filters.and(filters)).into(new ArrayList<>());
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        String field = "$" + groupField(groupBy);
+        // 1 for documents with a non-null lastReading, so the average ignores devices without a reading
+        Document hasReading = new Document("$cond", Arrays.asList(
+                new Document("$eq", Arrays.asList(new Document("$ifNull", Arrays.asList("$lastReading", null)), null)),
+                0, 1));
+        
+        List<GroupStatistics> statistics = new ArrayList<>();
+        for (Document doc : collection.aggregate(Arrays.asList(
+                Aggregates.group(field,
+                        Accumulators.sum("count", 1),
+                        Accumulators.sum("readingCount", hasReading),
+                        Accumulators.min("min", "$lastReading"),
+                        Accumulators.max("max", "$lastReading"),
+                        Accumulators.sum("sum", "$lastReading")),
+                Aggregates.sort(Sorts.ascending("_id"))))) {
+            long readingCount = ((Number) doc.get("readingCount")).longValue();
+            statistics.add(new GroupStatistics(doc.getString("_id"),
+                    ((Number) doc.get("count")).longValue(),
+                    readingCount,
+                    readingCount > 0 ? ((Number) doc.get("min")).doubleValue() : null,
+                    readingCount > 0 ? ((Number) doc.get("max")).doubleValue() : null,
+                    ((Number) doc.get("sum")).doubleValue()));
+        }
+        
+        return statistics;
+    }
+    
+    private static String groupField(GroupBy groupBy) {
+        switch (groupBy) {
+            case SENSOR_TYPE:
+                return "sensorType";
+            case LOCATION:
+                return "location";
+            default:
+                return "status";
+        }
+    }
+    
+    private static String escapeRegex(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
     }
     
     @Override
     public List<SensorDevice> findAll() {
-        List<SensorDevice> devices = new ArrayList<>();
+        return deviceCollection.find().into(new ArrayList<>());
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        MongoCursor<SensorDevice> cursor = deviceCollection.find().batchSize(STREAM_BATCH_SIZE).iterator();
+        Spliterator<SensorDevice> spliterator = Spliterators.spliteratorUnknownSize(
+                cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        Bson filter = new Document();
+        if (afterId != null) {
+            BsonValue after = SensorDeviceCodec.toBsonId(afterId);
+            if (after == null) {
+                return new ArrayList<>();
+            }
+            filter = idAfter(after);
+        }
+        
+        return deviceCollection.find(filter).sort(Sorts.ascending("_id")).limit(limit).into(new ArrayList<>(limit));
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        Date sinceDate = Date.from(since.getTimestamp());
+        // Null for Watermark.initial(): every ID at the watermark's timestamp is after it
+        BsonValue sinceId = SensorDeviceCodec.toBsonId(since.getId());
         
-        for (Document doc : collection.find()) {
-            devices.add(mapDocumentToSensorDevice(doc));
+        // One more than requested from each source, so the merge can tell whether more changes are waiting
+        List<DeviceChange> upserted = new ArrayList<>();
+        for (SensorDevice device : deviceCollection.find(afterWatermark("updatedAt", sinceDate, sinceId))
+                .sort(Sorts.ascending("updatedAt", "_id"))
+                .limit(limit + 1)) {
+            upserted.add(DeviceChange.upserted(device));
         }
         
-        return devices;
+        List<DeviceChange> deleted = new ArrayList<>();
+        for (Document doc : tombstones.find(afterWatermark("deletedAt", sinceDate, sinceId))
+                .sort(Sorts.ascending("deletedAt", "_id"))
+                .limit(limit + 1)) {
+            deleted.add(DeviceChange.deleted(SensorDeviceCodec.toIdString(doc.get("_id")), doc.getString("deviceId"),
+                    doc.getDate("deletedAt").toInstant()));
+        }
+        
+        return ChangeBatch.merge(upserted, deleted, since, limit);
+    }
+    
+    private static Bson afterWatermark(String timeField, Date since, BsonValue sinceId) {
+        Bson sameTime = Filters.eq(timeField, since);
+        return Filters.or(
+                Filters.gt(timeField, since),
+                sinceId == null ? sameTime : Filters.and(sameTime, idAfter(sinceId)));
+    }
+    
+    /**
+     * IDs after the given one in ascending _id order. Binary UUIDs sort before all ObjectIds, and $gt
+     * only compares values of the same BSON type, so after a UUID every ObjectId matches as well.
+     */
+    private static Bson idAfter(BsonValue id) {
+        if (id.isObjectId()) {
+            return Filters.gt("_id", id);
+        }
+        return Filters.or(Filters.gt("_id", id), Filters.type("_id", BsonType.OBJECT_ID));
+    }
+    
+    /**
+     * Delete tombstones older than the given time. Consumers whose watermark is older
+     * than that will miss those deletes and should resynchronize from Watermark.initial().
+     * @return Number of tombstones removed
+     */
+    public long purgeTombstones(Instant olderThan) {
+        DeleteResult result = tombstones.deleteMany(Filters.lt("deletedAt", Date.from(olderThan)));
+        return result.getDeletedCount();
     }
     
     @Override
     public SensorDevice update(SensorDevice sensorDevice) {
-        Document doc = collection.findOneAndUpdate(
-                Filters.eq("_id", new ObjectId(sensorDevice.getId())),
-                Updates.combine(
-                        Updates.set("deviceName", sensorDevice.getDeviceName()),
-                        Updates.set("sensorType", sensorDevice.getSensorType()),
-                        Updates.set("location", sensorDevice.getLocation()),
-                        Updates.set("status", sensorDevice.getStatus()),
-                        Updates.set("lastReading", sensorDevice.getLastReading() != null ? sensorDevice.getLastReading() : 0.0),
-                        Updates.set("unit", sensorDevice.getUnit()),
-                        Updates.set("deviceId", sensorDevice.getDeviceId())
-                )
+        BsonValue id = SensorDeviceCodec.toBsonId(sensorDevice.getId());
+        if (id == null) {
+            throw new RuntimeException("Sensor device not found for update");
+        }
+        
+        // updateOne only reports the match count instead of shipping the previous document back
+        UpdateResult result = collection.updateOne(
+                Filters.eq("_id", id),
+                toUpdate(sensorDevice)
         );
         
-        if (doc == null) {
+        if (result.getMatchedCount() == 0) {
             throw new RuntimeException("Sensor device not found for update");
         }
         
@@ -90,36 +495,174 @@ public class MongoDBSensorDeviceRepository implements ISensorDeviceRepository {
     }
     
     @Override
-    public boolean deleteById(String id) {
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        BatchResult result = new BatchResult();
+        
+        List<WriteModel<Document>> models = new ArrayList<>();
+        List<Integer> modelIndexes = new ArrayList<>();
+        Map<Integer, BsonValue> idsByIndex = new HashMap<>();
+        for (int i = 0; i < devices.size(); i++) {
+            SensorDevice device = devices.get(i);
+            BsonValue id = SensorDeviceCodec.toBsonId(device.getId());
+            if (id == null) {
+                result.addFailure(i, device, "Sensor device not found for update");
+                continue;
+            }
+            models.add(new UpdateOneModel<>(Filters.eq("_id", id), toUpdate(device)));
+            modelIndexes.add(i);
+            idsByIndex.put(i, id);
+        }
+        if (models.isEmpty()) {
+            return result;
+        }
+        
+        Map<Integer, String> errors = new HashMap<>();
+        BulkWriteResult writeResult;
         try {
-            Document result = collection.findOneAndDelete(Filters.eq("_id", new ObjectId(id)));
-            return result != null;
-        } catch (IllegalArgumentException e) {
+            writeResult = collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            writeResult = e.getWriteResult();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                errors.put(modelIndexes.get(error.getIndex()), error.getMessage());
+            }
+        }
+        
+        // The bulk result only reports a total match count, so look up which ids are missing
+        // only when some of the updates did not match a document.
+        Set<String> missingIds = new HashSet<>();
+        if (writeResult.getMatchedCount() < models.size() - errors.size()) {
+            List<BsonValue> ids = new ArrayList<>();
+            for (int index : modelIndexes) {
+                if (!errors.containsKey(index)) {
+                    ids.add(idsByIndex.get(index));
+                }
+            }
+            Set<String> existingIds = new HashSet<>();
+            for (Document doc : collection.find(Filters.in("_id", ids)).projection(Projections.include("_id"))) {
+                existingIds.add(SensorDeviceCodec.toIdString(doc.get("_id")));
+            }
+            for (BsonValue id : ids) {
+                String idString = SensorDeviceCodec.toIdString(id);
+                if (!existingIds.contains(idString)) {
+                    missingIds.add(idString);
+                }
+            }
+        }
+        
+        for (int index : modelIndexes) {
+            SensorDevice device = devices.get(index);
+            if (errors.containsKey(index)) {
+                result.addFailure(index, device, errors.get(index));
+            } else if (missingIds.contains(SensorDeviceCodec.toIdString(idsByIndex.get(index)))) {
+                result.addFailure(index, device, "Sensor device not found for update");
+            } else {
+                result.addSuccess(device);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        UpdateResult result = collection.updateOne(
+                Filters.eq("deviceId", deviceId),
+                Updates.combine(Updates.set("lastReading", lastReading), Updates.currentDate("updatedAt"))
+        );
+        return result.getMatchedCount() > 0;
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        if (readingsByDeviceId.isEmpty()) {
+            return 0;
+        }
+        
+        List<WriteModel<Document>> models = new ArrayList<>(readingsByDeviceId.size());
+        for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+            models.add(new UpdateOneModel<>(
+                    Filters.eq("deviceId", entry.getKey()),
+                    Updates.combine(Updates.set("lastReading", entry.getValue()), Updates.currentDate("updatedAt"))));
+        }
+        
+        return collection.bulkWrite(models, new BulkWriteOptions().ordered(false)).getMatchedCount();
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        UpdateResult result = collection.updateOne(
+                Filters.eq("deviceId", deviceId),
+                Updates.combine(Updates.set("status", status), Updates.currentDate("updatedAt"))
+        );
+        return result.getMatchedCount() > 0;
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        BsonValue bsonId = SensorDeviceCodec.toBsonId(id);
+        if (bsonId == null) {
+            return false;
+        }
+        Document result = collection.findOneAndDelete(Filters.eq("_id", bsonId));
+        if (result == null) {
             return false;
         }
+        // Not atomic with the delete (no multi-document transaction); the feed misses the delete if this fails
+        tombstones.updateOne(Filters.eq("_id", bsonId),
+                Updates.combine(Updates.set("deviceId", result.getString("deviceId")), Updates.currentDate("deletedAt")),
+                new UpdateOptions().upsert(true));
+        return true;
     }
     
     @Override
     public boolean existsById(String id) {
-        try {
-            Document doc = collection.find(Filters.eq("_id", new ObjectId(id))).first();
-            return doc != null;
-        } catch (IllegalArgumentException e) {
+        BsonValue bsonId = SensorDeviceCodec.toBsonId(id);
+        if (bsonId == null) {
             return false;
         }
+        return collection.find(Filters.eq("_id", bsonId)).projection(Projections.include("_id")).first() != null;
     }
     
-    private SensorDevice mapDocumentToSensorDevice(Document doc) {
-        SensorDevice device = new SensorDevice();
-        device.setId(doc.getObjectId("_id").toString());
-        device.setDeviceName(doc.getString("deviceName"));
-        device.setSensorType(doc.getString("sensorType"));
-        device.setLocation(doc.getString("location"));
-        device.setStatus(doc.getString("status"));
-        device.setLastReading(doc.getDouble("lastReading"));
-        device.setUnit(doc.getString("unit"));
-        device.setDeviceId(doc.getString("deviceId"));
-        return device;
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> existing = new HashSet<>();
+        List<BsonValue> bsonIds = new ArrayList<>();
+        for (String id : ids) {
+            BsonValue bsonId = SensorDeviceCodec.toBsonId(id);
+            if (bsonId != null) {
+                bsonIds.add(bsonId);
+            }
+        }
+        if (bsonIds.isEmpty()) {
+            return existing;
+        }
+        
+        for (Document doc : collection.find(Filters.in("_id", bsonIds)).projection(Projections.include("_id"))) {
+            existing.add(SensorDeviceCodec.toIdString(doc.get("_id")));
+        }
+        return existing;
+    }
+    
+    /**
+     * The caller's ID if it is a valid UUID or ObjectId (e.g. a device moved between shards keeps its ID),
+     * otherwise a new one from the IdGenerator
+     */
+    private BsonValue newBsonId(SensorDevice sensorDevice) {
+        BsonValue id = SensorDeviceCodec.toBsonId(sensorDevice.getId());
+        return id != null ? id : SensorDeviceCodec.toBsonId(idGenerator.newId());
+    }
+    
+    private Bson toUpdate(SensorDevice sensorDevice) {
+        return Updates.combine(
+                Updates.set("deviceName", sensorDevice.getDeviceName()),
+                Updates.set("sensorType", sensorDevice.getSensorType()),
+                Updates.set("location", sensorDevice.getLocation()),
+                Updates.set("status", sensorDevice.getStatus()),
+                // Null rather than 0.0, so aggregateBy does not count a reading that was never taken
+                Updates.set("lastReading", sensorDevice.getLastReading()),
+                Updates.set("unit", sensorDevice.getUnit()),
+                Updates.set("deviceId", sensorDevice.getDeviceId()),
+                Updates.currentDate("updatedAt")
+        );
     }
 }
-
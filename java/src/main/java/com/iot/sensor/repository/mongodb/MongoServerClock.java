@@ -0,0 +1,59 @@
+package com.iot.sensor.repository.mongodb;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Estimate of the MongoDB server's wall clock in epoch milliseconds, for the timestamps the client
+ * has to write itself ($currentDate cannot be used in an insert). The offset to the local clock is
+ * sampled from the localTime reported by the hello command, corrected by half the round trip, and
+ * refreshed every few minutes. If a sample fails the previous offset (initially zero) is kept, so
+ * timestamps fall back to the local clock instead of failing the write.
+ */
+class MongoServerClock implements LongSupplier {
+    
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    
+    private final MongoDatabase database;
+    private volatile long offsetMillis;
+    private volatile long sampledAt;
+    private volatile boolean sampled;
+    
+    MongoServerClock(MongoDatabase database) {
+        this.database = database;
+    }
+    
+    @Override
+    public long getAsLong() {
+        if (!sampled || System.nanoTime() - sampledAt > REFRESH_INTERVAL_NANOS) {
+            sample();
+        }
+        return System.currentTimeMillis() + offsetMillis;
+    }
+    
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        if (sampled && now - sampledAt <= REFRESH_INTERVAL_NANOS) {
+            return;
+        }
+        // Set first, so an unreachable server is not asked again by every write
+        sampledAt = now;
+        sampled = true;
+        try {
+            long before = System.currentTimeMillis();
+            Document hello = database.runCommand(new Document("hello", 1));
+            long after = System.currentTimeMillis();
+            Date serverTime = hello.getDate("localTime");
+            if (serverTime != null) {
+                offsetMillis = serverTime.getTime() - (before + after) / 2;
+            }
+        } catch (MongoException e) {
+            // Keep the previous offset until the next refresh
+        }
+    }
+}
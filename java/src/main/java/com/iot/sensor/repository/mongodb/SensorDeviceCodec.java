@@ -0,0 +1,241 @@
+package com.iot.sensor.repository.mongodb;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.IdGenerator;
+import com.iot.sensor.repository.Uuids;
+import org.bson.BsonBinary;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * BSON codec that reads and writes SensorDevice directly from/to the wire format of a
+ * sensor_devices document, without building an intermediate org.bson.Document
+ * (a LinkedHashMap of boxed values) for every document.
+ *
+ * IDs: new devices get a UUID from the IdGenerator, stored as binary subtype 4 (16 bytes,
+ * time-ordered with the default UUIDv7); documents created before that keep their ObjectId.
+ * Both shapes are read back as strings (UUID or 24-digit hex), see toBsonId/toIdString.
+ *
+ * Encoding produces an insert: _id is the device's ID if it is a valid UUID or ObjectId (a new
+ * one is generated and set on the device otherwise), missing lastReading is stored as null as in
+ * PostgreSQL (so aggregates skip it), and createdAt/updatedAt are set to the current time of the
+ * codec's clock (the local one by default). Decoding skips unknown fields and accepts integer readings.
+ */
+public class SensorDeviceCodec implements CollectibleCodec<SensorDevice> {
+    
+    private final IdGenerator idGenerator;
+    private final LongSupplier clock;
+    
+    public SensorDeviceCodec() {
+        this(IdGenerator.uuidV7());
+    }
+    
+    public SensorDeviceCodec(IdGenerator idGenerator) {
+        this(idGenerator, System::currentTimeMillis);
+    }
+    
+    /**
+     * @param clock Epoch milliseconds for createdAt/updatedAt, e.g. an estimate of the server clock
+     */
+    public SensorDeviceCodec(IdGenerator idGenerator, LongSupplier clock) {
+        this.idGenerator = idGenerator;
+        this.clock = clock;
+    }
+    
+    /**
+     * The _id value for a device ID: an ObjectId for a 24-digit hex ID, a binary UUID for a UUID ID,
+     * or null if the ID is neither (so it cannot match any document)
+     */
+    public static BsonValue toBsonId(String id) {
+        if (id == null) {
+            return null;
+        }
+        if (ObjectId.isValid(id)) {
+            return new BsonObjectId(new ObjectId(id));
+        }
+        UUID uuid = Uuids.parse(id);
+        return uuid != null ? new BsonBinary(uuid, UuidRepresentation.STANDARD) : null;
+    }
+    
+    /**
+     * The device ID for an _id value as found in a Document or built by toBsonId
+     */
+    public static String toIdString(Object id) {
+        if (id instanceof ObjectId) {
+            return ((ObjectId) id).toHexString();
+        }
+        if (id instanceof BsonObjectId) {
+            return ((BsonObjectId) id).getValue().toHexString();
+        }
+        if (id instanceof Binary) {
+            Binary binary = (Binary) id;
+            return new BsonBinary(binary.getType(), binary.getData()).asUuid().toString();
+        }
+        if (id instanceof BsonBinary) {
+            return ((BsonBinary) id).asUuid().toString();
+        }
+        return id != null ? id.toString() : null;
+    }
+    
+    @Override
+    public void encode(BsonWriter writer, SensorDevice sensorDevice, EncoderContext encoderContext) {
+        generateIdIfAbsentFromDocument(sensorDevice);
+        long now = clock.getAsLong();
+        
+        writer.writeStartDocument();
+        BsonValue id = toBsonId(sensorDevice.getId());
+        if (id.isObjectId()) {
+            writer.writeObjectId("_id", id.asObjectId().getValue());
+        } else {
+            writer.writeBinaryData("_id", id.asBinary());
+        }
+        writeString(writer, "deviceName", sensorDevice.getDeviceName());
+        writeString(writer, "sensorType", sensorDevice.getSensorType());
+        writeString(writer, "location", sensorDevice.getLocation());
+        writeString(writer, "status", sensorDevice.getStatus());
+        if (sensorDevice.getLastReading() != null) {
+            writer.writeDouble("lastReading", sensorDevice.getLastReading());
+        } else {
+            writer.writeNull("lastReading");
+        }
+        writeString(writer, "unit", sensorDevice.getUnit());
+        writeString(writer, "deviceId", sensorDevice.getDeviceId());
+        writer.writeDateTime("createdAt", now);
+        writer.writeDateTime("updatedAt", now);
+        writer.writeEndDocument();
+    }
+    
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        } else {
+            writer.writeNull(name);
+        }
+    }
+    
+    @Override
+    public SensorDevice decode(BsonReader reader, DecoderContext decoderContext) {
+        SensorDevice device = new SensorDevice();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id":
+                    device.setId(readId(reader));
+                    break;
+                case "deviceName":
+                    device.setDeviceName(readString(reader));
+                    break;
+                case "sensorType":
+                    device.setSensorType(readString(reader));
+                    break;
+                case "location":
+                    device.setLocation(readString(reader));
+                    break;
+                case "status":
+                    device.setStatus(readString(reader));
+                    break;
+                case "lastReading":
+                    device.setLastReading(readDouble(reader));
+                    break;
+                case "unit":
+                    device.setUnit(readString(reader));
+                    break;
+                case "deviceId":
+                    device.setDeviceId(readString(reader));
+                    break;
+                case "createdAt":
+                    device.setCreatedAt(readInstant(reader));
+                    break;
+                case "updatedAt":
+                    device.setUpdatedAt(readInstant(reader));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.readEndDocument();
+        return device;
+    }
+    
+    private static String readId(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case OBJECT_ID:
+                return reader.readObjectId().toHexString();
+            case BINARY:
+                return reader.readBinaryData().asUuid().toString();
+            default:
+                return readString(reader);
+        }
+    }
+    
+    private static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
+    }
+    
+    private static Double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE:
+                return reader.readDouble();
+            case INT32:
+                return (double) reader.readInt32();
+            case INT64:
+                return (double) reader.readInt64();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+    
+    private static Instant readInstant(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.DATE_TIME) {
+            return Instant.ofEpochMilli(reader.readDateTime());
+        }
+        reader.skipValue();
+        return null;
+    }
+    
+    @Override
+    public Class<SensorDevice> getEncoderClass() {
+        return SensorDevice.class;
+    }
+    
+    @Override
+    public SensorDevice generateIdIfAbsentFromDocument(SensorDevice sensorDevice) {
+        if (!documentHasId(sensorDevice)) {
+            sensorDevice.setId(idGenerator.newId());
+        }
+        return sensorDevice;
+    }
+    
+    @Override
+    public boolean documentHasId(SensorDevice sensorDevice) {
+        return toBsonId(sensorDevice.getId()) != null;
+    }
+    
+    @Override
+    public BsonValue getDocumentId(SensorDevice sensorDevice) {
+        BsonValue id = toBsonId(sensorDevice.getId());
+        if (id == null) {
+            throw new IllegalStateException("The sensor device does not contain an _id");
+        }
+        return id;
+    }
+}
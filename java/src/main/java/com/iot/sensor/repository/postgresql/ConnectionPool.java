@@ -0,0 +1,284 @@
+package com.iot.sensor.repository.postgresql;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool used by PostgreSQLSensorDeviceRepository.
+ * Each pooled connection keeps its own prepared-statement cache, so the fixed
+ * repository statements are parsed once per connection instead of once per call.
+ * A single repository instance backed by a pool can be shared across worker threads.
+ * A thread that already holds every connection (e.g. through open streams) and asks for another
+ * gets an SQLException at once instead of waiting for itself.
+ */
+public class ConnectionPool implements AutoCloseable {
+    
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    
+    /**
+     * Source of new physical connections
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection newConnection() throws SQLException;
+    }
+    
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+    
+    private final Semaphore permits;
+    // LIFO so that the most recently used (warm) connections are handed out first
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    // Handles currently borrowed, to detect a thread waiting on connections only it can release
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder acquireWaitNanos = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsDiscarded = new LongAdder();
+    final LongAdder statementCacheHits = new LongAdder();
+    final LongAdder statementCacheMisses = new LongAdder();
+    
+    private volatile boolean closed;
+    
+    public ConnectionPool(DataSource dataSource, int maxSize, long acquireTimeoutMillis) {
+        this(dataSource::getConnection, maxSize, acquireTimeoutMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+    
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long acquireTimeoutMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+    
+    /**
+     * Wrap a single existing connection. Access to it is serialized through the pool,
+     * which keeps the connection safe to use from several threads.
+     * The pool cannot replace the connection: once it is closed, acquire() fails fast.
+     * A nested acquire by the thread holding it (e.g. a repository call inside a streamAll()
+     * pipeline) fails as well, as it could never be served.
+     */
+    public static ConnectionPool ofConnection(Connection connection) {
+        return new ConnectionPool(() -> {
+            if (connection.isClosed()) {
+                throw new SQLException("The wrapped connection is closed; create the repository with a new connection");
+            }
+            return connection;
+        }, 1, Long.MAX_VALUE, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+    
+    /**
+     * Borrow a connection, waiting at most the configured acquire timeout.
+     * The connection is returned to the pool by closing the PooledConnection.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        
+        if (permits.availablePermits() == 0 && heldByCurrentThread() >= maxSize) {
+            throw new SQLException("All " + maxSize + " pooled connections are held by this thread (e.g. by an open "
+                    + "streamAll()); close them before calling the repository again, or use a larger pool");
+        }
+        
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            acquireWaitNanos.add(System.nanoTime() - start);
+        }
+        
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null && pooled.isBroken()) {
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(this, connectionFactory.newConnection(), statementCacheSize);
+                totalConnections.incrementAndGet();
+                connectionsCreated.increment();
+            } else {
+                pooled = pooled.reissue();
+            }
+            borrowed.add(pooled);
+            activeConnections.incrementAndGet();
+            acquireCount.increment();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    private int heldByCurrentThread() {
+        Thread current = Thread.currentThread();
+        int held = 0;
+        for (PooledConnection pooled : borrowed) {
+            if (pooled.getOwner() == current) {
+                held++;
+            }
+        }
+        return held;
+    }
+    
+    void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        activeConnections.decrementAndGet();
+        try {
+            if (closed || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        connectionsDiscarded.increment();
+        pooled.closePhysical();
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public Metrics getMetrics() {
+        return new Metrics(maxSize, totalConnections.get(), activeConnections.get(), idle.size(),
+                acquireCount.sum(), acquireTimeouts.sum(), acquireWaitNanos.sum(),
+                connectionsCreated.sum(), connectionsDiscarded.sum(),
+                statementCacheHits.sum(), statementCacheMisses.sum());
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+    
+    /**
+     * Point-in-time snapshot of pool usage
+     */
+    public static class Metrics {
+        private final int maxSize;
+        private final int totalConnections;
+        private final int activeConnections;
+        private final int idleConnections;
+        private final long acquireCount;
+        private final long acquireTimeouts;
+        private final long acquireWaitNanos;
+        private final long connectionsCreated;
+        private final long connectionsDiscarded;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        
+        Metrics(int maxSize, int totalConnections, int activeConnections, int idleConnections,
+                long acquireCount, long acquireTimeouts, long acquireWaitNanos,
+                long connectionsCreated, long connectionsDiscarded,
+                long statementCacheHits, long statementCacheMisses) {
+            this.maxSize = maxSize;
+            this.totalConnections = totalConnections;
+            this.activeConnections = activeConnections;
+            this.idleConnections = idleConnections;
+            this.acquireCount = acquireCount;
+            this.acquireTimeouts = acquireTimeouts;
+            this.acquireWaitNanos = acquireWaitNanos;
+            this.connectionsCreated = connectionsCreated;
+            this.connectionsDiscarded = connectionsDiscarded;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+        }
+        
+        public int getMaxSize() {
+            return maxSize;
+        }
+        
+        public int getTotalConnections() {
+            return totalConnections;
+        }
+        
+        public int getActiveConnections() {
+            return activeConnections;
+        }
+        
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+        
+        public long getAcquireCount() {
+            return acquireCount;
+        }
+        
+        public long getAcquireTimeouts() {
+            return acquireTimeouts;
+        }
+        
+        public double getAverageAcquireWaitMillis() {
+            return acquireCount == 0 ? 0.0 : acquireWaitNanos / 1_000_000.0 / acquireCount;
+        }
+        
+        public long getConnectionsCreated() {
+            return connectionsCreated;
+        }
+        
+        public long getConnectionsDiscarded() {
+            return connectionsDiscarded;
+        }
+        
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+        
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+        
+        @Override
+        public String toString() {
+            return "PoolMetrics{" +
+                    "maxSize=" + maxSize +
+                    ", total=" + totalConnections +
+                    ", active=" + activeConnections +
+                    ", idle=" + idleConnections +
+                    ", acquired=" + acquireCount +
+                    ", timeouts=" + acquireTimeouts +
+                    ", avgWaitMs=" + String.format("%.3f", getAverageAcquireWaitMillis()) +
+                    ", created=" + connectionsCreated +
+                    ", discarded=" + connectionsDiscarded +
+                    ", stmtCacheHits=" + statementCacheHits +
+                    ", stmtCacheMisses=" + statementCacheMisses +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.metrics.LatencyHistogram;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for PostgreSQLSensorDeviceRepository: the single-row writes of many concurrent
+ * callers are collected for up to commitWindowMicros (or until maxBatchSize writes are queued)
+ * and executed by a committer thread in one PostgreSQLUnitOfWork, so they share one commit and
+ * one WAL flush instead of paying one each. Consecutive updateReading writes, the bulk of
+ * telemetry traffic, are sent as one JDBC batch, so they also share the round trip.
+ *
+ * Every write returns a future that completes once the transaction containing it has committed,
+ * i.e. when the write is durable, or exceptionally if the write or the commit failed.
+ * A write failing with a database error (e.g. a duplicate deviceId) fails only its own future:
+ * the batch is rolled back and re-run with a savepoint around each write. Futures complete on
+ * the committer thread, so slow continuations should use the async CompletableFuture methods.
+ *
+ * Writes in one batch are applied in submission order; with several committer threads, batches
+ * commit concurrently and writes to the same device from different callers are not ordered.
+ *
+ * Writes go straight to the PostgreSQL repository. They bypass SensorDeviceService and its listeners
+ * (reading history, alerts) as well as every decorator that may wrap the same repository elsewhere
+ * (caching, rollup, location index, metrics), so those see nothing of them. Use the writer only where
+ * no such view has to follow the writes, or invalidate/rebuild the views afterwards.
+ *
+ * The gain has not been measured against a real PostgreSQL server. GroupCommitBenchmark on H2 with a
+ * simulated flush latency went from 5.3 to 11.9 ops/ms at best; expect the benefit to depend on the
+ * server's fsync cost and the number of concurrent callers.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+    
+    private static final Logger LOGGER = Logger.getLogger(GroupCommitWriter.class.getName());
+    
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+    
+    /**
+     * A queued write and the future of its caller
+     */
+    private static class PendingWrite<T> {
+        final Function<PostgreSQLUnitOfWork, T> write;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        RuntimeException failure;
+        
+        PendingWrite(Function<PostgreSQLUnitOfWork, T> write) {
+            this.write = write;
+        }
+        
+        /**
+         * @return false if the write failed with a database error, which aborts the transaction
+         */
+        boolean apply(PostgreSQLUnitOfWork unit) {
+            failure = null;
+            try {
+                result = write.apply(unit);
+                return true;
+            } catch (RuntimeException e) {
+                failure = e;
+                return !(e.getCause() instanceof SQLException);
+            }
+        }
+        
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+    
+    /**
+     * An updateReading write, which can be batched with its neighbours
+     */
+    private static final class ReadingWrite extends PendingWrite<Boolean> {
+        final String deviceId;
+        final double lastReading;
+        
+        ReadingWrite(String deviceId, double lastReading) {
+            super(unit -> unit.updateReading(deviceId, lastReading));
+            this.deviceId = deviceId;
+            this.lastReading = lastReading;
+        }
+    }
+    
+    private final PostgreSQLSensorDeviceRepository repository;
+    private final long commitWindowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingWrite<?>> queue;
+    private final List<Thread> committers = new ArrayList<>();
+    private volatile boolean closed;
+    
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder failedCommits = new LongAdder();
+    private final LongAdder isolatedBatches = new LongAdder();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    
+    /**
+     * Writer with one committer thread, a 1 ms commit window and batches of up to 500 writes
+     */
+    public GroupCommitWriter(PostgreSQLSensorDeviceRepository repository) {
+        this(repository, 1000, 500, 1, 10_000);
+    }
+    
+    /**
+     * @param commitWindowMicros How long a batch stays open for more writes after its first one; 0 commits
+     *                           whatever is queued, which still groups the writes arriving during a commit
+     * @param maxBatchSize Maximum number of writes per transaction
+     * @param committerThreads Number of committer threads, each holding a pooled connection while it commits
+     * @param maxPending Maximum number of queued writes; callers block once it is reached
+     */
+    public GroupCommitWriter(PostgreSQLSensorDeviceRepository repository, long commitWindowMicros,
+                             int maxBatchSize, int committerThreads, int maxPending) {
+        if (commitWindowMicros < 0) {
+            throw new IllegalArgumentException("Commit window must not be negative");
+        }
+        if (maxBatchSize < 1 || maxPending < maxBatchSize) {
+            throw new IllegalArgumentException("Require 1 <= maxBatchSize <= maxPending");
+        }
+        if (committerThreads < 1) {
+            throw new IllegalArgumentException("At least one committer thread is required");
+        }
+        this.repository = repository;
+        this.commitWindowNanos = TimeUnit.MICROSECONDS.toNanos(commitWindowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(maxPending);
+        for (int i = 0; i < committerThreads; i++) {
+            Thread committer = new Thread(this::runCommitter, "group-committer-" + i);
+            committer.setDaemon(true);
+            committers.add(committer);
+            committer.start();
+        }
+    }
+    
+    public CompletableFuture<SensorDevice> create(SensorDevice sensorDevice) {
+        return submit(unit -> unit.create(sensorDevice));
+    }
+    
+    /**
+     * @return Future failing with "Sensor device not found for update" if the device does not exist
+     */
+    public CompletableFuture<SensorDevice> update(SensorDevice sensorDevice) {
+        return submit(unit -> unit.update(sensorDevice));
+    }
+    
+    public CompletableFuture<Boolean> updateReading(String deviceId, double lastReading) {
+        return submit(new ReadingWrite(deviceId, lastReading));
+    }
+    
+    public CompletableFuture<Boolean> updateStatus(String deviceId, String status) {
+        return submit(unit -> unit.updateStatus(deviceId, status));
+    }
+    
+    public CompletableFuture<Boolean> deleteById(String id) {
+        return submit(unit -> unit.deleteById(id));
+    }
+    
+    private <T> CompletableFuture<T> submit(Function<PostgreSQLUnitOfWork, T> write) {
+        return submit(new PendingWrite<>(write));
+    }
+    
+    private <T> CompletableFuture<T> submit(PendingWrite<T> pending) {
+        ensureOpen();
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for group commit queue space", e);
+        }
+        // close() may have drained the queue before the put; if nobody took the write, it never will
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Group commit writer is closed");
+        }
+        submitted.increment();
+        return pending.future;
+    }
+    
+    private void runCommitter() {
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (fillBatch(batch)) {
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Wait for a first write, then for the batch to fill or the commit window to close
+     * @return false once the writer is closed and the queue is drained
+     */
+    private boolean fillBatch(List<PendingWrite<?>> batch) throws InterruptedException {
+        PendingWrite<?> first;
+        do {
+            if (closed && queue.isEmpty()) {
+                return false;
+            }
+            first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } while (first == null);
+        batch.add(first);
+        
+        long deadline = System.nanoTime() + commitWindowNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || closed) {
+                break;
+            }
+            PendingWrite<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+    
+    /**
+     * Run the batch in one transaction and complete the futures once it has committed
+     */
+    private void commit(List<PendingWrite<?>> batch) {
+        long start = System.nanoTime();
+        try (PostgreSQLUnitOfWork unit = repository.beginUnitOfWork()) {
+            if (!applyAll(unit, batch)) {
+                // A database error aborted the transaction; redo the batch isolating each write
+                unit.rollback();
+                applyIsolated(unit, batch);
+                isolatedBatches.increment();
+            }
+            unit.commit();
+        } catch (RuntimeException e) {
+            // Nothing in the batch is durable
+            failedCommits.increment();
+            failed.add(batch.size());
+            LOGGER.log(Level.WARNING, "Group commit of " + batch.size() + " writes failed", e);
+            for (PendingWrite<?> pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            commitLatency.record(System.nanoTime() - start);
+        }
+        
+        commits.increment();
+        for (PendingWrite<?> pending : batch) {
+            if (pending.failure != null) {
+                failed.increment();
+            } else {
+                committed.increment();
+            }
+            pending.complete();
+        }
+    }
+    
+    /**
+     * @return false if a write failed with a database error, which aborts the transaction
+     */
+    private static boolean applyAll(PostgreSQLUnitOfWork unit, List<PendingWrite<?>> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            int end = start;
+            while (end < batch.size() && batch.get(end) instanceof ReadingWrite) {
+                end++;
+            }
+            if (end - start > 1) {
+                if (!applyReadings(unit, batch.subList(start, end))) {
+                    return false;
+                }
+                start = end;
+            } else {
+                if (!batch.get(start).apply(unit)) {
+                    return false;
+                }
+                start++;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean applyReadings(PostgreSQLUnitOfWork unit, List<PendingWrite<?>> run) {
+        String[] deviceIds = new String[run.size()];
+        double[] readings = new double[run.size()];
+        for (int i = 0; i < run.size(); i++) {
+            ReadingWrite write = (ReadingWrite) run.get(i);
+            deviceIds[i] = write.deviceId;
+            readings[i] = write.lastReading;
+        }
+        int[] counts;
+        try {
+            counts = unit.updateReadingRows(deviceIds, readings);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        for (int i = 0; i < run.size(); i++) {
+            ReadingWrite write = (ReadingWrite) run.get(i);
+            write.failure = null;
+            write.result = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return true;
+    }
+    
+    private static void applyIsolated(PostgreSQLUnitOfWork unit, List<PendingWrite<?>> batch) {
+        for (PendingWrite<?> pending : batch) {
+            Savepoint savepoint = unit.setSavepoint();
+            if (pending.apply(unit)) {
+                unit.release(savepoint);
+            } else {
+                unit.rollbackTo(savepoint);
+            }
+        }
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Group commit writer is closed");
+        }
+    }
+    
+    /**
+     * Writes queued and not yet taken by a committer
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+    
+    /**
+     * Writes that succeeded and are durable
+     */
+    public long getCommittedCount() {
+        return committed.sum();
+    }
+    
+    /**
+     * Writes whose future completed exceptionally, including all writes of failed commits
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    /**
+     * Transactions committed; getCommittedCount() / getCommitCount() is the average group size
+     */
+    public long getCommitCount() {
+        return commits.sum();
+    }
+    
+    public long getFailedCommitCount() {
+        return failedCommits.sum();
+    }
+    
+    /**
+     * Batches re-run with a savepoint per write because one of their writes failed
+     */
+    public long getIsolatedBatchCount() {
+        return isolatedBatches.sum();
+    }
+    
+    /**
+     * Duration of each transaction, from acquiring the connection to the end of the commit
+     */
+    public LatencyHistogram getCommitLatencyHistogram() {
+        return commitLatency;
+    }
+    
+    /**
+     * Stop accepting writes and wait until everything already queued has been committed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Thread committer : committers) {
+            try {
+                committer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Writes from submit() calls that raced with close
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            commit(batch);
+            batch.clear();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "GroupCommitWriter{" +
+                "queueDepth=" + getQueueDepth() +
+                ", submitted=" + getSubmittedCount() +
+                ", committed=" + getCommittedCount() +
+                ", failed=" + getFailedCount() +
+                ", commits=" + getCommitCount() +
+                ", failedCommits=" + getFailedCommitCount() +
+                ", commitP99Micros=" + TimeUnit.NANOSECONDS.toMicros(commitLatency.getValueAtQuantile(0.99)) +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package com.iot.sensor.repository.postgresql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection borrowed from ConnectionPool together with its prepared-statement cache.
+ * Statements returned by prepare() are owned by the cache and must not be closed by the caller;
+ * closing the PooledConnection returns it to the pool. Each acquire hands out a new handle, so closing
+ * a handle again is a no-op and never returns the connection while a later borrower holds it.
+ * Not thread-safe: a pooled connection is used by one thread between acquire and close.
+ */
+public class PooledConnection implements AutoCloseable {
+    
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statementCache;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // The thread that acquired this handle
+    private final Thread owner = Thread.currentThread();
+    
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        // Access-ordered LRU; evicted statements are closed on the server side as well
+        this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    private PooledConnection(PooledConnection previous) {
+        this.pool = previous.pool;
+        this.connection = previous.connection;
+        this.statementCache = previous.statementCache;
+    }
+    
+    /**
+     * A fresh handle on the same connection and statement cache for the next borrower
+     */
+    PooledConnection reissue() {
+        return new PooledConnection(this);
+    }
+    
+    Thread getOwner() {
+        return owner;
+    }
+    
+    public Connection getConnection() {
+        return connection;
+    }
+    
+    /**
+     * Get a cached prepared statement for the SQL, preparing it on first use
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statementCache.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            pool.statementCacheHits.increment();
+            stmt.clearParameters();
+            stmt.clearBatch();
+            return stmt;
+        }
+        pool.statementCacheMisses.increment();
+        stmt = connection.prepareStatement(sql);
+        statementCache.put(sql, stmt);
+        return stmt;
+    }
+    
+    /**
+     * Restore the connection to its pooled state.
+     * @return false if the connection is no longer usable and should be discarded
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    boolean isBroken() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+    
+    void closePhysical() {
+        for (PreparedStatement stmt : statementCache.values()) {
+            closeQuietly(stmt);
+        }
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Connection is being discarded anyway
+        }
+    }
+    
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // Statement is being evicted anyway
+        }
+    }
+    
+    @Override
+    public void close() {
+        // A second close would release a permit twice
+        if (closed.compareAndSet(false, true)) {
+            pool.release(this);
+        }
+    }
+}
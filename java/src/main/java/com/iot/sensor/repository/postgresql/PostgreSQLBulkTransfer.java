@@ -0,0 +1,127 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.bulk.BulkExporter;
+import com.iot.sensor.bulk.BulkFormat;
+import com.iot.sensor.bulk.BulkImporter;
+import com.iot.sensor.bulk.ProgressReporter;
+import com.iot.sensor.bulk.RepositoryBulkTransfer;
+import com.iot.sensor.bulk.SensorDeviceCsv;
+import com.iot.sensor.bulk.SensorDeviceFileReader;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.IdGenerator;
+import com.iot.sensor.repository.Uuids;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Bulk import and export for PostgreSQL using COPY.
+ * Imports stream CSV rows into COPY ... FROM STDIN in 64 KB chunks; the whole file is
+ * one statement, so a conflicting row (e.g. a duplicate device_id) aborts the import
+ * without loading anything. CSV exports stream COPY ... TO STDOUT row by row; NDJSON
+ * exports go through the repository's streamAll().
+ */
+public class PostgreSQLBulkTransfer implements BulkImporter, BulkExporter {
+    
+    private static final String COLUMNS = String.join(", ", SensorDeviceCsv.COLUMNS);
+    
+    private static final String COPY_IN_SQL = "COPY sensor_devices (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    
+    private static final String COPY_OUT_SQL =
+            "COPY (SELECT " + COLUMNS + " FROM sensor_devices) TO STDOUT WITH (FORMAT csv)";
+    
+    private static final int COPY_CHUNK_CHARS = 64 * 1024;
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    
+    private final ConnectionPool pool;
+    private final IdGenerator idGenerator;
+    
+    public PostgreSQLBulkTransfer(ConnectionPool pool) {
+        this(pool, IdGenerator.uuidV7());
+    }
+    
+    public PostgreSQLBulkTransfer(ConnectionPool pool, IdGenerator idGenerator) {
+        this.pool = pool;
+        this.idGenerator = idGenerator;
+    }
+    
+    private static CopyManager copyManager(PooledConnection conn) throws SQLException {
+        return conn.getConnection().unwrap(PGConnection.class).getCopyAPI();
+    }
+    
+    @Override
+    public long importAll(SensorDeviceFileReader reader, ProgressReporter progress) {
+        try (PooledConnection conn = pool.acquire()) {
+            CopyIn copyIn = copyManager(conn).copyIn(COPY_IN_SQL);
+            try {
+                StringBuilder chunk = new StringBuilder(COPY_CHUNK_CHARS * 2);
+                int pending = 0;
+                while (reader.hasNext()) {
+                    SensorDevice device = reader.next();
+                    // The id column is a UUID: devices without one (e.g. exported from MongoDB) get a new ID
+                    if (Uuids.parse(device.getId()) == null) {
+                        device.setId(idGenerator.newId());
+                    }
+                    SensorDeviceCsv.format(device, chunk);
+                    pending++;
+                    if (chunk.length() >= COPY_CHUNK_CHARS || !reader.hasNext()) {
+                        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+                        copyIn.writeToCopy(bytes, 0, bytes.length);
+                        chunk.setLength(0);
+                        progress.advance(pending, reader.getBytesRead());
+                        pending = 0;
+                    }
+                }
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error importing sensor devices in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public long exportAll(OutputStream out, BulkFormat format, ProgressReporter progress) {
+        if (format != BulkFormat.CSV) {
+            return new RepositoryBulkTransfer(new PostgreSQLSensorDeviceRepository(pool), EXPORT_BATCH_SIZE)
+                    .exportAll(out, format, progress);
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            byte[] header = (SensorDeviceCsv.HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(header);
+            long bytes = header.length;
+            long exported = 0;
+            
+            // Each readFromCopy() returns exactly one row, terminator included
+            CopyOut copyOut = copyManager(conn).copyOut(COPY_OUT_SQL);
+            try {
+                byte[] row;
+                while ((row = copyOut.readFromCopy()) != null) {
+                    out.write(row);
+                    bytes += row.length;
+                    exported++;
+                    progress.advance(1, bytes);
+                }
+            } finally {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+            }
+            return exported;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error exporting sensor devices from PostgreSQL", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing bulk export", e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+import com.iot.sensor.repository.IReadingRepository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * PostgreSQL implementation of IReadingRepository backed by the sensor_readings table.
+ */
+public class PostgreSQLReadingRepository implements IReadingRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO sensor_readings (device_id, reading_time, value) VALUES (?, ?, ?)";
+    
+    private static final String FIND_RANGE_SQL =
+            "SELECT reading_time, value FROM sensor_readings " +
+            "WHERE device_id = ? AND reading_time >= ? AND reading_time < ? ORDER BY reading_time";
+    
+    // Buckets are aligned to multiples of the bucket width in epoch milliseconds
+    private static final String DOWNSAMPLE_SQL =
+            "SELECT floor(extract(epoch FROM reading_time) * 1000 / ?)::bigint AS bucket, " +
+            "MIN(value), MAX(value), SUM(value), COUNT(*) FROM sensor_readings " +
+            "WHERE device_id = ? AND reading_time >= ? AND reading_time < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+    
+    private final ConnectionPool pool;
+    
+    public PostgreSQLReadingRepository(ConnectionPool pool) {
+        this.pool = pool;
+    }
+    
+    @Override
+    public void append(String deviceId, long timestamp, double value) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(INSERT_SQL);
+            stmt.setString(1, deviceId);
+            stmt.setTimestamp(2, new Timestamp(timestamp));
+            stmt.setDouble(3, value);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error appending sensor reading in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public void appendAll(Collection<ReadingSeries> samples) {
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement stmt = conn.prepare(INSERT_SQL);
+            for (ReadingSeries series : samples) {
+                for (int i = 0; i < series.size(); i++) {
+                    stmt.setString(1, series.getDeviceId());
+                    stmt.setTimestamp(2, new Timestamp(series.getTimestamp(i)));
+                    stmt.setDouble(3, series.getValue(i));
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+            connection.commit();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            // Returning the connection to the pool rolls the partial batch back
+            throw new RuntimeException("Error appending sensor readings in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public ReadingSeries findRange(String deviceId, long fromInclusive, long toExclusive) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(FIND_RANGE_SQL);
+            stmt.setString(1, deviceId);
+            stmt.setTimestamp(2, new Timestamp(fromInclusive));
+            stmt.setTimestamp(3, new Timestamp(toExclusive));
+            
+            long[] timestamps = new long[64];
+            double[] values = new double[64];
+            int size = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (size == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, size * 2);
+                        values = Arrays.copyOf(values, size * 2);
+                    }
+                    timestamps[size] = rs.getTimestamp(1).getTime();
+                    values[size] = rs.getDouble(2);
+                    size++;
+                }
+            }
+            return new ReadingSeries(deviceId, timestamps, values, size);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding sensor readings in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis) {
+        ReadingBuckets.Builder builder = new ReadingBuckets.Builder(deviceId, bucketMillis);
+        
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(DOWNSAMPLE_SQL);
+            stmt.setLong(1, bucketMillis);
+            stmt.setString(2, deviceId);
+            stmt.setTimestamp(3, new Timestamp(fromInclusive));
+            stmt.setTimestamp(4, new Timestamp(toExclusive));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.addBucket(rs.getLong(1) * bucketMillis, rs.getDouble(2), rs.getDouble(3),
+                            rs.getDouble(4), rs.getLong(5));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error downsampling sensor readings in PostgreSQL", e);
+        }
+        
+        return builder.build();
+    }
+}
@@ -1,75 +1,509 @@
 package com.iot.sensor.repository.postgresql;
 
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.GroupStatistics;
 import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.IdGenerator;
 import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.LocationPath;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import com.iot.sensor.repository.Uuids;
 
 import java.sql.*;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * PostgreSQL implementation of ISensorDeviceRepository.
  * Performs CRUD operations on PostgreSQL database.
+ * All operations borrow a connection from a ConnectionPool and reuse its cached
+ * prepared statements, so one instance can be shared across threads.
+ * IDs are stored in a native UUID column (16 bytes, compared as binary); devices without a
+ * valid UUID ID get one from the IdGenerator, and lookups by a non-UUID ID find nothing.
+ * Single writes autocommit; beginUnitOfWork() groups several writes into one transaction and
+ * GroupCommitWriter shares one commit between the writes of concurrent callers.
  */
 public class PostgreSQLSensorDeviceRepository implements ISensorDeviceRepository {
     
-    private final Connection connection;
+    private static final String INSERT_SQL =
+            "INSERT INTO sensor_devices (id, device_name, sensor_type, location, status, last_reading, unit, device_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
     
+    // Conflicting rows are skipped and reported with an update count of 0 instead of aborting the batch
+    private static final String INSERT_IGNORE_CONFLICT_SQL = INSERT_SQL + " ON CONFLICT DO NOTHING";
+    
+    // Updates the row with the same device_id instead of failing; xmax = 0 only for a freshly inserted row
+    private static final String UPSERT_CLAUSE =
+            " ON CONFLICT (device_id) DO UPDATE SET device_name = EXCLUDED.device_name, " +
+            "sensor_type = EXCLUDED.sensor_type, location = EXCLUDED.location, status = EXCLUDED.status, " +
+            "last_reading = EXCLUDED.last_reading, unit = EXCLUDED.unit, updated_at = clock_timestamp() " +
+            "RETURNING id, device_id, (xmax = 0) AS inserted";
+    
+    private static final String UPSERT_SQL = INSERT_SQL + UPSERT_CLAUSE;
+    
+    // Whole batch as one statement: one array parameter per column, expanded by unnest
+    private static final String UPSERT_ALL_SQL =
+            "INSERT INTO sensor_devices (id, device_name, sensor_type, location, status, last_reading, unit, device_id) " +
+            "SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], " +
+            "?::float8[], ?::varchar[], ?::varchar[])" + UPSERT_CLAUSE;
+    
+    // Selected in this order by every device query, so rows are mapped by column index
+    static final String DEVICE_COLUMNS =
+            "id, device_name, sensor_type, location, status, last_reading, unit, device_id, created_at, updated_at";
+    
+    private static final String FIND_BY_ID_SQL = "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices WHERE id = ?";
+    
+    private static final String FIND_BY_DEVICE_ID_SQL =
+            "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices WHERE device_id = ?";
+    
+    private static final String FIND_ALL_SQL = "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices ORDER BY device_name";
+    
+    // One aggregation query per GroupBy; the column names come from this fixed mapping, never from input
+    private static final Map<GroupBy, String> AGGREGATE_SQL = new EnumMap<>(GroupBy.class);
+    
+    static {
+        AGGREGATE_SQL.put(GroupBy.SENSOR_TYPE, aggregateSql("sensor_type"));
+        AGGREGATE_SQL.put(GroupBy.LOCATION, aggregateSql("location"));
+        AGGREGATE_SQL.put(GroupBy.STATUS, aggregateSql("status"));
+    }
+    
+    private static String aggregateSql(String column) {
+        return "SELECT " + column + ", COUNT(*), COUNT(last_reading), MIN(last_reading), MAX(last_reading), " +
+                "SUM(last_reading) FROM sensor_devices GROUP BY " + column + " ORDER BY " + column;
+    }
+    
+    private static final String STREAM_ALL_SQL = "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices";
+    
+    private static final String FIRST_PAGE_SQL =
+            "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices ORDER BY id LIMIT ?";
+    
+    private static final String NEXT_PAGE_SQL =
+            "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices WHERE id > ? ORDER BY id LIMIT ?";
+    
+    // Rows fetched per round trip when streaming; only honoured by pgjdbc with autocommit off
+    private static final int STREAM_FETCH_SIZE = 500;
+    
+    // clock_timestamp() rather than the transaction start time, so a long transaction does not stamp its rows
+    // far behind what the change feed has already passed (see ChangeFeedPoller for the remaining gap)
+    private static final String UPDATE_SQL =
+            "UPDATE sensor_devices SET device_name = ?, sensor_type = ?, location = ?, " +
+            "status = ?, last_reading = ?, unit = ?, device_id = ?, updated_at = clock_timestamp() WHERE id = ?";
+    
+    private static final String UPDATE_READING_SQL =
+            "UPDATE sensor_devices SET last_reading = ?, updated_at = clock_timestamp() WHERE device_id = ?";
+    
+    private static final String UPDATE_STATUS_SQL =
+            "UPDATE sensor_devices SET status = ?, updated_at = clock_timestamp() WHERE device_id = ?";
+    
+    // Deleting a row also records a tombstone (trigger in postgresql_schema.sql)
+    private static final String DELETE_SQL = "DELETE FROM sensor_devices WHERE id = ?";
+    
+    // Change feed: keyset over (updated_at, id) / (deleted_at, id), served by the matching indexes
+    private static final String MODIFIED_SINCE_SQL =
+            "SELECT " + DEVICE_COLUMNS + " FROM sensor_devices " +
+            "WHERE (updated_at, id) > (?, ?) ORDER BY updated_at, id LIMIT ?";
+    
+    private static final String DELETED_SINCE_SQL =
+            "SELECT id, device_id, deleted_at FROM sensor_device_tombstones " +
+            "WHERE (deleted_at, id) > (?, ?) ORDER BY deleted_at, id LIMIT ?";
+    
+    private static final String PURGE_TOMBSTONES_SQL = "DELETE FROM sensor_device_tombstones WHERE deleted_at < ?";
+    
+    private static final String EXISTS_SQL = "SELECT 1 FROM sensor_devices WHERE id = ?";
+    private static final String EXISTING_IDS_SQL = "SELECT id FROM sensor_devices WHERE id = ANY(?)";
+    
+    // Projection for reading-only lookups: two columns instead of the whole row
+    private static final String LAST_READINGS_SQL =
+            "SELECT device_id, last_reading FROM sensor_devices WHERE device_id = ANY(?)";
+    
+    private final ConnectionPool pool;
+    private final IdGenerator idGenerator;
+    
+    /**
+     * Single-connection mode: all operations are serialized on the given connection,
+     * so no other call can run while a stream from streamAll() is open
+     */
     public PostgreSQLSensorDeviceRepository(Connection connection) {
-        this.connection = connection;
+        this(ConnectionPool.ofConnection(connection));
+    }
+    
+    /**
+     * Pooled mode: operations run concurrently on up to pool-size connections
+     */
+    public PostgreSQLSensorDeviceRepository(ConnectionPool pool) {
+        this(pool, IdGenerator.uuidV7());
+    }
+    
+    /**
+     * Pooled mode with a custom strategy for the IDs of new devices
+     */
+    public PostgreSQLSensorDeviceRepository(ConnectionPool pool, IdGenerator idGenerator) {
+        this.pool = pool;
+        this.idGenerator = idGenerator;
+    }
+    
+    public ConnectionPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * Start a transaction on a connection of the pool; the connection is held until the unit is closed
+     */
+    public PostgreSQLUnitOfWork beginUnitOfWork() {
+        try {
+            return new PostgreSQLUnitOfWork(this, pool.acquire());
+        } catch (SQLException e) {
+            throw new RuntimeException("Error starting unit of work in PostgreSQL", e);
+        }
     }
     
     @Override
     public SensorDevice create(SensorDevice sensorDevice) {
-        String sql = "INSERT INTO sensor_devices (id, device_name, sensor_type, location, status, last_reading, unit, device_id) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PooledConnection conn = pool.acquire()) {
+            return insert(conn, sensorDevice);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error creating sensor device in PostgreSQL", e);
+        }
+    }
+    
+    SensorDevice insert(PooledConnection conn, SensorDevice sensorDevice) throws SQLException {
+        PreparedStatement stmt = conn.prepare(INSERT_SQL);
+        UUID id = Uuids.idOrGenerate(sensorDevice.getId(), idGenerator);
+        
+        bindInsert(stmt, sensorDevice, id);
+        
+        stmt.executeUpdate();
+        sensorDevice.setId(id.toString());
+        return sensorDevice;
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        BatchResult result = new BatchResult();
+        if (devices.isEmpty()) {
+            return result;
+        }
+        
+        UUID[] ids = new UUID[devices.size()];
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = conn.prepare(INSERT_IGNORE_CONFLICT_SQL);
+                for (int i = 0; i < devices.size(); i++) {
+                    SensorDevice device = devices.get(i);
+                    ids[i] = Uuids.idOrGenerate(device.getId(), idGenerator);
+                    bindInsert(stmt, device, ids[i]);
+                    stmt.addBatch();
+                }
+                
+                int[] counts = stmt.executeBatch();
+                connection.commit();
+                
+                for (int i = 0; i < devices.size(); i++) {
+                    SensorDevice device = devices.get(i);
+                    if (counts[i] == 0) {
+                        result.addFailure(i, device, "Duplicate id or device_id");
+                    } else {
+                        device.setId(ids[i].toString());
+                        result.addSuccess(device);
+                    }
+                }
+                return result;
+            } catch (BatchUpdateException e) {
+                // A non-conflict error (e.g. a NOT NULL violation) aborted the transaction; isolate the bad items
+                connection.rollback();
+                connection.setAutoCommit(true);
+                for (int i = 0; i < devices.size(); i++) {
+                    SensorDevice device = devices.get(i);
+                    try {
+                        result.addSuccess(insert(conn, device));
+                    } catch (SQLException itemError) {
+                        result.addFailure(i, device, itemError.getMessage());
+                    }
+                }
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error creating sensor devices in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        if (sensorDevice.getDeviceId() == null) {
+            throw new IllegalArgumentException("Device ID is required for upsert");
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            return upsert(conn, sensorDevice);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error upserting sensor device in PostgreSQL", e);
+        }
+    }
+    
+    UpsertResult upsert(PooledConnection conn, SensorDevice sensorDevice) throws SQLException {
+        PreparedStatement stmt = conn.prepare(UPSERT_SQL);
+        bindInsert(stmt, sensorDevice, Uuids.idOrGenerate(sensorDevice.getId(), idGenerator));
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            String id = sensorDevice.getId() != null ? sensorDevice.getId() : UUID.randomUUID().toString();
+        try (ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            sensorDevice.setId(rs.getString(1));
+            return new UpsertResult(sensorDevice, rs.getBoolean(3));
+        }
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        if (devices.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // ON CONFLICT DO UPDATE cannot touch the same row twice in one statement, so keep the last occurrence
+        Map<String, SensorDevice> lastByDeviceId = new LinkedHashMap<>();
+        for (SensorDevice device : devices) {
+            if (device.getDeviceId() == null) {
+                throw new IllegalArgumentException("Device ID is required for upsert");
+            }
+            lastByDeviceId.put(device.getDeviceId(), device);
+        }
+        
+        int size = lastByDeviceId.size();
+        UUID[] ids = new UUID[size];
+        String[] names = new String[size];
+        String[] sensorTypes = new String[size];
+        String[] locations = new String[size];
+        String[] statuses = new String[size];
+        Double[] readings = new Double[size];
+        String[] units = new String[size];
+        String[] deviceIds = new String[size];
+        int i = 0;
+        for (SensorDevice device : lastByDeviceId.values()) {
+            ids[i] = Uuids.idOrGenerate(device.getId(), idGenerator);
+            names[i] = device.getDeviceName();
+            sensorTypes[i] = device.getSensorType();
+            locations[i] = device.getLocation();
+            statuses[i] = device.getStatus();
+            // A null element binds as SQL NULL in the float8[] parameter
+            readings[i] = device.getLastReading();
+            units[i] = device.getUnit();
+            deviceIds[i] = device.getDeviceId();
+            i++;
+        }
+        
+        Map<String, UpsertResult> resultsByDeviceId = new HashMap<>();
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            try {
+                PreparedStatement stmt = conn.prepare(UPSERT_ALL_SQL);
+                stmt.setArray(1, connection.createArrayOf("uuid", ids));
+                stmt.setArray(2, connection.createArrayOf("varchar", names));
+                stmt.setArray(3, connection.createArrayOf("varchar", sensorTypes));
+                stmt.setArray(4, connection.createArrayOf("varchar", locations));
+                stmt.setArray(5, connection.createArrayOf("varchar", statuses));
+                stmt.setArray(6, connection.createArrayOf("float8", readings));
+                stmt.setArray(7, connection.createArrayOf("varchar", units));
+                stmt.setArray(8, connection.createArrayOf("varchar", deviceIds));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        SensorDevice device = lastByDeviceId.get(rs.getString(2));
+                        device.setId(rs.getString(1));
+                        resultsByDeviceId.put(device.getDeviceId(), new UpsertResult(device, rs.getBoolean(3)));
+                    }
+                }
+            } catch (SQLException e) {
+                if (conn.isBroken()) {
+                    throw e;
+                }
+                // One bad row (e.g. a value too long for its column) failed the whole statement; isolate it
+                resultsByDeviceId.clear();
+                for (SensorDevice device : lastByDeviceId.values()) {
+                    try {
+                        resultsByDeviceId.put(device.getDeviceId(), upsert(conn, device));
+                    } catch (SQLException itemError) {
+                        resultsByDeviceId.put(device.getDeviceId(), UpsertResult.failed(device, itemError.getMessage()));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error upserting sensor devices in PostgreSQL", e);
+        }
+        
+        List<UpsertResult> results = new ArrayList<>(devices.size());
+        for (SensorDevice device : devices) {
+            UpsertResult stored = resultsByDeviceId.get(device.getDeviceId());
+            if (stored.getSensorDevice() != device) {
+                // Superseded by a later occurrence of the same deviceId in this batch
+                if (stored.isFailed()) {
+                    stored = UpsertResult.failed(device, stored.getFailureReason());
+                } else {
+                    device.setId(stored.getSensorDevice().getId());
+                    stored = new UpsertResult(device, stored.isInserted());
+                }
+            }
+            results.add(stored);
+        }
+        return results;
+    }
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        try (PooledConnection conn = pool.acquire()) {
+            UUID uuid = Uuids.parse(id);
+            if (uuid == null) {
+                return Optional.empty();
+            }
+            PreparedStatement stmt = conn.prepare(FIND_BY_ID_SQL);
+            stmt.setObject(1, uuid);
             
-            stmt.setString(1, id);
-            stmt.setString(2, sensorDevice.getDeviceName());
-            stmt.setString(3, sensorDevice.getSensorType());
-            stmt.setString(4, sensorDevice.getLocation());
-            stmt.setString(5, sensorDevice.getStatus());
-            stmt.setDouble(6, sensorDevice.getLastReading() != null ? sensorDevice.getLastReading() : 0.0);
-            stmt.setString(7, sensorDevice.getUnit());
-            stmt.setString(8, sensorDevice.getDeviceId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToSensorDevice(rs));
+                }
+                return Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding sensor device by ID in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(FIND_BY_DEVICE_ID_SQL);
+            stmt.setString(1, deviceId);
             
-            stmt.executeUpdate();
-            sensorDevice.setId(id);
-            return sensorDevice;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToSensorDevice(rs));
+                }
+                return Optional.empty();
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Error creating sensor device in PostgreSQL", e);
+            throw new RuntimeException("Error finding sensor device by device ID in PostgreSQL", e);
         }
     }
     
     @Override
-    public Optional<SensorDevice> findById(String id) {
-        String sql = "SELECT * FROM sensor_devices WHERE id = ?";
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        // Conditions are appended in a fixed column order, so each combination maps to
+        // one SQL string and is reused from the statement cache
+        StringBuilder sql = new StringBuilder("SELECT " + DEVICE_COLUMNS + " FROM sensor_devices");
+        List<String> params = new ArrayList<>(4);
+        appendCondition(sql, params, "device_id", criteria.getDeviceId());
+        appendCondition(sql, params, "sensor_type", criteria.getSensorType());
+        appendCondition(sql, params, "status", criteria.getStatus());
+        appendCondition(sql, params, "location", criteria.getLocation());
+        appendLocationPrefix(sql, params, criteria.getLocationPrefix());
+        sql.append(" ORDER BY device_name");
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
+        List<SensorDevice> devices = new ArrayList<>();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(sql.toString());
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setString(i + 1, params.get(i));
+            }
             
-            if (rs.next()) {
-                return Optional.of(mapResultSetToSensorDevice(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    devices.add(mapResultSetToSensorDevice(rs));
+                }
             }
-            return Optional.empty();
         } catch (SQLException e) {
-            throw new RuntimeException("Error finding sensor device by ID in PostgreSQL", e);
+            throw new RuntimeException("Error finding sensor devices by criteria in PostgreSQL", e);
+        }
+        
+        return devices;
+    }
+    
+    private static void appendCondition(StringBuilder sql, List<String> params, String column, String value) {
+        if (value == null) {
+            return;
+        }
+        sql.append(params.isEmpty() ? " WHERE " : " AND ").append(column).append(" = ?");
+        params.add(value);
+    }
+    
+    /**
+     * The subtree test of LocationPath.isWithin. The left-anchored LIKE is answered from the
+     * text_pattern_ops index on location, which is collation-independent
+     */
+    private static void appendLocationPrefix(StringBuilder sql, List<String> params, String prefix) {
+        if (prefix == null) {
+            return;
+        }
+        sql.append(params.isEmpty() ? " WHERE " : " AND ").append("(location = ? OR location LIKE ?)");
+        params.add(prefix);
+        params.add(escapeLike(prefix + LocationPath.SEPARATOR) + "%");
+    }
+    
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
         }
+        return escaped.toString();
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        List<GroupStatistics> statistics = new ArrayList<>();
+        
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(AGGREGATE_SQL.get(groupBy));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long readingCount = rs.getLong(3);
+                    statistics.add(new GroupStatistics(rs.getString(1), rs.getLong(2), readingCount,
+                            readingCount > 0 ? rs.getDouble(4) : null,
+                            readingCount > 0 ? rs.getDouble(5) : null,
+                            rs.getDouble(6)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error aggregating sensor devices in PostgreSQL", e);
+        }
+        
+        return statistics;
     }
     
     @Override
     public List<SensorDevice> findAll() {
-        String sql = "SELECT * FROM sensor_devices ORDER BY device_name";
         List<SensorDevice> devices = new ArrayList<>();
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (PooledConnection conn = pool.acquire();
+             ResultSet rs = conn.prepare(FIND_ALL_SQL).executeQuery()) {
             
             while (rs.next()) {
                 devices.add(mapResultSetToSensorDevice(rs));
@@ -81,23 +515,119 @@ public class PostgreSQLSensorDeviceRepository implements ISensorDeviceRepository
         return devices;
     }
     
+    /**
+     * Streams over a server-side cursor, which keeps one pooled connection until the stream is closed.
+     * Calling the repository from inside the stream pipeline needs a second connection: in single-connection
+     * mode (or with a pool of one) such a call fails with "pooled connections are held by this thread";
+     * collect what has to be written and write it after closing the stream.
+     */
     @Override
-    public SensorDevice update(SensorDevice sensorDevice) {
-        String sql = "UPDATE sensor_devices SET device_name = ?, sensor_type = ?, location = ?, " +
-                     "status = ?, last_reading = ?, unit = ?, device_id = ? WHERE id = ?";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, sensorDevice.getDeviceName());
-            stmt.setString(2, sensorDevice.getSensorType());
-            stmt.setString(3, sensorDevice.getLocation());
-            stmt.setString(4, sensorDevice.getStatus());
-            stmt.setDouble(5, sensorDevice.getLastReading() != null ? sensorDevice.getLastReading() : 0.0);
-            stmt.setString(6, sensorDevice.getUnit());
-            stmt.setString(7, sensorDevice.getDeviceId());
-            stmt.setString(8, sensorDevice.getId());
+    public Stream<SensorDevice> streamAll() {
+        PooledConnection conn = null;
+        try {
+            conn = pool.acquire();
+            // pgjdbc only uses a server-side cursor (fetch size) inside a transaction
+            conn.getConnection().setAutoCommit(false);
+            PreparedStatement stmt = conn.prepare(STREAM_ALL_SQL);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            ResultSetSpliterator spliterator = new ResultSetSpliterator(conn, stmt.executeQuery());
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (SQLException e) {
+            if (conn != null) {
+                conn.close();
+            }
+            throw new RuntimeException("Error streaming sensor devices from PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        List<SensorDevice> devices = new ArrayList<>(limit);
+        
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt;
+            if (afterId == null) {
+                stmt = conn.prepare(FIRST_PAGE_SQL);
+                stmt.setInt(1, limit);
+            } else {
+                UUID after = Uuids.parse(afterId);
+                if (after == null) {
+                    return devices;
+                }
+                stmt = conn.prepare(NEXT_PAGE_SQL);
+                stmt.setObject(1, after);
+                stmt.setInt(2, limit);
+            }
             
-            int rowsAffected = stmt.executeUpdate();
-            if (rowsAffected == 0) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    devices.add(mapResultSetToSensorDevice(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding sensor device page in PostgreSQL", e);
+        }
+        
+        return devices;
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        List<DeviceChange> upserted = new ArrayList<>();
+        List<DeviceChange> deleted = new ArrayList<>();
+        Timestamp sinceTimestamp = Timestamp.from(since.getTimestamp());
+        UUID sinceId = Uuids.parse(since.getId());
+        if (sinceId == null) {
+            sinceId = Uuids.NIL;
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            // One more than requested from each source, so the merge can tell whether more changes are waiting
+            PreparedStatement stmt = conn.prepare(MODIFIED_SINCE_SQL);
+            stmt.setTimestamp(1, sinceTimestamp);
+            stmt.setObject(2, sinceId);
+            stmt.setInt(3, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    upserted.add(DeviceChange.upserted(mapResultSetToSensorDevice(rs)));
+                }
+            }
+            
+            stmt = conn.prepare(DELETED_SINCE_SQL);
+            stmt.setTimestamp(1, sinceTimestamp);
+            stmt.setObject(2, sinceId);
+            stmt.setInt(3, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    deleted.add(DeviceChange.deleted(rs.getString(1), rs.getString(2), rs.getTimestamp(3).toInstant()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding modified sensor devices in PostgreSQL", e);
+        }
+        
+        return ChangeBatch.merge(upserted, deleted, since, limit);
+    }
+    
+    /**
+     * Delete tombstones older than the given time. Consumers whose watermark is older
+     * than that will miss those deletes and should resynchronize from Watermark.initial().
+     * @return Number of tombstones removed
+     */
+    public int purgeTombstones(Instant olderThan) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(PURGE_TOMBSTONES_SQL);
+            stmt.setTimestamp(1, Timestamp.from(olderThan));
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error purging sensor device tombstones in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        try (PooledConnection conn = pool.acquire()) {
+            if (updateRow(conn, sensorDevice) == 0) {
                 throw new RuntimeException("Sensor device not found for update");
             }
             
@@ -107,47 +637,362 @@ public class PostgreSQLSensorDeviceRepository implements ISensorDeviceRepository
         }
     }
     
+    int updateRow(PooledConnection conn, SensorDevice sensorDevice) throws SQLException {
+        UUID id = Uuids.parse(sensorDevice.getId());
+        if (id == null) {
+            return 0;
+        }
+        PreparedStatement stmt = conn.prepare(UPDATE_SQL);
+        bindUpdate(stmt, sensorDevice, id);
+        return stmt.executeUpdate();
+    }
+    
     @Override
-    public boolean deleteById(String id) {
-        String sql = "DELETE FROM sensor_devices WHERE id = ?";
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        BatchResult result = new BatchResult();
+        
+        List<Integer> batchIndexes = new ArrayList<>();
+        List<UUID> batchIds = new ArrayList<>();
+        for (int i = 0; i < devices.size(); i++) {
+            if (devices.get(i).getId() == null) {
+                result.addFailure(i, devices.get(i), "Sensor device ID is required for update");
+                continue;
+            }
+            UUID id = Uuids.parse(devices.get(i).getId());
+            if (id == null) {
+                result.addFailure(i, devices.get(i), "Sensor device not found for update");
+            } else {
+                batchIndexes.add(i);
+                batchIds.add(id);
+            }
+        }
+        if (batchIndexes.isEmpty()) {
+            return result;
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = conn.prepare(UPDATE_SQL);
+                for (int i = 0; i < batchIndexes.size(); i++) {
+                    bindUpdate(stmt, devices.get(batchIndexes.get(i)), batchIds.get(i));
+                    stmt.addBatch();
+                }
+                
+                int[] counts = stmt.executeBatch();
+                connection.commit();
+                
+                for (int i = 0; i < batchIndexes.size(); i++) {
+                    int index = batchIndexes.get(i);
+                    if (counts[i] == 0) {
+                        result.addFailure(index, devices.get(index), "Sensor device not found for update");
+                    } else {
+                        result.addSuccess(devices.get(index));
+                    }
+                }
+                return result;
+            } catch (BatchUpdateException e) {
+                // A constraint violation aborted the transaction; isolate the bad items
+                connection.rollback();
+                connection.setAutoCommit(true);
+                for (int index : batchIndexes) {
+                    SensorDevice device = devices.get(index);
+                    try {
+                        if (updateRow(conn, device) == 0) {
+                            result.addFailure(index, device, "Sensor device not found for update");
+                        } else {
+                            result.addSuccess(device);
+                        }
+                    } catch (SQLException itemError) {
+                        result.addFailure(index, device, itemError.getMessage());
+                    }
+                }
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor devices in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        try (PooledConnection conn = pool.acquire()) {
+            return updateReadingRow(conn, deviceId, lastReading);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device reading in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * Send the reading updates as one JDBC batch
+     * @return Update count per device, as returned by executeBatch()
+     */
+    int[] updateReadingRows(PooledConnection conn, String[] deviceIds, double[] readings) throws SQLException {
+        PreparedStatement stmt = conn.prepare(UPDATE_READING_SQL);
+        for (int i = 0; i < deviceIds.length; i++) {
+            stmt.setDouble(1, readings[i]);
+            stmt.setString(2, deviceIds[i]);
+            stmt.addBatch();
+        }
+        return stmt.executeBatch();
+    }
+    
+    boolean updateReadingRow(PooledConnection conn, String deviceId, double lastReading) throws SQLException {
+        PreparedStatement stmt = conn.prepare(UPDATE_READING_SQL);
+        stmt.setDouble(1, lastReading);
+        stmt.setString(2, deviceId);
+        return stmt.executeUpdate() > 0;
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        if (readingsByDeviceId.isEmpty()) {
+            return 0;
+        }
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+        String[] deviceIds = new String[readingsByDeviceId.size()];
+        double[] readings = new double[deviceIds.length];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+            deviceIds[i] = entry.getKey();
+            readings[i++] = entry.getValue();
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                int[] counts = updateReadingRows(conn, deviceIds, readings);
+                connection.commit();
+                
+                int updated = 0;
+                for (int count : counts) {
+                    if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                        updated++;
+                    }
+                }
+                return updated;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device readings in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        try (PooledConnection conn = pool.acquire()) {
+            return updateStatusRow(conn, deviceId, status);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device status in PostgreSQL", e);
+        }
+    }
+    
+    boolean updateStatusRow(PooledConnection conn, String deviceId, String status) throws SQLException {
+        PreparedStatement stmt = conn.prepare(UPDATE_STATUS_SQL);
+        stmt.setString(1, status);
+        stmt.setString(2, deviceId);
+        return stmt.executeUpdate() > 0;
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        try (PooledConnection conn = pool.acquire()) {
+            return deleteRow(conn, id);
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting sensor device from PostgreSQL", e);
         }
     }
     
+    boolean deleteRow(PooledConnection conn, String id) throws SQLException {
+        UUID uuid = Uuids.parse(id);
+        if (uuid == null) {
+            return false;
+        }
+        PreparedStatement stmt = conn.prepare(DELETE_SQL);
+        stmt.setObject(1, uuid);
+        int rowsAffected = stmt.executeUpdate();
+        return rowsAffected > 0;
+    }
+    
     @Override
     public boolean existsById(String id) {
-        String sql = "SELECT COUNT(*) FROM sensor_devices WHERE id = ?";
+        try (PooledConnection conn = pool.acquire()) {
+            UUID uuid = Uuids.parse(id);
+            if (uuid == null) {
+                return false;
+            }
+            PreparedStatement stmt = conn.prepare(EXISTS_SQL);
+            stmt.setObject(1, uuid);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error checking sensor device existence in PostgreSQL", e);
+        }
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> existing = new HashSet<>();
+        List<UUID> uuids = new ArrayList<>();
+        for (String id : ids) {
+            UUID uuid = Uuids.parse(id);
+            if (uuid != null) {
+                uuids.add(uuid);
+            }
+        }
+        if (uuids.isEmpty()) {
+            return existing;
+        }
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(EXISTING_IDS_SQL);
+            stmt.setArray(1, conn.getConnection().createArrayOf("uuid", uuids.toArray()));
             
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
             }
-            return false;
         } catch (SQLException e) {
             throw new RuntimeException("Error checking sensor device existence in PostgreSQL", e);
         }
+        
+        return existing;
+    }
+    
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Map<String, Double> readings = new HashMap<>();
+        if (deviceIds.isEmpty()) {
+            return readings;
+        }
+        
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepare(LAST_READINGS_SQL);
+            stmt.setArray(1, conn.getConnection().createArrayOf("varchar", deviceIds.toArray()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    double reading = rs.getDouble(2);
+                    readings.put(rs.getString(1), rs.wasNull() ? null : reading);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding last readings in PostgreSQL", e);
+        }
+        
+        return readings;
+    }
+    
+    private void bindInsert(PreparedStatement stmt, SensorDevice sensorDevice, UUID id) throws SQLException {
+        stmt.setObject(1, id);
+        stmt.setString(2, sensorDevice.getDeviceName());
+        stmt.setString(3, sensorDevice.getSensorType());
+        stmt.setString(4, sensorDevice.getLocation());
+        stmt.setString(5, sensorDevice.getStatus());
+        bindReading(stmt, 6, sensorDevice.getLastReading());
+        stmt.setString(7, sensorDevice.getUnit());
+        stmt.setString(8, sensorDevice.getDeviceId());
+    }
+    
+    private void bindUpdate(PreparedStatement stmt, SensorDevice sensorDevice, UUID id) throws SQLException {
+        stmt.setString(1, sensorDevice.getDeviceName());
+        stmt.setString(2, sensorDevice.getSensorType());
+        stmt.setString(3, sensorDevice.getLocation());
+        stmt.setString(4, sensorDevice.getStatus());
+        bindReading(stmt, 5, sensorDevice.getLastReading());
+        stmt.setString(6, sensorDevice.getUnit());
+        stmt.setString(7, sensorDevice.getDeviceId());
+        stmt.setObject(8, id);
+    }
+    
+    /**
+     * A device without a reading is stored as NULL, not as a reading of 0.0
+     */
+    private static void bindReading(PreparedStatement stmt, int index, Double reading) throws SQLException {
+        if (reading != null) {
+            stmt.setDouble(index, reading);
+        } else {
+            stmt.setNull(index, Types.DOUBLE);
+        }
     }
     
-    private SensorDevice mapResultSetToSensorDevice(ResultSet rs) throws SQLException {
+    /**
+     * Map a row selected with DEVICE_COLUMNS. Columns are read by index, which skips
+     * the driver's case-insensitive name lookup for every column of every row.
+     */
+    static SensorDevice mapResultSetToSensorDevice(ResultSet rs) throws SQLException {
         SensorDevice device = new SensorDevice();
-        device.setId(rs.getString("id"));
-        device.setDeviceName(rs.getString("device_name"));
-        device.setSensorType(rs.getString("sensor_type"));
-        device.setLocation(rs.getString("location"));
-        device.setStatus(rs.getString("status"));
-        device.setLastReading(rs.getDouble("last_reading"));
-        device.setUnit(rs.getString("unit"));
-        device.setDeviceId(rs.getString("device_id"));
+        device.setId(rs.getString(1));
+        device.setDeviceName(rs.getString(2));
+        device.setSensorType(rs.getString(3));
+        device.setLocation(rs.getString(4));
+        device.setStatus(rs.getString(5));
+        double lastReading = rs.getDouble(6);
+        device.setLastReading(rs.wasNull() ? null : lastReading);
+        device.setUnit(rs.getString(7));
+        device.setDeviceId(rs.getString(8));
+        Timestamp createdAt = rs.getTimestamp(9);
+        device.setCreatedAt(createdAt != null ? createdAt.toInstant() : null);
+        Timestamp updatedAt = rs.getTimestamp(10);
+        device.setUpdatedAt(updatedAt != null ? updatedAt.toInstant() : null);
         return device;
     }
+    
+    /**
+     * Maps rows lazily and releases the pooled connection once the rows are exhausted or the stream is closed
+     */
+    private class ResultSetSpliterator extends Spliterators.AbstractSpliterator<SensorDevice> {
+        private final PooledConnection conn;
+        private final ResultSet rs;
+        private boolean closed;
+        
+        ResultSetSpliterator(PooledConnection conn, ResultSet rs) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.rs = rs;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super SensorDevice> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapResultSetToSensorDevice(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Error streaming sensor devices from PostgreSQL", e);
+            }
+        }
+        
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                // The connection is reset when it is returned to the pool
+            } finally {
+                conn.close();
+            }
+        }
+    }
 }
-
@@ -0,0 +1,202 @@
+package com.iot.sensor.repository.postgresql;
+
+import com.iot.sensor.model.SensorDevice;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * A transaction over several writes, started by PostgreSQLSensorDeviceRepository.beginUnitOfWork():
+ * <pre>
+ * try (PostgreSQLUnitOfWork unit = repository.beginUnitOfWork()) {
+ *     unit.create(device);
+ *     unit.updateStatus("SENSOR-001", "Inactive");
+ *     unit.commit();
+ * }
+ * </pre>
+ * The writes become visible and durable together at commit(), which pays one WAL flush for all
+ * of them instead of one per autocommitted write. Closing without commit() rolls back.
+ * A write that fails with a database error aborts the transaction: later writes fail as well
+ * and the unit can only be rolled back.
+ * Not thread-safe: the unit holds one pooled connection until it is closed.
+ */
+public class PostgreSQLUnitOfWork implements AutoCloseable {
+    
+    private final PostgreSQLSensorDeviceRepository repository;
+    private final PooledConnection conn;
+    private boolean closed;
+    
+    PostgreSQLUnitOfWork(PostgreSQLSensorDeviceRepository repository, PooledConnection conn) throws SQLException {
+        this.repository = repository;
+        this.conn = conn;
+        try {
+            conn.getConnection().setAutoCommit(false);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Insert a device; it gets a generated ID if it has none
+     */
+    public SensorDevice create(SensorDevice sensorDevice) {
+        ensureOpen();
+        try {
+            return repository.insert(conn, sensorDevice);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error creating sensor device in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * Update a device by ID
+     * @throws RuntimeException if the device does not exist (the transaction stays usable)
+     */
+    public SensorDevice update(SensorDevice sensorDevice) {
+        ensureOpen();
+        int updated;
+        try {
+            updated = repository.updateRow(conn, sensorDevice);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device in PostgreSQL", e);
+        }
+        if (updated == 0) {
+            throw new RuntimeException("Sensor device not found for update");
+        }
+        return sensorDevice;
+    }
+    
+    /**
+     * @return true if the device exists and was updated
+     */
+    public boolean updateReading(String deviceId, double lastReading) {
+        ensureOpen();
+        try {
+            return repository.updateReadingRow(conn, deviceId, lastReading);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device reading in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * Update the readings of several devices in one round trip
+     * @return Number of devices that exist and were updated
+     */
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        String[] deviceIds = new String[readingsByDeviceId.size()];
+        double[] readings = new double[deviceIds.length];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+            deviceIds[i] = entry.getKey();
+            readings[i++] = entry.getValue();
+        }
+        int updated = 0;
+        for (int count : updateReadingRows(deviceIds, readings)) {
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+    
+    int[] updateReadingRows(String[] deviceIds, double[] readings) {
+        ensureOpen();
+        try {
+            return repository.updateReadingRows(conn, deviceIds, readings);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device readings in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * @return true if the device exists and was updated
+     */
+    public boolean updateStatus(String deviceId, String status) {
+        ensureOpen();
+        try {
+            return repository.updateStatusRow(conn, deviceId, status);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating sensor device status in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * @return true if the device existed and was deleted
+     */
+    public boolean deleteById(String id) {
+        ensureOpen();
+        try {
+            return repository.deleteRow(conn, id);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting sensor device from PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * Commit the writes made so far; the unit can be used for further writes afterwards
+     */
+    public void commit() {
+        ensureOpen();
+        try {
+            conn.getConnection().commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error committing unit of work in PostgreSQL", e);
+        }
+    }
+    
+    /**
+     * Discard the writes made since the last commit
+     */
+    public void rollback() {
+        ensureOpen();
+        try {
+            conn.getConnection().rollback();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error rolling back unit of work in PostgreSQL", e);
+        }
+    }
+    
+    Savepoint setSavepoint() {
+        try {
+            return conn.getConnection().setSavepoint();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error setting savepoint in PostgreSQL", e);
+        }
+    }
+    
+    void rollbackTo(Savepoint savepoint) {
+        try {
+            conn.getConnection().rollback(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error rolling back to savepoint in PostgreSQL", e);
+        }
+    }
+    
+    void release(Savepoint savepoint) {
+        try {
+            conn.getConnection().releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error releasing savepoint in PostgreSQL", e);
+        }
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Unit of work is closed");
+        }
+    }
+    
+    /**
+     * Return the connection to the pool, which rolls back anything not committed
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.iot.sensor.repository.rollup;
+
+import com.iot.sensor.model.GroupStatistics;
+
+import java.util.TreeMap;
+
+/**
+ * Running statistics of one group that support removal as well as addition.
+ * Readings are kept as a sorted multiset so min/max stay exact when a device leaves the group.
+ * The sum is compensated (Neumaier), so a long run of add/remove pairs does not drift away from the
+ * sum of the readings still in the group.
+ */
+class GroupAccumulator {
+    
+    private final TreeMap<Double, Integer> readings = new TreeMap<>();
+    private long count;
+    private long readingCount;
+    private double sum;
+    // Low-order bits lost by sum, added back when the total is read
+    private double compensation;
+    
+    void add(Double reading) {
+        count++;
+        if (reading != null) {
+            readings.merge(reading, 1, Integer::sum);
+            readingCount++;
+            accumulate(reading);
+        }
+    }
+    
+    void remove(Double reading) {
+        count--;
+        if (reading != null) {
+            readings.computeIfPresent(reading, (value, n) -> n == 1 ? null : n - 1);
+            readingCount--;
+            if (readingCount == 0) {
+                sum = 0.0;
+                compensation = 0.0;
+            } else {
+                accumulate(-reading);
+            }
+        }
+    }
+    
+    private void accumulate(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+    
+    boolean isEmpty() {
+        return count == 0;
+    }
+    
+    GroupStatistics toStatistics(String group) {
+        return new GroupStatistics(group, count, readingCount,
+                readings.isEmpty() ? null : readings.firstKey(),
+                readings.isEmpty() ? null : readings.lastKey(),
+                readingCount == 0 ? 0.0 : sum + compensation);
+    }
+}
@@ -0,0 +1,79 @@
+package com.iot.sensor.repository.rollup;
+
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.MirroringSensorDeviceRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decorator that keeps the fleet statistics of every GroupBy in memory, so aggregateBy()
+ * is answered without touching the database. The accumulators are updated incrementally
+ * from the fleet mirror kept by MirroringSensorDeviceRepository.
+ */
+public class RollupSensorDeviceRepository extends MirroringSensorDeviceRepository {
+    
+    private static final Comparator<String> GROUP_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    
+    // Guarded by this
+    private Map<GroupBy, TreeMap<String, GroupAccumulator>> rollups = newRollups();
+    
+    public RollupSensorDeviceRepository(ISensorDeviceRepository delegate) {
+        super(delegate);
+        rebuild();
+    }
+    
+    private static Map<GroupBy, TreeMap<String, GroupAccumulator>> newRollups() {
+        Map<GroupBy, TreeMap<String, GroupAccumulator>> rollups = new EnumMap<>(GroupBy.class);
+        for (GroupBy groupBy : GroupBy.values()) {
+            rollups.put(groupBy, new TreeMap<>(GROUP_ORDER));
+        }
+        return rollups;
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        synchronized (this) {
+            TreeMap<String, GroupAccumulator> groups = rollups.get(groupBy);
+            List<GroupStatistics> statistics = new ArrayList<>(groups.size());
+            for (Map.Entry<String, GroupAccumulator> entry : groups.entrySet()) {
+                statistics.add(entry.getValue().toStatistics(entry.getKey()));
+            }
+            return statistics;
+        }
+    }
+    
+    @Override
+    protected void clearIndex() {
+        rollups = newRollups();
+    }
+    
+    @Override
+    protected void addToIndex(SensorDevice sensorDevice) {
+        for (Map.Entry<GroupBy, TreeMap<String, GroupAccumulator>> rollup : rollups.entrySet()) {
+            rollup.getValue().computeIfAbsent(rollup.getKey().keyOf(sensorDevice), group -> new GroupAccumulator())
+                    .add(sensorDevice.getLastReading());
+        }
+    }
+    
+    @Override
+    protected void removeFromIndex(SensorDevice sensorDevice) {
+        for (Map.Entry<GroupBy, TreeMap<String, GroupAccumulator>> rollup : rollups.entrySet()) {
+            String group = rollup.getKey().keyOf(sensorDevice);
+            GroupAccumulator accumulator = rollup.getValue().get(group);
+            if (accumulator != null) {
+                accumulator.remove(sensorDevice.getLastReading());
+                if (accumulator.isEmpty()) {
+                    rollup.getValue().remove(group);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.iot.sensor.repository.routing;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import com.iot.sensor.repository.cache.LruTtlCache;
+import com.iot.sensor.repository.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Repository that sends writes to a primary and spreads reads over read replicas.
+ *
+ * Each read picks the faster of two random replicas by their moving-average latency.
+ * Point reads (findById, findByDeviceId, existsById) are hedged: if the first replica has not
+ * answered within its recent p95 latency, the same read is sent to another replica (or the
+ * primary when there is only one) and the first answer wins. Queries over the fleet are not
+ * hedged, since duplicating a scan costs far more than a lookup.
+ *
+ * Read-your-writes: for a short window after a write, point reads of the written device go
+ * to the primary. Fleet queries and the change feed may lag the primary by the replication delay;
+ * the change feed is always served by the primary so its watermarks stay consistent.
+ */
+public class RoutingSensorDeviceRepository implements ISensorDeviceRepository, AutoCloseable {
+    
+    private static final double EWMA_ALPHA = 0.2;
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int LATENCY_WINDOW_SAMPLES = 1000;
+    private static final long INITIAL_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final int STICKY_CACHE_SIZE = 100_000;
+    
+    /**
+     * A repository with its observed read latency
+     */
+    static final class Endpoint {
+        final String name;
+        final ISensorDeviceRepository repository;
+        
+        // Updated without synchronization; a lost update only delays convergence slightly
+        private volatile double ewmaNanos;
+        private volatile LatencyHistogram window = new LatencyHistogram();
+        private volatile long hedgeDelayNanos = INITIAL_HEDGE_DELAY_NANOS;
+        
+        Endpoint(String name, ISensorDeviceRepository repository) {
+            this.name = name;
+            this.repository = repository;
+        }
+        
+        <T> T read(Function<ISensorDeviceRepository, T> call) {
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(repository);
+                record(System.nanoTime() - start);
+                return result;
+            } catch (RuntimeException e) {
+                // Failing fast must not make an endpoint look attractive
+                ewmaNanos += EWMA_ALPHA * (FAILURE_PENALTY_NANOS - ewmaNanos);
+                throw e;
+            }
+        }
+        
+        private void record(long nanos) {
+            ewmaNanos += EWMA_ALPHA * (nanos - ewmaNanos);
+            LatencyHistogram current = window;
+            current.record(nanos);
+            // Hedge against the p95 of the last full window, so the delay follows current conditions
+            if (current.getCount() >= LATENCY_WINDOW_SAMPLES && window == current) {
+                window = new LatencyHistogram();
+                hedgeDelayNanos = Math.max(MIN_HEDGE_DELAY_NANOS, current.getValueAtQuantile(0.95));
+            }
+        }
+        
+        double getEwmaNanos() {
+            return ewmaNanos;
+        }
+        
+        long getHedgeDelayNanos() {
+            return hedgeDelayNanos;
+        }
+    }
+    
+    private final Endpoint primary;
+    private final List<Endpoint> replicas;
+    private final LruTtlCache<String, Boolean> recentlyWrittenIds;
+    private final LruTtlCache<String, Boolean> recentlyWrittenDeviceIds;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final LongAdder hedgedReads = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    
+    /**
+     * @param stickyMillis How long point reads of a written device stay on the primary; set it above the replication lag
+     */
+    public RoutingSensorDeviceRepository(ISensorDeviceRepository primary, List<ISensorDeviceRepository> replicas,
+                                         long stickyMillis) {
+        this(primary, replicas, stickyMillis, Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "hedged-read");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+    
+    /**
+     * @param executor Runs the reads so they can be hedged; not shut down by close()
+     */
+    public RoutingSensorDeviceRepository(ISensorDeviceRepository primary, List<ISensorDeviceRepository> replicas,
+                                         long stickyMillis, ExecutorService executor) {
+        this(primary, replicas, stickyMillis, executor, false);
+    }
+    
+    private RoutingSensorDeviceRepository(ISensorDeviceRepository primary, List<ISensorDeviceRepository> replicas,
+                                          long stickyMillis, ExecutorService executor, boolean ownsExecutor) {
+        if (stickyMillis <= 0) {
+            throw new IllegalArgumentException("Sticky window must be positive");
+        }
+        this.primary = new Endpoint("primary", primary);
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            endpoints.add(new Endpoint("replica-" + i, replicas.get(i)));
+        }
+        this.replicas = Collections.unmodifiableList(endpoints);
+        this.recentlyWrittenIds = new LruTtlCache<>(STICKY_CACHE_SIZE, stickyMillis, 16);
+        this.recentlyWrittenDeviceIds = new LruTtlCache<>(STICKY_CACHE_SIZE, stickyMillis, 16);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+    
+    // ---- endpoint selection ----
+    
+    /**
+     * Power of two choices: of two random replicas, the one with the lower average latency
+     */
+    private Endpoint chooseReplica() {
+        int count = replicas.size();
+        if (count == 0) {
+            return primary;
+        }
+        if (count == 1) {
+            return replicas.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(count);
+        int b = random.nextInt(count - 1);
+        if (b >= a) {
+            b++;
+        }
+        Endpoint first = replicas.get(a);
+        Endpoint second = replicas.get(b);
+        return first.getEwmaNanos() <= second.getEwmaNanos() ? first : second;
+    }
+    
+    /**
+     * The fastest endpoint other than the one already asked, or null if there is none
+     */
+    private Endpoint chooseHedge(Endpoint asked) {
+        Endpoint best = null;
+        for (Endpoint replica : replicas) {
+            if (replica != asked && (best == null || replica.getEwmaNanos() < best.getEwmaNanos())) {
+                best = replica;
+            }
+        }
+        if (best == null && asked != primary) {
+            best = primary;
+        }
+        return best;
+    }
+    
+    private boolean isSticky(SensorDevice device) {
+        return (device.getId() != null && recentlyWrittenIds.get(device.getId()) != null)
+                || (device.getDeviceId() != null && recentlyWrittenDeviceIds.get(device.getDeviceId()) != null);
+    }
+    
+    private void markWritten(String id, String deviceId) {
+        if (id != null) {
+            recentlyWrittenIds.put(id, Boolean.TRUE);
+        }
+        if (deviceId != null) {
+            recentlyWrittenDeviceIds.put(deviceId, Boolean.TRUE);
+        }
+    }
+    
+    private void markWritten(SensorDevice device) {
+        markWritten(device.getId(), device.getDeviceId());
+    }
+    
+    /**
+     * Run the read on a replica, and again on a second endpoint if the first is slower than its p95
+     */
+    private <T> T hedgedRead(Function<ISensorDeviceRepository, T> call) {
+        Endpoint first = chooseReplica();
+        Endpoint second = chooseHedge(first);
+        if (second == null) {
+            return first.read(call);
+        }
+        
+        CompletableFuture<T> firstAttempt = CompletableFuture.supplyAsync(() -> first.read(call), executor);
+        try {
+            return firstAttempt.get(first.getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Slow or failed: hedge below; a failure is retried on the other endpoint
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading sensor device", e);
+        }
+        
+        hedgedReads.increment();
+        CompletableFuture<T> secondAttempt = CompletableFuture.supplyAsync(() -> second.read(call), executor);
+        
+        // First successful answer wins; fail only when both attempts failed.
+        // The losing read is left to finish, so its latency still feeds the endpoint statistics.
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        firstAttempt.whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        secondAttempt.whenComplete((result, error) -> {
+            if (error == null) {
+                if (winner.complete(result)) {
+                    hedgeWins.increment();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        return join(winner);
+    }
+    
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Error reading sensor device", cause);
+        }
+    }
+    
+    // ---- writes go to the primary ----
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        SensorDevice created = primary.repository.create(sensorDevice);
+        markWritten(created);
+        return created;
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        BatchResult result = primary.repository.createAll(sensorDevices);
+        result.getSucceeded().forEach(this::markWritten);
+        return result;
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        UpsertResult result = primary.repository.upsertByDeviceId(sensorDevice);
+        markWritten(result.getSensorDevice());
+        return result;
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        List<UpsertResult> results = primary.repository.upsertAllByDeviceId(sensorDevices);
+        results.forEach(result -> markWritten(result.getSensorDevice()));
+        return results;
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        // Mark before writing: the old deviceId is unknown here, but the ID covers reads that find the old one
+        markWritten(sensorDevice);
+        return primary.repository.update(sensorDevice);
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        sensorDevices.forEach(this::markWritten);
+        return primary.repository.updateAll(sensorDevices);
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        markWritten(null, deviceId);
+        return primary.repository.updateReading(deviceId, lastReading);
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        readingsByDeviceId.keySet().forEach(deviceId -> markWritten(null, deviceId));
+        return primary.repository.updateReadings(readingsByDeviceId);
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        markWritten(null, deviceId);
+        return primary.repository.updateStatus(deviceId, status);
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        markWritten(id, null);
+        return primary.repository.deleteById(id);
+    }
+    
+    // ---- point reads: sticky to the primary after a write, hedged otherwise ----
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        if (recentlyWrittenIds.get(id) != null) {
+            return primary.repository.findById(id);
+        }
+        Optional<SensorDevice> device = hedgedRead(repository -> repository.findById(id));
+        // Writes by deviceId only mark the deviceId, which is known once the device is found
+        if (device.isPresent() && isSticky(device.get())) {
+            return primary.repository.findById(id);
+        }
+        return device;
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        if (recentlyWrittenDeviceIds.get(deviceId) != null) {
+            return primary.repository.findByDeviceId(deviceId);
+        }
+        Optional<SensorDevice> device = hedgedRead(repository -> repository.findByDeviceId(deviceId));
+        if (device.isPresent() && isSticky(device.get())) {
+            return primary.repository.findByDeviceId(deviceId);
+        }
+        return device;
+    }
+    
+    /**
+     * Recently written devices are read from the primary, the rest in one hedged replica read
+     */
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        List<String> sticky = new ArrayList<>();
+        List<String> replicated = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            (recentlyWrittenDeviceIds.get(deviceId) != null ? sticky : replicated).add(deviceId);
+        }
+        
+        Map<String, Double> readings = new HashMap<>();
+        if (!replicated.isEmpty()) {
+            readings.putAll(hedgedRead(repository -> repository.findLastReadings(replicated)));
+        }
+        if (!sticky.isEmpty()) {
+            readings.putAll(primary.repository.findLastReadings(sticky));
+        }
+        return readings;
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        if (recentlyWrittenIds.get(id) != null) {
+            return primary.repository.existsById(id);
+        }
+        return hedgedRead(repository -> repository.existsById(id));
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        List<String> sticky = new ArrayList<>();
+        List<String> replicated = new ArrayList<>();
+        for (String id : ids) {
+            (recentlyWrittenIds.get(id) != null ? sticky : replicated).add(id);
+        }
+        
+        Set<String> existing = new HashSet<>();
+        if (!replicated.isEmpty()) {
+            existing.addAll(hedgedRead(repository -> repository.findExistingIds(replicated)));
+        }
+        if (!sticky.isEmpty()) {
+            existing.addAll(primary.repository.findExistingIds(sticky));
+        }
+        return existing;
+    }
+    
+    // ---- fleet reads: latency-balanced over the replicas ----
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        if (criteria.getDeviceId() != null && recentlyWrittenDeviceIds.get(criteria.getDeviceId()) != null) {
+            return primary.repository.findByCriteria(criteria);
+        }
+        return chooseReplica().read(repository -> repository.findByCriteria(criteria));
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return chooseReplica().read(ISensorDeviceRepository::findAll);
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        // Opening the stream is all that can be timed here, so it does not feed the latency statistics
+        return chooseReplica().repository.streamAll();
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return chooseReplica().read(repository -> repository.findPage(afterId, limit));
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return chooseReplica().read(repository -> repository.aggregateBy(groupBy));
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        return primary.repository.findModifiedSince(since, limit);
+    }
+    
+    // ---- statistics ----
+    
+    /**
+     * Number of point reads that were sent to a second endpoint
+     */
+    public long getHedgedReadCount() {
+        return hedgedReads.sum();
+    }
+    
+    /**
+     * Number of hedged reads where the second endpoint answered first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RoutingSensorDeviceRepository{");
+        List<Endpoint> endpoints = new ArrayList<>(replicas);
+        endpoints.add(0, primary);
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            sb.append(i == 0 ? "" : ", ").append(endpoint.name)
+                    .append(String.format("[avg=%.2fms, hedgeAfter=%.2fms]",
+                            endpoint.getEwmaNanos() / 1e6, endpoint.getHedgeDelayNanos() / 1e6));
+        }
+        return sb.append(", hedged=").append(getHedgedReadCount())
+                .append(", hedgeWins=").append(getHedgeWinCount()).append('}').toString();
+    }
+    
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
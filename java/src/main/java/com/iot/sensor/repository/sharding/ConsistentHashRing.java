@@ -0,0 +1,93 @@
+package com.iot.sensor.repository.sharding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring mapping keys to shard names.
+ * Each shard owns virtualNodes points on a 64-bit ring; a key belongs to the first point
+ * at or after its hash. Adding a shard only moves the keys that land on its new points,
+ * roughly 1/N of the total. Lookups are a binary search over a sorted array.
+ */
+public class ConsistentHashRing {
+    
+    private final int virtualNodes;
+    private final List<String> shards;
+    private final long[] points;
+    private final String[] owners;
+    
+    public ConsistentHashRing(List<String> shards, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be at least 1");
+        }
+        this.virtualNodes = virtualNodes;
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        
+        int size = shards.size() * virtualNodes;
+        long[][] entries = new long[size][];
+        int n = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                entries[n++] = new long[]{hash(shards.get(shard) + "#" + node), shard};
+            }
+        }
+        // Ties (practically impossible) are broken by shard order, so every ring with the same shards agrees
+        Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = shards.get((int) entries[i][1]);
+        }
+    }
+    
+    /**
+     * @return A new ring that also contains the given shard
+     */
+    public ConsistentHashRing withShard(String shard) {
+        if (shards.contains(shard)) {
+            throw new IllegalArgumentException("Shard already exists: " + shard);
+        }
+        List<String> extended = new ArrayList<>(shards);
+        extended.add(shard);
+        return new ConsistentHashRing(extended, virtualNodes);
+    }
+    
+    /**
+     * @return Name of the shard owning the key
+     */
+    public String shardFor(String key) {
+        if (points.length == 0) {
+            throw new IllegalStateException("Hash ring has no shards");
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+    
+    public List<String> getShards() {
+        return shards;
+    }
+    
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer, for well-spread ring positions
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
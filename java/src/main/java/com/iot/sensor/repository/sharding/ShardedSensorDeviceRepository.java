@@ -0,0 +1,778 @@
+package com.iot.sensor.repository.sharding;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import com.iot.sensor.repository.cache.LruTtlCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Repository that partitions devices across several underlying repositories (shards)
+ * by consistent hashing of deviceId.
+ *
+ * Operations keyed by deviceId go to exactly one shard. Operations keyed by ID go to the shard
+ * remembered for that ID in a location cache, and fall back to asking all shards in parallel.
+ * Queries over the fleet (findAll, criteria, aggregation, paging, change feed) scatter to all
+ * shards in parallel and merge the results.
+ *
+ * Shards can be added online: addShard() switches routing to the new ring immediately, and
+ * rebalance() copies every device whose owner changed to its new shard, then deletes the old copy.
+ * The delete leaves a tombstone on the old shard; findModifiedSince drops tombstones of devices
+ * that still exist on another shard, so change-feed consumers do not delete moved devices.
+ * While rebalancing, deviceId-keyed writes first move their device if it has not moved yet;
+ * fleet queries may briefly see a device on both shards (lists are de-duplicated by ID,
+ * aggregates and streams are not).
+ *
+ * A move and every write hold a striped per-deviceId lock from the move check until the write
+ * is done, so a write cannot land on the old shard after the move copied the device from it.
+ */
+public class ShardedSensorDeviceRepository implements ISensorDeviceRepository, AutoCloseable {
+    
+    private static final int LOCATION_CACHE_SIZE = 100_000;
+    private static final int LOCK_STRIPES = 64;
+    
+    private static final Comparator<SensorDevice> BY_DEVICE_NAME =
+            Comparator.comparing(SensorDevice::getDeviceName, Comparator.nullsLast(Comparator.naturalOrder()));
+    
+    /**
+     * Shards and routing as one immutable snapshot; previousRing is set while a rebalance is pending
+     */
+    private static final class Topology {
+        final Map<String, ISensorDeviceRepository> shards;
+        final ConsistentHashRing ring;
+        final ConsistentHashRing previousRing;
+        
+        Topology(Map<String, ISensorDeviceRepository> shards, ConsistentHashRing ring, ConsistentHashRing previousRing) {
+            this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+            this.ring = ring;
+            this.previousRing = previousRing;
+        }
+        
+        String ownerOf(String deviceId) {
+            return ring.shardFor(deviceId);
+        }
+        
+        /**
+         * The shard that owned the deviceId before the pending rebalance, or null if unchanged
+         */
+        String previousOwnerOf(String deviceId) {
+            if (previousRing == null) {
+                return null;
+            }
+            String previous = previousRing.shardFor(deviceId);
+            return previous.equals(ring.shardFor(deviceId)) ? null : previous;
+        }
+    }
+    
+    private volatile Topology topology;
+    private final LruTtlCache<String, String> shardById = new LruTtlCache<>(LOCATION_CACHE_SIZE, 0, 16);
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    // Indexed by deviceId hash; always taken in ascending index order
+    private final ReentrantLock[] deviceLocks = new ReentrantLock[LOCK_STRIPES];
+    
+    /**
+     * @param shards Shard name to repository; the names determine the ring positions, so keep them stable
+     * @param virtualNodes Ring points per shard; more points spread devices more evenly (e.g. 128)
+     */
+    public ShardedSensorDeviceRepository(Map<String, ISensorDeviceRepository> shards, int virtualNodes) {
+        this(shards, virtualNodes, Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+    
+    /**
+     * @param executor Runs the per-shard calls of scatter-gather operations; not shut down by close()
+     */
+    public ShardedSensorDeviceRepository(Map<String, ISensorDeviceRepository> shards, int virtualNodes,
+                                         ExecutorService executor) {
+        this(shards, virtualNodes, executor, false);
+    }
+    
+    private ShardedSensorDeviceRepository(Map<String, ISensorDeviceRepository> shards, int virtualNodes,
+                                          ExecutorService executor, boolean ownsExecutor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.topology = new Topology(shards, new ConsistentHashRing(new ArrayList<>(shards.keySet()), virtualNodes), null);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            deviceLocks[i] = new ReentrantLock();
+        }
+    }
+    
+    // ---- routing helpers ----
+    
+    private static String requireDeviceId(SensorDevice sensorDevice) {
+        if (sensorDevice.getDeviceId() == null) {
+            throw new IllegalArgumentException("Device ID is required for sharding");
+        }
+        return sensorDevice.getDeviceId();
+    }
+    
+    private static int stripe(String deviceId) {
+        return (deviceId.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+    }
+    
+    /**
+     * Run a move or a write holding the locks of the given deviceIds
+     */
+    private <T> T locked(Collection<String> deviceIds, Supplier<T> write) {
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (String deviceId : deviceIds) {
+            stripes[stripe(deviceId)] = true;
+        }
+        
+        int locked = 0;
+        try {
+            for (; locked < LOCK_STRIPES; locked++) {
+                if (stripes[locked]) {
+                    deviceLocks[locked].lock();
+                }
+            }
+            return write.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                if (stripes[i]) {
+                    deviceLocks[i].unlock();
+                }
+            }
+        }
+    }
+    
+    /**
+     * While a rebalance is pending, move the device to its new shard if it still lives on the old one
+     */
+    private void moveIfStale(Topology t, String deviceId) {
+        String previous = t.previousOwnerOf(deviceId);
+        if (previous == null) {
+            return;
+        }
+        t.shards.get(previous).findByDeviceId(deviceId)
+                .ifPresent(device -> move(t, device, previous, t.ownerOf(deviceId)));
+    }
+    
+    /**
+     * Copy the device to the target shard (keeping its ID), then delete it from the source,
+     * so it is never missing from both
+     * @return The copy stored on the target, or null if the device was deleted in the meantime
+     */
+    private SensorDevice move(Topology t, SensorDevice device, String source, String target) {
+        return locked(Collections.singletonList(device.getDeviceId()), () -> {
+            // Re-read so the copy carries the latest state, and skip devices deleted in the meantime
+            Optional<SensorDevice> current = t.shards.get(source).findById(device.getId());
+            if (!current.isPresent()) {
+                return null;
+            }
+            UpsertResult copied = t.shards.get(target).upsertByDeviceId(new SensorDevice(current.get()));
+            if (copied.isFailed()) {
+                throw new RuntimeException("Error moving sensor device " + device.getId() + ": " + copied.getFailureReason());
+            }
+            t.shards.get(source).deleteById(device.getId());
+            shardById.put(device.getId(), target);
+            return copied.getSensorDevice();
+        });
+    }
+    
+    /**
+     * Run the call on every shard (except skip) in parallel
+     * @return Shard name to result, in shard order
+     */
+    private <T> Map<String, T> scatter(Topology t, String skip, Function<ISensorDeviceRepository, T> call) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, ISensorDeviceRepository> shard : t.shards.entrySet()) {
+            if (!shard.getKey().equals(skip)) {
+                ISensorDeviceRepository repository = shard.getValue();
+                futures.put(shard.getKey(), CompletableFuture.supplyAsync(() -> call.apply(repository), executor));
+            }
+        }
+        
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<T>> future : futures.entrySet()) {
+            results.put(future.getKey(), join(future.getValue()));
+        }
+        return results;
+    }
+    
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error in shard operation", e.getCause());
+        }
+    }
+    
+    /**
+     * Run an ID-keyed call on the cached shard for the ID, falling back to all other shards
+     */
+    private <T> T routeById(String id, Function<ISensorDeviceRepository, T> call, Predicate<T> found, T notFound) {
+        Topology t = topology;
+        String cached = shardById.get(id);
+        if (cached != null && t.shards.containsKey(cached)) {
+            T result = call.apply(t.shards.get(cached));
+            if (found.test(result)) {
+                return result;
+            }
+        }
+        
+        for (Map.Entry<String, T> result : scatter(t, cached, call).entrySet()) {
+            if (found.test(result.getValue())) {
+                shardById.put(id, result.getKey());
+                return result.getValue();
+            }
+        }
+        return notFound;
+    }
+    
+    /**
+     * Group items by the shard owning their deviceId, keeping each item's position in the input
+     */
+    private Map<String, List<Integer>> partitionByOwner(Topology t, List<String> deviceIds) {
+        Map<String, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        for (int i = 0; i < deviceIds.size(); i++) {
+            indexesByShard.computeIfAbsent(t.ownerOf(deviceIds.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return indexesByShard;
+    }
+    
+    private static List<String> deviceIdsOf(List<SensorDevice> devices) {
+        List<String> deviceIds = new ArrayList<>(devices.size());
+        for (SensorDevice device : devices) {
+            deviceIds.add(requireDeviceId(device));
+        }
+        return deviceIds;
+    }
+    
+    private static <T> List<T> select(List<T> items, List<Integer> indexes) {
+        List<T> selected = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            selected.add(items.get(index));
+        }
+        return selected;
+    }
+    
+    // ---- writes ----
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        String deviceId = requireDeviceId(sensorDevice);
+        return locked(Collections.singletonList(deviceId), () -> {
+            Topology t = topology;
+            moveIfStale(t, deviceId);
+            String owner = t.ownerOf(deviceId);
+            SensorDevice created = t.shards.get(owner).create(sensorDevice);
+            shardById.put(created.getId(), owner);
+            return created;
+        });
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        List<String> deviceIds = deviceIdsOf(devices);
+        return locked(deviceIds, () -> createAll(topology, devices, deviceIds));
+    }
+    
+    private BatchResult createAll(Topology t, List<SensorDevice> devices, List<String> deviceIds) {
+        deviceIds.forEach(deviceId -> moveIfStale(t, deviceId));
+        Map<String, List<Integer>> indexesByShard = partitionByOwner(t, deviceIds);
+        
+        Map<String, CompletableFuture<BatchResult>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : indexesByShard.entrySet()) {
+            ISensorDeviceRepository shard = t.shards.get(entry.getKey());
+            List<SensorDevice> batch = select(devices, entry.getValue());
+            futures.put(entry.getKey(), CompletableFuture.supplyAsync(() -> shard.createAll(batch), executor));
+        }
+        
+        BatchResult result = new BatchResult();
+        for (Map.Entry<String, CompletableFuture<BatchResult>> future : futures.entrySet()) {
+            BatchResult shardResult = join(future.getValue());
+            List<Integer> indexes = indexesByShard.get(future.getKey());
+            for (SensorDevice device : shardResult.getSucceeded()) {
+                shardById.put(device.getId(), future.getKey());
+                result.addSuccess(device);
+            }
+            for (BatchResult.Failure failure : shardResult.getFailures()) {
+                result.addFailure(indexes.get(failure.getIndex()), failure.getSensorDevice(), failure.getReason());
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        String deviceId = requireDeviceId(sensorDevice);
+        return locked(Collections.singletonList(deviceId), () -> {
+            Topology t = topology;
+            moveIfStale(t, deviceId);
+            String owner = t.ownerOf(deviceId);
+            UpsertResult result = t.shards.get(owner).upsertByDeviceId(sensorDevice);
+            shardById.put(result.getSensorDevice().getId(), owner);
+            return result;
+        });
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        List<String> deviceIds = deviceIdsOf(devices);
+        return locked(deviceIds, () -> upsertAllByDeviceId(topology, devices, deviceIds));
+    }
+    
+    private List<UpsertResult> upsertAllByDeviceId(Topology t, List<SensorDevice> devices, List<String> deviceIds) {
+        deviceIds.forEach(deviceId -> moveIfStale(t, deviceId));
+        Map<String, List<Integer>> indexesByShard = partitionByOwner(t, deviceIds);
+        
+        // Every occurrence of a deviceId lands on the same shard, which applies last-wins itself
+        Map<String, CompletableFuture<List<UpsertResult>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : indexesByShard.entrySet()) {
+            ISensorDeviceRepository shard = t.shards.get(entry.getKey());
+            List<SensorDevice> batch = select(devices, entry.getValue());
+            futures.put(entry.getKey(), CompletableFuture.supplyAsync(() -> shard.upsertAllByDeviceId(batch), executor));
+        }
+        
+        UpsertResult[] results = new UpsertResult[devices.size()];
+        for (Map.Entry<String, CompletableFuture<List<UpsertResult>>> future : futures.entrySet()) {
+            List<UpsertResult> shardResults = join(future.getValue());
+            List<Integer> indexes = indexesByShard.get(future.getKey());
+            for (int i = 0; i < shardResults.size(); i++) {
+                results[indexes.get(i)] = shardResults.get(i);
+                if (!shardResults.get(i).isFailed()) {
+                    shardById.put(shardResults.get(i).getSensorDevice().getId(), future.getKey());
+                }
+            }
+        }
+        List<UpsertResult> ordered = new ArrayList<>(results.length);
+        Collections.addAll(ordered, results);
+        return ordered;
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        String deviceId = requireDeviceId(sensorDevice);
+        return locked(Collections.singletonList(deviceId), () -> update(topology, sensorDevice, deviceId));
+    }
+    
+    /**
+     * A changed deviceId only locks the new one, so the update can still race a rebalance
+     * moving the device under its old deviceId
+     */
+    private SensorDevice update(Topology t, SensorDevice sensorDevice, String deviceId) {
+        moveIfStale(t, deviceId);
+        String owner = t.ownerOf(deviceId);
+        BatchResult result = t.shards.get(owner).updateAll(Collections.singletonList(sensorDevice));
+        if (!result.hasFailures()) {
+            shardById.put(sensorDevice.getId(), owner);
+            return result.getSucceeded().get(0);
+        }
+        
+        // Not on the owner of its (new) deviceId: the deviceId was changed, so update where it lives and move it
+        String location = locate(t, sensorDevice.getId(), owner);
+        if (location == null) {
+            throw new RuntimeException(result.getFailures().get(0).getReason());
+        }
+        SensorDevice updated = t.shards.get(location).update(sensorDevice);
+        SensorDevice moved = move(t, updated, location, owner);
+        if (moved == null) {
+            throw new RuntimeException("Sensor device " + sensorDevice.getId() + " was deleted while it was updated");
+        }
+        return moved;
+    }
+    
+    /**
+     * @return Name of a shard other than skip holding the ID, or null
+     */
+    private String locate(Topology t, String id, String skip) {
+        for (Map.Entry<String, Boolean> exists : scatter(t, skip, repository -> repository.existsById(id)).entrySet()) {
+            if (exists.getValue()) {
+                return exists.getKey();
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        List<SensorDevice> devices = new ArrayList<>(sensorDevices);
+        BatchResult result = new BatchResult();
+        
+        List<SensorDevice> routable = new ArrayList<>();
+        List<Integer> routableIndexes = new ArrayList<>();
+        for (int i = 0; i < devices.size(); i++) {
+            SensorDevice device = devices.get(i);
+            if (device.getId() == null || device.getDeviceId() == null) {
+                result.addFailure(i, device, "Sensor device ID and device ID are required for update");
+            } else {
+                routable.add(device);
+                routableIndexes.add(i);
+            }
+        }
+        List<String> deviceIds = deviceIdsOf(routable);
+        Map<String, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        Map<String, BatchResult> shardResults = locked(deviceIds, () -> {
+            Topology t = topology;
+            deviceIds.forEach(deviceId -> moveIfStale(t, deviceId));
+            indexesByShard.putAll(partitionByOwner(t, deviceIds));
+            
+            Map<String, CompletableFuture<BatchResult>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : indexesByShard.entrySet()) {
+                ISensorDeviceRepository shard = t.shards.get(entry.getKey());
+                List<SensorDevice> batch = select(routable, entry.getValue());
+                futures.put(entry.getKey(), CompletableFuture.supplyAsync(() -> shard.updateAll(batch), executor));
+            }
+            Map<String, BatchResult> joined = new LinkedHashMap<>();
+            futures.forEach((shard, future) -> joined.put(shard, join(future)));
+            return joined;
+        });
+        
+        for (Map.Entry<String, BatchResult> shardResult : shardResults.entrySet()) {
+            List<Integer> indexes = indexesByShard.get(shardResult.getKey());
+            shardResult.getValue().getSucceeded().forEach(result::addSuccess);
+            for (BatchResult.Failure failure : shardResult.getValue().getFailures()) {
+                int index = routableIndexes.get(indexes.get(failure.getIndex()));
+                // Retry individually, outside the batch's locks: the device may live on another shard
+                // because its deviceId changed
+                try {
+                    result.addSuccess(update(failure.getSensorDevice()));
+                } catch (RuntimeException e) {
+                    result.addFailure(index, failure.getSensorDevice(), e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        return locked(Collections.singletonList(deviceId), () -> {
+            Topology t = topology;
+            moveIfStale(t, deviceId);
+            return t.shards.get(t.ownerOf(deviceId)).updateReading(deviceId, lastReading);
+        });
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        return locked(readingsByDeviceId.keySet(), () -> updateReadings(topology, readingsByDeviceId));
+    }
+    
+    private int updateReadings(Topology t, Map<String, Double> readingsByDeviceId) {
+        Map<String, Map<String, Double>> readingsByShard = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+            moveIfStale(t, entry.getKey());
+            readingsByShard.computeIfAbsent(t.ownerOf(entry.getKey()), shard -> new HashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Double>> entry : readingsByShard.entrySet()) {
+            ISensorDeviceRepository shard = t.shards.get(entry.getKey());
+            futures.add(CompletableFuture.supplyAsync(() -> shard.updateReadings(entry.getValue()), executor));
+        }
+        int updated = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            updated += join(future);
+        }
+        return updated;
+    }
+    
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        return locked(Collections.singletonList(deviceId), () -> {
+            Topology t = topology;
+            moveIfStale(t, deviceId);
+            return t.shards.get(t.ownerOf(deviceId)).updateStatus(deviceId, status);
+        });
+    }
+    
+    /**
+     * While a rebalance is pending, looks the device up first to hold its deviceId's lock,
+     * so a move cannot copy it back after the delete
+     */
+    @Override
+    public boolean deleteById(String id) {
+        if (!isRebalancing()) {
+            return deleteRouted(id);
+        }
+        Optional<SensorDevice> device = findById(id);
+        if (!device.isPresent() || device.get().getDeviceId() == null) {
+            return deleteRouted(id);
+        }
+        return locked(Collections.singletonList(device.get().getDeviceId()), () -> deleteRouted(id));
+    }
+    
+    private boolean deleteRouted(String id) {
+        boolean deleted = routeById(id, repository -> repository.deleteById(id), Boolean::booleanValue, false);
+        shardById.remove(id);
+        return deleted;
+    }
+    
+    // ---- point reads ----
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        return routeById(id, repository -> repository.findById(id), Optional::isPresent, Optional.empty());
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        return routeById(id, repository -> repository.existsById(id), Boolean::booleanValue, false);
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        Topology t = topology;
+        String owner = t.ownerOf(deviceId);
+        Optional<SensorDevice> device = t.shards.get(owner).findByDeviceId(deviceId);
+        String previous = t.previousOwnerOf(deviceId);
+        if (!device.isPresent() && previous != null) {
+            owner = previous;
+            device = t.shards.get(previous).findByDeviceId(deviceId);
+        }
+        if (device.isPresent()) {
+            shardById.put(device.get().getId(), owner);
+        }
+        return device;
+    }
+    
+    /**
+     * One call per owning shard, in parallel; devices not found there are looked up on
+     * their previous owner while a rebalance is in progress
+     */
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Topology t = topology;
+        Map<String, Double> readings = lastReadingsByShard(t, new ArrayList<>(deviceIds), t::ownerOf);
+        
+        List<String> missing = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            if (!readings.containsKey(deviceId) && t.previousOwnerOf(deviceId) != null) {
+                missing.add(deviceId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            readings.putAll(lastReadingsByShard(t, missing, t::previousOwnerOf));
+        }
+        return readings;
+    }
+    
+    private Map<String, Double> lastReadingsByShard(Topology t, List<String> deviceIds, Function<String, String> shardOf) {
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String deviceId : deviceIds) {
+            byShard.computeIfAbsent(shardOf.apply(deviceId), shard -> new ArrayList<>()).add(deviceId);
+        }
+        
+        List<CompletableFuture<Map<String, Double>>> futures = new ArrayList<>(byShard.size());
+        for (Map.Entry<String, List<String>> entry : byShard.entrySet()) {
+            ISensorDeviceRepository shard = t.shards.get(entry.getKey());
+            List<String> batch = entry.getValue();
+            futures.add(CompletableFuture.supplyAsync(() -> shard.findLastReadings(batch), executor));
+        }
+        Map<String, Double> readings = new HashMap<>();
+        for (CompletableFuture<Map<String, Double>> future : futures) {
+            readings.putAll(join(future));
+        }
+        return readings;
+    }
+    
+    // ---- scatter-gather queries ----
+    
+    private static List<SensorDevice> mergeDistinct(Collection<List<SensorDevice>> lists, Comparator<SensorDevice> order) {
+        Map<String, SensorDevice> byId = new LinkedHashMap<>();
+        for (List<SensorDevice> list : lists) {
+            for (SensorDevice device : list) {
+                byId.putIfAbsent(device.getId(), device);
+            }
+        }
+        List<SensorDevice> merged = new ArrayList<>(byId.values());
+        merged.sort(order);
+        return merged;
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        if (criteria.getDeviceId() != null) {
+            Optional<SensorDevice> device = findByDeviceId(criteria.getDeviceId()).filter(criteria::matches);
+            return device.isPresent() ? Collections.singletonList(device.get()) : new ArrayList<>();
+        }
+        Topology t = topology;
+        return mergeDistinct(scatter(t, null, repository -> repository.findByCriteria(criteria)).values(),
+                BY_DEVICE_NAME);
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return mergeDistinct(scatter(topology, null, ISensorDeviceRepository::findAll).values(), BY_DEVICE_NAME);
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        // Lazily streams one shard after the other; flatMap closes each shard stream once it is consumed
+        return new ArrayList<>(topology.shards.values()).stream().flatMap(ISensorDeviceRepository::streamAll);
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        List<SensorDevice> merged = mergeDistinct(
+                scatter(topology, null, repository -> repository.findPage(afterId, limit)).values(),
+                Comparator.comparing(SensorDevice::getId));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        Map<String, GroupStatistics> merged = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (List<GroupStatistics> shardStatistics : scatter(topology, null, repository -> repository.aggregateBy(groupBy)).values()) {
+            for (GroupStatistics statistics : shardStatistics) {
+                merged.merge(statistics.getGroup(), statistics, ShardedSensorDeviceRepository::combine);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+    
+    private static GroupStatistics combine(GroupStatistics a, GroupStatistics b) {
+        return new GroupStatistics(a.getGroup(),
+                a.getCount() + b.getCount(),
+                a.getReadingCount() + b.getReadingCount(),
+                a.getMinReading() == null ? b.getMinReading()
+                        : b.getMinReading() == null ? a.getMinReading() : Math.min(a.getMinReading(), b.getMinReading()),
+                a.getMaxReading() == null ? b.getMaxReading()
+                        : b.getMaxReading() == null ? a.getMaxReading() : Math.max(a.getMaxReading(), b.getMaxReading()),
+                a.getSumReading() + b.getSumReading());
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        // Every shard pages from the same global watermark, so the first limit changes of the merge are exact
+        List<DeviceChange> all = new ArrayList<>();
+        boolean shardHasMore = false;
+        for (ChangeBatch batch : scatter(topology, null, repository -> repository.findModifiedSince(since, limit)).values()) {
+            all.addAll(batch.getChanges());
+            shardHasMore |= batch.hasMore();
+        }
+        ChangeBatch merged = ChangeBatch.merge(all, Collections.emptyList(), since, limit);
+        
+        // A move deletes the source copy; its tombstone must not reach consumers while the device lives on.
+        // One batched existence check per shard covers all tombstones of the page.
+        List<String> deletedIds = new ArrayList<>();
+        for (DeviceChange change : merged.getChanges()) {
+            if (change.getType() == DeviceChange.Type.DELETED) {
+                deletedIds.add(change.getId());
+            }
+        }
+        Set<String> living = new HashSet<>();
+        if (!deletedIds.isEmpty()) {
+            scatter(topology, null, repository -> repository.findExistingIds(deletedIds)).values().forEach(living::addAll);
+        }
+        List<DeviceChange> changes = new ArrayList<>(merged.getChanges().size());
+        for (DeviceChange change : merged.getChanges()) {
+            if (change.getType() != DeviceChange.Type.DELETED || !living.contains(change.getId())) {
+                changes.add(change);
+            }
+        }
+        // The watermark still covers the dropped tombstones, so they are not returned again
+        return new ChangeBatch(changes, merged.getWatermark(), merged.hasMore() || shardHasMore);
+    }
+    
+    // ---- topology changes ----
+    
+    /**
+     * Add a shard. Routing switches to the extended ring at once; call rebalance() to move
+     * the devices it now owns. Only one rebalance can be pending at a time.
+     */
+    public synchronized void addShard(String name, ISensorDeviceRepository repository) {
+        Topology t = topology;
+        if (t.previousRing != null) {
+            throw new IllegalStateException("Previous shard addition has not been rebalanced yet");
+        }
+        Map<String, ISensorDeviceRepository> shards = new LinkedHashMap<>(t.shards);
+        shards.put(name, repository);
+        topology = new Topology(shards, t.ring.withShard(name), t.ring);
+    }
+    
+    /**
+     * Move every device whose owning shard changed with the last addShard() to its new shard.
+     * Runs in the calling thread while other operations continue; each move holds its device's
+     * lock, so concurrent writes to the device wait for it and then go to the new shard.
+     * Writes that started before addShard() should finish before rebalance() is called.
+     * The misplaced devices of a shard are collected before any is moved, so the shard's stream
+     * cursor is closed again before the moves need a connection of their own.
+     * @return Number of devices moved
+     */
+    public int rebalance() {
+        Topology t = topology;
+        if (t.previousRing == null) {
+            return 0;
+        }
+        
+        int moved = 0;
+        for (String source : t.shards.keySet()) {
+            List<SensorDevice> misplaced;
+            try (Stream<SensorDevice> devices = t.shards.get(source).streamAll()) {
+                misplaced = devices
+                        .filter(device -> device.getDeviceId() != null && !t.ownerOf(device.getDeviceId()).equals(source))
+                        .collect(Collectors.toList());
+            }
+            for (SensorDevice stale : misplaced) {
+                if (move(t, stale, source, t.ownerOf(stale.getDeviceId())) != null) {
+                    moved++;
+                }
+            }
+        }
+        
+        synchronized (this) {
+            topology = new Topology(t.shards, t.ring, null);
+        }
+        return moved;
+    }
+    
+    public List<String> getShardNames() {
+        return topology.ring.getShards();
+    }
+    
+    public boolean isRebalancing() {
+        return topology.previousRing != null;
+    }
+    
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.iot.sensor.repository.writebehind;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind decorator that coalesces high-frequency updates.
+ * update() and updateReading() only record the newest value per device in memory;
+ * dirty devices are written to the wrapped repository in one batch every flush interval,
+ * or as soon as the number of dirty devices reaches the flush threshold. Database write
+ * volume therefore follows the number of devices, not the message rate.
+ *
+ * Because writes are deferred, update() and updateReading() cannot report a missing device:
+ * they always succeed and missing devices are counted in the metrics when the batch is flushed.
+ * Point reads (findById/findByDeviceId) see buffered values; list queries see flushed state only.
+ * All other operations pass straight through.
+ */
+public class WriteBehindSensorDeviceRepository implements ISensorDeviceRepository, AutoCloseable {
+    
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindSensorDeviceRepository.class.getName());
+    
+    private final ISensorDeviceRepository delegate;
+    private final int flushThreshold;
+    private final int maxPending;
+    
+    // Newest pending full update per id and newest pending reading per deviceId
+    private final ConcurrentMap<String, SensorDevice> pendingUpdates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Double> pendingReadings = new ConcurrentHashMap<>();
+    // deviceId to id of the pending full update; maintained inside pendingUpdates' compute calls
+    private final ConcurrentMap<String, String> pendingIdByDeviceId = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+    
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    
+    /**
+     * @param delegate Repository receiving the batched writes
+     * @param flushIntervalMillis Maximum time a buffered update waits before being written
+     * @param flushThreshold Number of dirty devices that triggers an early flush
+     * @param maxPending Backlog bound; writers flush synchronously once it is reached
+     */
+    public WriteBehindSensorDeviceRepository(ISensorDeviceRepository delegate, long flushIntervalMillis,
+                                             int flushThreshold, int maxPending) {
+        if (flushThreshold < 1 || maxPending < flushThreshold) {
+            throw new IllegalArgumentException("Require 1 <= flushThreshold <= maxPending");
+        }
+        this.delegate = delegate;
+        this.flushThreshold = flushThreshold;
+        this.maxPending = maxPending;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Flush the remaining buffered updates when the JVM shuts down
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "write-behind-shutdown"));
+    }
+    
+    @Override
+    public SensorDevice create(SensorDevice sensorDevice) {
+        return delegate.create(sensorDevice);
+    }
+    
+    @Override
+    public BatchResult createAll(Collection<SensorDevice> sensorDevices) {
+        return delegate.createAll(sensorDevices);
+    }
+    
+    @Override
+    public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+        // The upsert is newer than anything buffered for the device; buffered values must not overwrite it later
+        discardPending(sensorDevice);
+        UpsertResult result = delegate.upsertByDeviceId(sensorDevice);
+        discardPending(result.getSensorDevice());
+        return result;
+    }
+    
+    @Override
+    public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+        sensorDevices.forEach(this::discardPending);
+        List<UpsertResult> results = delegate.upsertAllByDeviceId(sensorDevices);
+        for (UpsertResult result : results) {
+            discardPending(result.getSensorDevice());
+        }
+        return results;
+    }
+    
+    private void discardPending(SensorDevice sensorDevice) {
+        if (sensorDevice.getId() != null) {
+            removePendingUpdate(sensorDevice.getId());
+        }
+        if (sensorDevice.getDeviceId() != null) {
+            pendingReadings.remove(sensorDevice.getDeviceId());
+        }
+    }
+    
+    /**
+     * Buffer a full update, keeping the deviceId index in step with it
+     * @return Whether it replaced a buffered update of the same device
+     */
+    private boolean putPendingUpdate(SensorDevice sensorDevice) {
+        boolean[] replaced = new boolean[1];
+        pendingUpdates.compute(sensorDevice.getId(), (id, previous) -> {
+            replaced[0] = previous != null;
+            if (previous != null && previous.getDeviceId() != null) {
+                pendingIdByDeviceId.remove(previous.getDeviceId(), id);
+            }
+            if (sensorDevice.getDeviceId() != null) {
+                pendingIdByDeviceId.put(sensorDevice.getDeviceId(), id);
+            }
+            return sensorDevice;
+        });
+        return replaced[0];
+    }
+    
+    /**
+     * @return The buffered update that was removed, or null
+     */
+    private SensorDevice removePendingUpdate(String id) {
+        SensorDevice[] removed = new SensorDevice[1];
+        pendingUpdates.computeIfPresent(id, (key, pending) -> {
+            removed[0] = pending;
+            if (pending.getDeviceId() != null) {
+                pendingIdByDeviceId.remove(pending.getDeviceId(), key);
+            }
+            return null;
+        });
+        return removed[0];
+    }
+    
+    @Override
+    public Optional<SensorDevice> findById(String id) {
+        SensorDevice pending = pendingUpdates.get(id);
+        Optional<SensorDevice> device = pending != null ? Optional.of(new SensorDevice(pending)) : delegate.findById(id);
+        return device.map(this::applyPendingReading);
+    }
+    
+    @Override
+    public Optional<SensorDevice> findByDeviceId(String deviceId) {
+        return delegate.findByDeviceId(deviceId).map(device -> {
+            SensorDevice pending = pendingUpdates.get(device.getId());
+            return applyPendingReading(pending != null ? new SensorDevice(pending) : device);
+        });
+    }
+    
+    @Override
+    public Map<String, Double> findLastReadings(Collection<String> deviceIds) {
+        Map<String, Double> readings = new HashMap<>(delegate.findLastReadings(deviceIds));
+        // Same precedence as findByDeviceId: a buffered update, then a buffered reading
+        for (Map.Entry<String, Double> reading : readings.entrySet()) {
+            String id = pendingIdByDeviceId.get(reading.getKey());
+            SensorDevice update = id != null ? pendingUpdates.get(id) : null;
+            if (update != null && reading.getKey().equals(update.getDeviceId())) {
+                reading.setValue(update.getLastReading());
+            }
+            Double pending = pendingReadings.get(reading.getKey());
+            if (pending != null) {
+                reading.setValue(pending);
+            }
+        }
+        return readings;
+    }
+    
+    @Override
+    public List<SensorDevice> findByCriteria(SensorDeviceCriteria criteria) {
+        return delegate.findByCriteria(criteria);
+    }
+    
+    @Override
+    public List<GroupStatistics> aggregateBy(GroupBy groupBy) {
+        return delegate.aggregateBy(groupBy);
+    }
+    
+    @Override
+    public List<SensorDevice> findAll() {
+        return delegate.findAll();
+    }
+    
+    @Override
+    public Stream<SensorDevice> streamAll() {
+        return delegate.streamAll();
+    }
+    
+    @Override
+    public List<SensorDevice> findPage(String afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public ChangeBatch findModifiedSince(Watermark since, int limit) {
+        // Buffered updates appear in the feed once they are flushed
+        return delegate.findModifiedSince(since, limit);
+    }
+    
+    @Override
+    public SensorDevice update(SensorDevice sensorDevice) {
+        if (sensorDevice.getId() == null) {
+            throw new IllegalArgumentException("Sensor device ID is required for update");
+        }
+        ensureOpen();
+        received.increment();
+        if (putPendingUpdate(new SensorDevice(sensorDevice))) {
+            coalesced.increment();
+        }
+        // The full update carries its own lastReading, which supersedes older buffered readings
+        if (sensorDevice.getDeviceId() != null && pendingReadings.remove(sensorDevice.getDeviceId()) != null) {
+            coalesced.increment();
+        }
+        afterBufferedWrite();
+        return sensorDevice;
+    }
+    
+    @Override
+    public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+        BatchResult result = new BatchResult();
+        int index = 0;
+        for (SensorDevice sensorDevice : sensorDevices) {
+            try {
+                result.addSuccess(update(sensorDevice));
+            } catch (IllegalArgumentException e) {
+                result.addFailure(index, sensorDevice, e.getMessage());
+            }
+            index++;
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean updateReading(String deviceId, double lastReading) {
+        ensureOpen();
+        received.increment();
+        if (pendingReadings.put(deviceId, lastReading) != null) {
+            coalesced.increment();
+        }
+        afterBufferedWrite();
+        return true;
+    }
+    
+    @Override
+    public int updateReadings(Map<String, Double> readingsByDeviceId) {
+        for (Map.Entry<String, Double> entry : readingsByDeviceId.entrySet()) {
+            updateReading(entry.getKey(), entry.getValue());
+        }
+        return readingsByDeviceId.size();
+    }
+    
+    /**
+     * Written through, and also applied to a buffered update of the device, which would otherwise
+     * write its older status back when flushed. The buffered copy is patched under the flush lock,
+     * so no flush is writing an unpatched copy of it; the write-through happens after the lock is released.
+     */
+    @Override
+    public boolean updateStatus(String deviceId, String status) {
+        ensureOpen();
+        flushLock.lock();
+        try {
+            String id = pendingIdByDeviceId.get(deviceId);
+            if (id != null) {
+                pendingUpdates.computeIfPresent(id, (key, pending) -> {
+                    if (!deviceId.equals(pending.getDeviceId())) {
+                        return pending;
+                    }
+                    SensorDevice patched = new SensorDevice(pending);
+                    patched.setStatus(status);
+                    return patched;
+                });
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        return delegate.updateStatus(deviceId, status);
+    }
+    
+    /**
+     * Drops the device's buffered values under the flush lock, so a flush that is writing them
+     * cannot put them back into the buffer after the delete
+     */
+    @Override
+    public boolean deleteById(String id) {
+        flushLock.lock();
+        try {
+            SensorDevice pending = removePendingUpdate(id);
+            if (pending != null && pending.getDeviceId() != null) {
+                pendingReadings.remove(pending.getDeviceId());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        return delegate.deleteById(id);
+    }
+    
+    @Override
+    public boolean existsById(String id) {
+        return pendingUpdates.containsKey(id) || delegate.existsById(id);
+    }
+    
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> existing = new HashSet<>(delegate.findExistingIds(ids));
+        for (String id : ids) {
+            if (pendingUpdates.containsKey(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+    
+    /**
+     * Write all buffered updates now. Flushes are serialized; updates arriving
+     * during a flush are kept for the next one.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            flushUpdates();
+            flushReadings();
+            flushes.increment();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void flushUpdates() {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        List<SensorDevice> batch = new ArrayList<>(pendingUpdates.size());
+        for (String id : new ArrayList<>(pendingUpdates.keySet())) {
+            SensorDevice device = removePendingUpdate(id);
+            if (device != null) {
+                batch.add(device);
+            }
+        }
+        
+        try {
+            BatchResult result = delegate.updateAll(batch);
+            written.add(result.getSuccessCount());
+            notFound.add(result.getFailureCount());
+        } catch (RuntimeException e) {
+            // Put the batch back unless a newer value arrived in the meantime
+            for (SensorDevice device : batch) {
+                pendingUpdates.computeIfAbsent(device.getId(), id -> {
+                    if (device.getDeviceId() != null) {
+                        pendingIdByDeviceId.put(device.getDeviceId(), id);
+                    }
+                    return device;
+                });
+            }
+            throw e;
+        }
+    }
+    
+    private void flushReadings() {
+        if (pendingReadings.isEmpty()) {
+            return;
+        }
+        Map<String, Double> batch = new HashMap<>();
+        for (String deviceId : new ArrayList<>(pendingReadings.keySet())) {
+            Double value = pendingReadings.remove(deviceId);
+            if (value != null) {
+                batch.put(deviceId, value);
+            }
+        }
+        
+        try {
+            int updated = delegate.updateReadings(batch);
+            written.add(updated);
+            notFound.add(batch.size() - updated);
+        } catch (RuntimeException e) {
+            for (Map.Entry<String, Double> entry : batch.entrySet()) {
+                pendingReadings.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            LOGGER.log(Level.WARNING, "Write-behind flush failed; buffered updates will be retried", e);
+        }
+    }
+    
+    private void afterBufferedWrite() {
+        int pending = getPendingCount();
+        if (pending >= maxPending) {
+            // Backlog is full: make the writer pay for the flush instead of growing without bound
+            flush();
+        } else if (pending >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+    
+    private SensorDevice applyPendingReading(SensorDevice device) {
+        Double reading = device.getDeviceId() != null ? pendingReadings.get(device.getDeviceId()) : null;
+        if (reading != null) {
+            device.setLastReading(reading);
+        }
+        return device;
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-behind repository is closed");
+        }
+    }
+    
+    public int getPendingCount() {
+        return pendingUpdates.size() + pendingReadings.size();
+    }
+    
+    /**
+     * Updates accepted from callers
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+    
+    /**
+     * Updates that replaced a still-buffered value for the same device and were never written
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+    
+    /**
+     * Device rows/documents actually written to the wrapped repository
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+    
+    /**
+     * Flushed updates whose device no longer existed
+     */
+    public long getNotFoundCount() {
+        return notFound.sum();
+    }
+    
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+    
+    public long getFlushFailureCount() {
+        return flushFailures.sum();
+    }
+    
+    /**
+     * Stop the background flusher and write everything still buffered
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+}
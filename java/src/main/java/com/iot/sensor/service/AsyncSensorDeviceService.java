@@ -0,0 +1,213 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over SensorDeviceService.
+ * Every operation runs as its own task on a virtual thread and returns a CompletableFuture, so
+ * fanning out tens of thousands of lookups costs a small heap-allocated stack per waiting task
+ * rather than a platform thread.
+ * A semaphore caps the number of operations in flight against the backend, so fan-out cannot
+ * overrun the database (or exhaust its connection pool); tasks beyond the limit park on the
+ * semaphore. Use one instance per backend.
+ */
+public class AsyncSensorDeviceService implements AutoCloseable {
+    
+    private final SensorDeviceService service;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    
+    /**
+     * @param service The blocking service to call
+     * @param maxConcurrency Maximum number of operations running against the backend at once
+     */
+    public AsyncSensorDeviceService(SensorDeviceService service, int maxConcurrency) {
+        this(service, Executors.newVirtualThreadPerTaskExecutor(), maxConcurrency);
+    }
+    
+    /**
+     * @param executor Runs the operations; shut down by close()
+     */
+    public AsyncSensorDeviceService(SensorDeviceService service, ExecutorService executor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1");
+        }
+        this.service = service;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+    
+    public CompletableFuture<SensorDevice> createSensorDevice(SensorDevice sensorDevice) {
+        return submit(() -> service.createSensorDevice(sensorDevice));
+    }
+    
+    public CompletableFuture<BatchResult> createSensorDevices(Collection<SensorDevice> sensorDevices) {
+        return submit(() -> service.createSensorDevices(sensorDevices));
+    }
+    
+    public CompletableFuture<UpsertResult> upsertSensorDevice(SensorDevice sensorDevice) {
+        return submit(() -> service.upsertSensorDevice(sensorDevice));
+    }
+    
+    public CompletableFuture<List<UpsertResult>> upsertSensorDevices(Collection<SensorDevice> sensorDevices) {
+        return submit(() -> service.upsertSensorDevices(sensorDevices));
+    }
+    
+    public CompletableFuture<Optional<SensorDevice>> getSensorDeviceById(String id) {
+        return submit(() -> service.getSensorDeviceById(id));
+    }
+    
+    /**
+     * Look up many devices concurrently, one task per ID
+     * @return The devices that were found, in the order of the given IDs
+     */
+    public CompletableFuture<List<SensorDevice>> getSensorDevicesByIds(Collection<String> ids) {
+        List<CompletableFuture<Optional<SensorDevice>>> lookups = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            lookups.add(getSensorDeviceById(id));
+        }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<SensorDevice> devices = new ArrayList<>(lookups.size());
+            for (CompletableFuture<Optional<SensorDevice>> lookup : lookups) {
+                lookup.join().ifPresent(devices::add);
+            }
+            return devices;
+        });
+    }
+    
+    public CompletableFuture<Optional<SensorDevice>> getSensorDeviceByDeviceId(String deviceId) {
+        return submit(() -> service.getSensorDeviceByDeviceId(deviceId));
+    }
+    
+    /**
+     * Get the last reading of several devices by business device ID, in one backend call
+     */
+    public CompletableFuture<Map<String, Double>> getLastReadings(Collection<String> deviceIds) {
+        return submit(() -> service.getLastReadings(deviceIds));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getAllSensorDevices() {
+        return submit(service::getAllSensorDevices);
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getSensorDevicePage(String afterId, int limit) {
+        return submit(() -> service.getSensorDevicePage(afterId, limit));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> findSensorDevices(SensorDeviceCriteria criteria) {
+        return submit(() -> service.findSensorDevices(criteria));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getSensorDevicesBySensorType(String sensorType) {
+        return submit(() -> service.getSensorDevicesBySensorType(sensorType));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getSensorDevicesByStatus(String status) {
+        return submit(() -> service.getSensorDevicesByStatus(status));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getSensorDevicesByLocation(String location) {
+        return submit(() -> service.getSensorDevicesByLocation(location));
+    }
+    
+    public CompletableFuture<List<SensorDevice>> getSensorDevicesByLocationPrefix(String locationPrefix) {
+        return submit(() -> service.getSensorDevicesByLocationPrefix(locationPrefix));
+    }
+    
+    public CompletableFuture<List<GroupStatistics>> getFleetStatistics(GroupBy groupBy) {
+        return submit(() -> service.getFleetStatistics(groupBy));
+    }
+    
+    public CompletableFuture<ChangeBatch> getChangesSince(Watermark since, int limit) {
+        return submit(() -> service.getChangesSince(since, limit));
+    }
+    
+    public CompletableFuture<SensorDevice> updateSensorDevice(SensorDevice sensorDevice) {
+        return submit(() -> service.updateSensorDevice(sensorDevice));
+    }
+    
+    public CompletableFuture<BatchResult> updateSensorDevices(Collection<SensorDevice> sensorDevices) {
+        return submit(() -> service.updateSensorDevices(sensorDevices));
+    }
+    
+    public CompletableFuture<Void> updateReading(String deviceId, double lastReading) {
+        return submit(() -> {
+            service.updateReading(deviceId, lastReading);
+            return null;
+        });
+    }
+    
+    public CompletableFuture<Void> updateStatus(String deviceId, String status) {
+        return submit(() -> {
+            service.updateStatus(deviceId, status);
+            return null;
+        });
+    }
+    
+    public CompletableFuture<Boolean> deleteSensorDevice(String id) {
+        return submit(() -> service.deleteSensorDevice(id));
+    }
+    
+    /**
+     * Number of operations currently running against the backend
+     */
+    public int getInFlightCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+    
+    /**
+     * Number of submitted operations waiting for a concurrency permit (estimate)
+     */
+    public int getQueuedCount() {
+        return permits.getQueueLength();
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return operation.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+    
+    /**
+     * Stop accepting work; operations already submitted still complete
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
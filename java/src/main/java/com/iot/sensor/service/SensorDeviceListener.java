@@ -0,0 +1,32 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.model.SensorDevice;
+
+/**
+ * Callback registered on SensorDeviceService to observe device activity.
+ * Listeners run synchronously on the caller's thread after the repository write succeeded,
+ * so implementations must be fast and must not throw.
+ */
+public interface SensorDeviceListener {
+    
+    /**
+     * A reading was reported for a device
+     * @param deviceId The business device ID (SensorDevice.deviceId)
+     * @param timestamp Time the reading was received, in epoch milliseconds
+     * @param value The reading value
+     */
+    void onReading(String deviceId, long timestamp, double value);
+    
+    /**
+     * A device was created, updated or upserted; called before onReading for its lastReading
+     */
+    default void onDeviceChanged(SensorDevice sensorDevice) {
+    }
+    
+    /**
+     * A device was deleted
+     * @param id The sensor device ID (SensorDevice.id)
+     */
+    default void onDeviceDeleted(String id) {
+    }
+}
@@ -1,10 +1,22 @@
 package com.iot.sensor.service;
 
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.GroupStatistics;
 import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.GroupBy;
 import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.SensorDeviceCriteria;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  * Service class for SensorDevice business logic.
@@ -14,29 +26,96 @@ import java.util.Optional;
 public class SensorDeviceService {
     
     private final ISensorDeviceRepository repository;
+    private final List<SensorDeviceListener> listeners = new CopyOnWriteArrayList<>();
     
     public SensorDeviceService(ISensorDeviceRepository repository) {
         this.repository = repository;
     }
     
+    /**
+     * Register a listener notified of device changes and reported readings (e.g. a ReadingStore or AlertEngine)
+     */
+    public void addListener(SensorDeviceListener listener) {
+        listeners.add(listener);
+    }
+    
     /**
      * Create a new sensor device
      */
     public SensorDevice createSensorDevice(SensorDevice sensorDevice) {
-        if (sensorDevice.getDeviceName() == null || sensorDevice.getDeviceName().trim().isEmpty()) {
-            throw new IllegalArgumentException("Device name is required");
-        }
-        if (sensorDevice.getSensorType() == null || sensorDevice.getSensorType().trim().isEmpty()) {
-            throw new IllegalArgumentException("Sensor type is required");
+        validateForCreate(sensorDevice);
+        
+        SensorDevice created = repository.create(sensorDevice);
+        notifyDeviceWritten(created);
+        return created;
+    }
+    
+    /**
+     * Create several sensor devices in one batch.
+     * Devices that fail validation are reported as failures instead of aborting the batch.
+     */
+    public BatchResult createSensorDevices(Collection<SensorDevice> sensorDevices) {
+        BatchResult result = new BatchResult();
+        List<SensorDevice> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        
+        int index = 0;
+        for (SensorDevice sensorDevice : sensorDevices) {
+            try {
+                validateForCreate(sensorDevice);
+                valid.add(sensorDevice);
+                validIndexes.add(index);
+            } catch (IllegalArgumentException e) {
+                result.addFailure(index, sensorDevice, e.getMessage());
+            }
+            index++;
         }
-        if (sensorDevice.getLocation() == null || sensorDevice.getLocation().trim().isEmpty()) {
-            throw new IllegalArgumentException("Location is required");
+        
+        if (!valid.isEmpty()) {
+            mergeBatchResult(result, repository.createAll(valid), validIndexes);
         }
-        if (sensorDevice.getDeviceId() == null || sensorDevice.getDeviceId().trim().isEmpty()) {
-            throw new IllegalArgumentException("Device ID is required");
+        result.getSucceeded().forEach(this::notifyDeviceWritten);
+        return result;
+    }
+    
+    /**
+     * Create the device, or update the existing device with the same deviceId (e.g. on re-announce after reboot).
+     * A single atomic write, so gateways can safely retry it.
+     */
+    public UpsertResult upsertSensorDevice(SensorDevice sensorDevice) {
+        validateForCreate(sensorDevice);
+        
+        UpsertResult result = repository.upsertByDeviceId(sensorDevice);
+        notifyDeviceWritten(result.getSensorDevice());
+        return result;
+    }
+    
+    /**
+     * Upsert several devices keyed by deviceId in one round trip.
+     * All devices are validated first; an invalid device rejects the whole batch before anything is written.
+     */
+    public List<UpsertResult> upsertSensorDevices(Collection<SensorDevice> sensorDevices) {
+        int index = 0;
+        for (SensorDevice sensorDevice : sensorDevices) {
+            try {
+                validateForCreate(sensorDevice);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Device at index " + index + ": " + e.getMessage(), e);
+            }
+            index++;
         }
         
-        return repository.create(sensorDevice);
+        List<UpsertResult> results = repository.upsertAllByDeviceId(sensorDevices);
+        for (UpsertResult result : results) {
+            if (!result.isFailed()) {
+                notifyDeviceWritten(result.getSensorDevice());
+            }
+        }
+        return results;
+    }
+    
+    private void validateForCreate(SensorDevice sensorDevice) {
+        SensorDeviceValidator.validateForCreate(sensorDevice);
     }
     
     /**
@@ -46,6 +125,69 @@ public class SensorDeviceService {
         return repository.findById(id);
     }
     
+    /**
+     * Get sensor device by its business device ID
+     */
+    public Optional<SensorDevice> getSensorDeviceByDeviceId(String deviceId) {
+        if (SensorDeviceValidator.isBlank(deviceId)) {
+            throw new IllegalArgumentException("Device ID is required");
+        }
+        
+        return repository.findByDeviceId(deviceId);
+    }
+    
+    /**
+     * Get the last reading of several devices by business device ID, without loading whole devices
+     */
+    public Map<String, Double> getLastReadings(Collection<String> deviceIds) {
+        return repository.findLastReadings(deviceIds);
+    }
+    
+    /**
+     * Find sensor devices matching all conditions of the criteria
+     */
+    public List<SensorDevice> findSensorDevices(SensorDeviceCriteria criteria) {
+        return repository.findByCriteria(criteria);
+    }
+    
+    /**
+     * Get sensor devices by sensor type
+     */
+    public List<SensorDevice> getSensorDevicesBySensorType(String sensorType) {
+        return repository.findBySensorType(sensorType);
+    }
+    
+    /**
+     * Get sensor devices by status
+     */
+    public List<SensorDevice> getSensorDevicesByStatus(String status) {
+        return repository.findByStatus(status);
+    }
+    
+    /**
+     * Get sensor devices by exact location
+     */
+    public List<SensorDevice> getSensorDevicesByLocation(String location) {
+        return repository.findByLocation(location);
+    }
+    
+    /**
+     * Get sensor devices at a location or anywhere below it, e.g. every device in "Building A"
+     */
+    public List<SensorDevice> getSensorDevicesByLocationPrefix(String locationPrefix) {
+        return repository.findByLocationPrefix(locationPrefix);
+    }
+    
+    /**
+     * Get fleet statistics (device count, min/max/average lastReading) per sensor type, location or status
+     */
+    public List<GroupStatistics> getFleetStatistics(GroupBy groupBy) {
+        if (groupBy == null) {
+            throw new IllegalArgumentException("Group by attribute is required");
+        }
+        return repository.aggregateBy(groupBy);
+    }
+    
     /**
      * Get all sensor devices
      */
@@ -53,30 +195,159 @@ public class SensorDeviceService {
         return repository.findAll();
     }
     
+    /**
+     * Stream all sensor devices with constant memory.
+     * The returned stream must be closed by the caller.
+     */
+    public Stream<SensorDevice> streamAllSensorDevices() {
+        return repository.streamAll();
+    }
+    
+    /**
+     * Get one page of sensor devices ordered by ID.
+     * Pass the ID of the last device of the previous page to get the next one.
+     */
+    public List<SensorDevice> getSensorDevicePage(String afterId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+        
+        return repository.findPage(afterId, limit);
+    }
+    
+    /**
+     * Get the devices created, updated or deleted since the watermark, for incremental synchronization
+     */
+    public ChangeBatch getChangesSince(Watermark since, int limit) {
+        if (since == null) {
+            throw new IllegalArgumentException("Watermark is required");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return repository.findModifiedSince(since, limit);
+    }
+    
     /**
      * Update an existing sensor device
      */
     public SensorDevice updateSensorDevice(SensorDevice sensorDevice) {
-        if (sensorDevice.getId() == null || sensorDevice.getId().trim().isEmpty()) {
+        if (SensorDeviceValidator.isBlank(sensorDevice.getId())) {
             throw new IllegalArgumentException("Sensor device ID is required for update");
         }
         
-        if (!repository.existsById(sensorDevice.getId())) {
+        // The repository detects a missing device from the rows affected, so no existence check round trip
+        SensorDevice updated = repository.update(sensorDevice);
+        notifyDeviceWritten(updated);
+        return updated;
+    }
+    
+    /**
+     * Record a new reading for a device with a single targeted update
+     */
+    public void updateReading(String deviceId, double lastReading) {
+        if (SensorDeviceValidator.isBlank(deviceId)) {
+            throw new IllegalArgumentException("Device ID is required");
+        }
+        
+        if (!repository.updateReading(deviceId, lastReading)) {
             throw new RuntimeException("Sensor device not found");
         }
+        notifyReading(deviceId, lastReading);
+    }
+    
+    /**
+     * Change the status of a device with a single targeted update
+     */
+    public void updateStatus(String deviceId, String status) {
+        if (SensorDeviceValidator.isBlank(deviceId)) {
+            throw new IllegalArgumentException("Device ID is required");
+        }
+        if (SensorDeviceValidator.isBlank(status)) {
+            throw new IllegalArgumentException("Status is required");
+        }
         
-        return repository.update(sensorDevice);
+        if (!repository.updateStatus(deviceId, status)) {
+            throw new RuntimeException("Sensor device not found");
+        }
+    }
+    
+    /**
+     * Update several existing sensor devices in one batch.
+     * Devices without an ID or not found are reported as failures.
+     */
+    public BatchResult updateSensorDevices(Collection<SensorDevice> sensorDevices) {
+        BatchResult result = new BatchResult();
+        List<SensorDevice> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        
+        int index = 0;
+        for (SensorDevice sensorDevice : sensorDevices) {
+            if (SensorDeviceValidator.isBlank(sensorDevice.getId())) {
+                result.addFailure(index, sensorDevice, "Sensor device ID is required for update");
+            } else {
+                valid.add(sensorDevice);
+                validIndexes.add(index);
+            }
+            index++;
+        }
+        
+        if (!valid.isEmpty()) {
+            mergeBatchResult(result, repository.updateAll(valid), validIndexes);
+        }
+        result.getSucceeded().forEach(this::notifyDeviceWritten);
+        return result;
     }
     
     /**
      * Delete a sensor device by ID
      */
     public boolean deleteSensorDevice(String id) {
-        if (id == null || id.trim().isEmpty()) {
+        if (SensorDeviceValidator.isBlank(id)) {
             throw new IllegalArgumentException("Sensor device ID is required for deletion");
         }
         
-        return repository.deleteById(id);
+        boolean deleted = repository.deleteById(id);
+        if (deleted) {
+            for (SensorDeviceListener listener : listeners) {
+                listener.onDeviceDeleted(id);
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Notify the listeners of a written device, then of its reading
+     */
+    private void notifyDeviceWritten(SensorDevice sensorDevice) {
+        for (SensorDeviceListener listener : listeners) {
+            listener.onDeviceChanged(sensorDevice);
+        }
+        if (sensorDevice.getLastReading() != null && sensorDevice.getDeviceId() != null) {
+            notifyReading(sensorDevice.getDeviceId(), sensorDevice.getLastReading());
+        }
+    }
+    
+    private void notifyReading(String deviceId, double value) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (SensorDeviceListener listener : listeners) {
+            listener.onReading(deviceId, now, value);
+        }
+    }
+    
+    /**
+     * Merge a repository batch result into the service result,
+     * mapping failure indexes back to positions in the caller's collection.
+     */
+    private void mergeBatchResult(BatchResult target, BatchResult repositoryResult, List<Integer> originalIndexes) {
+        for (SensorDevice device : repositoryResult.getSucceeded()) {
+            target.addSuccess(device);
+        }
+        for (BatchResult.Failure failure : repositoryResult.getFailures()) {
+            target.addFailure(originalIndexes.get(failure.getIndex()), failure.getSensorDevice(), failure.getReason());
+        }
     }
 }
-
@@ -0,0 +1,58 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.model.SensorDevice;
+
+/**
+ * Validation rules for sensor devices, shared by SensorDeviceService and the ingestion pipeline.
+ * Blank checks scan for a non-whitespace character instead of trimming, so a valid device
+ * is checked without allocating.
+ */
+public final class SensorDeviceValidator {
+    
+    private SensorDeviceValidator() {
+    }
+    
+    /**
+     * Why the device cannot be created, or null if it is valid
+     */
+    public static String violationForCreate(SensorDevice sensorDevice) {
+        if (isBlank(sensorDevice.getDeviceName())) {
+            return "Device name is required";
+        }
+        if (isBlank(sensorDevice.getSensorType())) {
+            return "Sensor type is required";
+        }
+        if (isBlank(sensorDevice.getLocation())) {
+            return "Location is required";
+        }
+        if (isBlank(sensorDevice.getDeviceId())) {
+            return "Device ID is required";
+        }
+        return null;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the device cannot be created
+     */
+    public static void validateForCreate(SensorDevice sensorDevice) {
+        String violation = violationForCreate(sensorDevice);
+        if (violation != null) {
+            throw new IllegalArgumentException(violation);
+        }
+    }
+    
+    /**
+     * Whether the value is null, empty or only whitespace (same as trim().isEmpty(), without the copy)
+     */
+    public static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.iot.sensor.snapshot;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.StringDictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of SensorDevice records.
+ *
+ * The repetitive sensorType, status, unit and location strings are written as indexes into
+ * per-snapshot dictionaries, lengths and indexes as unsigned LEB128 varints, lastReading as
+ * a raw 8-byte double and timestamps as epoch seconds plus nanoseconds. A typical record
+ * takes 70-90 bytes, most of it the id, deviceId and deviceName.
+ *
+ * Record layout: flags, id, deviceId, deviceName, sensorType, status, unit, location,
+ * [lastReading], [createdAt], [updatedAt]. Strings are length + 1 (0 for null) followed by
+ * UTF-8 bytes; dictionary references are StringDictionary codes (index + 1, 0 for null).
+ */
+public class SensorDeviceBinaryCodec {
+    
+    private static final int HAS_LAST_READING = 1;
+    private static final int HAS_CREATED_AT = 2;
+    private static final int HAS_UPDATED_AT = 4;
+    
+    /** Dictionaries in the order they are stored in a snapshot */
+    static final int SENSOR_TYPE = 0;
+    static final int STATUS = 1;
+    static final int UNIT = 2;
+    static final int LOCATION = 3;
+    static final int DICTIONARY_COUNT = 4;
+    
+    /**
+     * Growable byte array that records are encoded into before being written out.
+     * Not thread-safe.
+     */
+    static final class Encoder {
+        private byte[] bytes = new byte[256];
+        private int size;
+        private final StringDictionary[] dictionaries = new StringDictionary[DICTIONARY_COUNT];
+        
+        Encoder() {
+            for (int i = 0; i < DICTIONARY_COUNT; i++) {
+                dictionaries[i] = new StringDictionary();
+            }
+        }
+        
+        void encode(SensorDevice device) {
+            int flags = (device.getLastReading() != null ? HAS_LAST_READING : 0)
+                    | (device.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+                    | (device.getUpdatedAt() != null ? HAS_UPDATED_AT : 0);
+            writeByte(flags);
+            writeString(device.getId());
+            writeString(device.getDeviceId());
+            writeString(device.getDeviceName());
+            writeReference(SENSOR_TYPE, device.getSensorType());
+            writeReference(STATUS, device.getStatus());
+            writeReference(UNIT, device.getUnit());
+            writeReference(LOCATION, device.getLocation());
+            if (device.getLastReading() != null) {
+                writeLong(Double.doubleToRawLongBits(device.getLastReading()));
+            }
+            if (device.getCreatedAt() != null) {
+                writeInstant(device.getCreatedAt());
+            }
+            if (device.getUpdatedAt() != null) {
+                writeInstant(device.getUpdatedAt());
+            }
+        }
+        
+        private void writeReference(int dictionary, String value) {
+            writeVarLong(dictionaries[dictionary].encode(value));
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+        
+        void writeInstant(Instant instant) {
+            // Zigzag so that instants before 1970 stay short
+            long seconds = instant.getEpochSecond();
+            writeVarLong((seconds << 1) ^ (seconds >> 63));
+            writeVarLong(instant.getNano());
+        }
+        
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        byte[] array() {
+            return bytes;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void reset() {
+            size = 0;
+        }
+        
+        StringDictionary dictionary(int dictionary) {
+            return dictionaries[dictionary];
+        }
+    }
+    
+    /**
+     * Reads records from a buffer positioned at the first one. Not thread-safe.
+     */
+    static final class Decoder {
+        private final ByteBuffer buffer;
+        private final String[][] dictionaries;
+        private byte[] scratch = new byte[64];
+        
+        Decoder(ByteBuffer buffer, String[][] dictionaries) {
+            this.buffer = buffer;
+            this.dictionaries = dictionaries;
+        }
+        
+        SensorDevice decode() {
+            int flags = buffer.get();
+            SensorDevice device = new SensorDevice();
+            device.setId(readString());
+            device.setDeviceId(readString());
+            device.setDeviceName(readString());
+            device.setSensorType(readReference(SENSOR_TYPE));
+            device.setStatus(readReference(STATUS));
+            device.setUnit(readReference(UNIT));
+            device.setLocation(readReference(LOCATION));
+            if ((flags & HAS_LAST_READING) != 0) {
+                device.setLastReading(Double.longBitsToDouble(buffer.getLong()));
+            }
+            if ((flags & HAS_CREATED_AT) != 0) {
+                device.setCreatedAt(readInstant());
+            }
+            if ((flags & HAS_UPDATED_AT) != 0) {
+                device.setUpdatedAt(readInstant());
+            }
+            return device;
+        }
+        
+        private String readReference(int dictionary) {
+            int reference = (int) readVarLong();
+            return reference == 0 ? null : dictionaries[dictionary][reference - 1];
+        }
+        
+        String readString() {
+            int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        
+        Instant readInstant() {
+            long zigzag = readVarLong();
+            long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+            return Instant.ofEpochSecond(seconds, readVarLong());
+        }
+        
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
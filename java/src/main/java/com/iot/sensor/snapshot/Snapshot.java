@@ -0,0 +1,140 @@
+package com.iot.sensor.snapshot;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.Watermark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot file written by SnapshotWriter, memory-mapped read-only.
+ * Opening verifies the checksum and decodes only the header and dictionaries; records are
+ * decoded on iteration, sharing one String instance per dictionary value. Snapshots of up
+ * to 2 GB are supported. The mapping is released when the Snapshot is garbage collected.
+ */
+public class Snapshot {
+    
+    private final MappedByteBuffer mapping;
+    private final Watermark watermark;
+    private final String[][] dictionaries;
+    private final int recordsOffset;
+    private final long deviceCount;
+    
+    private Snapshot(MappedByteBuffer mapping, Watermark watermark, String[][] dictionaries,
+                     int recordsOffset, long deviceCount) {
+        this.mapping = mapping;
+        this.watermark = watermark;
+        this.dictionaries = dictionaries;
+        this.recordsOffset = recordsOffset;
+        this.deviceCount = deviceCount;
+    }
+    
+    public static Snapshot open(Path file) {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Snapshot " + file + " is larger than 2 GB");
+            }
+            if (size < SnapshotWriter.MAGIC.length + SnapshotWriter.FOOTER_SIZE) {
+                throw new IllegalArgumentException("Snapshot " + file + " is truncated");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading snapshot " + file, e);
+        }
+        
+        int footer = mapping.limit() - SnapshotWriter.FOOTER_SIZE;
+        long dictionariesOffset = mapping.getLong(footer);
+        long deviceCount = mapping.getLong(footer + 8);
+        long checksum = mapping.getLong(footer + 16);
+        
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        mapping.duplicate().get(magic);
+        if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+            throw new IllegalArgumentException("Not a sensor device snapshot: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(mapping.duplicate().limit(footer));
+        if (crc.getValue() != checksum || dictionariesOffset < 0 || dictionariesOffset > footer) {
+            throw new IllegalArgumentException("Snapshot " + file + " is corrupt");
+        }
+        
+        ByteBuffer header = mapping.duplicate().position(SnapshotWriter.MAGIC.length);
+        SensorDeviceBinaryCodec.Decoder headerDecoder = new SensorDeviceBinaryCodec.Decoder(header, null);
+        Watermark watermark = new Watermark(headerDecoder.readInstant(), headerDecoder.readString());
+        int recordsOffset = header.position();
+        
+        ByteBuffer dictionaryBuffer = mapping.duplicate().position((int) dictionariesOffset);
+        SensorDeviceBinaryCodec.Decoder dictionaryDecoder = new SensorDeviceBinaryCodec.Decoder(dictionaryBuffer, null);
+        String[][] dictionaries = new String[SensorDeviceBinaryCodec.DICTIONARY_COUNT][];
+        for (int d = 0; d < dictionaries.length; d++) {
+            dictionaries[d] = new String[(int) dictionaryDecoder.readVarLong()];
+            for (int i = 0; i < dictionaries[d].length; i++) {
+                dictionaries[d][i] = dictionaryDecoder.readString();
+            }
+        }
+        return new Snapshot(mapping, watermark, dictionaries, recordsOffset, deviceCount);
+    }
+    
+    /**
+     * Watermark to catch up from: every change after it may be missing from the snapshot
+     */
+    public Watermark getWatermark() {
+        return watermark;
+    }
+    
+    public long getDeviceCount() {
+        return deviceCount;
+    }
+    
+    /**
+     * Decode every device in file order
+     */
+    public void forEach(Consumer<SensorDevice> consumer) {
+        Iterator<SensorDevice> iterator = iterator();
+        while (iterator.hasNext()) {
+            consumer.accept(iterator.next());
+        }
+    }
+    
+    public Stream<SensorDevice> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), deviceCount,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
+    private Iterator<SensorDevice> iterator() {
+        SensorDeviceBinaryCodec.Decoder decoder =
+                new SensorDeviceBinaryCodec.Decoder(mapping.duplicate().position(recordsOffset), dictionaries);
+        return new Iterator<SensorDevice>() {
+            private long remaining = deviceCount;
+            
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            
+            @Override
+            public SensorDevice next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                return decoder.decode();
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.iot.sensor.snapshot;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.StringDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the whole fleet of a repository to a snapshot file.
+ *
+ * File layout: magic, watermark, records, dictionaries, footer. The dictionaries follow the
+ * records so the fleet is written in a single streaming pass; the fixed-size footer holds the
+ * dictionary offset, the record count and a CRC32 of everything before it. The file is written
+ * next to its destination and moved into place, so readers never see a partial snapshot.
+ */
+public class SnapshotWriter {
+    
+    static final byte[] MAGIC = "IOTSNAP1".getBytes(StandardCharsets.US_ASCII);
+    static final int FOOTER_SIZE = 8 + 8 + 8;
+    
+    // The snapshot watermark is taken this long before the fleet is read, so the catch-up after
+    // loading re-applies a few changes rather than missing writes that committed late or were
+    // stamped by a database clock running behind ours
+    private static final Duration CLOCK_SKEW_ALLOWANCE = Duration.ofMinutes(1);
+    
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    
+    private final ISensorDeviceRepository source;
+    
+    public SnapshotWriter(ISensorDeviceRepository source) {
+        this.source = source;
+    }
+    
+    /**
+     * Stream every device into the snapshot file
+     * @return Watermark to catch up from after loading the snapshot
+     */
+    public Watermark write(Path file) {
+        Watermark watermark = new Watermark(Instant.now().minus(CLOCK_SKEW_ALLOWANCE), "");
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        
+        SensorDeviceBinaryCodec.Encoder encoder = new SensorDeviceBinaryCodec.Encoder();
+        CRC32 crc = new CRC32();
+        long offset = 0;
+        long count = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), WRITE_BUFFER_SIZE);
+             Stream<SensorDevice> devices = source.streamAll()) {
+            encoder.writeInstant(watermark.getTimestamp());
+            encoder.writeString(watermark.getId());
+            offset += write(out, crc, MAGIC, MAGIC.length);
+            offset += flush(out, crc, encoder);
+            
+            Iterator<SensorDevice> iterator = devices.iterator();
+            while (iterator.hasNext()) {
+                encoder.encode(iterator.next());
+                count++;
+                if (encoder.size() >= WRITE_BUFFER_SIZE) {
+                    offset += flush(out, crc, encoder);
+                }
+            }
+            offset += flush(out, crc, encoder);
+            
+            long dictionariesOffset = offset;
+            for (int d = 0; d < SensorDeviceBinaryCodec.DICTIONARY_COUNT; d++) {
+                // Stored without the null code 0, so entry i is referenced as i + 1
+                StringDictionary dictionary = encoder.dictionary(d);
+                encoder.writeVarLong(dictionary.size() - 1L);
+                for (int code = 1; code < dictionary.size(); code++) {
+                    encoder.writeString(dictionary.decode(code));
+                }
+            }
+            flush(out, crc, encoder);
+            
+            encoder.writeLong(dictionariesOffset);
+            encoder.writeLong(count);
+            encoder.writeLong(crc.getValue());
+            out.write(encoder.array(), 0, encoder.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing snapshot to " + file, e);
+        }
+        
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing snapshot to " + file, e);
+        }
+        return watermark;
+    }
+    
+    private static int flush(OutputStream out, CRC32 crc, SensorDeviceBinaryCodec.Encoder encoder) throws IOException {
+        int size = write(out, crc, encoder.array(), encoder.size());
+        encoder.reset();
+        return size;
+    }
+    
+    private static int write(OutputStream out, CRC32 crc, byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        crc.update(bytes, 0, length);
+        return length;
+    }
+}
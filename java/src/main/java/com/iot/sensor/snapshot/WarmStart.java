@@ -0,0 +1,89 @@
+package com.iot.sensor.snapshot;
+
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings an in-process view of the fleet (e.g. a ColumnarSensorDeviceRepository) up to date
+ * after a restart: load the local snapshot, then apply the change feed of the database from
+ * the snapshot's watermark. Without a snapshot the whole fleet is read from the database.
+ */
+public class WarmStart {
+    
+    private final ISensorDeviceRepository source;
+    private final int batchSize;
+    
+    /**
+     * @param source The database the view mirrors; its change feed is used for catch-up
+     */
+    public WarmStart(ISensorDeviceRepository source, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Fill the empty target from the snapshot if it exists, then catch up
+     * @return Watermark reached; pass it to catchUp() to keep the view current
+     */
+    public Watermark restore(Path snapshotFile, ISensorDeviceRepository target) {
+        if (!Files.exists(snapshotFile)) {
+            return catchUp(Watermark.initial(), target);
+        }
+        
+        Snapshot snapshot = Snapshot.open(snapshotFile);
+        List<SensorDevice> batch = new ArrayList<>(batchSize);
+        snapshot.forEach(device -> {
+            batch.add(device);
+            if (batch.size() == batchSize) {
+                target.upsertAllByDeviceId(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            target.upsertAllByDeviceId(batch);
+        }
+        return catchUp(snapshot.getWatermark(), target);
+    }
+    
+    /**
+     * Apply every change after the watermark to the target; changes are applied idempotently,
+     * so a watermark that is too early only costs re-applying some of them
+     * @return Watermark of the last change applied
+     */
+    public Watermark catchUp(Watermark since, ISensorDeviceRepository target) {
+        Watermark watermark = since;
+        ChangeBatch batch;
+        do {
+            batch = source.findModifiedSince(watermark, batchSize);
+            for (DeviceChange change : batch.getChanges()) {
+                apply(change, target);
+            }
+            if (!batch.isEmpty()) {
+                watermark = batch.getWatermark();
+            }
+        } while (batch.hasMore());
+        return watermark;
+    }
+    
+    private static void apply(DeviceChange change, ISensorDeviceRepository target) {
+        if (change.getType() == DeviceChange.Type.DELETED) {
+            target.deleteById(change.getId());
+        } else if (target.existsById(change.getId())) {
+            // By ID, so a device whose deviceId changed is updated rather than duplicated
+            target.update(change.getSensorDevice());
+        } else {
+            target.upsertByDeviceId(change.getSensorDevice());
+        }
+    }
+}
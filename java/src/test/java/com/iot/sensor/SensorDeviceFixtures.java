@@ -0,0 +1,31 @@
+package com.iot.sensor;
+
+import com.iot.sensor.model.SensorDevice;
+
+/**
+ * Shared test data: valid devices without an ID, varying only in what a test looks at.
+ */
+public final class SensorDeviceFixtures {
+    
+    private SensorDeviceFixtures() {
+    }
+    
+    /**
+     * An active temperature sensor in "Building A" reading 20.0 Celsius
+     */
+    public static SensorDevice device(String deviceId) {
+        return device(deviceId, "Building A", 20.0);
+    }
+    
+    public static SensorDevice device(String deviceId, double lastReading) {
+        return device(deviceId, "Building A", lastReading);
+    }
+    
+    public static SensorDevice device(String deviceId, String location) {
+        return device(deviceId, location, 20.0);
+    }
+    
+    public static SensorDevice device(String deviceId, String location, Double lastReading) {
+        return new SensorDevice(null, "Sensor " + deviceId, "Temperature", location, "Active", lastReading, "Celsius", deviceId);
+    }
+}
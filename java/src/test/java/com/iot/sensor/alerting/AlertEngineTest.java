@@ -0,0 +1,111 @@
+package com.iot.sensor.alerting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertEngineTest {
+    
+    private static final List<AlertRule> RULES = List.of(AlertRule.above("Overheating", 30.0).sensorType("Temperature"));
+    
+    @Test
+    void throwingSinkDoesNotStopOtherSinksOrEvaluation() {
+        AlertEngine engine = new AlertEngine(RULES, null);
+        List<Alert> received = new CopyOnWriteArrayList<>();
+        engine.addSink(alert -> {
+            throw new IllegalStateException("sink down");
+        });
+        engine.addSink(received::add);
+        engine.onDeviceChanged(device("SENSOR-001"));
+        
+        engine.onReading("SENSOR-001", 1L, 35.0);
+        engine.onReading("SENSOR-001", 2L, 20.0);
+        
+        assertEquals(2, received.size());
+        assertEquals(Alert.State.RAISED, received.get(0).getState());
+        assertEquals(Alert.State.CLEARED, received.get(1).getState());
+        assertEquals(2, engine.getSinkFailures());
+    }
+    
+    @Test
+    void sinksRunAfterTheDeviceStateIsUnlocked() throws InterruptedException {
+        AlertEngine engine = new AlertEngine(RULES, null);
+        AtomicBoolean seenRaised = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        engine.addSink(alert -> {
+            // Blocks on the device's state if the sink is called while it is still locked
+            Thread reader = new Thread(() -> seenRaised.set(engine.isRaised(alert.getDeviceId(), alert.getRuleName())));
+            readers.add(reader);
+            reader.start();
+            try {
+                reader.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        engine.onDeviceChanged(device("SENSOR-001"));
+        
+        engine.onReading("SENSOR-001", 1L, 35.0);
+        
+        assertEquals(1, readers.size());
+        assertFalse(readers.get(0).isAlive());
+        assertTrue(seenRaised.get());
+    }
+    
+    @Test
+    void unknownDeviceIsLookedUpOnceOnTheLookupExecutor() {
+        List<Runnable> lookups = new ArrayList<>();
+        AtomicInteger lookupCalls = new AtomicInteger();
+        AlertEngine engine = new AlertEngine(RULES, deviceId -> {
+            lookupCalls.incrementAndGet();
+            return Optional.of(device(deviceId));
+        }, lookups::add);
+        
+        engine.onReading("SENSOR-001", 1L, 35.0);
+        engine.onReading("SENSOR-001", 2L, 35.0);
+        
+        assertEquals(0, lookupCalls.get());
+        assertEquals(1, lookups.size());
+        assertFalse(engine.isRaised("SENSOR-001", "Overheating"));
+        
+        lookups.get(0).run();
+        engine.onReading("SENSOR-001", 3L, 35.0);
+        
+        assertEquals(1, lookupCalls.get());
+        assertTrue(engine.isRaised("SENSOR-001", "Overheating"));
+    }
+    
+    @Test
+    void deviceNotFoundIsLookedUpAgainOnALaterReading() {
+        AtomicBoolean created = new AtomicBoolean();
+        AtomicInteger lookupCalls = new AtomicInteger();
+        AlertEngine engine = new AlertEngine(RULES, deviceId -> {
+            lookupCalls.incrementAndGet();
+            return created.get() ? Optional.of(device(deviceId)) : Optional.empty();
+        }, Runnable::run);
+        
+        engine.onReading("SENSOR-001", 1L, 35.0);
+        engine.onReading("SENSOR-001", 2L, 35.0);
+        
+        assertEquals(2, lookupCalls.get());
+        assertEquals(0, engine.getReadingsEvaluated());
+        
+        // Created by another process, so the engine is not told
+        created.set(true);
+        engine.onReading("SENSOR-001", 3L, 35.0);
+        engine.onReading("SENSOR-001", 4L, 35.0);
+        
+        assertEquals(3, lookupCalls.get());
+        assertTrue(engine.isRaised("SENSOR-001", "Overheating"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.iot.sensor.changes;
+
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import com.iot.sensor.service.SensorDeviceService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeFeedPollerTest {
+    
+    /**
+     * Hides one device from the feed until its transaction "commits", although it was stamped earlier
+     */
+    private static class LateCommitRepository extends ColumnarSensorDeviceRepository {
+        volatile String uncommittedDeviceId;
+        
+        @Override
+        public ChangeBatch findModifiedSince(Watermark since, int limit) {
+            List<DeviceChange> visible = super.findModifiedSince(since, Integer.MAX_VALUE - 1).getChanges().stream()
+                    .filter(change -> !change.getDeviceId().equals(uncommittedDeviceId))
+                    .limit(limit + 1L)
+                    .collect(Collectors.toList());
+            return ChangeBatch.merge(visible, Collections.emptyList(), since, limit);
+        }
+    }
+    
+    private static class MemoryWatermarkStore implements WatermarkStore {
+        Watermark saved = Watermark.initial();
+        
+        @Override
+        public Watermark load() {
+            return saved;
+        }
+        
+        @Override
+        public void save(Watermark watermark) {
+            saved = watermark;
+        }
+    }
+    
+    private static List<String> deviceIds(List<DeviceChange> changes) {
+        return changes.stream().map(DeviceChange::getDeviceId).collect(Collectors.toList());
+    }
+    
+    @Test
+    void changeStampedBeforeTheWatermarkIsDeliveredOnce() {
+        LateCommitRepository repository = new LateCommitRepository();
+        repository.uncommittedDeviceId = "SENSOR-002";
+        repository.create(device("SENSOR-001"));
+        repository.create(device("SENSOR-002"));
+        repository.create(device("SENSOR-003"));
+        ChangeFeedPoller poller = new ChangeFeedPoller(new SensorDeviceService(repository), new MemoryWatermarkStore(), 1);
+        
+        List<DeviceChange> received = new ArrayList<>();
+        assertEquals(2, poller.poll(received::add));
+        assertEquals(List.of("SENSOR-001", "SENSOR-003"), deviceIds(received));
+        
+        repository.uncommittedDeviceId = null;
+        received.clear();
+        assertEquals(1, poller.poll(received::add));
+        assertEquals(List.of("SENSOR-002"), deviceIds(received));
+        
+        received.clear();
+        assertEquals(0, poller.poll(received::add));
+    }
+    
+    @Test
+    void watermarkOnlyMovesForward() {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        MemoryWatermarkStore store = new MemoryWatermarkStore();
+        ChangeFeedPoller poller = new ChangeFeedPoller(new SensorDeviceService(repository), store, 10);
+        SensorDevice created = repository.create(device("SENSOR-001"));
+        poller.poll(change -> { });
+        Watermark afterCreate = poller.getWatermark();
+        
+        repository.deleteById(created.getId());
+        List<DeviceChange> received = new ArrayList<>();
+        poller.poll(received::add);
+        
+        assertEquals(1, received.size());
+        assertEquals(DeviceChange.Type.DELETED, received.get(0).getType());
+        assertTrue(poller.getWatermark().compareTo(afterCreate) > 0);
+        assertEquals(poller.getWatermark(), store.saved);
+        poller.poll(change -> { });
+        assertEquals(store.saved, poller.getWatermark());
+    }
+}
@@ -0,0 +1,83 @@
+package com.iot.sensor.ingest;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import com.iot.sensor.service.SensorDeviceService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestPipelineTest {
+    
+    @Test
+    @Timeout(30)
+    void writesOfOneDeviceKeepSubmissionOrderAcrossWriters() {
+        Map<String, List<Double>> writtenReadings = new HashMap<>();
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository() {
+            @Override
+            public List<UpsertResult> upsertAllByDeviceId(Collection<SensorDevice> sensorDevices) {
+                // Let concurrent batches overtake each other
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(200_000));
+                synchronized (writtenReadings) {
+                    for (SensorDevice device : sensorDevices) {
+                        writtenReadings.computeIfAbsent(device.getDeviceId(), key -> new ArrayList<>())
+                                .add(device.getLastReading());
+                    }
+                    return super.upsertAllByDeviceId(sensorDevices);
+                }
+            }
+        };
+        int devices = 8;
+        int updatesPerDevice = 200;
+        try (IngestPipeline pipeline = new IngestPipeline(new SensorDeviceService(repository),
+                BackpressurePolicy.BLOCK, 64, 4, 0, 4)) {
+            for (int update = 0; update < updatesPerDevice; update++) {
+                for (int d = 0; d < devices; d++) {
+                    pipeline.submit(device("SENSOR-" + d, update));
+                }
+            }
+        }
+        
+        assertEquals(devices, writtenReadings.size());
+        for (Map.Entry<String, List<Double>> entry : writtenReadings.entrySet()) {
+            List<Double> readings = entry.getValue();
+            assertEquals(updatesPerDevice, readings.size(), entry.getKey());
+            for (int i = 0; i < readings.size(); i++) {
+                assertEquals(i, readings.get(i), 0.0, entry.getKey());
+            }
+            assertEquals((double) (updatesPerDevice - 1), repository.findByDeviceId(entry.getKey()).get().getLastReading());
+        }
+    }
+    
+    @Test
+    @Timeout(30)
+    void submitWakesAParkedWriter() throws InterruptedException {
+        try (IngestPipeline pipeline = new IngestPipeline(new SensorDeviceService(new ColumnarSensorDeviceRepository()),
+                BackpressurePolicy.BLOCK, 64, 4, 0, 1)) {
+            for (int round = 1; round <= 3; round++) {
+                // Long enough for the writer to stop spinning and park
+                TimeUnit.MILLISECONDS.sleep(150);
+                long start = System.nanoTime();
+                pipeline.submit(device("SENSOR-1", round));
+                while (pipeline.getWrittenCount() < round) {
+                    Thread.onSpinWait();
+                }
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(waitedMillis < 25, "Writer woke after " + waitedMillis + " ms");
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.iot.sensor.readings;
+
+import com.iot.sensor.model.ReadingBuckets;
+import com.iot.sensor.model.ReadingSeries;
+import com.iot.sensor.repository.IReadingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadingStoreTest {
+    
+    /**
+     * Counts persisted samples; every write waits for the gate and can be made to fail
+     */
+    private static class StubReadingRepository implements IReadingRepository {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger stored = new AtomicInteger();
+        volatile boolean failing;
+        
+        @Override
+        public void append(String deviceId, long timestamp, double value) {
+            throw new UnsupportedOperationException("ReadingStore writes in batches");
+        }
+        
+        @Override
+        public void appendAll(Collection<ReadingSeries> samples) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new RuntimeException("Database unavailable");
+            }
+            for (ReadingSeries series : samples) {
+                stored.addAndGet(series.size());
+            }
+        }
+        
+        @Override
+        public ReadingSeries findRange(String deviceId, long fromInclusive, long toExclusive) {
+            return ReadingSeries.empty(deviceId);
+        }
+        
+        @Override
+        public ReadingBuckets downsample(String deviceId, long fromInclusive, long toExclusive, long bucketMillis) {
+            return new ReadingBuckets.Builder(deviceId, bucketMillis).build();
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void appendDoesNotWaitForTheRepository() throws InterruptedException {
+        StubReadingRepository repository = new StubReadingRepository();
+        ReadingStore store = new ReadingStore(repository, 128);
+        for (int i = 0; i < 100; i++) {
+            store.append("SENSOR-001", 1_000L + i, i);
+        }
+        assertEquals(100, store.range("SENSOR-001", 1_000L, 2_000L).size());
+        assertEquals(0, repository.stored.get());
+        
+        repository.gate.countDown();
+        store.close();
+        assertEquals(100, repository.stored.get());
+        assertEquals(100, store.getPersistedCount());
+        assertEquals(0, store.getPendingCount());
+    }
+    
+    @Test
+    @Timeout(10)
+    void failedWritesAreCountedAndDoNotStopTheWriter() throws InterruptedException {
+        StubReadingRepository repository = new StubReadingRepository();
+        repository.failing = true;
+        repository.gate.countDown();
+        ReadingStore store = new ReadingStore(repository, 16);
+        store.append("SENSOR-001", 1_000L, 1.0);
+        while (store.getFailedCount() == 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        
+        repository.failing = false;
+        store.append("SENSOR-001", 1_001L, 2.0);
+        store.close();
+        
+        assertEquals(1, store.getFailedCount());
+        assertEquals(1, repository.stored.get());
+        assertEquals(2, store.range("SENSOR-001", 1_000L, 2_000L).size());
+    }
+    
+    @Test
+    void samplesBeyondTheQueueCapacityAreDropped() {
+        StubReadingRepository repository = new StubReadingRepository();
+        ReadingStore store = new ReadingStore(repository, 16, 1);
+        // The writer holds at most one sample while it waits for the gate
+        for (int i = 0; i < 5; i++) {
+            store.append("SENSOR-001", 1_000L + i, i);
+        }
+        repository.gate.countDown();
+        store.close();
+        
+        assertEquals(5, store.getDroppedCount() + store.getPersistedCount());
+        assertEquals(store.getPersistedCount(), repository.stored.get());
+        assertTrue(store.getDroppedCount() >= 3);
+    }
+}
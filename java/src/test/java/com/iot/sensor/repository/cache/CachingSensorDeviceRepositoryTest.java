@@ -0,0 +1,114 @@
+package com.iot.sensor.repository.cache;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingSensorDeviceRepositoryTest {
+    
+    /**
+     * Store whose findById can be held after it has read the row, standing in for a slow query
+     */
+    private static final class PausingStore extends ColumnarSensorDeviceRepository {
+        volatile CountDownLatch loaded;
+        volatile CountDownLatch release;
+        
+        @Override
+        public Optional<SensorDevice> findById(String id) {
+            Optional<SensorDevice> device = super.findById(id);
+            if (release != null) {
+                loaded.countDown();
+                await(release);
+            }
+            return device;
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void loadRacingAWriteToTheSameDeviceIsNotCached() throws InterruptedException {
+        PausingStore store = new PausingStore();
+        CachingSensorDeviceRepository cache = new CachingSensorDeviceRepository(store, 100, 0);
+        SensorDevice created = store.create(device("SENSOR-001"));
+        
+        store.loaded = new CountDownLatch(1);
+        store.release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> cache.findById(created.getId()));
+        reader.start();
+        await(store.loaded);
+        cache.updateReading("SENSOR-001", 30.0);
+        store.release.countDown();
+        reader.join();
+        store.release = null;
+        
+        assertEquals(30.0, cache.findById(created.getId()).get().getLastReading());
+    }
+    
+    @Test
+    @Timeout(10)
+    void writesToOtherDevicesDoNotStopALoadFromBeingCached() throws InterruptedException {
+        PausingStore store = new PausingStore();
+        CachingSensorDeviceRepository cache = new CachingSensorDeviceRepository(store, 100, 0);
+        SensorDevice created = store.create(device("SENSOR-001"));
+        store.create(device("SENSOR-002"));
+        
+        store.loaded = new CountDownLatch(1);
+        store.release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> cache.findById(created.getId()));
+        reader.start();
+        await(store.loaded);
+        cache.updateReading("SENSOR-002", 30.0);
+        store.release.countDown();
+        reader.join();
+        store.release = null;
+        
+        cache.findById(created.getId());
+        assertEquals(1, cache.getHitCount());
+    }
+    
+    @Test
+    void createdDeviceIsServedFromTheCache() {
+        CachingSensorDeviceRepository cache = new CachingSensorDeviceRepository(new ColumnarSensorDeviceRepository(), 100, 0);
+        SensorDevice created = cache.create(device("SENSOR-001"));
+        
+        assertEquals("SENSOR-001", cache.findById(created.getId()).get().getDeviceId());
+        assertEquals(1, cache.getHitCount());
+    }
+    
+    @Test
+    void writeFinishingBeforeTheCreateReturnsIsNotOverwrittenInTheCache() {
+        CachingSensorDeviceRepository[] cache = new CachingSensorDeviceRepository[1];
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository() {
+            @Override
+            public SensorDevice create(SensorDevice sensorDevice) {
+                SensorDevice created = super.create(sensorDevice);
+                // Another client updates the new device before the create call returns
+                cache[0].updateReading(created.getDeviceId(), 30.0);
+                return created;
+            }
+        };
+        cache[0] = new CachingSensorDeviceRepository(store, 100, 0);
+        
+        SensorDevice created = cache[0].create(device("SENSOR-001", 20.0));
+        
+        assertEquals(30.0, cache[0].findById(created.getId()).get().getLastReading());
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.iot.sensor.repository.location;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationIndexedSensorDeviceRepositoryTest {
+    
+    @Test
+    void prefixQueriesAndCountsFollowWrites() {
+        LocationIndexedSensorDeviceRepository locations =
+                new LocationIndexedSensorDeviceRepository(new ColumnarSensorDeviceRepository());
+        locations.create(device("SENSOR-001", "Building A, Floor 1, Room 101"));
+        SensorDevice moving = locations.create(device("SENSOR-002", "Building A, Floor 2, Room 201"));
+        locations.create(device("SENSOR-003", "Building AB, Floor 1"));
+        
+        moving.setLocation("Building B, Floor 1");
+        locations.update(moving);
+        
+        assertEquals(1, locations.countByLocationPrefix("Building A"));
+        assertEquals(Map.of("Floor 1", 1), locations.countByChildLocation("Building A"));
+        List<SensorDevice> inB = locations.findByLocationPrefix("Building B");
+        assertEquals(1, inB.size());
+        assertEquals("SENSOR-002", inB.get(0).getDeviceId());
+    }
+    
+    @Test
+    @Timeout(10)
+    void deleteRacingAnUpdateDoesNotLeaveTheDeviceInTheTree() throws InterruptedException {
+        CountDownLatch updateWritten = new CountDownLatch(1);
+        CountDownLatch releaseUpdate = new CountDownLatch(1);
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository() {
+            @Override
+            public SensorDevice update(SensorDevice sensorDevice) {
+                SensorDevice updated = super.update(sensorDevice);
+                updateWritten.countDown();
+                await(releaseUpdate);
+                return updated;
+            }
+        };
+        LocationIndexedSensorDeviceRepository locations = new LocationIndexedSensorDeviceRepository(store);
+        SensorDevice created = locations.create(device("SENSOR-001", "Building A, Floor 1"));
+        
+        SensorDevice moved = new SensorDevice(created);
+        moved.setLocation("Building A, Floor 2");
+        Thread updater = new Thread(() -> locations.update(moved));
+        updater.start();
+        await(updateWritten);
+        Thread deleter = new Thread(() -> locations.deleteById(created.getId()));
+        deleter.start();
+        deleter.join(200);
+        releaseUpdate.countDown();
+        updater.join();
+        deleter.join();
+        
+        assertEquals(0, locations.countByLocationPrefix("Building A"));
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
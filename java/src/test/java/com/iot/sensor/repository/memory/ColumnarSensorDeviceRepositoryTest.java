@@ -0,0 +1,82 @@
+package com.iot.sensor.repository.memory;
+
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.IdGenerator;
+import com.iot.sensor.repository.SensorDeviceCriteria;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarSensorDeviceRepositoryTest {
+    
+    @Test
+    void tombstonesOlderThanTheRetentionAreDropped() {
+        ColumnarSensorDeviceRepository repository =
+                new ColumnarSensorDeviceRepository(IdGenerator.uuidV7(), Duration.ZERO);
+        SensorDevice first = repository.create(device("SENSOR-001"));
+        SensorDevice second = repository.create(device("SENSOR-002"));
+        repository.deleteById(first.getId());
+        repository.deleteById(second.getId());
+        
+        List<DeviceChange> changes = repository.findModifiedSince(Watermark.initial(), 10).getChanges();
+        
+        assertEquals(1, changes.size());
+        assertEquals(second.getId(), changes.get(0).getId());
+    }
+    
+    @Test
+    void purgeTombstonesRemovesOnlyOlderOnes() {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        SensorDevice first = repository.create(device("SENSOR-001"));
+        SensorDevice second = repository.create(device("SENSOR-002"));
+        repository.deleteById(first.getId());
+        Instant cutoff = repository.findModifiedSince(Watermark.initial(), 10).getWatermark().getTimestamp().plusNanos(1);
+        repository.deleteById(second.getId());
+        
+        assertEquals(1, repository.purgeTombstones(cutoff));
+        List<DeviceChange> changes = repository.findModifiedSince(Watermark.initial(), 10).getChanges();
+        assertEquals(1, changes.size());
+        assertEquals(second.getId(), changes.get(0).getId());
+    }
+    
+    @Test
+    void deviceIdCriteriaReturnsAMutableList() {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        repository.create(device("SENSOR-001"));
+        
+        List<SensorDevice> found = repository.findByCriteria(new SensorDeviceCriteria().deviceId("SENSOR-001"));
+        List<SensorDevice> missing = repository.findByCriteria(new SensorDeviceCriteria().deviceId("SENSOR-404"));
+        found.add(device("SENSOR-002"));
+        missing.add(device("SENSOR-002"));
+        
+        assertEquals(2, found.size());
+        assertEquals(1, missing.size());
+    }
+    
+    @Test
+    void upsertBatchFailsOnlyTheItemThatCannotBeWritten() {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        SensorDevice existing = repository.create(device("SENSOR-001"));
+        SensorDevice clashingId = device("SENSOR-002");
+        clashingId.setId(existing.getId());
+        
+        List<UpsertResult> results = repository.upsertAllByDeviceId(
+                List.of(device("SENSOR-001"), clashingId, device("SENSOR-003")));
+        
+        assertTrue(results.get(0).isUpdated());
+        assertTrue(results.get(1).isFailed());
+        assertTrue(results.get(2).isInserted());
+        assertTrue(repository.findByDeviceId("SENSOR-003").isPresent());
+        assertFalse(repository.findByDeviceId("SENSOR-002").isPresent());
+    }
+}
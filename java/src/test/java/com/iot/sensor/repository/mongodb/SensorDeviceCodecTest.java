@@ -0,0 +1,31 @@
+package com.iot.sensor.repository.mongodb;
+
+import com.iot.sensor.model.SensorDevice;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Test;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorDeviceCodecTest {
+    
+    @Test
+    void missingLastReadingIsStoredAsNull() {
+        SensorDeviceCodec codec = new SensorDeviceCodec();
+        SensorDevice device = device("SENSOR-001", "Building A", null);
+        
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), device, EncoderContext.builder().build());
+        SensorDevice decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+        
+        assertTrue(document.get("lastReading").isNull());
+        assertNull(decoded.getLastReading());
+        assertEquals("SENSOR-001", decoded.getDeviceId());
+    }
+}
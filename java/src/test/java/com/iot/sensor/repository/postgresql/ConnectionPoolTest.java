@@ -0,0 +1,93 @@
+package com.iot.sensor.repository.postgresql;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    
+    /**
+     * A connection that only tracks whether it is closed; enough for the pool's bookkeeping
+     */
+    private static Connection stubConnection(AtomicBoolean closed) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isClosed":
+                            return closed.get();
+                        case "close":
+                            closed.set(true);
+                            return null;
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+    
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(() -> stubConnection(new AtomicBoolean()), 1, 50, 4)) {
+            PooledConnection first = pool.acquire();
+            first.close();
+            first.close();
+            
+            PooledConnection second = pool.acquire();
+            // A double release would have left a second permit for this acquire; without one this
+            // thread holds the only connection, so the acquire fails
+            assertThrows(SQLException.class, pool::acquire);
+            // The stale handle must not return the connection its new holder is using
+            first.close();
+            assertThrows(SQLException.class, pool::acquire);
+            second.close();
+            assertEquals(0, pool.getMetrics().getActiveConnections());
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void nestedAcquireOfTheOnlyConnectionFailsInsteadOfDeadlocking() throws SQLException, InterruptedException {
+        try (ConnectionPool pool = ConnectionPool.ofConnection(stubConnection(new AtomicBoolean()))) {
+            PooledConnection outer = pool.acquire();
+            SQLException nested = assertThrows(SQLException.class, pool::acquire);
+            assertTrue(nested.getMessage().contains("held by this thread"));
+            
+            // Another thread still waits for the connection as usual
+            AtomicBoolean acquired = new AtomicBoolean();
+            Thread other = new Thread(() -> {
+                try (PooledConnection conn = pool.acquire()) {
+                    acquired.set(true);
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            other.start();
+            outer.close();
+            other.join();
+            assertTrue(acquired.get());
+        }
+    }
+    
+    @Test
+    void ofConnectionFailsFastOnceTheConnectionIsClosed() throws SQLException {
+        AtomicBoolean closed = new AtomicBoolean();
+        try (ConnectionPool pool = ConnectionPool.ofConnection(stubConnection(closed))) {
+            pool.acquire().close();
+            closed.set(true);
+            
+            SQLException e = assertThrows(SQLException.class, pool::acquire);
+            assertEquals("The wrapped connection is closed; create the repository with a new connection", e.getMessage());
+            // The failed acquire gave its permit back, so the pool reports the same error again instead of hanging
+            assertThrows(SQLException.class, pool::acquire);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.iot.sensor.repository.rollup;
+
+import com.iot.sensor.model.GroupStatistics;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.GroupBy;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollupSensorDeviceRepositoryTest {
+    
+    @Test
+    void sumDoesNotDriftOverManyReadingChanges() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        RollupSensorDeviceRepository rollup = new RollupSensorDeviceRepository(store);
+        SensorDevice large = rollup.create(device("SENSOR-001", 1e9));
+        rollup.create(device("SENSOR-002", 0.1));
+        double last = 0.1;
+        for (int i = 0; i < 10_000; i++) {
+            last = (i % 97) * 0.37 + i * 1e-3;
+            rollup.updateReading("SENSOR-002", last);
+        }
+        // Once the large reading leaves, the sum must be the remaining reading, not the rounding residue
+        rollup.deleteById(large.getId());
+        
+        GroupStatistics active = rollup.aggregateBy(GroupBy.STATUS).get(0);
+        assertEquals(last, active.getSumReading(), 0.0);
+    }
+    
+    @Test
+    @Timeout(10)
+    void deleteRacingAnUpdateDoesNotLeaveTheDeviceInTheRollup() throws InterruptedException {
+        CountDownLatch updateWritten = new CountDownLatch(1);
+        CountDownLatch releaseUpdate = new CountDownLatch(1);
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository() {
+            @Override
+            public SensorDevice update(SensorDevice sensorDevice) {
+                SensorDevice updated = super.update(sensorDevice);
+                // Hold the update between its database write and the rollup update
+                updateWritten.countDown();
+                await(releaseUpdate);
+                return updated;
+            }
+        };
+        RollupSensorDeviceRepository rollup = new RollupSensorDeviceRepository(store);
+        SensorDevice created = rollup.create(device("SENSOR-001", 20.0));
+        
+        SensorDevice changed = new SensorDevice(created);
+        changed.setLastReading(25.0);
+        Thread updater = new Thread(() -> rollup.update(changed));
+        updater.start();
+        await(updateWritten);
+        Thread deleter = new Thread(() -> rollup.deleteById(created.getId()));
+        deleter.start();
+        // Give the delete the chance to overtake the update, which it could before writes held the device lock
+        deleter.join(200);
+        releaseUpdate.countDown();
+        updater.join();
+        deleter.join();
+        
+        assertTrue(store.findById(created.getId()).isEmpty());
+        List<GroupStatistics> statistics = rollup.aggregateBy(GroupBy.STATUS);
+        assertEquals(List.of(), statistics);
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.iot.sensor.repository.sharding;
+
+import com.iot.sensor.SensorDeviceFixtures;
+import com.iot.sensor.model.BatchResult;
+import com.iot.sensor.model.ChangeBatch;
+import com.iot.sensor.model.DeviceChange;
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.model.UpsertResult;
+import com.iot.sensor.model.Watermark;
+import com.iot.sensor.repository.ISensorDeviceRepository;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Shards are in-process repositories standing in for separate databases.
+ */
+class ShardedSensorDeviceRepositoryTest {
+    
+    private static final int FLEET_SIZE = 50;
+    
+    private static SensorDevice device(int index) {
+        return SensorDeviceFixtures.device(String.format("SENSOR-%03d", index),
+                "Building A, Room " + (100 + index % 10), 20.0 + index);
+    }
+    
+    private static Map<String, ISensorDeviceRepository> shards(ISensorDeviceRepository... repositories) {
+        Map<String, ISensorDeviceRepository> shards = new LinkedHashMap<>();
+        for (int i = 0; i < repositories.length; i++) {
+            shards.put("shard-" + i, repositories[i]);
+        }
+        return shards;
+    }
+    
+    private static void createFleet(ISensorDeviceRepository repository) {
+        for (int i = 0; i < FLEET_SIZE; i++) {
+            repository.create(device(i));
+        }
+    }
+    
+    /**
+     * Replay the whole change feed and return the last change type per device ID
+     */
+    private static Map<String, DeviceChange.Type> lastChangeById(ISensorDeviceRepository repository) {
+        Map<String, DeviceChange.Type> last = new HashMap<>();
+        Watermark watermark = Watermark.initial();
+        ChangeBatch batch;
+        do {
+            batch = repository.findModifiedSince(watermark, 7);
+            for (DeviceChange change : batch.getChanges()) {
+                last.put(change.getId(), change.getType());
+            }
+            watermark = batch.getWatermark();
+        } while (batch.hasMore() || !batch.isEmpty());
+        return last;
+    }
+    
+    @Test
+    void rebalanceMovesDevicesToTheirNewOwnerWithoutLosingAny() {
+        ColumnarSensorDeviceRepository added = new ColumnarSensorDeviceRepository();
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new ColumnarSensorDeviceRepository(), new ColumnarSensorDeviceRepository()), 64)) {
+            createFleet(sharded);
+            
+            sharded.addShard("shard-2", added);
+            int moved = sharded.rebalance();
+            
+            assertTrue(moved > 0);
+            assertEquals(moved, added.size());
+            assertFalse(sharded.isRebalancing());
+            assertEquals(FLEET_SIZE, sharded.findAll().size());
+            for (int i = 0; i < FLEET_SIZE; i++) {
+                assertTrue(sharded.findByDeviceId(device(i).getDeviceId()).isPresent());
+            }
+        }
+    }
+    
+    @Test
+    void changeFeedDoesNotReportMovedDevicesAsDeleted() {
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new ColumnarSensorDeviceRepository(), new ColumnarSensorDeviceRepository()), 64)) {
+            createFleet(sharded);
+            sharded.addShard("shard-2", new ColumnarSensorDeviceRepository());
+            assertTrue(sharded.rebalance() > 0);
+            
+            Map<String, DeviceChange.Type> last = lastChangeById(sharded);
+            
+            assertEquals(FLEET_SIZE, last.size());
+            List<String> reportedDeleted = last.entrySet().stream()
+                    .filter(entry -> entry.getValue() == DeviceChange.Type.DELETED)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            assertEquals(List.of(), reportedDeleted);
+        }
+    }
+    
+    @Test
+    void changeFeedStillReportsRealDeletes() {
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new ColumnarSensorDeviceRepository(), new ColumnarSensorDeviceRepository()), 64)) {
+            createFleet(sharded);
+            sharded.addShard("shard-2", new ColumnarSensorDeviceRepository());
+            sharded.rebalance();
+            String id = sharded.findByDeviceId(device(7).getDeviceId()).get().getId();
+            assertTrue(sharded.deleteById(id));
+            
+            assertEquals(DeviceChange.Type.DELETED, lastChangeById(sharded).get(id));
+        }
+    }
+    
+    @Test
+    void findLastReadingsFansOutToEveryShard() {
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new ColumnarSensorDeviceRepository(), new ColumnarSensorDeviceRepository()), 64)) {
+            createFleet(sharded);
+            sharded.addShard("shard-2", new ColumnarSensorDeviceRepository());
+            sharded.rebalance();
+            List<String> deviceIds = new ArrayList<>();
+            for (int i = 0; i < FLEET_SIZE; i++) {
+                deviceIds.add(device(i).getDeviceId());
+            }
+            deviceIds.add("SENSOR-UNKNOWN");
+            
+            Map<String, Double> readings = sharded.findLastReadings(deviceIds);
+            
+            assertEquals(FLEET_SIZE, readings.size());
+            for (int i = 0; i < FLEET_SIZE; i++) {
+                assertEquals(device(i).getLastReading(), readings.get(device(i).getDeviceId()));
+            }
+        }
+    }
+    
+    @Test
+    void updateReturnsTheStoredDevice() {
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new StoredCopyRepository(), new StoredCopyRepository()), 64)) {
+            SensorDevice created = sharded.create(device(1));
+            SensorDevice change = new SensorDevice(created);
+            change.setDeviceName("Renamed");
+            change.setUpdatedAt(null);
+            
+            SensorDevice updated = sharded.update(change);
+            
+            assertNotSame(change, updated);
+            assertEquals("Renamed", updated.getDeviceName());
+            assertNotNull(updated.getUpdatedAt());
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void writeRacingAMoveIsNotLost() throws Exception {
+        CountDownLatch copying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PausingRepository added = new PausingRepository(copying, release);
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new ColumnarSensorDeviceRepository(), new ColumnarSensorDeviceRepository()), 64)) {
+            createFleet(sharded);
+            sharded.addShard("shard-2", added);
+            
+            Thread rebalance = new Thread(sharded::rebalance);
+            rebalance.start();
+            assertTrue(copying.await(5, TimeUnit.SECONDS));
+            String deviceId = added.paused;
+            Thread writer = new Thread(() -> sharded.updateReading(deviceId, 99.0));
+            writer.start();
+            // Without the device lock the writer moves the device itself and writes before the copy lands
+            writer.join(200);
+            release.countDown();
+            rebalance.join();
+            writer.join();
+            
+            assertEquals(99.0, sharded.findByDeviceId(deviceId).get().getLastReading());
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void rebalanceDoesNotHoldTheStreamWhileMoving() {
+        try (ShardedSensorDeviceRepository sharded = new ShardedSensorDeviceRepository(
+                shards(new SingleConnectionRepository(), new SingleConnectionRepository()), 64)) {
+            createFleet(sharded);
+            sharded.addShard("shard-2", new SingleConnectionRepository());
+            
+            assertTrue(sharded.rebalance() > 0);
+            assertEquals(FLEET_SIZE, sharded.findAll().size());
+        }
+    }
+    
+    /**
+     * Returns what it stored rather than the caller's object, as the database repositories do
+     */
+    private static final class StoredCopyRepository extends ColumnarSensorDeviceRepository {
+        @Override
+        public BatchResult updateAll(Collection<SensorDevice> sensorDevices) {
+            BatchResult stored = new BatchResult();
+            BatchResult result = super.updateAll(sensorDevices);
+            result.getSucceeded().forEach(device -> stored.addSuccess(findById(device.getId()).get()));
+            result.getFailures().forEach(failure ->
+                    stored.addFailure(failure.getIndex(), failure.getSensorDevice(), failure.getReason()));
+            return stored;
+        }
+    }
+    
+    /**
+     * Holds the first copy a move makes to it until released
+     */
+    private static final class PausingRepository extends ColumnarSensorDeviceRepository {
+        private final CountDownLatch copying;
+        private final CountDownLatch release;
+        private volatile String paused;
+        
+        PausingRepository(CountDownLatch copying, CountDownLatch release) {
+            this.copying = copying;
+            this.release = release;
+        }
+        
+        @Override
+        public UpsertResult upsertByDeviceId(SensorDevice sensorDevice) {
+            if (paused == null) {
+                paused = sensorDevice.getDeviceId();
+                copying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return super.upsertByDeviceId(sensorDevice);
+        }
+    }
+    
+    /**
+     * Behaves like a repository on a one-connection pool: an open stream holds the only
+     * connection, and the calls a move makes need it too
+     */
+    private static final class SingleConnectionRepository extends ColumnarSensorDeviceRepository {
+        private final Semaphore connection = new Semaphore(1);
+        
+        private void acquire() {
+            try {
+                if (!connection.tryAcquire(2, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Connection is held by an open stream");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        @Override
+        public Stream<SensorDevice> streamAll() {
+            acquire();
+            return super.streamAll().onClose(connection::release);
+        }
+        
+        @Override
+        public Optional<SensorDevice> findById(String id) {
+            acquire();
+            try {
+                return super.findById(id);
+            } finally {
+                connection.release();
+            }
+        }
+        
+        @Override
+        public boolean deleteById(String id) {
+            acquire();
+            try {
+                return super.deleteById(id);
+            } finally {
+                connection.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.iot.sensor.repository.writebehind;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteBehindSensorDeviceRepositoryTest {
+    
+    // Long interval: nothing is flushed by the timer during a test
+    private static final long NEVER = 60_000;
+    
+    @Test
+    void statusChangeSurvivesTheFlushOfAnEarlierBufferedUpdate() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        SensorDevice device = store.create(device("SENSOR-001"));
+        try (WriteBehindSensorDeviceRepository writeBehind =
+                     new WriteBehindSensorDeviceRepository(store, NEVER, 100, 100)) {
+            SensorDevice renamed = new SensorDevice(device);
+            renamed.setDeviceName("Sensor 1 (lobby)");
+            writeBehind.update(renamed);
+            
+            writeBehind.updateStatus("SENSOR-001", "Maintenance");
+            writeBehind.flush();
+            
+            SensorDevice stored = store.findById(device.getId()).get();
+            assertEquals("Maintenance", stored.getStatus());
+            assertEquals("Sensor 1 (lobby)", stored.getDeviceName());
+        }
+    }
+    
+    @Test
+    void repeatedUpdatesOfADeviceAreWrittenOnce() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        SensorDevice device = store.create(device("SENSOR-001"));
+        store.create(device("SENSOR-002"));
+        try (WriteBehindSensorDeviceRepository writeBehind =
+                     new WriteBehindSensorDeviceRepository(store, NEVER, 100, 100)) {
+            for (int i = 1; i <= 3; i++) {
+                SensorDevice renamed = new SensorDevice(device);
+                renamed.setDeviceName("Sensor 1 v" + i);
+                writeBehind.update(renamed);
+                writeBehind.updateReading("SENSOR-002", 30.0 + i);
+            }
+            assertEquals(2, writeBehind.getPendingCount());
+            
+            writeBehind.flush();
+            
+            assertEquals(6, writeBehind.getReceivedCount());
+            assertEquals(4, writeBehind.getCoalescedCount());
+            assertEquals(2, writeBehind.getWrittenCount());
+            assertEquals(0, writeBehind.getNotFoundCount());
+            assertEquals("Sensor 1 v3", store.findById(device.getId()).get().getDeviceName());
+            assertEquals(33.0, store.findByDeviceId("SENSOR-002").get().getLastReading());
+        }
+    }
+    
+    @Test
+    @Timeout(10)
+    void reachingTheThresholdFlushesInTheBackground() throws InterruptedException {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        store.create(device("SENSOR-001"));
+        store.create(device("SENSOR-002"));
+        try (WriteBehindSensorDeviceRepository writeBehind =
+                     new WriteBehindSensorDeviceRepository(store, NEVER, 2, 100)) {
+            writeBehind.updateReading("SENSOR-001", 31.0);
+            assertEquals(0, writeBehind.getFlushCount());
+            writeBehind.updateReading("SENSOR-002", 32.0);
+            while (writeBehind.getWrittenCount() < 2) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            
+            assertEquals(31.0, store.findByDeviceId("SENSOR-001").get().getLastReading());
+            assertEquals(32.0, store.findByDeviceId("SENSOR-002").get().getLastReading());
+        }
+    }
+    
+    @Test
+    void reachingMaxPendingFlushesInTheWriter() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        store.create(device("SENSOR-001"));
+        store.create(device("SENSOR-002"));
+        try (WriteBehindSensorDeviceRepository writeBehind =
+                     new WriteBehindSensorDeviceRepository(store, NEVER, 2, 2)) {
+            writeBehind.updateReading("SENSOR-001", 31.0);
+            writeBehind.updateReading("SENSOR-002", 32.0);
+            
+            // Already written when the call returns
+            assertEquals(0, writeBehind.getPendingCount());
+            assertEquals(2, writeBehind.getWrittenCount());
+            assertEquals(32.0, store.findByDeviceId("SENSOR-002").get().getLastReading());
+        }
+    }
+    
+    @Test
+    void closeFlushesTheBufferAndRejectsLaterWrites() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        store.create(device("SENSOR-001"));
+        WriteBehindSensorDeviceRepository writeBehind = new WriteBehindSensorDeviceRepository(store, NEVER, 100, 100);
+        writeBehind.updateReading("SENSOR-001", 31.0);
+        writeBehind.updateReading("SENSOR-404", 1.0);
+        
+        writeBehind.close();
+        
+        assertEquals(31.0, store.findByDeviceId("SENSOR-001").get().getLastReading());
+        assertEquals(1, writeBehind.getWrittenCount());
+        assertEquals(1, writeBehind.getNotFoundCount());
+        assertThrows(IllegalStateException.class, () -> writeBehind.updateReading("SENSOR-001", 32.0));
+        assertThrows(IllegalStateException.class, () -> writeBehind.updateStatus("SENSOR-001", "Inactive"));
+    }
+    
+    @Test
+    void deleteDropsBufferedValuesOfTheDevice() {
+        ColumnarSensorDeviceRepository store = new ColumnarSensorDeviceRepository();
+        SensorDevice device = store.create(device("SENSOR-001"));
+        try (WriteBehindSensorDeviceRepository writeBehind =
+                     new WriteBehindSensorDeviceRepository(store, NEVER, 100, 100)) {
+            writeBehind.update(new SensorDevice(device));
+            writeBehind.updateReading("SENSOR-001", 31.0);
+            
+            writeBehind.deleteById(device.getId());
+            writeBehind.flush();
+            
+            assertEquals(0, writeBehind.getPendingCount());
+            assertEquals(0, writeBehind.getWrittenCount());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.iot.sensor.service;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.iot.sensor.SensorDeviceFixtures.device;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncSensorDeviceServiceTest {
+    
+    /**
+     * Blocks every findById until released and records how many ran at once
+     */
+    private static final class GatedRepository extends ColumnarSensorDeviceRepository {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        
+        @Override
+        public Optional<SensorDevice> findById(String id) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return super.findById(id);
+        }
+    }
+    
+    @Test
+    void lastReadingsAndLocationPrefixQueriesRunThroughTheService() {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        repository.create(device("SENSOR-001", "Building A, Floor 1", 20.5));
+        repository.create(device("SENSOR-002", "Building B, Floor 1", 21.5));
+        
+        try (AsyncSensorDeviceService async = new AsyncSensorDeviceService(new SensorDeviceService(repository), 2)) {
+            Map<String, Double> readings = async.getLastReadings(List.of("SENSOR-001", "SENSOR-002", "SENSOR-404")).join();
+            List<SensorDevice> inA = async.getSensorDevicesByLocationPrefix("Building A").join();
+            
+            assertEquals(Map.of("SENSOR-001", 20.5, "SENSOR-002", 21.5), readings);
+            assertEquals(1, inA.size());
+            assertEquals("SENSOR-001", inA.get(0).getDeviceId());
+        }
+    }
+    
+    @Test
+    void fanOutIsCappedAtTheConcurrencyLimit() throws InterruptedException {
+        GatedRepository repository = new GatedRepository();
+        SensorDevice created = repository.create(device("SENSOR-001", "Building A", 20.5));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ids.add(created.getId());
+        }
+        
+        try (AsyncSensorDeviceService async = new AsyncSensorDeviceService(new SensorDeviceService(repository), 3)) {
+            CompletableFuture<List<SensorDevice>> lookups = async.getSensorDevicesByIds(ids);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (async.getQueuedCount() < ids.size() - 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            
+            // Every lookup has its own virtual thread: 3 run, the rest wait for a permit
+            assertEquals(3, async.getInFlightCount());
+            assertEquals(ids.size() - 3, async.getQueuedCount());
+            assertEquals(3, repository.running.get());
+            
+            repository.release.countDown();
+            assertEquals(ids.size(), lookups.join().size());
+            assertEquals(3, repository.maxRunning.get());
+            assertEquals(0, async.getInFlightCount());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.iot.sensor.snapshot;
+
+import com.iot.sensor.model.SensorDevice;
+import com.iot.sensor.repository.memory.ColumnarSensorDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SnapshotTest {
+    
+    @Test
+    void dictionaryEncodedFieldsSurviveARoundTrip(@TempDir Path directory) {
+        ColumnarSensorDeviceRepository repository = new ColumnarSensorDeviceRepository();
+        repository.create(new SensorDevice(null, "Sensor 1", "Temperature", "Building A", "Active", 20.5, "Celsius", "SENSOR-001"));
+        repository.create(new SensorDevice(null, "Sensor 2", "Humidity", "Building A", "Active", 40.0, "Percent", "SENSOR-002"));
+        repository.create(new SensorDevice(null, "Sensor 3", "Temperature", null, "Inactive", null, "Celsius", "SENSOR-003"));
+        Path file = directory.resolve("fleet.snapshot");
+        
+        new SnapshotWriter(repository).write(file);
+        List<SensorDevice> devices = Snapshot.open(file).stream()
+                .sorted(Comparator.comparing(SensorDevice::getDeviceId))
+                .collect(Collectors.toList());
+        
+        assertEquals(3, devices.size());
+        assertEquals("Humidity", devices.get(1).getSensorType());
+        assertEquals("Percent", devices.get(1).getUnit());
+        assertEquals("Building A", devices.get(1).getLocation());
+        assertEquals("Temperature", devices.get(2).getSensorType());
+        assertEquals("Inactive", devices.get(2).getStatus());
+        assertNull(devices.get(2).getLocation());
+        assertNull(devices.get(2).getLastReading());
+    }
+}